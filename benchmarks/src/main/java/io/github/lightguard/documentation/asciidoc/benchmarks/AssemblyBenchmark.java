@@ -0,0 +1,68 @@
+package io.github.lightguard.documentation.asciidoc.benchmarks;
+
+import io.github.lightguard.documentation.asciidoc.extension.LineStore;
+import io.github.lightguard.documentation.asciidoc.extension.PreprocessedSource;
+import io.github.lightguard.documentation.asciidoc.extension.ReaderPreprocessor;
+import io.github.lightguard.documentation.asciidoc.extraction.model.Assembly;
+import io.github.lightguard.documentation.asciidoc.scanner.ScannedChapter;
+import io.github.lightguard.documentation.asciidoc.scanner.SectionScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building an {@link Assembly} from a chapter which is already preprocessed and scanned, and writing its modules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssemblyBenchmark {
+    @Param({
+            "nested-ifdef/chap-kogito-creating-running.adoc",
+            "kafka-ifdef/chap-getting-started.adoc",
+            "optaplanner-real-world/chap-planner-configuration.adoc"
+    })
+    public String chapter;
+
+    private PreprocessedSource source;
+    private ScannedChapter outline;
+    private Assembly assembly;
+
+    @Setup
+    public void parseChapter() throws IOException {
+        var file = Fixtures.resolve(this.chapter);
+        var folder = file.toAbsolutePath().getParent().getFileName();
+        this.source = new ReaderPreprocessor().preprocess(LineStore.read(file), folder);
+        this.outline = new SectionScanner(Map.of(), file.getFileName().toString(), folder.toString())
+                .scan(this.source.getLines());
+        this.assembly = build();
+    }
+
+    @Benchmark
+    public Assembly build() {
+        return new Assembly(this.outline, this.source.getLineStore(), this.source.getAssemblyBody());
+    }
+
+    @Benchmark
+    public void writeModules() throws IOException {
+        var out = Writer.nullWriter();
+        for (var module : this.assembly.getModules())
+            module.getSourceSlice().writeTo(out);
+    }
+}
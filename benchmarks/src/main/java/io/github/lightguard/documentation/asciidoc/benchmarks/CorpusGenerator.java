@@ -0,0 +1,207 @@
+package io.github.lightguard.documentation.asciidoc.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Writes a documentation tree laid out like the kogito example, with as many chapters and modules as asked for.
+ * Each chapter has modules of the three types, some wrapped in nested ifdefs or in tag regions, some with a
+ * replace-with block, and images under {@code _images}. A {@code titles-enterprise} book includes every chapter.
+ * The same settings and seed always write the same files.
+ */
+final class CorpusGenerator {
+    static final String CONTENT_DIR = "doc-content/src/main/asciidoc";
+    private static final String[] MODULE_TYPES = {"con", "proc", "ref"};
+    private static final String[] WORDS = {
+            "service", "process", "decision", "the", "a", "configure", "application", "model", "runtime", "data",
+            "event", "rule", "unit", "deploy", "cluster", "with", "for", "and", "of", "to", "in", "{PRODUCT}",
+            "`kogito.service.url`", "property", "value", "default", "request", "response", "task", "user"
+    };
+
+    private final int chapters;
+    private final int modulesPerChapter;
+    private final int ifdefDepth;
+    private final int tagRegionsPerChapter;
+    private final int replaceWithPerChapter;
+    private final int imagesPerChapter;
+    private final long seed;
+
+    /**
+     * @param chapters              number of chapter files
+     * @param modulesPerChapter     modules in each chapter
+     * @param ifdefDepth            ifdefs nested around every other module and inside it, 0 for none
+     * @param tagRegionsPerChapter  modules in a tag region in each chapter
+     * @param replaceWithPerChapter modules with a replace-with block in each chapter
+     * @param imagesPerChapter      images of each chapter in {@code _images}
+     * @param seed                  seed of the generated text
+     */
+    CorpusGenerator(int chapters, int modulesPerChapter, int ifdefDepth, int tagRegionsPerChapter,
+                    int replaceWithPerChapter, int imagesPerChapter, long seed) {
+        this.chapters = chapters;
+        this.modulesPerChapter = modulesPerChapter;
+        this.ifdefDepth = ifdefDepth;
+        this.tagRegionsPerChapter = tagRegionsPerChapter;
+        this.replaceWithPerChapter = replaceWithPerChapter;
+        this.imagesPerChapter = imagesPerChapter;
+        this.seed = seed;
+    }
+
+    /**
+     * Writes the tree.
+     *
+     * @param root directory to write to, created if needed
+     * @return number of lines in the chapter files
+     * @throws IOException if a file can't be written
+     */
+    long generate(Path root) throws IOException {
+        var random = new Random(this.seed);
+        var content = root.resolve(CONTENT_DIR);
+        Files.createDirectories(content);
+
+        write(root.resolve("_artifacts/document-attributes.adoc"), ":PRODUCT: Synthetic Docs\n:PRODUCT_INIT: synthetic\n");
+
+        var master = new StringBuilder(":SYNTHETIC-ENT:\ninclude::{artifact-dir}/document-attributes.adoc[]\n\n")
+                .append("= {PRODUCT} Documentation\n:context: synthetic-docs\n:doctype: book\n\n");
+        long lines = 0;
+        for (int chapter = 1; chapter <= this.chapters; chapter++) {
+            var topic = "topic-" + chapter;
+            var text = chapter(topic, this.modulesPerChapter, random);
+            lines += lines(text);
+            write(content.resolve(topic).resolve("chap-" + topic + ".adoc"), text);
+            if (this.replaceWithPerChapter > 0) {
+                write(content.resolve(topic).resolve("snippet-" + topic + ".adoc"),
+                        "A snippet included instead of the link.\n");
+            }
+            for (int image = 1; image <= this.imagesPerChapter; image++) {
+                var bytes = new byte[2048];
+                random.nextBytes(bytes);
+                var file = root.resolve("_images").resolve(topic).resolve("diagram-" + image + ".png");
+                Files.createDirectories(file.getParent());
+                Files.write(file, bytes);
+            }
+            master.append("include::").append(CONTENT_DIR).append('/').append(topic).append("/chap-").append(topic)
+                    .append(".adoc[leveloffset=+1]\n");
+        }
+        write(root.resolve("titles-enterprise/synthetic-docs/master.adoc"), master.toString());
+        return lines;
+    }
+
+    /**
+     * Writes a single chapter of at least the given number of lines, with as many modules as it takes.
+     *
+     * @param file     chapter file to write, its directory is created if needed
+     * @param minLines number of lines the chapter should have at least
+     * @return number of lines in the chapter
+     * @throws IOException if the file can't be written
+     */
+    long generateChapter(Path file, long minLines) throws IOException {
+        long sampleLines = lines(chapter("sample", this.modulesPerChapter, new Random(this.seed)));
+        int modules = (int) Math.max(1, minLines * this.modulesPerChapter / sampleLines);
+        String text;
+        do {
+            text = chapter("large", modules, new Random(this.seed));
+            modules += Math.max(1, modules / 100);
+        } while (lines(text) < minLines);
+
+        write(file, text);
+        return lines(text);
+    }
+
+    private static long lines(String text) {
+        return text.chars().filter(c -> c == '\n').count();
+    }
+
+    private String chapter(String topic, int modules, Random random) {
+        var out = new StringBuilder();
+        out.append("ifdef::context[:parent-context: {context}]\n\n")
+                .append("[id='chap-").append(topic).append("']\n")
+                .append("= ").append(title(random)).append('\n')
+                .append(":context: ").append(topic).append("\n\n");
+        paragraph(out, random);
+
+        for (int module = 1; module <= modules; module++) {
+            var type = MODULE_TYPES[module % MODULE_TYPES.length];
+            var id = type + "-" + topic + "-" + module;
+            boolean tagged = module <= this.tagRegionsPerChapter;
+            int depth = module % 2 == 0 ? this.ifdefDepth : 0;
+
+            if (tagged)
+                out.append("// tag::").append(id).append("[]\n");
+            for (int level = 1; level <= depth; level++)
+                out.append("ifdef::SYNTHETIC-FLAG-").append(level).append("[]\n");
+
+            out.append("[id='").append(id).append("_{context}']\n")
+                    .append("== ").append(title(random)).append("\n\n");
+            paragraph(out, random);
+            if (this.imagesPerChapter > 0) {
+                out.append('.').append(title(random)).append('\n')
+                        .append("image::").append(topic).append("/diagram-")
+                        .append(1 + module % this.imagesPerChapter).append(".png[]\n\n");
+            }
+            if (module <= this.replaceWithPerChapter) {
+                out.append("[replace-with=\"").append(topic).append("/snippet-").append(topic)
+                        .append(".adoc\" replace-with-params=\"leveloffset=+1\"]\n")
+                        .append("link:{asciidoc-dir}/").append(topic).append("/snippet-").append(topic)
+                        .append(".adoc[See the snippet].\n\n");
+            }
+            if ("proc".equals(type)) {
+                out.append(".Procedure\n");
+                for (int step = 0; step < 4; step++)
+                    out.append(". ").append(sentence(random)).append('\n');
+                out.append('\n');
+            }
+            for (int level = 1; level <= this.ifdefDepth; level++)
+                out.append("ifdef::SYNTHETIC-INNER-").append(level).append("[]\n");
+            paragraph(out, random);
+            for (int level = 1; level <= this.ifdefDepth; level++)
+                out.append("endif::[]\n");
+            out.append("\n=== ").append(title(random)).append("\n\n")
+                    .append("[source,properties]\n----\n")
+                    .append("kogito.").append(topic).append(".module").append(module).append("=").append(random.nextInt(1000))
+                    .append("\n----\n\n");
+            paragraph(out, random);
+
+            for (int level = 1; level <= depth; level++)
+                out.append("endif::[]\n");
+            if (tagged)
+                out.append("// end::").append(id).append("[]\n");
+            if (depth > 0 || tagged)
+                out.append('\n');
+        }
+        out.append("ifdef::parent-context[:context: {parent-context}]\n")
+                .append("ifndef::parent-context[:!context:]\n");
+        return out.toString();
+    }
+
+    private static String title(Random random) {
+        var title = sentence(random, 3 + random.nextInt(4));
+        return title.substring(0, title.length() - 1);
+    }
+
+    private static void paragraph(StringBuilder out, Random random) {
+        for (int i = 2 + random.nextInt(3); i > 0; i--)
+            out.append(sentence(random)).append(' ');
+        out.setLength(out.length() - 1);
+        out.append("\n\n");
+    }
+
+    private static String sentence(Random random) {
+        return sentence(random, 8 + random.nextInt(12));
+    }
+
+    private static String sentence(Random random, int words) {
+        var sentence = new StringBuilder();
+        for (int i = 0; i < words; i++)
+            sentence.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+        sentence.setCharAt(0, Character.toUpperCase(sentence.charAt(0)));
+        return sentence.append('.').toString();
+    }
+
+    private static void write(Path file, String text) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+    }
+}
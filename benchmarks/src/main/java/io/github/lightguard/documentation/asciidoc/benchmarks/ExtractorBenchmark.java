@@ -0,0 +1,66 @@
+package io.github.lightguard.documentation.asciidoc.benchmarks;
+
+import io.github.lightguard.documentation.asciidoc.extraction.ChapterParser;
+import io.github.lightguard.documentation.asciidoc.extraction.Extractor;
+import io.github.lightguard.documentation.asciidoc.extraction.ParserEngine;
+import io.github.lightguard.documentation.asciidoc.extraction.model.InMemoryLocation;
+import io.github.lightguard.documentation.asciidoc.extraction.model.LocalDirectoryLocation;
+import io.github.lightguard.documentation.asciidoc.extraction.model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole split of the kogito example, written to memory. The parser is started once per fork, so starting JRuby
+ * isn't measured. The split runs with 1 to 8 parse jobs, the throughput only grows with jobs up to the cores there are.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ExtractorBenchmark {
+    @Param({"ASCIIDOCTOR", "SCANNER"})
+    public ParserEngine engine;
+
+    @Param({"1", "2", "4", "8"})
+    public int jobs;
+
+    private File input;
+    private ChapterParser parser;
+
+    @Setup
+    public void startParser() {
+        this.input = Fixtures.resolve("examples/kogito/input").toFile();
+        this.parser = this.engine.create(Map.of());
+        this.parser.warmUp();
+    }
+
+    @TearDown
+    public void closeParser() {
+        this.parser.close();
+    }
+
+    @Benchmark
+    public int process() {
+        var task = new Task(new LocalDirectoryLocation(this.input), new InMemoryLocation(Path.of("benchmark-output")));
+        var extractor = new Extractor(task, this.parser);
+        extractor.setJobs(this.jobs);
+        return extractor.process();
+    }
+}
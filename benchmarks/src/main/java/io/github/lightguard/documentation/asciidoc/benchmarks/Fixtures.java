@@ -0,0 +1,42 @@
+package io.github.lightguard.documentation.asciidoc.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The test documents of the splitter, which the benchmarks run on.
+ * They are looked up in the directory of the {@code splitter.docs} system property, by default in the splitter's
+ * test resources when running from the splitter directory.
+ */
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    static Path docs() {
+        var docs = Path.of(System.getProperty("splitter.docs", "src/test/resources/docs"));
+        if (!Files.isDirectory(docs)) {
+            throw new IllegalStateException("No test documents in " + docs.toAbsolutePath()
+                    + ", run from the splitter directory or set -Dsplitter.docs");
+        }
+        return docs;
+    }
+
+    static Path resolve(String path) {
+        return docs().resolve(path);
+    }
+
+    /**
+     * All the asciidoc files of the test documents, in a stable order.
+     */
+    static List<Path> adocFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(docs())) {
+            return files.filter(file -> file.toString().endsWith(".adoc"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.lightguard.documentation.asciidoc.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Samples the used heap on a daemon thread, and keeps the highest sample.
+ * The pools of the heap peak at different times, so adding their peaks overstates the peak of the heap. A sample is
+ * the used heap at one time, the peak can only be missed by the sampling interval.
+ */
+class HeapSampler implements AutoCloseable {
+    private static final long INTERVAL_MILLIS = 5;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile long peakBytes;
+
+    private HeapSampler() {
+        this.peakBytes = used();
+        this.thread = new Thread(this::sample, "heap-sampler");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts sampling the heap.
+     *
+     * @return the running sampler
+     */
+    static HeapSampler start() {
+        var sampler = new HeapSampler();
+        sampler.thread.start();
+        return sampler;
+    }
+
+    private void sample() {
+        while (this.running) {
+            record();
+            try {
+                Thread.sleep(INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private synchronized void record() {
+        this.peakBytes = Math.max(this.peakBytes, used());
+    }
+
+    private long used() {
+        return this.memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Highest used heap sampled so far, in bytes.
+     */
+    long getPeakBytes() {
+        record();
+        return this.peakBytes;
+    }
+
+    /**
+     * Stops sampling, the peak includes a last sample.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        this.running = false;
+        this.thread.interrupt();
+        this.thread.join();
+        record();
+    }
+}
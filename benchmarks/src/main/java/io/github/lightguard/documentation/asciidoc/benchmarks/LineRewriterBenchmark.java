@@ -0,0 +1,83 @@
+package io.github.lightguard.documentation.asciidoc.benchmarks;
+
+import io.github.lightguard.documentation.asciidoc.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The rewrites of {@link Util} on the lines of all the test documents, each next to the regular expressions they
+ * replaced. Each call goes through every line, or every document for {@code fixIncludes}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineRewriterBenchmark {
+    private List<String> sources;
+    private List<String> lines;
+    private List<String> sectionTitles;
+
+    @Setup
+    public void readDocs() throws IOException {
+        this.sources = new ArrayList<>();
+        for (var file : Fixtures.adocFiles()) {
+            this.sources.add(Files.readString(file));
+        }
+        this.lines = this.sources.stream().flatMap(String::lines).collect(Collectors.toList());
+        this.sectionTitles = this.lines.stream().filter(line -> line.startsWith("==")).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void tweakSource(Blackhole blackhole) {
+        for (var line : this.lines)
+            blackhole.consume(Util.tweakSource(line));
+    }
+
+    @Benchmark
+    public void tweakSourceRegex(Blackhole blackhole) {
+        for (var line : this.lines)
+            blackhole.consume(RegexTweaks.tweakSource(line));
+    }
+
+    @Benchmark
+    public void fixIncludes(Blackhole blackhole) {
+        for (var source : this.sources)
+            blackhole.consume(Util.fixIncludes(source));
+    }
+
+    @Benchmark
+    public void fixIncludesRegex(Blackhole blackhole) {
+        for (var source : this.sources)
+            blackhole.consume(RegexTweaks.fixIncludes(source, false));
+    }
+
+    @Benchmark
+    public void fixSectionLevelForModule(Blackhole blackhole) {
+        for (var line : this.sectionTitles)
+            blackhole.consume(Util.fixSectionLevelForModule(line, 1));
+    }
+
+    @Benchmark
+    public void fixSectionLevelForModuleRegex(Blackhole blackhole) {
+        for (var line : this.sectionTitles)
+            blackhole.consume(RegexTweaks.fixSectionLevelForModule(line, 1));
+    }
+}
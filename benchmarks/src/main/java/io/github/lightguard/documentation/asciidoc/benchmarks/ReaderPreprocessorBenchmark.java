@@ -0,0 +1,57 @@
+package io.github.lightguard.documentation.asciidoc.benchmarks;
+
+import io.github.lightguard.documentation.asciidoc.extension.LineStore;
+import io.github.lightguard.documentation.asciidoc.extension.PreprocessedSource;
+import io.github.lightguard.documentation.asciidoc.extension.ReaderPreprocessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@link ReaderPreprocessor#process} does with the lines asciidoctor has read: copy them into a
+ * {@link LineStore}, classify and mark them, and build the assembly body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderPreprocessorBenchmark {
+    @Param({
+            "nested-ifdef/chap-kogito-creating-running.adoc",
+            "kafka-ifdef/chap-getting-started.adoc",
+            "optaplanner-real-world/chap-planner-configuration.adoc"
+    })
+    public String chapter;
+
+    private final ReaderPreprocessor preprocessor = new ReaderPreprocessor();
+    private List<String> lines;
+    private Path folderName;
+
+    @Setup
+    public void readChapter() throws IOException {
+        var file = Fixtures.resolve(this.chapter);
+        this.lines = new ArrayList<>(LineStore.read(file).asList());
+        this.folderName = file.toAbsolutePath().getParent().getFileName();
+    }
+
+    @Benchmark
+    public PreprocessedSource process() {
+        return this.preprocessor.preprocess(LineStore.of(this.lines), this.folderName);
+    }
+}
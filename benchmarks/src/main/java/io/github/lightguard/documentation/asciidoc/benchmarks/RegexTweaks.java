@@ -0,0 +1,55 @@
+package io.github.lightguard.documentation.asciidoc.benchmarks;
+
+import io.github.lightguard.documentation.asciidoc.extension.ReaderPreprocessor;
+
+import java.util.regex.Pattern;
+
+/**
+ * The regular expressions {@link io.github.lightguard.documentation.asciidoc.Util} used before
+ * {@link io.github.lightguard.documentation.asciidoc.LineRewriter}, to compare against.
+ */
+final class RegexTweaks {
+    private RegexTweaks() {
+    }
+
+    static String fixIncludes(String source, boolean shouldFixModules) {
+        var sourceFixed = source.replaceAll("(?<include>include::)(?<path>(\\w|/|-)*)?chap-(?<filename>.+)\\.(?<extension>.+)\\[]",
+                        "${include}assemblies/assembly-${filename}.${extension}[]")
+                .replaceAll("(?<include>include::)(?<path>(\\w|/|-)*)?assembly-(?<filename>.+)\\.(?<extension>.+)\\[]",
+                        "${include}assemblies/assembly-${filename}.${extension}[]")
+                .replaceAll("(?<include>include::)(\\{asciidoc-dir}/)?(?<path>(\\w|/|-)*)/(?<filename>.*)\\[tags=(?<module>.+)]",
+                        "${include}modules/${path}/${module}.adoc[leveloffset=+1]");
+        if (shouldFixModules) {
+            sourceFixed = sourceFixed.replaceAll("(?<include>include::)(?<filename>[\\p{Alpha}\\-]+\\.adoc)\\[(?<opts>.*)]",
+                    "${include}modules/${filename}[${opts}]");
+        }
+        return sourceFixed;
+    }
+
+    static String fixModuleInclude(String source) {
+        var pattern = Pattern.compile("(?<include>include::)(?<path>(\\w|/|-)*)/(?<filename>.+)\\[(?<params>.+)]");
+        var matcher = pattern.matcher(source);
+        if (matcher.matches()) {
+            var params = "null".equals(matcher.group("params")) ? "" : matcher.group("params");
+            return matcher.replaceAll("${include}modules/${path}/${filename}[" + params + "]")
+                    .replaceAll("modules/modules/", "../../modules/");
+        }
+        return source;
+    }
+
+    static String tweakSource(String source) {
+        var tweaked = source.replaceAll("chap-", "assembly-")
+                .replaceAll(ReaderPreprocessor.SPLITTER_COMMENT, "");
+        return fixModuleInclude(fixIncludes(tweaked, true));
+    }
+
+    static String fixSectionLevelForModule(String source, int offset) {
+        var pattern = Pattern.compile("^(?<sectionLevel>=+)\\s(?<title>(?:\\w|\\s|\\p{Punct})+)");
+        var matcher = pattern.matcher(source);
+        if (matcher.matches()) {
+            var sectionLevel = matcher.group("sectionLevel");
+            return sectionLevel.substring(0, sectionLevel.length() - offset) + " " + matcher.group("title");
+        }
+        return source;
+    }
+}
@@ -0,0 +1,268 @@
+package io.github.lightguard.documentation.asciidoc.benchmarks;
+
+import io.github.lightguard.documentation.asciidoc.extraction.ChapterParser;
+import io.github.lightguard.documentation.asciidoc.extraction.Extractor;
+import io.github.lightguard.documentation.asciidoc.extraction.ParsedChapter;
+import io.github.lightguard.documentation.asciidoc.extraction.ParserEngine;
+import io.github.lightguard.documentation.asciidoc.extraction.ScannerChapterParser;
+import io.github.lightguard.documentation.asciidoc.extraction.model.LocalDirectoryLocation;
+import io.github.lightguard.documentation.asciidoc.extraction.model.PushableLocation;
+import io.github.lightguard.documentation.asciidoc.extraction.model.Task;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.stream.Stream;
+
+/**
+ * Splits generated corpora of growing sizes and reports the wall time, peak heap and files written for each size.
+ * Time or heap per chapter growing with the size of the corpus shows where the splitter doesn't scale.
+ * Everything runs in this JVM, one size after the other, so run it with a fixed heap, for example {@code -Xmx2g}.
+ * With {@code --chapter-lines} it parses a single generated chapter of that many lines with the scanner engine
+ * instead, and reports the time, peak heap and heap retained by the parsed chapter of each parse.
+ */
+@Command(name = "scaling-report", mixinStandardHelpOptions = true,
+        description = "Split generated documentation trees of growing sizes and report how the splitter scales.")
+public class ScalingReport implements Callable<Integer> {
+    @Option(names = "--chapters", split = ",", defaultValue = "25,50,100,200,400",
+            description = "Corpus sizes, in chapters. Defaults to ${DEFAULT-VALUE}.")
+    List<Integer> sizes;
+
+    @Option(names = "--modules", defaultValue = "12", description = "Modules per chapter. Defaults to ${DEFAULT-VALUE}.")
+    int modules;
+
+    @Option(names = "--ifdef-depth", defaultValue = "2",
+            description = "Ifdefs nested around every other module. Defaults to ${DEFAULT-VALUE}.")
+    int ifdefDepth;
+
+    @Option(names = "--tag-regions", defaultValue = "3",
+            description = "Modules in a tag region per chapter. Defaults to ${DEFAULT-VALUE}.")
+    int tagRegions;
+
+    @Option(names = "--replace-with", defaultValue = "1",
+            description = "Replace-with blocks per chapter. Defaults to ${DEFAULT-VALUE}.")
+    int replaceWith;
+
+    @Option(names = "--images", defaultValue = "2", description = "Images per chapter. Defaults to ${DEFAULT-VALUE}.")
+    int images;
+
+    @Option(names = "--seed", defaultValue = "42", description = "Seed of the generated text.")
+    long seed;
+
+    @Option(names = "--engine", defaultValue = "asciidoctor",
+            description = "Parser engine: asciidoctor or scanner. Defaults to ${DEFAULT-VALUE}.")
+    ParserEngine engine;
+
+    @Option(names = "--chapter-lines", paramLabel = "<lines>", arity = "0..1", fallbackValue = "500000",
+            description = "Parse one generated chapter of this many lines instead, 500000 if no value is given.")
+    Long chapterLines;
+
+    @Option(names = "--parses", defaultValue = "5",
+            description = "Parses of the large chapter, after a warm-up one. Defaults to ${DEFAULT-VALUE}.")
+    int parses;
+
+    @Option(names = "--work-dir", paramLabel = "<dir>",
+            description = "Where the corpora and their output are written, a temporary directory by default.")
+    File workDir;
+
+    @Option(names = "--keep", defaultValue = "false", description = "Keep the corpora and their output.")
+    boolean keep;
+
+    @Option(names = "--json", paramLabel = "<file>", description = "Also write the results as JSON.")
+    File json;
+
+    public static void main(String... args) {
+        var exitCode = new CommandLine(new ScalingReport()).setCaseInsensitiveEnumValuesAllowed(true).execute(args);
+        System.exit(exitCode);
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        LogManager.getLogManager().getLogger("").setLevel(Level.WARNING);
+        var work = this.workDir == null ? Files.createTempDirectory("splitter-scaling") : this.workDir.toPath();
+        Files.createDirectories(work);
+        if (this.chapterLines != null)
+            return parseLargeChapter(work);
+
+        var results = new ArrayList<Result>();
+        try (var parser = this.engine.create(Map.of())) {
+            parser.warmUp();
+            // Not reported, so the first size doesn't pay for the JIT
+            split(work.resolve("warm-up"), this.sizes.get(0), parser);
+
+            System.out.println(" chapters  modules     lines   files   time ms  ms/chapter  peak heap MiB");
+            for (int chapters : this.sizes) {
+                var result = split(work.resolve("chapters-" + chapters), chapters, parser);
+                results.add(result);
+                System.out.printf(Locale.ROOT, "%9d %8d %9d %7d %9d %11.2f %14.1f%n", result.chapters,
+                        result.chapters * this.modules, result.lines, result.files, result.millis,
+                        (double) result.millis / result.chapters, result.peakHeapBytes / 1048576.0);
+            }
+        } finally {
+            if (!this.keep && this.workDir == null)
+                delete(work);
+        }
+
+        if (this.json != null)
+            Files.writeString(this.json.toPath(), toJson(results));
+        return 0;
+    }
+
+    private Result split(Path dir, int chapters, ChapterParser parser) throws IOException, InterruptedException {
+        var source = dir.resolve("source");
+        var output = dir.resolve("output");
+        var lines = new CorpusGenerator(chapters, this.modules, this.ifdefDepth, this.tagRegions, this.replaceWith,
+                this.images, this.seed).generate(source);
+        Files.createDirectories(output);
+
+        var extractor = new Extractor(new Task(new LocalDirectoryLocation(source.toFile()),
+                PushableLocation.locationWrapper(new LocalDirectoryLocation(output.toFile()), () -> {})), parser);
+        System.gc();
+
+        long start = System.nanoTime();
+        long peakHeap;
+        try (var heap = HeapSampler.start()) {
+            extractor.process();
+            peakHeap = heap.getPeakBytes();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        if (!this.keep)
+            delete(dir);
+        return new Result(chapters, lines, extractor.getWrittenFileCount(), millis, peakHeap);
+    }
+
+    private int parseLargeChapter(Path work) throws IOException, InterruptedException {
+        var chapter = work.resolve("large").resolve("chap-large.adoc");
+        var results = new ArrayList<ParseResult>();
+        try (var parser = new ScannerChapterParser(Map.of())) {
+            long lines = new CorpusGenerator(1, this.modules, this.ifdefDepth, this.tagRegions, this.replaceWith,
+                    this.images, this.seed).generateChapter(chapter, this.chapterLines);
+            System.out.printf(Locale.ROOT, "Chapter of %d lines, %.1f MiB%n", lines, Files.size(chapter) / 1048576.0);
+
+            parser.warmUp();
+            // Not reported, so the first parse doesn't pay for the JIT
+            parser.parse(chapter.toFile());
+
+            System.out.println("    parse   time ms  peak heap MiB  retained MiB");
+            for (int i = 1; i <= this.parses; i++) {
+                var result = parse(chapter, parser);
+                results.add(result);
+                System.out.printf(Locale.ROOT, "%9d %9d %14.1f %13.1f%n", i, result.millis,
+                        result.peakHeapBytes / 1048576.0, result.retainedHeapBytes / 1048576.0);
+            }
+        } finally {
+            if (!this.keep && this.workDir == null)
+                delete(work);
+        }
+
+        if (this.json != null)
+            Files.writeString(this.json.toPath(), parsesToJson(results));
+        return 0;
+    }
+
+    private static ParseResult parse(Path chapter, ChapterParser parser) throws InterruptedException {
+        var memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+
+        long start = System.nanoTime();
+        ParsedChapter parsed;
+        long peakHeap;
+        try (var heap = HeapSampler.start()) {
+            parsed = parser.parse(chapter.toFile());
+            peakHeap = heap.getPeakBytes();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        System.gc();
+        long retained = memory.getHeapMemoryUsage().getUsed() - before;
+        Reference.reachabilityFence(parsed);
+        return new ParseResult(millis, peakHeap, retained);
+    }
+
+    private String toJson(List<Result> results) {
+        var json = new StringBuilder("{\n  \"engine\": \"").append(this.engine.name().toLowerCase(Locale.ROOT))
+                .append("\",\n  \"modulesPerChapter\": ").append(this.modules)
+                .append(",\n  \"ifdefDepth\": ").append(this.ifdefDepth)
+                .append(",\n  \"maxHeapBytes\": ").append(Runtime.getRuntime().maxMemory())
+                .append(",\n  \"results\": [");
+        for (int i = 0; i < results.size(); i++) {
+            var result = results.get(i);
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"chapters\": ").append(result.chapters)
+                    .append(", \"modules\": ").append(result.chapters * this.modules)
+                    .append(", \"lines\": ").append(result.lines)
+                    .append(", \"filesWritten\": ").append(result.files)
+                    .append(", \"wallMillis\": ").append(result.millis)
+                    .append(", \"peakHeapBytes\": ").append(result.peakHeapBytes).append('}');
+        }
+        return json.append("\n  ]\n}\n").toString();
+    }
+
+    private String parsesToJson(List<ParseResult> results) {
+        var json = new StringBuilder("{\n  \"engine\": \"scanner\"")
+                .append(",\n  \"chapterLines\": ").append(this.chapterLines)
+                .append(",\n  \"maxHeapBytes\": ").append(Runtime.getRuntime().maxMemory())
+                .append(",\n  \"parses\": [");
+        for (int i = 0; i < results.size(); i++) {
+            var result = results.get(i);
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"wallMillis\": ").append(result.millis)
+                    .append(", \"peakHeapBytes\": ").append(result.peakHeapBytes)
+                    .append(", \"retainedHeapBytes\": ").append(result.retainedHeapBytes).append('}');
+        }
+        return json.append("\n  ]\n}\n").toString();
+    }
+
+    private static void delete(Path dir) throws IOException {
+        if (!Files.exists(dir))
+            return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (var path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(path);
+        }
+    }
+
+    private static class Result {
+        final int chapters;
+        final long lines;
+        final int files;
+        final long millis;
+        final long peakHeapBytes;
+
+        Result(int chapters, long lines, int files, long millis, long peakHeapBytes) {
+            this.chapters = chapters;
+            this.lines = lines;
+            this.files = files;
+            this.millis = millis;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+    }
+
+    private static class ParseResult {
+        final long millis;
+        final long peakHeapBytes;
+        final long retainedHeapBytes;
+
+        ParseResult(long millis, long peakHeapBytes, long retainedHeapBytes) {
+            this.millis = millis;
+            this.peakHeapBytes = peakHeapBytes;
+            this.retainedHeapBytes = retainedHeapBytes;
+        }
+    }
+}
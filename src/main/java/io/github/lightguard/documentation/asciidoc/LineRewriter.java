@@ -0,0 +1,343 @@
+package io.github.lightguard.documentation.asciidoc;
+
+import io.github.lightguard.documentation.asciidoc.extension.ReaderPreprocessor;
+
+import java.util.regex.Pattern;
+
+/**
+ * The rewrites of {@link Util} in a single pass over the source, without regular expressions.
+ * Lines without {@code chap-}, {@code include::} or the splitter comment are copied as they are, and a source
+ * without any of them is returned without allocating. The include rewrites give the same result as the regular
+ * expressions they replace, but every match is found in time linear to the length of the line.
+ */
+public final class LineRewriter {
+    /**
+     * Everything {@link Util#tweakSource(String)} does.
+     */
+    public static final LineRewriter TWEAK_SOURCE = new LineRewriter(true, true);
+
+    /**
+     * {@link Util#fixIncludes(String, boolean)}, fixing module includes.
+     */
+    public static final LineRewriter FIX_INCLUDES = new LineRewriter(false, true);
+
+    /**
+     * {@link Util#fixIncludes(String, boolean)}, leaving module includes alone.
+     */
+    public static final LineRewriter FIX_INCLUDES_ONLY = new LineRewriter(false, false);
+
+    private static final String INCLUDE = "include::";
+    private static final String CHAP = "chap-";
+    private static final String ASSEMBLY = "assembly-";
+    private static final String ASCIIDOC_DIR = "{asciidoc-dir}/";
+    private static final String TAGS = "[tags=";
+    private static final String ADOC = ".adoc[";
+    private static final String COMMENT = ReaderPreprocessor.SPLITTER_COMMENT;
+
+    // Only used for the odd module include whose options would be read as a replacement pattern
+    private static final Pattern MODULE_INCLUDE =
+            Pattern.compile("(?<include>include::)(?<path>(\\w|/|-)*)/(?<filename>.+)\\[(?<params>.+)]");
+
+    private final boolean tweak;
+    private final boolean fixModules;
+
+    /**
+     * @param tweak      also rename chapters to assemblies, drop splitter comments and fix a single module include,
+     *                   like {@link Util#tweakSource(String)}
+     * @param fixModules also point includes of plain .adoc files at the modules directory
+     */
+    private LineRewriter(boolean tweak, boolean fixModules) {
+        this.tweak = tweak;
+        this.fixModules = fixModules;
+    }
+
+    /**
+     * Rewrites the source, line by line.
+     *
+     * @param source one or more lines
+     * @return the rewritten source, the same instance if nothing changed
+     */
+    public String rewrite(String source) {
+        if (!needsRewrite(source))
+            return source;
+
+        var out = new StringBuilder(source.length() + 32);
+        int start = 0;
+        while (true) {
+            int end = lineEnd(source, start);
+            rewriteLine(source, start, end, out);
+            if (end == source.length())
+                break;
+            out.append(source.charAt(end));
+            start = end + 1;
+        }
+
+        var rewritten = out.toString();
+        return this.tweak ? fixModuleInclude(rewritten) : rewritten;
+    }
+
+    /**
+     * Points a line which is only a module include at the modules directory, see
+     * {@link Util#fixModuleInclude(String)}.
+     *
+     * @param source a single line
+     * @return the fixed include, or the source if it isn't an include of a module
+     */
+    public static String fixModuleInclude(String source) {
+        int length = source.length();
+        if (!source.startsWith(INCLUDE) || source.charAt(length - 1) != ']' || lineEnd(source, 0) != length)
+            return source;
+
+        // include::<path>/<filename>[<params>], each part as long as it can be
+        int bracket = source.lastIndexOf('[', length - 3);
+        int slash = lastSlash(source, INCLUDE.length(), Math.min(pathEnd(source, INCLUDE.length()), bracket - 1));
+        if (slash < 0)
+            return source;
+
+        var params = source.substring(bracket + 1, length - 1);
+        if (params.indexOf('$') >= 0 || params.indexOf('\\') >= 0)
+            return regexFixModuleInclude(source);
+
+        var fixed = INCLUDE + "modules/" + source.substring(INCLUDE.length(), slash) + '/'
+                + source.substring(slash + 1, bracket) + '[' + ("null".equals(params) ? "" : params) + ']';
+        return fixed.replace("modules/modules/", "../../modules/");
+    }
+
+    /**
+     * Lowers the level of a section title by the offset, see {@link Util#fixSectionLevelForModule(String, int)}.
+     *
+     * @param source a single line
+     * @param offset levels to remove
+     * @return the fixed title, or the source if it isn't a section title
+     */
+    public static String fixSectionLevel(String source, int offset) {
+        int level = 0;
+        while (level < source.length() && source.charAt(level) == '=')
+            level++;
+
+        // ={level} followed by a blank and a title of word characters, blanks and punctuation
+        if (level == 0 || level + 1 >= source.length() || !isBlank(source.charAt(level)))
+            return source;
+        for (int i = level + 1; i < source.length(); i++) {
+            var c = source.charAt(i);
+            if (!isWord(c) && !isBlank(c) && !isPunctuation(c))
+                return source;
+        }
+
+        var sectionLevel = source.substring(0, level);
+        return sectionLevel.substring(0, level - offset) + " " + source.substring(level + 1);
+    }
+
+    private boolean needsRewrite(String source) {
+        if (!this.tweak)
+            return source.contains(INCLUDE);
+
+        for (int i = 0; i < source.length(); i++) {
+            var c = source.charAt(i);
+            if (c == 'i' && source.startsWith(INCLUDE, i))
+                return true;
+            if ((c == 'c' && source.startsWith(CHAP, i)) || (c == '/' && source.startsWith(COMMENT, i)))
+                return true;
+        }
+        return false;
+    }
+
+    private void rewriteLine(String source, int start, int end, StringBuilder out) {
+        var line = this.tweak ? tweakLine(source, start, end) : source.substring(start, end);
+        if (line.contains(INCLUDE)) {
+            // Each rule sees what the rules before it made of the line
+            line = assemblyInclude(line, CHAP);
+            line = assemblyInclude(line, ASSEMBLY);
+            line = taggedInclude(line);
+            if (this.fixModules)
+                line = moduleInclude(line);
+        }
+        out.append(line);
+    }
+
+    /**
+     * Renames chapters to assemblies and drops splitter comments.
+     */
+    private static String tweakLine(String source, int start, int end) {
+        StringBuilder out = null;
+        int copied = start;
+        for (int i = start; i < end; i++) {
+            var c = source.charAt(i);
+            if (c == 'c' && source.startsWith(CHAP, i) && i + CHAP.length() <= end) {
+                out = append(out, source, copied, i).append(ASSEMBLY);
+                copied = i + CHAP.length();
+                i = copied - 1;
+            } else if (c == '/' && source.startsWith(COMMENT, i) && i + COMMENT.length() <= end) {
+                out = append(out, source, copied, i);
+                copied = i + COMMENT.length();
+                i = copied - 1;
+            }
+        }
+        return out == null ? source.substring(start, end) : append(out, source, copied, end).toString();
+    }
+
+    /**
+     * include::[path]{marker}{filename}.{extension}[] to include::assemblies/assembly-{filename}.{extension}[]
+     */
+    private static String assemblyInclude(String line, String marker) {
+        int brackets = line.lastIndexOf("[]");
+        int dot = brackets < 2 ? -1 : line.lastIndexOf('.', brackets - 2);
+        if (dot < 0)
+            return line;
+
+        for (int i = line.indexOf(INCLUDE); i >= 0; i = line.indexOf(INCLUDE, i + 1)) {
+            int pathStart = i + INCLUDE.length();
+            int pathEnd = pathEnd(line, pathStart);
+            int found = lastIndexOf(line, marker, pathStart,
+                    Math.min(pathEnd - marker.length(), dot - marker.length() - 1));
+            if (found >= 0) {
+                return new StringBuilder(line.length() + 16)
+                        .append(line, 0, i)
+                        .append(INCLUDE).append("assemblies/assembly-")
+                        .append(line, found + marker.length(), dot).append('.')
+                        .append(line, dot + 1, brackets).append("[]")
+                        .append(line, brackets + 2, line.length())
+                        .toString();
+            }
+        }
+        return line;
+    }
+
+    /**
+     * include::[{asciidoc-dir}/]{path}/{filename}[tags={module}] to
+     * include::modules/{path}/{module}.adoc[leveloffset=+1]
+     */
+    private static String taggedInclude(String line) {
+        int close = line.lastIndexOf(']');
+        int tags = close < 0 ? -1 : lastIndexOf(line, TAGS, 0, close - TAGS.length() - 1);
+        if (tags < 0)
+            return line;
+
+        for (int i = line.indexOf(INCLUDE); i >= 0; i = line.indexOf(INCLUDE, i + 1)) {
+            int pathStart = i + INCLUDE.length();
+            if (line.startsWith(ASCIIDOC_DIR, pathStart))
+                pathStart += ASCIIDOC_DIR.length();
+
+            int slash = lastSlash(line, pathStart, Math.min(pathEnd(line, pathStart), tags));
+            if (slash >= 0) {
+                return new StringBuilder(line.length() + 16)
+                        .append(line, 0, i)
+                        .append(INCLUDE).append("modules/")
+                        .append(line, pathStart, slash).append('/')
+                        .append(line, tags + TAGS.length(), close).append(".adoc[leveloffset=+1]")
+                        .append(line, close + 1, line.length())
+                        .toString();
+            }
+        }
+        return line;
+    }
+
+    /**
+     * include::{name}.adoc[{options}] to include::modules/{name}.adoc[{options}]
+     */
+    private static String moduleInclude(String line) {
+        int close = line.lastIndexOf(']');
+        if (close < 0)
+            return line;
+
+        for (int i = line.indexOf(INCLUDE); i >= 0; i = line.indexOf(INCLUDE, i + 1)) {
+            int nameStart = i + INCLUDE.length();
+            int nameEnd = nameStart;
+            while (nameEnd < line.length() && (isAlpha(line.charAt(nameEnd)) || line.charAt(nameEnd) == '-'))
+                nameEnd++;
+
+            if (nameEnd > nameStart && line.startsWith(ADOC, nameEnd) && close >= nameEnd + ADOC.length()) {
+                return new StringBuilder(line.length() + 8)
+                        .append(line, 0, i)
+                        .append(INCLUDE).append("modules/")
+                        .append(line, nameStart, nameEnd + ADOC.length() - 1).append('[')
+                        .append(line, nameEnd + ADOC.length(), close).append(']')
+                        .append(line, close + 1, line.length())
+                        .toString();
+            }
+        }
+        return line;
+    }
+
+    private static String regexFixModuleInclude(String source) {
+        var matcher = MODULE_INCLUDE.matcher(source);
+        if (matcher.matches()) {
+            var params = "null".equals(matcher.group("params")) ? "" : matcher.group("params");
+            return matcher.replaceAll("${include}modules/${path}/${filename}[" + params + "]")
+                    .replaceAll("modules/modules/", "../../modules/");
+        }
+        return source;
+    }
+
+    private static StringBuilder append(StringBuilder out, String source, int start, int end) {
+        if (out == null)
+            out = new StringBuilder(source.length() + 32);
+        return out.append(source, start, end);
+    }
+
+    /**
+     * End of the line starting at the index, at the first character a regular expression's dot doesn't match.
+     */
+    private static int lineEnd(String source, int start) {
+        for (int i = start; i < source.length(); i++) {
+            switch (source.charAt(i)) {
+                case '\n':
+                case '\r':
+                case '\u0085':
+                case '\u2028':
+                case '\u2029':
+                    return i;
+                default:
+            }
+        }
+        return source.length();
+    }
+
+    /**
+     * End of the run of word characters, slashes and dashes starting at the index.
+     */
+    private static int pathEnd(String line, int start) {
+        int end = start;
+        while (end < line.length() && (isWord(line.charAt(end)) || line.charAt(end) == '/' || line.charAt(end) == '-'))
+            end++;
+        return end;
+    }
+
+    /**
+     * Last slash at or after start and before end.
+     */
+    private static int lastSlash(String line, int start, int end) {
+        for (int i = end - 1; i >= start; i--) {
+            if (line.charAt(i) == '/')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Last occurrence of the string starting between from and to, both included, without looking before from.
+     */
+    private static int lastIndexOf(String line, String str, int from, int to) {
+        for (int i = to; i >= from; i--) {
+            if (line.startsWith(str, i))
+                return i;
+        }
+        return -1;
+    }
+
+    private static boolean isAlpha(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWord(char c) {
+        return isAlpha(c) || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isPunctuation(char c) {
+        return (c >= '!' && c <= '/') || (c >= ':' && c <= '@') || (c >= '[' && c <= '`') || (c >= '{' && c <= '~');
+    }
+}
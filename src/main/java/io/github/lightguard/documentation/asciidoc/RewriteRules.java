@@ -0,0 +1,386 @@
+package io.github.lightguard.documentation.asciidoc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Extra rewrites of the output, applied line by line after the built-in ones of {@link Util}.
+ * A rule is a trigger literal, a regular expression and its replacement, the expression only runs on lines containing
+ * the trigger. All the triggers are found in one scan of each line, so lines are not slowed down by rules which
+ * can't apply to them, however many rules there are.
+ * <p>
+ * The rules file has one rule per line, the trigger, expression and replacement separated by tabs. Empty lines and
+ * lines starting with {@code #} are skipped. The replacement can refer to groups of the expression, like
+ * {@link java.util.regex.Matcher#replaceAll(String)}.
+ * Rules are applied in the order of the file, a rule sees what the rules before it made of the line.
+ */
+public final class RewriteRules {
+    private static final RewriteRules NONE = new RewriteRules(Collections.emptyList());
+    private static final Pattern NAMED_GROUP = Pattern.compile("(?<!\\\\)\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>");
+
+    private final List<Rule> rules;
+    private final Triggers triggers;
+    private final String fingerprint;
+
+    private RewriteRules(List<Rule> rules) {
+        this.rules = List.copyOf(rules);
+        this.triggers = new Triggers(this.rules);
+        this.fingerprint = fingerprint(this.rules);
+    }
+
+    /**
+     * Rules which don't rewrite anything.
+     *
+     * @return the empty rules
+     */
+    public static RewriteRules none() {
+        return NONE;
+    }
+
+    /**
+     * Reads the rules from a file, see the class documentation for the format.
+     *
+     * @param file rules file
+     * @return the compiled rules
+     * @throws IOException if the file can't be read or a rule isn't valid
+     */
+    public static RewriteRules load(Path file) throws IOException {
+        return parse(Files.readString(file, StandardCharsets.UTF_8), file.toString());
+    }
+
+    /**
+     * Reads the rules from the content of a rules file, see the class documentation for the format.
+     *
+     * @param content content of the rules file
+     * @param name    name of the rules, used in errors
+     * @return the compiled rules
+     * @throws IOException if a rule isn't valid
+     */
+    public static RewriteRules parse(String content, String name) throws IOException {
+        var rules = new ArrayList<Rule>();
+        var lines = content.split("\r?\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            var line = lines[i];
+            if (line.isBlank() || line.startsWith("#"))
+                continue;
+
+            var parts = line.split("\t", -1);
+            if (parts.length != 3)
+                throw new IOException(name + ":" + (i + 1) + ": expected a trigger, an expression and a replacement "
+                        + "separated by tabs");
+            if (parts[0].isEmpty())
+                throw new IOException(name + ":" + (i + 1) + ": the trigger is empty");
+
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(parts[1]);
+            } catch (PatternSyntaxException e) {
+                throw new IOException(name + ":" + (i + 1) + ": invalid expression: " + e.getDescription());
+            }
+            var invalid = checkReplacement(pattern, parts[2]);
+            if (invalid != null)
+                throw new IOException(name + ":" + (i + 1) + ": invalid replacement: " + invalid);
+            rules.add(new Rule(parts[0], pattern, parts[2]));
+        }
+        return rules.isEmpty() ? NONE : new RewriteRules(rules);
+    }
+
+    /**
+     * Checks the escapes and group references of a replacement, which the matcher only checks once the expression
+     * matches.
+     *
+     * @return why the replacement isn't valid, null if it is
+     */
+    private static String checkReplacement(Pattern pattern, String replacement) {
+        int groups = pattern.matcher("").groupCount();
+        Set<String> names = null;
+        for (int i = 0; i < replacement.length(); i++) {
+            char c = replacement.charAt(i);
+            if (c == '\\') {
+                if (++i == replacement.length())
+                    return "nothing to escape after the trailing \\";
+            } else if (c == '$') {
+                if (++i == replacement.length())
+                    return "group is missing after the trailing $";
+                c = replacement.charAt(i);
+                if (c == '{') {
+                    int end = replacement.indexOf('}', i);
+                    if (end < 0)
+                        return "group name is missing its closing }";
+                    var group = replacement.substring(i + 1, end);
+                    if (names == null)
+                        names = groupNames(pattern);
+                    if (!names.contains(group))
+                        return "no group named " + group;
+                    i = end;
+                } else if (c >= '0' && c <= '9') {
+                    // The digits after the first only belong to the reference if the group exists
+                    if (c - '0' > groups)
+                        return "no group " + c;
+                } else {
+                    return "$ is followed by neither a group number nor {name}";
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Set<String> groupNames(Pattern pattern) {
+        var names = new HashSet<String>();
+        var matcher = NAMED_GROUP.matcher(pattern.pattern());
+        while (matcher.find())
+            names.add(matcher.group(1));
+        return names;
+    }
+
+    /**
+     * Rewrites each line of the source.
+     *
+     * @param source one or more lines, separated by new lines
+     * @return the rewritten source, the same instance if there are no rules
+     */
+    public CharSequence apply(CharSequence source) {
+        if (this.rules.isEmpty())
+            return source;
+
+        var text = source.toString();
+        var triggered = new BitSet(this.rules.size());
+        StringBuilder out = null;
+        int copied = 0;
+        int start = 0;
+        while (start <= text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0)
+                end = text.length();
+
+            triggered.clear();
+            this.triggers.find(text, start, end, triggered);
+            if (!triggered.isEmpty()) {
+                var line = text.substring(start, end);
+                var rewritten = applyToLine(line, triggered);
+                if (!rewritten.equals(line)) {
+                    if (out == null)
+                        out = new StringBuilder(text.length() + 16);
+                    out.append(text, copied, start).append(rewritten);
+                    copied = end;
+                }
+            }
+            start = end + 1;
+        }
+        return out == null ? source : out.append(text, copied, text.length()).toString();
+    }
+
+    /**
+     * Whether there are no rules.
+     */
+    public boolean isEmpty() {
+        return this.rules.isEmpty();
+    }
+
+    /**
+     * Number of rules.
+     */
+    public int size() {
+        return this.rules.size();
+    }
+
+    /**
+     * Hash of the rules, changes when any rule does.
+     *
+     * @return hex encoded hash, empty if there are no rules
+     */
+    public String getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * Applies the triggered rules, in order.
+     */
+    private String applyToLine(String line, BitSet triggered) {
+        for (int i = triggered.nextSetBit(0); i >= 0; i = triggered.nextSetBit(i + 1)) {
+            var rule = this.rules.get(i);
+            var rewritten = rule.pattern.matcher(line).replaceAll(rule.replacement);
+            if (!rewritten.equals(line)) {
+                // The rules after this one see the rewritten line, which may have other triggers
+                line = rewritten;
+                triggered.clear();
+                this.triggers.find(line, 0, line.length(), triggered);
+            }
+        }
+        return line;
+    }
+
+    private static String fingerprint(List<Rule> rules) {
+        if (rules.isEmpty())
+            return "";
+
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            for (Rule rule : rules) {
+                digest.update((rule.trigger + "\t" + rule.pattern.pattern() + "\t" + rule.replacement + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+
+            var hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return this.fingerprint.equals(((RewriteRules) o).fingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fingerprint);
+    }
+
+    @Override
+    public String toString() {
+        return "RewriteRules{" +
+                "rules=" + rules.size() +
+                '}';
+    }
+
+    private static class Rule {
+        private final String trigger;
+        private final Pattern pattern;
+        private final String replacement;
+
+        Rule(String trigger, Pattern pattern, String replacement) {
+            this.trigger = trigger;
+            this.pattern = pattern;
+            this.replacement = replacement;
+        }
+    }
+
+    /**
+     * Aho-Corasick automaton of the triggers, finding all of them in a single scan of a line.
+     * The automaton is compiled to a transition table over the characters used by the triggers, any other character
+     * goes back to the start.
+     */
+    private static class Triggers {
+        private final char[] alphabet;
+        private final int[] transitions;
+        private final int[][] matches;
+
+        Triggers(List<Rule> rules) {
+            var chars = new TreeSet<Character>();
+            rules.forEach(rule -> rule.trigger.chars().forEach(c -> chars.add((char) c)));
+            this.alphabet = new char[chars.size()];
+            int index = 0;
+            for (char c : chars) {
+                this.alphabet[index++] = c;
+            }
+            int width = this.alphabet.length + 1;
+
+            // Trie of the triggers, -1 for a missing edge
+            var edges = new ArrayList<int[]>();
+            var outputs = new ArrayList<List<Integer>>();
+            edges.add(newState(width));
+            outputs.add(new ArrayList<>());
+            for (int rule = 0; rule < rules.size(); rule++) {
+                int state = 0;
+                for (char c : rules.get(rule).trigger.toCharArray()) {
+                    int symbol = symbol(c);
+                    if (edges.get(state)[symbol] < 0) {
+                        edges.get(state)[symbol] = edges.size();
+                        edges.add(newState(width));
+                        outputs.add(new ArrayList<>());
+                    }
+                    state = edges.get(state)[symbol];
+                }
+                outputs.get(state).add(rule);
+            }
+
+            // Breadth first, filling the missing edges from the failure links
+            var failure = new int[edges.size()];
+            var queue = new ArrayDeque<Integer>();
+            for (int symbol = 0; symbol < width; symbol++) {
+                int next = edges.get(0)[symbol];
+                if (next < 0) {
+                    edges.get(0)[symbol] = 0;
+                } else {
+                    failure[next] = 0;
+                    queue.add(next);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                outputs.get(state).addAll(outputs.get(failure[state]));
+                for (int symbol = 0; symbol < width; symbol++) {
+                    int next = edges.get(state)[symbol];
+                    if (next < 0) {
+                        edges.get(state)[symbol] = edges.get(failure[state])[symbol];
+                    } else {
+                        failure[next] = edges.get(failure[state])[symbol];
+                        queue.add(next);
+                    }
+                }
+            }
+
+            this.transitions = new int[edges.size() * width];
+            this.matches = new int[edges.size()][];
+            for (int state = 0; state < edges.size(); state++) {
+                System.arraycopy(edges.get(state), 0, this.transitions, state * width, width);
+                this.matches[state] = outputs.get(state).stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        /**
+         * Sets the index of each rule whose trigger is between start and end of the text.
+         */
+        void find(String text, int start, int end, BitSet triggered) {
+            int width = this.alphabet.length + 1;
+            int state = 0;
+            for (int i = start; i < end; i++) {
+                state = this.transitions[state * width + symbol(text.charAt(i))];
+                for (int rule : this.matches[state]) {
+                    triggered.set(rule);
+                }
+            }
+        }
+
+        /**
+         * Index of the character in the alphabet, 0 for characters no trigger uses.
+         */
+        private int symbol(char c) {
+            int index = Arrays.binarySearch(this.alphabet, c);
+            return index < 0 ? 0 : index + 1;
+        }
+
+        private static int[] newState(int width) {
+            var state = new int[width];
+            Arrays.fill(state, -1);
+            return state;
+        }
+    }
+}
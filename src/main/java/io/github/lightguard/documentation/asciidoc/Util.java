@@ -3,14 +3,14 @@ package io.github.lightguard.documentation.asciidoc;
 import io.github.lightguard.documentation.asciidoc.extension.ReaderPreprocessor;
 import org.asciidoctor.ast.ContentNode;
 
-import java.util.regex.Pattern;
+import java.util.Map;
 
 public class Util {
 
     public static final String MODULE_TYPE_ATTRIBUTE = "module-type";
 
     public static String getFullId(ContentNode node) {
-        StringBuilder buf = new StringBuilder(node.getId());
+        StringBuilder buf = new StringBuilder(String.valueOf(node.getId()));
 
         while (node.getParent() != null) {
             buf.insert(0, node.getId() + "/");
@@ -20,12 +20,12 @@ public class Util {
         return buf.toString();
     }
 
-    public static String getModuleType(ContentNode node) {
-        if (node.getAttributes().containsKey(MODULE_TYPE_ATTRIBUTE))
-            return node.getAttributes().get(MODULE_TYPE_ATTRIBUTE).toString();
+    public static String getModuleType(Map<String, Object> attributes, String nodeId) {
+        if (attributes.containsKey(MODULE_TYPE_ATTRIBUTE))
+            return attributes.get(MODULE_TYPE_ATTRIBUTE).toString();
 
         // Get the Id of the node, and strip off "_{context}" if it exists
-        var id = node.getId().replace("_{context}", "");
+        var id = nodeId.replace("_{context}", "");
 
         if (id.startsWith("con-") || id.endsWith("-con"))
             return "con";
@@ -40,17 +40,7 @@ public class Util {
     }
 
     public static String fixIncludes(String source, boolean shouldFixModules) {
-        var sourceFixed = source.replaceAll("(?<include>include::)(?<path>(\\w|/|-)*)?chap-(?<filename>.+)\\.(?<extension>.+)\\[]",
-                        "${include}assemblies/assembly-${filename}.${extension}[]")
-                .replaceAll("(?<include>include::)(?<path>(\\w|/|-)*)?assembly-(?<filename>.+)\\.(?<extension>.+)\\[]",
-                        "${include}assemblies/assembly-${filename}.${extension}[]")
-                .replaceAll("(?<include>include::)(\\{asciidoc-dir}/)?(?<path>(\\w|/|-)*)/(?<filename>.*)\\[tags=(?<module>.+)]",
-                        "${include}modules/${path}/${module}.adoc[leveloffset=+1]");
-        if (shouldFixModules) {
-            sourceFixed = sourceFixed.replaceAll("(?<include>include::)(?<filename>[\\p{Alpha}\\-]+\\.adoc)\\[(?<opts>.*)]",
-                    "${include}modules/${filename}[${opts}]");
-        }
-        return sourceFixed;
+        return (shouldFixModules ? LineRewriter.FIX_INCLUDES : LineRewriter.FIX_INCLUDES_ONLY).rewrite(source);
     }
 
     public static String fixIncludes(String source) {
@@ -58,16 +48,7 @@ public class Util {
     }
 
     public static String fixModuleInclude(String source) {
-        var pattern = Pattern.compile("(?<include>include::)(?<path>(\\w|/|-)*)/(?<filename>.+)\\[(?<params>.+)]");
-        var matcher = pattern.matcher(source);
-        if (matcher.matches()) {
-            var params = "null".equals(matcher.group("params")) ? "" : matcher.group("params");
-
-            // Getting a little lazy with the second replacement, but it seems to be the correct fix.
-            return matcher.replaceAll("${include}modules/${path}/${filename}[" + params + "]")
-                          .replaceAll("modules/modules/", "../../modules/");
-        }
-        return source;
+        return LineRewriter.fixModuleInclude(source);
     }
 
     /**
@@ -77,7 +58,7 @@ public class Util {
      * @return source line without splitter comment
      */
     public static String removeSplitterComment(String source) {
-        return source.replaceAll(ReaderPreprocessor.SPLITTER_COMMENT, "");
+        return source.replace(ReaderPreprocessor.SPLITTER_COMMENT, "");
     }
 
     /**
@@ -87,30 +68,21 @@ public class Util {
      * @return source line with "chap-" to "assembly-" tweak
      */
     public static String replaceChapWithAssembly(String source) {
-        return source.replaceAll("chap-", "assembly-");
+        return source.replace("chap-", "assembly-");
     }
 
     /**
-     * A wrapper method for all the tweaks and fixes to asciidoc source.
+     * A wrapper method for all the tweaks and fixes to asciidoc source, applied in a single pass.
      * @param source Pre-tweaked source
      * @return Source with tweaks/fixes applied
      */
     public static String tweakSource(String source) {
-        return fixModuleInclude(fixIncludes(removeSplitterComment(replaceChapWithAssembly(source))));
+        return LineRewriter.TWEAK_SOURCE.rewrite(source);
     }
 
     // TODO: issue-88
     public static String fixSectionLevelForModule(String source, int offset) {
-        // Fix up section levels for output
-        var pattern = Pattern.compile("^(?<sectionLevel>=+)\\s(?<title>(?:\\w|\\s|\\p{Punct})+)");
-        var matcher = pattern.matcher(source);
-
-        if (matcher.matches()) {
-            var sectionLevel = matcher.group("sectionLevel");
-            return sectionLevel.substring(0, sectionLevel.length() - offset) + " " + matcher.group("title");
-        }
-
-        return source;
+        return LineRewriter.fixSectionLevel(source, offset);
     }
 
     public static CharSequence fixForPv2(String source) {
@@ -1,14 +1,23 @@
 package io.github.lightguard.documentation.asciidoc.cli;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 
+import io.github.lightguard.documentation.asciidoc.RewriteRules;
+import io.github.lightguard.documentation.asciidoc.extraction.ChapterWatcher;
 import io.github.lightguard.documentation.asciidoc.extraction.Extractor;
+import io.github.lightguard.documentation.asciidoc.extraction.ParserEngine;
 import io.github.lightguard.documentation.asciidoc.extraction.model.GitRepository;
+import io.github.lightguard.documentation.asciidoc.extraction.model.InMemoryLocation;
 import io.github.lightguard.documentation.asciidoc.extraction.model.LocalDirectoryLocation;
 import io.github.lightguard.documentation.asciidoc.extraction.model.Location;
 import io.github.lightguard.documentation.asciidoc.extraction.model.PushableLocation;
@@ -16,7 +25,10 @@ import io.github.lightguard.documentation.asciidoc.extraction.model.Task;
 import picocli.CommandLine;
 import picocli.CommandLine.ArgGroup;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
 
 @Command(name = "extract", mixinStandardHelpOptions = true, version = "1.0",
         description = "Create a modular documentation layout from a directory of asciidoc files.")
@@ -27,10 +39,11 @@ public class ExtractionRunner implements Runnable, CommandLine.IExitCodeGenerato
         System.setProperty("java.util.logging.manager", "org.jboss.logmanager.LogManager");
     }
 
-    @ArgGroup(heading = "Input", exclusive = true, multiplicity = "1")
+    // Required unless running as a daemon, see run()
+    @ArgGroup(heading = "Input", exclusive = true, multiplicity = "0..1")
     InputOptions inputOptions;
 
-    @ArgGroup(heading = "Output", exclusive = true, multiplicity = "1")
+    @ArgGroup(heading = "Output", exclusive = true, multiplicity = "0..1")
     OutputOptions outputOptions;
 
     @Option(names = {"-v"}, description = "Verbose logging", defaultValue = "false")
@@ -46,8 +59,64 @@ public class ExtractionRunner implements Runnable, CommandLine.IExitCodeGenerato
     @Option(names = {"--pantheonV2"}, description = "Enable Pantheon V2 compatible output.", defaultValue = "false")
     boolean pv2;
 
+    @Option(names = {"-j", "--jobs"}, description = "Number of chapter files to parse in parallel.", defaultValue = "1")
+    int jobs;
+
+    @Option(names = {"--incremental"}, defaultValue = "false",
+            description = "Only split chapters which changed since the last split into the same output.")
+    boolean incremental;
+
+    @Option(names = {"--engine"}, defaultValue = "asciidoctor", converter = EngineConverter.class,
+            description = "How chapter files are parsed: asciidoctor, or scanner to only scan them for sections. "
+                    + "Defaults to ${DEFAULT-VALUE}.")
+    ParserEngine engine;
+
+    @Option(names = {"--rewrite-rules"}, paramLabel = "<file>",
+            description = "File of extra rewrites applied to each line of the output: a trigger, a regular expression "
+                    + "and its replacement per line, separated by tabs. The expression only runs on lines with the trigger.")
+    File rewriteRulesFile;
+
+    @Option(names = {"--dedup"}, defaultValue = "false",
+            description = "Write modules with the same title and body only once, the assemblies include the first of them.")
+    boolean dedup;
+
+    @Option(names = {"--metrics"}, paramLabel = "<file>",
+            description = "Write the time spent in each phase of the split, what it read and wrote, and its lines "
+                    + "and modules per second to the file as JSON.")
+    File metricsFile;
+
+    @Option(names = {"--dry-run"}, defaultValue = "false",
+            description = "Split in memory and print the files the split would produce, nothing is written.")
+    boolean dryRun;
+
+    @Option(names = {"--watch"}, defaultValue = "false",
+            description = "Keep running and split chapters again as they change, until interrupted. Needs -s and -o.")
+    boolean watch;
+
+    @Option(names = {"--serve"}, paramLabel = "<port>",
+            description = "Run as a daemon splitting the requests sent to the local port, until interrupted. "
+                    + "Requests need the token the daemon writes to ~/.asciidoc-splitter.")
+    Integer servePort;
+
+    @Option(names = {"--connect"}, paramLabel = "<port>",
+            description = "Send the split to the daemon on the local port instead of running it here. Needs -s and -o.")
+    Integer connectPort;
+
+    @Spec
+    CommandSpec spec;
+
     int exitCode;
 
+    /**
+     * Reads the engine name case insensitively.
+     */
+    static class EngineConverter implements CommandLine.ITypeConverter<ParserEngine> {
+        @Override
+        public ParserEngine convert(String value) {
+            return ParserEngine.valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+
     /**
      * Options for the source location of the files.
      */
@@ -133,21 +202,199 @@ public class ExtractionRunner implements Runnable, CommandLine.IExitCodeGenerato
 
         var logger = LogManager.getLogManager().getLogger(ExtractionRunner.class.getName());
 
+        if (dryRun && (servePort != null || connectPort != null || watch)) {
+            throw new ParameterException(spec.commandLine(), "--dry-run can't be combined with --serve, --connect or --watch");
+        }
+
+        if (dedup && (incremental || watch || servePort != null || connectPort != null)) {
+            throw new ParameterException(spec.commandLine(),
+                    "--dedup can't be combined with --incremental, --watch, --serve or --connect");
+        }
+
+        if (metricsFile != null && (watch || servePort != null || connectPort != null)) {
+            throw new ParameterException(spec.commandLine(),
+                    "--metrics can't be combined with --watch, --serve or --connect");
+        }
+
+        if (servePort != null) {
+            if (inputOptions != null || outputOptions != null || connectPort != null || watch || rewriteRulesFile != null)
+                throw new ParameterException(spec.commandLine(), "--serve takes its input and output from the requests");
+            if (engine != ParserEngine.ASCIIDOCTOR)
+                throw new ParameterException(spec.commandLine(), "--serve takes the engine from the requests");
+            serve();
+            return;
+        }
+
+        if (inputOptions == null || (outputOptions == null && !dryRun)) {
+            throw new ParameterException(spec.commandLine(),
+                    "Missing required input (-s or -sr) and output (-o or -or)");
+        }
+
+        if (connectPort != null) {
+            connect();
+            return;
+        }
+
         Location location = inputOptions.inputDir != null
                 ? new LocalDirectoryLocation(this.inputOptions.inputDir)
                 : new GitRepository(inputOptions.gitInputOptions.sourceRepo, inputOptions.gitInputOptions.sourceBranch,
                 inputOptions.gitInputOptions.userName, inputOptions.gitInputOptions.password, false);
 
+        if (dryRun) {
+            dryRun(new Task(location, new InMemoryLocation(dryRunDirectory()), attributes, ignoreFiles, pv2,
+                    rewriteRules()));
+            return;
+        }
+
         PushableLocation pushableLocation = outputOptions.outputDir != null
                 ? PushableLocation.locationWrapper(new LocalDirectoryLocation(this.outputOptions.outputDir), () -> {
         })
                 : new GitRepository(outputOptions.gitOutputOptions.outputRepo, outputOptions.gitOutputOptions.outputBranch,
                 outputOptions.gitOutputOptions.userName, outputOptions.gitOutputOptions.password, true);
 
-        var task = new Task(location, pushableLocation, attributes, ignoreFiles, pv2);
+        var task = new Task(location, pushableLocation, attributes, ignoreFiles, pv2, rewriteRules());
+
+        if (watch) {
+            watch(task);
+            return;
+        }
+
+        var extractor = new Extractor(task);
+        extractor.setJobs(jobs);
+        extractor.setIncremental(incremental);
+        extractor.setDeduplicate(dedup);
+        extractor.setEngine(engine);
+
+        this.exitCode = extractor.process();
+        writeMetrics(extractor);
+    }
+
+    /**
+     * Writes the metrics of the split to the file given with --metrics.
+     */
+    private void writeMetrics(Extractor extractor) {
+        if (metricsFile == null)
+            return;
+
+        try {
+            Files.writeString(metricsFile.toPath(), extractor.getMetrics().toJson());
+        } catch (IOException e) {
+            LogManager.getLogManager().getLogger("").severe("Could not write the metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the rewrite rules given with --rewrite-rules.
+     */
+    private RewriteRules rewriteRules() {
+        if (rewriteRulesFile == null)
+            return RewriteRules.none();
+
+        try {
+            return RewriteRules.load(rewriteRulesFile.toPath());
+        } catch (IOException e) {
+            throw new ParameterException(spec.commandLine(), "Could not load the rewrite rules: " + e.getMessage());
+        }
+    }
 
+    /**
+     * Splits in memory, printing the files the split produces and the issues found.
+     */
+    private void dryRun(Task task) {
         var extractor = new Extractor(task);
+        extractor.setJobs(jobs);
+        extractor.setIncremental(incremental);
+        extractor.setDeduplicate(dedup);
+        extractor.setEngine(engine);
 
+        var issues = new ArrayList<Issue>();
+        extractor.setIssueListener(issues::add);
         this.exitCode = extractor.process();
+        writeMetrics(extractor);
+
+        var output = (InMemoryLocation) task.getPushableLocation();
+        var out = spec.commandLine().getOut();
+        var files = output.getFiles();
+        var links = output.getSymbolicLinks();
+
+        out.println("Files:");
+        files.forEach((file, size) -> out.println("  " + file + " (" + size + " bytes)"));
+        out.println("Symlinks:");
+        links.forEach((link, target) -> out.println("  " + link + " -> " + target));
+        out.println("Issues:");
+        issues.forEach(issue -> out.println("  " + issue));
+
+        var bytes = files.values().stream().mapToLong(Long::longValue).sum();
+        var errors = issues.stream().filter(Issue::isError).count();
+        out.println(files.size() + " files (" + bytes + " bytes), " + links.size() + " symlinks, "
+                + issues.size() + " issues, " + errors + " errors");
+        if (dedup)
+            out.println(extractor.getDeduplicatedModuleCount() + " duplicate modules not written");
+        out.flush();
+    }
+
+    /**
+     * The directory the files of a dry run are shown in, the output directory if one was given.
+     */
+    private Path dryRunDirectory() {
+        return outputOptions != null && outputOptions.outputDir != null
+                ? outputOptions.outputDir.toPath()
+                : Path.of("output");
+    }
+
+    /**
+     * Runs the daemon until the process is stopped.
+     */
+    private void serve() {
+        try (var daemon = new SplitterDaemon(servePort, Runtime.getRuntime().availableProcessors())) {
+            daemon.serve();
+        } catch (IOException e) {
+            LogManager.getLogManager().getLogger("").severe("Could not run the daemon: " + e.getMessage());
+            this.exitCode = -1;
+        }
+    }
+
+    /**
+     * Sends the split to a running daemon, printing the issues it reports.
+     */
+    private void connect() {
+        if (inputOptions.inputDir == null || outputOptions.outputDir == null) {
+            throw new ParameterException(spec.commandLine(), "--connect needs a local source (-s) and output (-o)");
+        }
+
+        var request = new SplitRequest(inputOptions.inputDir, outputOptions.outputDir, attributes, ignoreFiles, pv2,
+                jobs, incremental, rewriteRulesFile, engine);
+        try {
+            this.exitCode = new SplitterClient(connectPort).split(request, System.err::println);
+        } catch (IOException e) {
+            LogManager.getLogManager().getLogger("").severe("Could not reach the daemon: " + e.getMessage());
+            this.exitCode = -1;
+        }
+    }
+
+    /**
+     * Splits the source and then keeps the output up to date, reusing the same parser.
+     */
+    private void watch(Task task) {
+        if (inputOptions.inputDir == null || outputOptions.outputDir == null) {
+            throw new ParameterException(spec.commandLine(), "--watch needs a local source (-s) and output (-o)");
+        }
+
+        var logger = LogManager.getLogManager().getLogger("");
+
+        try (var parser = engine.create(task.getAttributes())) {
+            var extractor = new Extractor(task, parser);
+            extractor.setJobs(jobs);
+            extractor.setIncremental(incremental);
+            this.exitCode = extractor.process();
+
+            try (var watcher = new ChapterWatcher(extractor, task, ChapterWatcher.DEFAULT_DEBOUNCE)) {
+                logger.info("Watching " + inputOptions.inputDir + " for changes, press Ctrl+C to stop");
+                watcher.run();
+            }
+        } catch (IOException e) {
+            logger.severe("Could not watch for changes: " + e.getMessage());
+            this.exitCode = -1;
+        }
     }
 }
@@ -7,7 +7,7 @@ import org.asciidoctor.ast.StructuralNode;
  */
 public class Issue {
 
-    private final StructuralNode node;
+    private final String location;
     private final boolean error;
     private final String text;
 
@@ -19,10 +19,52 @@ public class Issue {
         return new Issue(false, text, node);
     }
 
+    /**
+     * Creates an error for a chapter which wasn't loaded by asciidoctor.
+     *
+     * @param text     description of the error
+     * @param location source location, see {@link #locationOf(StructuralNode)}
+     * @return the error
+     */
+    public static Issue errorAt(String text, String location) {
+        return new Issue(true, text, location);
+    }
+
+    /**
+     * Creates a warning for a chapter which wasn't loaded by asciidoctor.
+     *
+     * @param text     description of the warning
+     * @param location source location, see {@link #locationOf(StructuralNode)}
+     * @return the warning
+     */
+    public static Issue warningAt(String text, String location) {
+        return new Issue(false, text, location);
+    }
+
+    /**
+     * How the source location of a node is shown in issues.
+     *
+     * @param node node the issue is about, may be null
+     * @return source location of the node
+     */
+    public static String locationOf(StructuralNode node) {
+        if (node == null)
+            return null;
+
+        if (node.getSourceLocation() == null)
+            return node.getClass().toString();
+
+        return node.getSourceLocation().toString();
+    }
+
     Issue(boolean error, String text, StructuralNode node) {
+        this(error, text, locationOf(node));
+    }
+
+    Issue(boolean error, String text, String location) {
         this.error = error;
         this.text = text;
-        this.node = node;
+        this.location = location;
     }
 
 
@@ -32,15 +74,6 @@ public class Issue {
 
     @Override
     public String toString() {
-        String contextinfo = null;
-        if (node != null) {
-            if (node.getSourceLocation() == null) {
-                contextinfo = node.getClass().toString();
-            } else {
-                contextinfo = node.getSourceLocation().toString();
-            }
-        }
-
-        return (error ? "ERROR: " : "WARNING: ") + contextinfo + ": " + text;
+        return (error ? "ERROR: " : "WARNING: ") + location + ": " + text;
     }
 }
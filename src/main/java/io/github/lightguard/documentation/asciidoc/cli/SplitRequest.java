@@ -0,0 +1,203 @@
+package io.github.lightguard.documentation.asciidoc.cli;
+
+import io.github.lightguard.documentation.asciidoc.RewriteRules;
+import io.github.lightguard.documentation.asciidoc.extraction.ParserEngine;
+import io.github.lightguard.documentation.asciidoc.extraction.model.LocalDirectoryLocation;
+import io.github.lightguard.documentation.asciidoc.extraction.model.PushableLocation;
+import io.github.lightguard.documentation.asciidoc.extraction.model.Task;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A split sent to the {@link SplitterDaemon}, the same settings the CLI turns into a {@link Task}.
+ * On the wire a request is one {@code key=value} line per setting, repeated for each attribute and ignored file,
+ * ended by an empty line:
+ * <pre>
+ * source=/docs/src
+ * output=/docs/out
+ * attribute=KOGITO-ENT=true
+ * ignore=README.adoc
+ * pv2=false
+ * jobs=1
+ * incremental=false
+ * engine=asciidoctor
+ * rules=/docs/rewrite-rules.tsv
+ * </pre>
+ * The rules file is optional, it is read by the daemon. The engine defaults to asciidoctor, which the daemon keeps
+ * running. The jobs are limited to the number of processors of the daemon.
+ */
+public class SplitRequest {
+    private final File sourceDir;
+    private final File outputDir;
+    private final Map<String, Object> attributes;
+    private final List<File> ignoreFiles;
+    private final boolean pv2;
+    private final int jobs;
+    private final boolean incremental;
+    private final File rewriteRules;
+    private final ParserEngine engine;
+
+    public SplitRequest(File sourceDir, File outputDir, Map<String, Object> attributes, List<File> ignoreFiles,
+                        boolean pv2, int jobs, boolean incremental) {
+        this(sourceDir, outputDir, attributes, ignoreFiles, pv2, jobs, incremental, null);
+    }
+
+    public SplitRequest(File sourceDir, File outputDir, Map<String, Object> attributes, List<File> ignoreFiles,
+                        boolean pv2, int jobs, boolean incremental, File rewriteRules) {
+        this(sourceDir, outputDir, attributes, ignoreFiles, pv2, jobs, incremental, rewriteRules,
+                ParserEngine.ASCIIDOCTOR);
+    }
+
+    public SplitRequest(File sourceDir, File outputDir, Map<String, Object> attributes, List<File> ignoreFiles,
+                        boolean pv2, int jobs, boolean incremental, File rewriteRules, ParserEngine engine) {
+        this.sourceDir = sourceDir.getAbsoluteFile();
+        this.outputDir = outputDir.getAbsoluteFile();
+        this.attributes = attributes == null ? Map.of() : Map.copyOf(attributes);
+        this.ignoreFiles = ignoreFiles == null ? List.of() : List.copyOf(ignoreFiles);
+        this.pv2 = pv2;
+        this.jobs = jobs;
+        this.incremental = incremental;
+        this.rewriteRules = rewriteRules == null ? null : rewriteRules.getAbsoluteFile();
+        this.engine = Objects.requireNonNull(engine);
+    }
+
+    /**
+     * Reads a request.
+     *
+     * @param reader connection to read from
+     * @return the request, or null if the connection was closed before a request was sent
+     * @throws IOException if the request can not be read or is not valid
+     */
+    public static SplitRequest read(BufferedReader reader) throws IOException {
+        File sourceDir = null;
+        File outputDir = null;
+        var attributes = new LinkedHashMap<String, Object>();
+        var ignoreFiles = new ArrayList<File>();
+        var pv2 = false;
+        var jobs = 1;
+        var incremental = false;
+        File rewriteRules = null;
+        var engine = ParserEngine.ASCIIDOCTOR;
+
+        String line;
+        var empty = true;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            empty = false;
+            var separator = line.indexOf('=');
+            if (separator < 0)
+                throw new IOException("Invalid request line: " + line);
+
+            var value = line.substring(separator + 1);
+            switch (line.substring(0, separator)) {
+                case "source":
+                    sourceDir = new File(value);
+                    break;
+                case "output":
+                    outputDir = new File(value);
+                    break;
+                case "attribute":
+                    var attribute = value.split("=", 2);
+                    attributes.put(attribute[0], attribute.length > 1 ? attribute[1] : "");
+                    break;
+                case "ignore":
+                    ignoreFiles.add(new File(value));
+                    break;
+                case "pv2":
+                    pv2 = Boolean.parseBoolean(value);
+                    break;
+                case "jobs":
+                    try {
+                        jobs = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Invalid number of jobs: " + value);
+                    }
+                    break;
+                case "incremental":
+                    incremental = Boolean.parseBoolean(value);
+                    break;
+                case "rules":
+                    rewriteRules = new File(value);
+                    break;
+                case "engine":
+                    try {
+                        engine = ParserEngine.valueOf(value.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Unknown engine: " + value);
+                    }
+                    break;
+                default:
+                    throw new IOException("Unknown request setting: " + line);
+            }
+        }
+
+        if (empty)
+            return null;
+        if (sourceDir == null || outputDir == null)
+            throw new IOException("A request needs a source and an output");
+        if (jobs < 1)
+            throw new IOException("jobs must be at least 1");
+        // Parsing threads past the number of processors only take memory from the other requests
+        jobs = Math.min(jobs, Runtime.getRuntime().availableProcessors());
+
+        return new SplitRequest(sourceDir, outputDir, attributes, ignoreFiles, pv2, jobs, incremental, rewriteRules,
+                engine);
+    }
+
+    /**
+     * Writes the request, ending it with an empty line.
+     *
+     * @param writer connection to write to
+     */
+    public void write(PrintWriter writer) {
+        writer.print("source=" + this.sourceDir + "\n");
+        writer.print("output=" + this.outputDir + "\n");
+        this.attributes.forEach((key, value) -> writer.print("attribute=" + key + "=" + value + "\n"));
+        this.ignoreFiles.forEach(file -> writer.print("ignore=" + file + "\n"));
+        writer.print("pv2=" + this.pv2 + "\n");
+        writer.print("jobs=" + this.jobs + "\n");
+        writer.print("incremental=" + this.incremental + "\n");
+        writer.print("engine=" + this.engine.name().toLowerCase(Locale.ROOT) + "\n");
+        if (this.rewriteRules != null)
+            writer.print("rules=" + this.rewriteRules + "\n");
+        writer.print("\n");
+        writer.flush();
+    }
+
+    /**
+     * Creates the task to split, the source and output are local directories.
+     *
+     * @return task for the request
+     * @throws IOException if the rewrite rules can't be loaded
+     */
+    public Task toTask() throws IOException {
+        return new Task(new LocalDirectoryLocation(this.sourceDir),
+                PushableLocation.locationWrapper(new LocalDirectoryLocation(this.outputDir), () -> {
+                }), this.attributes, this.ignoreFiles, this.pv2,
+                this.rewriteRules == null ? RewriteRules.none() : RewriteRules.load(this.rewriteRules.toPath()));
+    }
+
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    public int getJobs() {
+        return jobs;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public ParserEngine getEngine() {
+        return engine;
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.lightguard.documentation.asciidoc.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Sends a split to a {@link SplitterDaemon} running on this machine, with the token the daemon wrote.
+ */
+public class SplitterClient {
+    private final int port;
+    private final Path tokenDirectory;
+
+    public SplitterClient(int port) {
+        this(port, SplitterDaemon.DEFAULT_TOKEN_DIRECTORY);
+    }
+
+    /**
+     * @param port           port of the daemon
+     * @param tokenDirectory directory the daemon wrote its token to
+     */
+    public SplitterClient(int port, Path tokenDirectory) {
+        this.port = port;
+        this.tokenDirectory = tokenDirectory;
+    }
+
+    /**
+     * Sends the request and waits for the daemon to finish it.
+     *
+     * @param request      split to run
+     * @param issueHandler called with each issue, and error, reported by the daemon
+     * @return exit code of the split
+     * @throws IOException if the token can not be read, or the daemon can not be reached or stops answering
+     */
+    public int split(SplitRequest request, Consumer<String> issueHandler) throws IOException {
+        var tokenFile = SplitterDaemon.tokenFile(this.tokenDirectory, this.port);
+        if (!Files.isReadable(tokenFile))
+            throw new IOException("No token of a daemon on port " + this.port + " in " + tokenFile);
+        var token = Files.readString(tokenFile).strip();
+
+        try (var socket = new Socket(InetAddress.getLoopbackAddress(), this.port);
+             var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             var writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            writer.print("token " + token + "\n");
+            request.write(writer);
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("issue ")) {
+                    issueHandler.accept(line.substring("issue ".length()));
+                } else if (line.startsWith("error ")) {
+                    issueHandler.accept("ERROR: " + line.substring("error ".length()));
+                } else if (line.startsWith("exit ")) {
+                    return Integer.parseInt(line.substring("exit ".length()));
+                }
+            }
+            throw new IOException("The daemon closed the connection without an exit code");
+        }
+    }
+}
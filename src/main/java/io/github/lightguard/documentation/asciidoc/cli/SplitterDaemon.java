@@ -0,0 +1,251 @@
+package io.github.lightguard.documentation.asciidoc.cli;
+
+import io.github.lightguard.documentation.asciidoc.extraction.AsciidoctorChapterParser;
+import io.github.lightguard.documentation.asciidoc.extraction.ChapterParser;
+import io.github.lightguard.documentation.asciidoc.extraction.Extractor;
+import io.github.lightguard.documentation.asciidoc.extraction.ParserEngine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+/**
+ * Keeps an asciidoctor instance running and splits the requests sent to it on a local port, so starting JRuby is
+ * paid for once instead of by every split.
+ * Any local user can connect to the port, so the daemon only takes requests from whoever can read its token. The
+ * token is written to a file only the user running the daemon can read, see {@link #tokenFile(Path, int)}.
+ * Each connection sends a {@code token <token>} line and one {@link SplitRequest}. The daemon answers with an
+ * {@code issue <issue>} line for every issue as it is found, an {@code error <message>} line if the request could not
+ * be split, and finally an {@code exit <code>} line with the exit code the CLI would have returned.
+ */
+public class SplitterDaemon implements AutoCloseable {
+    /**
+     * Where the daemons write their tokens by default.
+     */
+    public static final Path DEFAULT_TOKEN_DIRECTORY = Path.of(System.getProperty("user.home"), ".asciidoc-splitter");
+    /**
+     * How long a connection has to send its token and request, so idle connections don't hold the threads.
+     */
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final String TOKEN_PREFIX = "token ";
+
+    private final ServerSocket serverSocket;
+    private final ChapterParser parser;
+    private final ExecutorService executor;
+    private final Logger logger;
+    private final byte[] token;
+    private final Path tokenFile;
+    private Duration requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+
+    /**
+     * Starts asciidoctor and listens on the loopback address, the token is written to the default directory.
+     *
+     * @param port    port to listen on, 0 for any free port
+     * @param threads number of requests split at the same time
+     * @throws IOException if the port can not be opened or the token can not be written
+     */
+    public SplitterDaemon(int port, int threads) throws IOException {
+        this(port, threads, DEFAULT_TOKEN_DIRECTORY);
+    }
+
+    /**
+     * Starts asciidoctor and listens on the loopback address.
+     *
+     * @param port           port to listen on, 0 for any free port
+     * @param threads        number of requests split at the same time
+     * @param tokenDirectory directory the token file is written to
+     * @throws IOException if the port can not be opened or the token can not be written
+     */
+    public SplitterDaemon(int port, int threads, Path tokenDirectory) throws IOException {
+        this.logger = LogManager.getLogManager().getLogger("");
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        try {
+            var random = new byte[32];
+            new SecureRandom().nextBytes(random);
+            var token = new StringBuilder();
+            for (byte b : random)
+                token.append(String.format("%02x", b));
+            this.token = token.toString().getBytes(StandardCharsets.UTF_8);
+            this.tokenFile = writeToken(tokenFile(tokenDirectory, getPort()), token.toString());
+        } catch (IOException e) {
+            this.serverSocket.close();
+            throw e;
+        }
+        this.parser = new AsciidoctorChapterParser(Map.of());
+        this.parser.warmUp();
+        this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * File holding the token of the daemon on the port.
+     *
+     * @param tokenDirectory directory the daemon writes its token to
+     * @param port           port of the daemon
+     * @return path of the token file
+     */
+    public static Path tokenFile(Path tokenDirectory, int port) {
+        return tokenDirectory.resolve("daemon-" + port + ".token");
+    }
+
+    /**
+     * Writes the token to a file only the owner can read and write, replacing the file of an earlier daemon.
+     */
+    private static Path writeToken(Path tokenFile, String token) throws IOException {
+        Files.createDirectories(tokenFile.getParent());
+        Files.deleteIfExists(tokenFile);
+        if (tokenFile.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            var ownerOnly = PosixFilePermissions.fromString("rw-------");
+            Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(ownerOnly));
+        } else {
+            var file = Files.createFile(tokenFile).toFile();
+            if (!(file.setReadable(false, false) && file.setReadable(true, true)
+                    && file.setWritable(false, false) && file.setWritable(true, true)))
+                throw new IOException("Could not make the token file private: " + tokenFile);
+        }
+        Files.writeString(tokenFile, token);
+        return tokenFile;
+    }
+
+    /**
+     * Sets how long a connection has to send its token and request, the split itself isn't limited.
+     *
+     * @param requestTimeout time allowed for reading each line of the token and request
+     */
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Port the daemon is listening on.
+     *
+     * @return local port
+     */
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts requests until the daemon is closed.
+     */
+    public void serve() {
+        this.logger.info("Listening for split requests on port " + getPort());
+        while (!this.serverSocket.isClosed()) {
+            try {
+                var socket = this.serverSocket.accept();
+                this.executor.submit(() -> handle(socket));
+            } catch (SocketException e) {
+                // Closed while waiting for a connection
+                this.logger.fine("Stopped listening: " + e.getMessage());
+            } catch (IOException e) {
+                this.logger.severe("Could not accept a connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket;
+             var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             var writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            int exitCode;
+            try {
+                socket.setSoTimeout((int) this.requestTimeout.toMillis());
+                if (!hasToken(reader.readLine())) {
+                    this.logger.warning("Refused a request without the token of the daemon");
+                    send(writer, "error The token does not match the token of the daemon");
+                    send(writer, "exit -1");
+                    return;
+                }
+
+                var request = SplitRequest.read(reader);
+                if (request == null)
+                    return;
+
+                // The split takes as long as it takes
+                socket.setSoTimeout(0);
+                exitCode = split(request, writer);
+            } catch (SocketTimeoutException e) {
+                this.logger.warning("Closed a connection which sent no request in time");
+                send(writer, "error No request was sent within " + this.requestTimeout.toMillis() + " ms");
+                exitCode = -1;
+            } catch (IOException | RuntimeException e) {
+                this.logger.severe("Could not split request: " + e);
+                send(writer, "error " + e.getMessage());
+                exitCode = -1;
+            }
+            send(writer, "exit " + exitCode);
+        } catch (IOException e) {
+            this.logger.severe("Lost connection: " + e.getMessage());
+        }
+    }
+
+    private boolean hasToken(String line) {
+        if (line == null || !line.startsWith(TOKEN_PREFIX))
+            return false;
+        // Compared in constant time, so the time taken doesn't tell how much of the token was right
+        return MessageDigest.isEqual(this.token,
+                line.substring(TOKEN_PREFIX.length()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int split(SplitRequest request, PrintWriter writer) throws IOException {
+        var task = request.toTask();
+        this.logger.info("Splitting " + task.getLocation() + " into " + task.getPushableLocation());
+
+        // Only asciidoctor is worth keeping running, the other engines start with the split
+        if (request.getEngine() != ParserEngine.ASCIIDOCTOR) {
+            var extractor = new Extractor(task);
+            extractor.setEngine(request.getEngine());
+            return process(extractor, request, writer);
+        }
+
+        try (var requestParser = this.parser.withAttributes(request.getAttributes())) {
+            return process(new Extractor(task, requestParser), request, writer);
+        }
+    }
+
+    private static int process(Extractor extractor, SplitRequest request, PrintWriter writer) {
+        extractor.setJobs(request.getJobs());
+        extractor.setIncremental(request.isIncremental());
+        extractor.setIssueListener(issue -> send(writer, "issue " + issue));
+        return extractor.process();
+    }
+
+    private static void send(PrintWriter writer, String line) {
+        // One line per message, whatever the message contains
+        writer.print(line.replace('\r', ' ').replace('\n', ' ') + "\n");
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+        Files.deleteIfExists(this.tokenFile);
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(1, TimeUnit.MINUTES))
+                this.executor.shutdownNow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.parser.close();
+    }
+}
@@ -0,0 +1,214 @@
+package io.github.lightguard.documentation.asciidoc.extension;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * What each line of a document is to the {@link ReaderPreprocessor}, worked out once per line.
+ * Each line gets an int of flags, with the level of a section heading in the upper bits, so the preprocessor can
+ * look at the lines around the current one without matching them again. Lines are classified as they were before the
+ * preprocessor marked any of them.
+ */
+final class LineIndex {
+    static final int MODULE_ID = 1;
+    static final int SECTION = 1 << 1;
+    static final int CONDITIONAL = 1 << 2;
+    static final int ENDIF = 1 << 3;
+    static final int TAG_START = 1 << 4;
+    static final int TAG_END = 1 << 5;
+    static final int COMMENT_FENCE = 1 << 6;
+    static final int BLANK = 1 << 7;
+    static final int CONTEXT = 1 << 8;
+    static final int ADDITIONAL_RESOURCES = 1 << 9;
+    static final int CONCLUSION = 1 << 10;
+    static final int PARENT_CONTEXT = 1 << 11;
+    static final int PARENT_CONTEXT_ATTRIBUTE = 1 << 12;
+    static final int REPLACE_WITH = 1 << 13;
+
+    private static final int LEVEL_SHIFT = 16;
+
+    private static final Pattern ID_PATTERN =
+            Pattern.compile("\\[id=[\"'](?<moduleId>((con|ref|proc)-.+)|.+-(con|ref|proc))_\\{context}[\"']]");
+
+    private final int[] codes;
+    private final String[] moduleIds;
+
+    private LineIndex(int[] codes, String[] moduleIds) {
+        this.codes = codes;
+        this.moduleIds = moduleIds;
+    }
+
+    /**
+     * Classifies the lines.
+     *
+     * @param lines lines of the document, before they are marked by the preprocessor
+     * @return the index of the lines
+     */
+    static LineIndex classify(List<String> lines) {
+        var codes = new int[lines.size()];
+        String[] moduleIds = null;
+        int i = 0;
+        for (String line : lines) {
+            codes[i] = classify(line);
+            if (line.startsWith("[id=")) {
+                var matcher = ID_PATTERN.matcher(line);
+                if (matcher.matches()) {
+                    if (moduleIds == null)
+                        moduleIds = new String[lines.size()];
+                    moduleIds[i] = matcher.group("moduleId");
+                    codes[i] |= MODULE_ID;
+                }
+            }
+            i++;
+        }
+        return new LineIndex(codes, moduleIds);
+    }
+
+    /**
+     * Whether the line has all the flags, throws like {@link List#get(int)} for lines outside of the document.
+     */
+    boolean is(int line, int flags) {
+        return (this.codes[Objects.checkIndex(line, this.codes.length)] & flags) == flags;
+    }
+
+    /**
+     * Whether the line is in the document and has all the flags.
+     */
+    boolean isWithin(int line, int flags) {
+        return line >= 0 && line < this.codes.length && (this.codes[line] & flags) == flags;
+    }
+
+    /**
+     * Id of the module started by the line, only set for {@link #MODULE_ID} lines.
+     */
+    String moduleId(int line) {
+        return this.moduleIds == null ? null : this.moduleIds[line];
+    }
+
+    /**
+     * Lines with all the flags.
+     *
+     * @return line numbers, starting at 1, in order
+     */
+    int[] lineNumbers(int flags) {
+        int count = 0;
+        for (int code : this.codes) {
+            if ((code & flags) == flags)
+                count++;
+        }
+
+        var lineNumbers = new int[count];
+        count = 0;
+        for (int i = 0; i < this.codes.length; i++) {
+            if ((this.codes[i] & flags) == flags)
+                lineNumbers[count++] = i + 1;
+        }
+        return lineNumbers;
+    }
+
+    /**
+     * Level of the section heading on the line, the number of equal signs, only set for {@link #SECTION} lines.
+     */
+    int sectionLevel(int line) {
+        return this.codes[Objects.checkIndex(line, this.codes.length)] >>> LEVEL_SHIFT;
+    }
+
+    private static int classify(String line) {
+        int code = 0;
+        if (line.isEmpty())
+            return BLANK;
+
+        switch (line.charAt(0)) {
+            case '=':
+                int level = 1;
+                while (level < line.length() && line.charAt(level) == '=')
+                    level++;
+                if (level < line.length() && line.charAt(level) == ' ' && isSingleLine(line, level + 1))
+                    code |= SECTION | (Math.min(level, 0xFFFF) << LEVEL_SHIFT);
+                break;
+            case 'i':
+                if (isConditional(line))
+                    code |= CONDITIONAL;
+                break;
+            case 'e':
+                if (line.startsWith("endif::"))
+                    code |= ENDIF;
+                break;
+            case '/':
+                if (line.startsWith("// tag::"))
+                    code |= TAG_START;
+                else if (line.startsWith("// end::"))
+                    code |= TAG_END;
+                else if (line.equals("////"))
+                    code |= COMMENT_FENCE;
+                break;
+            case ':':
+                if (line.startsWith(":context:") && isSingleLine(line, ":context:".length()))
+                    code |= CONTEXT;
+                break;
+            default:
+        }
+
+        if (isBlank(line))
+            code |= BLANK;
+        if (line.charAt(0) == '[' && line.contains("replace-with="))
+            code |= REPLACE_WITH;
+        if (line.contains("[role=\"_additional-resources\"]"))
+            code |= ADDITIONAL_RESOURCES;
+        if (line.contains("[#conclusion]"))
+            code |= CONCLUSION;
+        if (line.contains("parent-context")) {
+            code |= PARENT_CONTEXT;
+            if (line.contains("{parent-context}"))
+                code |= PARENT_CONTEXT_ATTRIBUTE;
+        }
+        return code;
+    }
+
+    /**
+     * An ifdef, ifndef, ifeval or ifneval directive: {@code if(n?)(def|eval)::(.+)?\[(.+)?]$}.
+     */
+    private static boolean isConditional(String line) {
+        if (!line.startsWith("ifdef::") && !line.startsWith("ifndef::")
+                && !line.startsWith("ifeval::") && !line.startsWith("ifneval::"))
+            return false;
+
+        int start = line.indexOf("::") + 2;
+        int end = line.length() - 1;
+        if (end < start || line.charAt(end) != ']' || !isSingleLine(line, start))
+            return false;
+
+        int bracket = line.indexOf('[', start);
+        return bracket >= 0 && bracket < end;
+    }
+
+    /**
+     * Same as {@code line.trim().isEmpty()}, without trimming.
+     */
+    private static boolean isBlank(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) > ' ')
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether there is no line terminator after the index, which a regular expression's dot wouldn't match.
+     */
+    private static boolean isSingleLine(String line, int from) {
+        for (int i = from; i < line.length(); i++) {
+            switch (line.charAt(i)) {
+                case '\n':
+                case '\r':
+                case '\u0085':
+                case '\u2028':
+                case '\u2029':
+                    return false;
+                default:
+            }
+        }
+        return true;
+    }
+}
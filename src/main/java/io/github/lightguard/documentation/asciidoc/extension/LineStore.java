@@ -0,0 +1,214 @@
+package io.github.lightguard.documentation.asciidoc.extension;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * The lines of a document as UTF-8 bytes with the offsets of each line, instead of a string per line.
+ * Lines read from a file stay in the bytes of the file, mapped into memory for large files, other lines are copied
+ * into a single growable array. Lines marked by the {@link ReaderPreprocessor} only have a bit set, the
+ * {@link ReaderPreprocessor#SPLITTER_COMMENT} is put in front of them when they are read as strings. A line is decoded
+ * each time it is read.
+ */
+public final class LineStore {
+    // Files from this size on are mapped instead of read into the heap
+    static final long MAPPED_FILE_SIZE = 4 * 1024 * 1024;
+
+    private final ByteBuffer file;
+    private byte[] added;
+    private int addedLength;
+    private final int[] starts;
+    private final int[] ends;
+    private final int size;
+    // Lines in the added array instead of the file
+    private final BitSet inAdded = new BitSet();
+    private final BitSet marked = new BitSet();
+
+    private LineStore(ByteBuffer file, byte[] added, int addedLength, int[] starts, int[] ends, int size) {
+        this.file = file;
+        this.added = added;
+        this.addedLength = addedLength;
+        this.starts = starts;
+        this.ends = ends;
+        this.size = size;
+    }
+
+    /**
+     * Copies the lines.
+     *
+     * @param lines lines of a document
+     * @return the lines, no longer tied to the list
+     */
+    public static LineStore of(List<String> lines) {
+        var store = new LineStore(ByteBuffer.allocate(0), new byte[16], 0, new int[lines.size()],
+                new int[lines.size()], lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            store.storeAdded(i, lines.get(i));
+        }
+        return store;
+    }
+
+    /**
+     * Reads the lines of the file the way asciidoctor does: without a byte order mark, trailing whitespace or trailing
+     * blank lines. Large files are mapped, bytes which aren't valid UTF-8 are then replaced instead of failing the read.
+     *
+     * @param file document in UTF-8
+     * @return the lines of the file
+     * @throws IOException if the file can't be read
+     */
+    public static LineStore read(Path file) throws IOException {
+        ByteBuffer data;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(file + " is too large to be read");
+            if (channel.size() >= MAPPED_FILE_SIZE) {
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } else {
+                data = ByteBuffer.wrap(Files.readAllBytes(file));
+                // Fails like reading the file into a string would
+                StandardCharsets.UTF_8.newDecoder().decode(data.duplicate());
+            }
+        }
+
+        int length = data.limit();
+        var starts = new int[Math.max(16, length / 32)];
+        var ends = new int[starts.length];
+        int count = 0;
+        int nonBlankCount = 0;
+
+        int start = length >= 3 && data.get(0) == (byte) 0xEF && data.get(1) == (byte) 0xBB
+                && data.get(2) == (byte) 0xBF ? 3 : 0;
+        for (int pos = start; pos <= length; pos++) {
+            if (pos < length && data.get(pos) != '\n')
+                continue;
+
+            int end = pos;
+            // Whitespace is all ASCII, so it can't be part of a multi-byte character
+            while (end > start && isTrailingWhitespace(data.get(end - 1)))
+                end--;
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+            if (end > start)
+                nonBlankCount = count;
+            start = pos + 1;
+        }
+        return new LineStore(data, new byte[0], 0, Arrays.copyOf(starts, nonBlankCount),
+                Arrays.copyOf(ends, nonBlankCount), nonBlankCount);
+    }
+
+    private static boolean isTrailingWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == 0x0B || b == '\f' || b == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The line, with the splitter comment in front of it if it is marked.
+     *
+     * @param index line, starting at 0
+     * @return the line as the document has it after preprocessing
+     */
+    public String get(int index) {
+        var text = text(index);
+        return marked.get(index) ? ReaderPreprocessor.SPLITTER_COMMENT + text : text;
+    }
+
+    /**
+     * The line as it was read or last replaced, without the splitter comment.
+     *
+     * @param index line, starting at 0
+     * @return the text of the line
+     */
+    public String text(int index) {
+        Objects.checkIndex(index, size);
+        int length = ends[index] - starts[index];
+        if (inAdded.get(index))
+            return new String(added, starts[index], length, StandardCharsets.UTF_8);
+        if (file.hasArray())
+            return new String(file.array(), file.arrayOffset() + starts[index], length, StandardCharsets.UTF_8);
+
+        var bytes = new byte[length];
+        file.duplicate().position(starts[index]).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Whether the line is hidden from asciidoctor behind the splitter comment.
+     */
+    public boolean isMarked(int index) {
+        Objects.checkIndex(index, size);
+        return marked.get(index);
+    }
+
+    /**
+     * Hides the line from asciidoctor behind the splitter comment, without changing its text.
+     */
+    void mark(int index) {
+        Objects.checkIndex(index, size);
+        marked.set(index);
+    }
+
+    /**
+     * Replaces the text of the line, the line is no longer marked.
+     *
+     * @param index line, starting at 0
+     * @param line  new text of the line
+     */
+    void replace(int index, String line) {
+        Objects.checkIndex(index, size);
+        marked.clear(index);
+        if (line.isEmpty()) {
+            ends[index] = starts[index];
+        } else {
+            storeAdded(index, line);
+        }
+    }
+
+    private void storeAdded(int index, String line) {
+        var bytes = line.getBytes(StandardCharsets.UTF_8);
+        if (addedLength + bytes.length > added.length)
+            added = Arrays.copyOf(added, Math.max(added.length * 2, addedLength + bytes.length));
+        System.arraycopy(bytes, 0, added, addedLength, bytes.length);
+        starts[index] = addedLength;
+        addedLength += bytes.length;
+        ends[index] = addedLength;
+        inAdded.set(index);
+    }
+
+    /**
+     * Read only view of the lines as strings, see {@link #get(int)}.
+     */
+    public List<String> asList() {
+        return new Lines();
+    }
+
+    private class Lines extends AbstractList<String> implements RandomAccess {
+        @Override
+        public String get(int index) {
+            return LineStore.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.lightguard.documentation.asciidoc.extension;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The lines of a single document, as seen by the {@link ReaderPreprocessor}, and the assembly body built from them.
+ */
+public class PreprocessedSource {
+    private final LineStore lines;
+    private final StringBuilder assemblyBody;
+    private final int[] replaceWithLines;
+    private long preprocessNanos;
+
+    PreprocessedSource(LineStore lines, StringBuilder assemblyBody) {
+        this(lines, assemblyBody, new int[0]);
+    }
+
+    PreprocessedSource(LineStore lines, StringBuilder assemblyBody, int[] replaceWithLines) {
+        this.lines = lines;
+        this.assemblyBody = assemblyBody;
+        this.replaceWithLines = replaceWithLines;
+    }
+
+    /**
+     * The lines as strings, the marked lines with the splitter comment in front of them.
+     */
+    public List<String> getLines() {
+        return lines.asList();
+    }
+
+    public LineStore getLineStore() {
+        return lines;
+    }
+
+    /**
+     * Time the {@link ReaderPreprocessor} spent on the lines.
+     *
+     * @return preprocessing time in nanoseconds
+     */
+    public long getPreprocessNanos() {
+        return preprocessNanos;
+    }
+
+    void setPreprocessNanos(long preprocessNanos) {
+        this.preprocessNanos = preprocessNanos;
+    }
+
+    public StringBuilder getAssemblyBody() {
+        return assemblyBody;
+    }
+
+    /**
+     * Attribute lines with a {@code replace-with} attribute, found while preprocessing.
+     *
+     * @return line numbers, starting at 1, in order
+     */
+    public int[] getReplaceWithLines() {
+        return replaceWithLines.clone();
+    }
+
+    public void updateLines(int start, int end, List<String> content) {
+        updateLines(List.of(new LineUpdate(start, end, content)));
+    }
+
+    /**
+     * Replaces several ranges of lines at once, each range is checked before any line is changed.
+     *
+     * @param updates ranges to replace, they can't overlap
+     */
+    public void updateLines(List<LineUpdate> updates) {
+        var sorted = new ArrayList<>(updates);
+        sorted.sort(Comparator.comparingInt(update -> update.start));
+
+        int previousEnd = 0;
+        for (LineUpdate update : sorted) {
+            Objects.checkFromToIndex(update.start - 1, update.end, lines.size());
+            if (update.end - update.start + 1 < update.content.size()) {
+                throw new IllegalStateException("Adding more content than replacing with \"replace-with\" starting at line "
+                        + update.start + ". This will throw off line numbers for further processing.");
+            }
+            if (update.start <= previousEnd) {
+                throw new IllegalStateException("Replacing line " + update.start + " twice with \"replace-with\".");
+            }
+            previousEnd = update.end;
+        }
+
+        for (LineUpdate update : sorted) {
+            // The new content first, the rest of the range is cleared out
+            for (int i = update.start - 1; i < update.end; i++) { // New zero based
+                int offset = i - (update.start - 1);
+                lines.replace(i, offset < update.content.size() ? update.content.get(offset) : "");
+            }
+        }
+    }
+
+    /**
+     * Lines replacing a range of lines, the rest of the range is blanked out so later line numbers still match.
+     */
+    public static class LineUpdate {
+        private final int start;
+        private final int end;
+        private final List<String> content;
+
+        /**
+         * @param start   first line replaced, starting at 1
+         * @param end     last line replaced, included
+         * @param content lines replacing the range, at most as many as the range has
+         */
+        public LineUpdate(int start, int end, List<String> content) {
+            this.start = start;
+            this.end = end;
+            this.content = List.copyOf(content);
+        }
+    }
+}
@@ -6,89 +6,112 @@ import org.asciidoctor.extension.PreprocessorReader;
 
 import java.io.File;
 import java.nio.file.Path;
-import java.util.Collections;
-import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Preprocessor to get the lines of the source document.
+ * The lines are kept per document, see {@link #getSource(Document)}, so one instance can be used by several
+ * documents being loaded at the same time.
  */
 public class ReaderPreprocessor extends Preprocessor {
     public static final String SPLITTER_COMMENT = "// -- splitter comment -- ";
-    private List<String> lines;
-    private StringBuilder assemblyBody;
+    public static final String SOURCE_ID_ATTRIBUTE = "splitter-source-id";
+    private final Map<String, PreprocessedSource> sources = new ConcurrentHashMap<>();
+    private final AtomicLong sourceIds = new AtomicLong();
 
     @Override
     public void process(Document document, PreprocessorReader reader) {
-        lines = reader.lines();
+        var lines = LineStore.of(reader.lines());
         reader.terminate();
 
-        assemblyBody = new StringBuilder();
+        var folderName = Path.of(document.getSourceLocation().getDir()).getFileName();
+        var source = preprocess(lines, folderName);
+
+        // Tag the document so its lines can be found again once it has been loaded, unless whoever loads it
+        // already gave it an id
+        var sourceId = sourceId(document);
+        if (sourceId.isEmpty()) {
+            sourceId = newSourceId();
+            document.setAttribute(SOURCE_ID_ATTRIBUTE, sourceId, true);
+        }
+        this.sources.put(sourceId, source);
+
+        reader.restoreLines(source.getLines());
+    }
+
+    /**
+     * Marks the preprocessor directives in the lines and builds the assembly body, noting the replace-with lines.
+     *
+     * @param lines      lines of the document, preprocessor directives are marked in place
+     * @param folderName name of the directory containing the document
+     * @return lines and assembly body of the document
+     */
+    public PreprocessedSource preprocess(LineStore lines, Path folderName) {
+        var start = System.nanoTime();
+        var assemblyBody = new StringBuilder();
         boolean withinComment = false;
         boolean withinModule = false;
         boolean beforeAllModules = true;
         boolean preProcessorStartModule = false;
-        var folderName = Path.of(document.getSourceLocation().getDir()).getFileName();
 
-        // Regex used for finding a few things used in the loop
-        var idPattern = Pattern.compile("\\[id=[\"'](?<moduleId>((con|ref|proc)-.+)|.+-(con|ref|proc))_\\{context}[\"']]");
-        var levelOffsetPattern = Pattern.compile("(?<offsetSize>^=+) .*");
-        var preProcessStartPattern = Pattern.compile("if(n?)(def|eval)::(.+)?\\[(.+)?]$");
-        var contextAttribPattern = Pattern.compile("^:context:.*$");
+        // Every line is classified once, before any of them is marked
+        var index = LineIndex.classify(lines.asList());
 
         // We need to look at each line to check for ifdefs, I wish there were a better way to do this.
         for (int i = 0; i < lines.size(); i++) {
             var currLine = lines.get(i);
-            var idMatcher = idPattern.matcher(currLine);
 
             // "strip out" attributes for this
-            if (contextAttribPattern.matcher(currLine).matches()) {
-                lines.set(i, SPLITTER_COMMENT + currLine);
+            if (index.is(i, LineIndex.CONTEXT)) {
+                lines.mark(i);
             }
 
             // Flip the comment section
-            if (currLine.matches("^////")) {
+            if (index.is(i, LineIndex.COMMENT_FENCE)) {
                 withinComment = !withinComment;
             }
 
             // No longer in a module
-            if (currLine.trim().isEmpty()) {
-                if (idPattern.matcher(lines.get(i + 1)).matches())
+            if (index.is(i, LineIndex.BLANK)) {
+                if (index.is(i + 1, LineIndex.MODULE_ID))
                     withinModule = false;
 
                 // check to see if the next section is within a conditional
-                if (preProcessStartPattern.matcher(lines.get(i + 1)).matches()) {
+                if (index.is(i + 1, LineIndex.CONDITIONAL)) {
                     // We also need to guard against IndexOutOfBounds
-                    if (i + 2 < lines.size() && idPattern.matcher(lines.get(i + 2)).matches()) {
+                    if (index.isWithin(i + 2, LineIndex.MODULE_ID)) {
                         preProcessorStartModule = true;
                         withinModule = false;
                     }
                 }
 
-                if (lines.get(i - 1).startsWith("// end::") && i + 1 < lines.size() && lines.get(i + 1).startsWith("// tag::")) {
+                if (index.is(i - 1, LineIndex.TAG_END) && index.isWithin(i + 1, LineIndex.TAG_START)) {
                     assemblyBody.append(lines.get(i - 1).trim()).append("\n");
                 }
             }
 
             // If this is a module (by checking the id matches), create the appropriate include in the assembly body
-            if (idMatcher.matches()) {
+            if (index.is(i, LineIndex.MODULE_ID)) {
                 withinModule = true;
                 beforeAllModules = false;
-                var levelOffsetMatcher = levelOffsetPattern.matcher(lines.get(i + 1));
+                var isSection = index.is(i + 1, LineIndex.SECTION);
 
                 // Add in the starting of a tag, if it exists
-                if (i - 1 > 0 && lines.get(i - 1).startsWith("// tag::")) {
+                if (i - 1 > 0 && index.is(i - 1, LineIndex.TAG_START)) {
                     assemblyBody.append(lines.get(i - 1).trim()).append("\n");
                 }
 
-                if (levelOffsetMatcher.matches() && !withinComment) {
+                if (isSection && !withinComment) {
                     assemblyBody.append("include::modules")
                             .append(File.separator)
                             .append(folderName)
                             .append(File.separator)
-                            .append(idMatcher.group("moduleId")).append(".adoc")
+                            .append(index.moduleId(i)).append(".adoc")
                             .append("[leveloffset=+")
-                            .append(levelOffsetMatcher.group("offsetSize").length() - 1)
+                            .append(index.sectionLevel(i + 1) - 1)
                             .append("]").append("\n\n");
                 }
             }
@@ -97,96 +120,132 @@ public class ReaderPreprocessor extends Preprocessor {
             // verify if we're actually within a module or not.
 
             // end tag
-            if (!withinModule && i - 1 > 0 && lines.get(i - 1).startsWith("// end::")) {
+            if (!withinModule && i - 1 > 0 && index.is(i - 1, LineIndex.TAG_END)) {
                 assemblyBody.append(lines.get(i - 1).trim()).append("\n");
             }
 
             // Special case for additional resources or conclusion (kafka)
-            if (currLine.contains("[#conclusion]") || (currLine.contains("[role=\"_additional-resources\"]") &&
+            if (index.is(i, LineIndex.CONCLUSION) || (index.is(i, LineIndex.ADDITIONAL_RESOURCES) &&
                     lines.get(i + 1).toLowerCase().contains("== additional resources")) && !withinComment) {
                 withinModule = false;
                 // Get the additional resources until a section break or the end of a preprocessor
                 for (int j = 0; i + j < lines.size(); j++) {
-                    final String nextLine = lines.get(i + j);
-                    if (nextLine.startsWith("endif::") || idPattern.matcher(nextLine).matches() || i + j > lines.size()) {
+                    if (index.is(i + j, LineIndex.ENDIF) || index.is(i + j, LineIndex.MODULE_ID)) {
                         break;
                     } else {
-                        assemblyBody.append(nextLine).append("\n");
+                        assemblyBody.append(lines.get(i + j)).append("\n");
                     }
                 }
             }
 
             // Preprocessor hell
-            if (preProcessStartPattern.matcher(currLine).matches() || currLine.startsWith("endif::")) {
+            var conditional = index.is(i, LineIndex.CONDITIONAL);
+            var endif = index.is(i, LineIndex.ENDIF);
+            if (conditional || endif) {
                 // I want preprocessor directives ignored
-                lines.set(i, SPLITTER_COMMENT + currLine);
+                lines.mark(i);
 
                 // special case endif (check for bounds, and also next and next next line for module boundary
-                if (currLine.startsWith("endif::")
+                if (endif
                         && preProcessorStartModule
-                        && ((i + 1 < lines.size() && idPattern.matcher(lines.get(i + 1)).matches())
-                        || (i + 2 < lines.size() && idPattern.matcher(lines.get(i + 2)).matches()))) {
+                        && (index.isWithin(i + 1, LineIndex.MODULE_ID) || index.isWithin(i + 2, LineIndex.MODULE_ID))) {
                     assemblyBody.append(currLine).append("\n");
                     preProcessorStartModule = false;
                 }
 
                 // Check for the end of a file
-                if (currLine.startsWith("endif::")
-                        && (i + 1 < lines.size() && lines.get(i + 1).trim().isEmpty())
-                        && (i + 2 < lines.size() && preProcessStartPattern.matcher(lines.get(i + 2)).matches())
-                        && lines.get(i + 2).contains("{parent-context}")) {
+                if (endif
+                        && index.isWithin(i + 1, LineIndex.BLANK)
+                        && index.isWithin(i + 2, LineIndex.CONDITIONAL | LineIndex.PARENT_CONTEXT_ATTRIBUTE)) {
                     assemblyBody.append(currLine).append("\n");
                 }
 
                 // Also check if we're ending a tag and a preprocessor
-                if (currLine.startsWith("endif::") && lines.get(i - 1).startsWith("// end::")) {
+                if (endif && index.is(i - 1, LineIndex.TAG_END)) {
                     assemblyBody.append(lines.get(i - 1)).append("\n").append(currLine).append("\n");
                 }
 
                 // Case for an ifdef and a module starting or ending additional resources or conclusion (for kafka)
-                if (preProcessStartPattern.matcher(currLine).matches()
-                        && i + 1 < lines.size()
-                        && (idPattern.matcher(lines.get(i + 1)).matches() || lines.get(i + 1).contains("[role=\"_additional-resources\"]") || lines.get(i + 1).contains("[#conclusion]"))) {
+                if (conditional
+                        && (index.isWithin(i + 1, LineIndex.MODULE_ID) || index.isWithin(i + 1, LineIndex.ADDITIONAL_RESOURCES)
+                        || index.isWithin(i + 1, LineIndex.CONCLUSION))) {
                     assemblyBody.append(currLine).append("\n");
                 }
 
                 // Starting a tag after a preprocessor
-                if (preProcessStartPattern.matcher(currLine).matches()
-                        && i + 1 < lines.size() && lines.get(i + 1).startsWith("// tag::")) {
+                if (conditional && index.isWithin(i + 1, LineIndex.TAG_START)) {
                     assemblyBody.append(currLine).append("\n");
                 }
 
                 // Get the last two lines of the assembly file
-                if (currLine.contains("parent-context") && !beforeAllModules) {
+                if (index.is(i, LineIndex.PARENT_CONTEXT) && !beforeAllModules) {
                     assemblyBody.append(currLine).append("\n");
                 }
             }
         }
 
-        reader.restoreLines(lines);
+        var source = new PreprocessedSource(lines, assemblyBody, index.lineNumbers(LineIndex.REPLACE_WITH));
+        source.setPreprocessNanos(System.nanoTime() - start);
+        return source;
+    }
+
+    /**
+     * Gets the preprocessed source of a document processed by this preprocessor.
+     *
+     * @param document document being, or already, loaded
+     * @return the preprocessed source of the document
+     */
+    public PreprocessedSource getSource(Document document) {
+        var source = this.sources.get(sourceId(document));
+        if (source == null) {
+            throw new IllegalStateException("Document has not been processed by this preprocessor");
+        }
+        return source;
     }
 
-    public List<String> getLines() {
-        return Collections.unmodifiableList(lines);
+    /**
+     * Gets the preprocessed source of a loaded document and releases it from this preprocessor.
+     *
+     * @param document loaded document
+     * @return the preprocessed source of the document
+     */
+    public PreprocessedSource takeSource(Document document) {
+        var source = this.sources.remove(sourceId(document));
+        if (source == null) {
+            throw new IllegalStateException("Document has not been processed by this preprocessor");
+        }
+        return source;
     }
 
-    public StringBuilder getAssemblyBody() {
-        return assemblyBody;
+    /**
+     * Creates an id to load a document with, as its {@link #SOURCE_ID_ATTRIBUTE}, so its source can be released with
+     * {@link #releaseSource(String)} even if the load fails.
+     *
+     * @return id no other document of this preprocessor has
+     */
+    public String newSourceId() {
+        return String.valueOf(this.sourceIds.incrementAndGet());
     }
 
-    public void updateLines(int start, int end, List<String> content) {
-        var prevLines = lines.subList(start - 1, end); // New zero based
+    /**
+     * Releases the source of a document, if it is still kept.
+     *
+     * @param sourceId id the document was loaded with
+     */
+    public void releaseSource(String sourceId) {
+        this.sources.remove(sourceId);
+    }
 
-        if (prevLines.size() < content.size()) {
-            throw new IllegalStateException("Adding more content than replacing with \"replace-with\" starting at line "
-                    + start + ". This will throw off line numbers for further processing.");
-        }
-        // Clear out any existing content
-        Collections.fill(prevLines, "");
+    /**
+     * Number of documents whose source is kept, from their preprocessing until their source is taken or released.
+     *
+     * @return count of kept sources
+     */
+    public int getSourceCount() {
+        return this.sources.size();
+    }
 
-        // Remove the existing value at the specified index and add back in the new content.
-        for (int i = 0; i < content.size(); i++) {
-            prevLines.set(i, content.get(i));
-        }
+    private static String sourceId(Document document) {
+        return Objects.toString(document.getAttribute(SOURCE_ID_ATTRIBUTE), "");
     }
 }
@@ -1,14 +1,26 @@
 package io.github.lightguard.documentation.asciidoc.extension;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 import io.github.lightguard.documentation.asciidoc.Util;
+import io.github.lightguard.documentation.asciidoc.extension.PreprocessedSource.LineUpdate;
 import org.asciidoctor.ast.Block;
 import org.asciidoctor.ast.Document;
 import org.asciidoctor.ast.StructuralNode;
 import org.asciidoctor.extension.Treeprocessor;
 
+/**
+ * Replaces the blocks marked with a {@code replace-with} attribute by an include of the given file, in the document
+ * and in its source lines.
+ * Only the branches of the document containing one of the replace-with lines found by the {@link ReaderPreprocessor}
+ * are visited, at any depth, and the source lines are updated in one go once all the blocks are found.
+ */
 public class ReplaceWithTreeProcessor extends Treeprocessor {
     private ReaderPreprocessor readerPreprocessor;
 
@@ -16,11 +28,17 @@ public class ReplaceWithTreeProcessor extends Treeprocessor {
     public Document process(Document document) {
         Objects.requireNonNull(this.readerPreprocessor, "ReaderPreProcessor must be set");
 
-        // Small (hopefully) optimization, no point in doing this if there isn't any replace-with sections
-        if (this.readerPreprocessor.getLines().stream()
-                    .filter(s -> s.contains("replace-with"))
-                    .collect(Collectors.toList()).size() > 0)
-            document.getBlocks().forEach(this::processBlocks);
+        var source = this.readerPreprocessor.getSource(document);
+        var replaceWithLines = source.getReplaceWithLines();
+        if (replaceWithLines.length == 0)
+            return document;
+
+        var pending = new ArrayDeque<Integer>(replaceWithLines.length);
+        Arrays.stream(replaceWithLines).forEach(pending::add);
+
+        var updates = new ArrayList<LineUpdate>();
+        processBlocks(document, lineNumber(document, 1), Integer.MAX_VALUE, pending, updates);
+        source.updateLines(updates);
         return document;
     }
 
@@ -28,36 +46,103 @@ public class ReplaceWithTreeProcessor extends Treeprocessor {
         this.readerPreprocessor = readerPreprocessor;
     }
 
-    private void processBlocks(StructuralNode node) {
-        var iter = node.getBlocks().listIterator();
-        while (iter.hasNext()) {
-            var block = iter.next();
-
-            if (block.getAttributes().containsKey("replace-with")) {
-                if (block instanceof Block) {
-                    // Get ready to play with some numbers
-                    int startIndex;
-                    if (block.getAttributes() == null || block.getAttributes().isEmpty()) {
-                        startIndex = block.getSourceLocation().getLineNumber(); // No attributes
-                    } else {
-                        startIndex = block.getSourceLocation().getLineNumber() - 1; // Get the attributes line too
-                    }
-
-                    // Ending should be wherever it ends plus the attribute line;
-                    var endIndex = startIndex + ((Block) block).getLines().size();
-                    var newBlock = replaceWith(block);
-                    iter.set(newBlock);
-                    this.readerPreprocessor.updateLines(startIndex, endIndex, newBlock.getLines());
-                }
+    /**
+     * Replaces the blocks below the node marked by the pending replace-with lines.
+     * The block marked by a line is the first block starting after it, so a line is taken by the first block starting
+     * after it, and a branch is only visited if a pending line falls between its start and the start of the next one.
+     *
+     * @param node    node to look into
+     * @param start   line the node starts at
+     * @param end     line the next node after this one starts at
+     * @param pending replace-with lines not taken by a block yet, in order
+     * @param updates collects the source lines to replace
+     */
+    private void processBlocks(StructuralNode node, int start, int end, Deque<Integer> pending,
+                               List<LineUpdate> updates) {
+        var blocks = node.getBlocks();
+        var starts = new int[blocks.size()];
+        int previous = start;
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = previous = lineNumber(blocks.get(i), previous);
+        }
+
+        for (int i = 0; i < starts.length && !pending.isEmpty() && pending.peek() < end; i++) {
+            var block = blocks.get(i);
+            int next = i + 1 < starts.length ? starts[i + 1] : end;
+
+            boolean marked = false;
+            while (!pending.isEmpty() && pending.peek() < starts[i]) {
+                pending.poll();
+                marked = true;
+            }
+
+            if (marked && block instanceof Block && block.getAttributes().containsKey("replace-with")) {
+                var newBlock = createBlock((StructuralNode) block.getParent(), "paragraph",
+                        replacementInclude(block.getAttributes()));
+                updates.add(lineUpdate(starts[i], ((Block) block).getLines().size(), block.getAttributes(),
+                        newBlock.getLines()));
+                blocks.set(i, newBlock);
+
+                // Whatever the block contained is gone with it
+                while (!pending.isEmpty() && pending.peek() < next)
+                    pending.poll();
+            } else if (!pending.isEmpty() && pending.peek() < next) {
+                processBlocks(block, starts[i], next, pending, updates);
             }
         }
     }
 
-    private Block replaceWith(StructuralNode origBlock) {
+    /**
+     * Line the node starts at, the fallback if asciidoctor didn't keep its location.
+     */
+    private static int lineNumber(StructuralNode node, int fallback) {
+        var location = node.getSourceLocation();
+        return location == null ? fallback : location.getLineNumber();
+    }
+
+    /**
+     * The include a block marked with {@code replace-with} is replaced by.
+     *
+     * @param attributes attributes of the block
+     * @return include line
+     */
+    public static String replacementInclude(Map<String, Object> attributes) {
         String content = "include::" +
-                         origBlock.getAttributes().get("replace-with") +
-                         "[" + origBlock.getAttributes().get("replace-with-params") + "]";
-        content = Util.fixModuleInclude(content);
-        return createBlock((StructuralNode) origBlock.getParent(), "paragraph", content);
+                         attributes.get("replace-with") +
+                         "[" + attributes.get("replace-with-params") + "]";
+        return Util.fixModuleInclude(content);
+    }
+
+    /**
+     * Replaces the source of a block by other lines, blanking out what is left so later line numbers still match.
+     *
+     * @param source     source of the document
+     * @param lineNumber line of the first line of the block content, starting at 1
+     * @param lineCount  number of lines in the block content
+     * @param attributes attributes of the block, if there are any the attribute line above the block is replaced too
+     * @param content    lines replacing the block
+     */
+    public static void replaceLines(PreprocessedSource source, int lineNumber, int lineCount,
+                                    Map<String, Object> attributes, List<String> content) {
+        source.updateLines(List.of(lineUpdate(lineNumber, lineCount, attributes, content)));
+    }
+
+    /**
+     * The lines of a block to replace, see {@link #replaceLines(PreprocessedSource, int, int, Map, List)}.
+     *
+     * @return lines to replace
+     */
+    public static LineUpdate lineUpdate(int lineNumber, int lineCount, Map<String, Object> attributes, List<String> content) {
+        // Get ready to play with some numbers
+        int startIndex;
+        if (attributes == null || attributes.isEmpty()) {
+            startIndex = lineNumber; // No attributes
+        } else {
+            startIndex = lineNumber - 1; // Get the attributes line too
+        }
+
+        // Ending should be wherever it ends plus the attribute line;
+        var endIndex = startIndex + lineCount;
+        return new LineUpdate(startIndex, endIndex, content);
     }
 }
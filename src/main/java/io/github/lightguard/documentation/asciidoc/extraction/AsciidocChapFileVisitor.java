@@ -8,6 +8,7 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
@@ -16,11 +17,23 @@ import static io.github.lightguard.documentation.asciidoc.extraction.Extractor.T
 public class AsciidocChapFileVisitor extends SimpleFileVisitor<Path> {
     private final List<File> adocFiles;
     private final List<File> ignoredFiles;
+    private final Consumer<File> listener;
     private final Logger logger;
 
     public AsciidocChapFileVisitor(Collection<File> ignoredFiles) {
+        this(ignoredFiles, file -> {});
+    }
+
+    /**
+     * Creates a visitor telling the listener about each asciidoc file as soon as it is found.
+     *
+     * @param ignoredFiles names of the files and directories to skip
+     * @param listener     called with each accepted file, in the order they are found
+     */
+    public AsciidocChapFileVisitor(Collection<File> ignoredFiles, Consumer<File> listener) {
         this.adocFiles = new ArrayList<>();
         this.ignoredFiles = new ArrayList<>(ignoredFiles);
+        this.listener = Objects.requireNonNull(listener);
         this.logger = LogManager.getLogManager().getLogger("");
 
         this.logger.fine("Ignored files/directories: " + ignoredFiles);
@@ -31,42 +44,69 @@ public class AsciidocChapFileVisitor extends SimpleFileVisitor<Path> {
         Objects.requireNonNull(dir);
         Objects.requireNonNull(attrs);
 
+        if (!acceptsDirectory(dir))
+            return FileVisitResult.SKIP_SUBTREE;
+
+        return super.preVisitDirectory(dir, attrs);
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        this.logger.fine("Found file: " + file);
+        if (acceptsFile(file)) {
+            this.adocFiles.add(file.toFile());
+            this.listener.accept(file.toFile());
+        }
+
+        return FileVisitResult.CONTINUE;
+    }
+
+    /**
+     * Checks if the files in a directory should be processed.
+     *
+     * @param dir directory to check
+     * @return false if the directory is ignored
+     */
+    public boolean acceptsDirectory(Path dir) {
         if (this.ignoredFiles.contains(new File(dir.toFile().getName()))) {
             this.logger.fine("Ignoring directory (as asked): " + dir);
-            return FileVisitResult.SKIP_SUBTREE;
+            return false;
         }
 
         if (dir.toFile().toString().contains(TITLES_ENTERPRISE)) {
             this.logger.fine("Ignoring directory (title_enterprise dir): " + dir);
-            return FileVisitResult.SKIP_SUBTREE;
+            return false;
         }
 
-        return super.preVisitDirectory(dir, attrs);
+        return true;
     }
 
-    @Override
-    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-        this.logger.fine("Found file: " + file);
+    /**
+     * Checks if a file is an asciidoc file which should be processed.
+     *
+     * @param file file to check
+     * @return false if the file is ignored
+     */
+    public boolean acceptsFile(Path file) {
         if (this.ignoredFiles.contains(new File(file.toFile().getName()))) {
             this.logger.fine("Ignoring file (as asked): " + file);
-            return FileVisitResult.CONTINUE;
+            return false;
         }
 
         if (!file.getFileName().toString().endsWith(".adoc")
                 && !file.getFileName().toString().endsWith(".ad")
                 && !file.getFileName().toString().endsWith(".asc")) {
             this.logger.fine("Ignoring file (non-adoc file): " + file);
-            return FileVisitResult.CONTINUE;
+            return false;
         }
 
         // Skip symlinks
         if (Files.isSymbolicLink(file)) {
             this.logger.fine("Ignoring symlink: " + file);
-            return FileVisitResult.CONTINUE;
+            return false;
         }
 
-        this.adocFiles.add(file.toFile());
-        return FileVisitResult.CONTINUE;
+        return true;
     }
 
     public List<File> getAdocFiles() {
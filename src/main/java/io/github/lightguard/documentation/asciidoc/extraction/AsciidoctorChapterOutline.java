@@ -0,0 +1,131 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import io.github.lightguard.documentation.asciidoc.Util;
+import io.github.lightguard.documentation.asciidoc.extraction.model.ChapterOutline;
+import io.github.lightguard.documentation.asciidoc.extraction.model.SectionOutline;
+import org.asciidoctor.ast.Document;
+import org.asciidoctor.ast.Section;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * {@link ChapterOutline} of a document loaded by asciidoctor, reading from its AST.
+ * Each call into the AST goes through JRuby and converts what it returns, attribute maps are converted on every
+ * access. So each value is read at most once per section and the attributes are copied into one immutable map, which
+ * all the module detection shares. {@link #getBridgeCalls()} counts the reads which went to the AST.
+ */
+class AsciidoctorChapterOutline implements ChapterOutline {
+    private final Document doc;
+    private List<SectionOutline> sections;
+    private int bridgeCalls;
+
+    AsciidoctorChapterOutline(Document doc) {
+        this.doc = doc;
+    }
+
+    @Override
+    public String getId() {
+        bridgeCalls++;
+        return doc.getId() == null ? doc.getBlocks().get(0).getId() : doc.getId();
+    }
+
+    @Override
+    public String getAttribute(String name, String defaultValue) {
+        bridgeCalls++;
+        return doc.getAttribute(name, defaultValue).toString();
+    }
+
+    @Override
+    public List<SectionOutline> getSections() {
+        if (this.sections == null) {
+            bridgeCalls++;
+            this.sections = doc.findBy(Map.of("context", ":section")).stream()
+                    .map(section -> new AsciidoctorSectionOutline((Section) section))
+                    .collect(Collectors.toUnmodifiableList());
+        }
+        return this.sections;
+    }
+
+    /**
+     * Number of reads from the AST so far, each of them a call through JRuby.
+     *
+     * @return reads from the document and its sections
+     */
+    int getBridgeCalls() {
+        return bridgeCalls;
+    }
+
+    private class AsciidoctorSectionOutline implements SectionOutline {
+        private final Section section;
+        private String id;
+        private int level = -1;
+        private String title;
+        private Map<String, Object> attributes;
+        private int lineNumber = -1;
+
+        AsciidoctorSectionOutline(Section section) {
+            this.section = section;
+        }
+
+        @Override
+        public String getId() {
+            if (this.id == null) {
+                bridgeCalls++;
+                this.id = section.getId();
+            }
+            return this.id;
+        }
+
+        @Override
+        public int getLevel() {
+            if (this.level < 0) {
+                bridgeCalls++;
+                this.level = section.getLevel();
+            }
+            return this.level;
+        }
+
+        @Override
+        public String getTitle() {
+            if (this.title == null) {
+                bridgeCalls++;
+                this.title = section.getTitle();
+            }
+            return this.title;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            if (this.attributes == null) {
+                bridgeCalls++;
+                this.attributes = Collections.unmodifiableMap(new LinkedHashMap<>(section.getAttributes()));
+            }
+            return this.attributes;
+        }
+
+        @Override
+        public int getLineNumber() {
+            if (this.lineNumber < 0) {
+                bridgeCalls++;
+                this.lineNumber = section.getSourceLocation().getLineNumber();
+            }
+            return this.lineNumber;
+        }
+
+        @Override
+        public String getFolder() {
+            bridgeCalls++;
+            return section.getAttribute("splitter-doc-root", "", true).toString();
+        }
+
+        @Override
+        public String getParentFullId() {
+            bridgeCalls++;
+            return Util.getFullId(section.getParent());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import io.github.lightguard.documentation.asciidoc.cli.Issue;
+import io.github.lightguard.documentation.asciidoc.extension.PreprocessedSource;
+import io.github.lightguard.documentation.asciidoc.extension.ReaderPreprocessor;
+import io.github.lightguard.documentation.asciidoc.extension.ReplaceWithTreeProcessor;
+import io.github.lightguard.documentation.asciidoc.extraction.model.Assembly;
+import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.AttributesBuilder;
+import org.asciidoctor.OptionsBuilder;
+import org.asciidoctor.ast.Document;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+/**
+ * An asciidoctor instance with the splitter extensions registered, used to turn chapter files into assemblies.
+ * The extensions keep their state per document, so one instance can parse chapters from several threads at once.
+ */
+public class AsciidoctorChapterParser implements ChapterParser {
+    private final Asciidoctor asciidoctor;
+    private final ReaderPreprocessor preprocessor;
+    private final Map<String, Object> attributes;
+    private final boolean owner;
+    private final Logger logger;
+
+    public AsciidoctorChapterParser(Map<String, Object> attributes) {
+        this.logger = LogManager.getLogManager().getLogger("");
+        this.preprocessor = new ReaderPreprocessor();
+        var replaceWithProcessor = new ReplaceWithTreeProcessor();
+
+        logger.fine("Starting up Asciidoctor");
+        this.asciidoctor = Asciidoctor.Factory.create();
+        this.asciidoctor.javaExtensionRegistry()
+                .preprocessor(this.preprocessor)
+                .treeprocessor(replaceWithProcessor);
+
+        replaceWithProcessor.setReaderPreprocessor(this.preprocessor);
+
+        this.attributes = attributes == null ? Map.of() : attributes;
+        this.owner = true;
+    }
+
+    private AsciidoctorChapterParser(AsciidoctorChapterParser parser, Map<String, Object> attributes) {
+        this.logger = parser.logger;
+        this.preprocessor = parser.preprocessor;
+        this.asciidoctor = parser.asciidoctor;
+        this.attributes = attributes == null ? Map.of() : attributes;
+        this.owner = false;
+    }
+
+    /**
+     * Options to load a document with, tagged with the id its source is kept under by the preprocessor.
+     */
+    private Map<String, Object> options(String sourceId) {
+        var attributes = new HashMap<>(this.attributes);
+        attributes.put(ReaderPreprocessor.SOURCE_ID_ATTRIBUTE, sourceId);
+
+        OptionsBuilder optionsBuilder = OptionsBuilder.options();
+        // We need access to the line numbers and source
+        optionsBuilder.sourcemap(true);
+        optionsBuilder.attributes(AttributesBuilder.attributes().attributes(attributes));
+        return optionsBuilder.asMap();
+    }
+
+    /**
+     * Creates a parser using the same asciidoctor instance with other attributes.
+     * Closing the returned parser does not shut down the instance, this parser still owns it.
+     *
+     * @param attributes attributes for the documents
+     * @return parser sharing this parser's asciidoctor instance
+     */
+    @Override
+    public ChapterParser withAttributes(Map<String, Object> attributes) {
+        return new AsciidoctorChapterParser(this, attributes);
+    }
+
+    @Override
+    public ParsedChapter parse(File file) {
+        logger.fine("Loading file '" + file.getAbsolutePath() + "' into asciidoctor");
+        var start = System.nanoTime();
+        var sourceId = this.preprocessor.newSourceId();
+        Document doc;
+        PreprocessedSource source;
+        try {
+            doc = this.asciidoctor.loadFile(file, options(sourceId));
+            var loc = Paths.get(doc.getSourceLocation().getDir()).getFileName();
+            doc.setAttribute("splitter-doc-root", loc, true);
+            source = this.preprocessor.takeSource(doc);
+        } finally {
+            // The source is kept from the preprocessing on, a failed load would leave it behind
+            this.preprocessor.releaseSource(sourceId);
+        }
+
+        var outline = new AsciidoctorChapterOutline(doc);
+        var loaded = System.nanoTime();
+        var assembly = new Assembly(outline, source.getLineStore(), source.getAssemblyBody());
+        var built = System.nanoTime();
+        logger.fine("Read " + outline.getSections().size() + " sections of '" + file.getName() + "' with "
+                + outline.getBridgeCalls() + " calls into asciidoctor");
+        // The preprocessor runs while asciidoctor loads the file
+        return new ParsedChapter(file, Issue.locationOf(doc), assembly, source.getLineStore().size(),
+                loaded - start - source.getPreprocessNanos(), source.getPreprocessNanos(), built - loaded);
+    }
+
+    /**
+     * Parses a small document, so the first chapter doesn't pay for loading the asciidoctor code.
+     */
+    @Override
+    public void warmUp() {
+        try {
+            var file = Files.createTempFile("splitter-warm-up", ".adoc");
+            try {
+                Files.writeString(file, "= Warm up\n\n[id='warm-up-con_{context}']\n== Warm up\n\nText.\n");
+                parse(file.toFile());
+            } finally {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            logger.warning("Could not warm up Asciidoctor: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.owner)
+            this.asciidoctor.shutdown();
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Turns chapter files into assemblies, see {@link ParserEngine} for the available implementations.
+ * Implementations can parse chapters from several threads at once.
+ */
+public interface ChapterParser extends AutoCloseable {
+
+    /**
+     * Loads the chapter file and builds the assembly, and its modules, from it.
+     *
+     * @param file chapter file to load
+     * @return the loaded chapter and its assembly
+     */
+    ParsedChapter parse(File file);
+
+    /**
+     * Creates a parser sharing whatever this parser has started, using other attributes.
+     * Closing the returned parser does not release anything owned by this parser.
+     *
+     * @param attributes attributes for the documents
+     * @return parser using the attributes
+     */
+    ChapterParser withAttributes(Map<String, Object> attributes);
+
+    /**
+     * Gets the parser ready, so the first chapter doesn't pay for it.
+     */
+    default void warmUp() {
+    }
+
+    @Override
+    void close();
+}
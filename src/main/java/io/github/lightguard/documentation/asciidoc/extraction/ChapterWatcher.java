@@ -0,0 +1,167 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import io.github.lightguard.documentation.asciidoc.extraction.model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the source directory of a task and hands the asciidoc files which changed to an {@link Extractor}, which
+ * has already processed the task.
+ * Changes are collected until none have been seen for the debounce time, so saving several files, or an editor
+ * writing one file in several steps, results in a single update.
+ */
+public class ChapterWatcher implements AutoCloseable {
+    public static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(300);
+
+    private final Extractor extractor;
+    private final Path sourceDirPath;
+    private final Collection<File> ignoreFiles;
+    private final AsciidocChapFileVisitor filter;
+    private final Duration debounce;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirs;
+    private final Logger logger;
+
+    public ChapterWatcher(Extractor extractor, Task task, Duration debounce) throws IOException {
+        this.extractor = extractor;
+        this.sourceDirPath = task.getLocation().getDirectoryPath().normalize();
+        this.ignoreFiles = task.getIgnoreFiles();
+        this.filter = new AsciidocChapFileVisitor(this.ignoreFiles);
+        this.debounce = debounce;
+        this.watchService = this.sourceDirPath.getFileSystem().newWatchService();
+        this.watchedDirs = new ConcurrentHashMap<>();
+        this.logger = LogManager.getLogManager().getLogger("");
+
+        register(this.sourceDirPath, new LinkedHashSet<>());
+    }
+
+    /**
+     * Waits for changes and updates the output, until the watcher is closed or the thread is interrupted.
+     */
+    public void run() {
+        try {
+            while (true) {
+                var changed = new LinkedHashSet<Path>();
+                collect(this.watchService.take(), changed);
+
+                WatchKey key;
+                while ((key = this.watchService.poll(this.debounce.toMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changed);
+                }
+
+                var files = changed.stream()
+                        .filter(this.filter::acceptsFile)
+                        .map(Path::toFile)
+                        .collect(Collectors.toList());
+                if (files.isEmpty())
+                    continue;
+
+                var start = System.nanoTime();
+                var exitCode = this.extractor.update(files);
+                this.logger.info("Updated " + files.size() + " changed files in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms"
+                        + (exitCode != 0 ? ", with errors" : ""));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            this.logger.fine("Stopped watching " + this.sourceDirPath);
+        }
+    }
+
+    /**
+     * Adds the files of the events to the changed files, and starts watching new directories.
+     */
+    private void collect(WatchKey key, Set<Path> changed) {
+        var dir = this.watchedDirs.get(key);
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // Events were lost, treat everything as changed
+                this.logger.warning("Too many changes at once, updating every file");
+                changed.addAll(allFiles());
+                continue;
+            }
+
+            if (dir == null)
+                continue;
+
+            var path = dir.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                register(path, changed);
+            } else {
+                changed.add(path);
+            }
+        }
+
+        if (!key.reset())
+            this.watchedDirs.remove(key);
+    }
+
+    /**
+     * Watches the directory and the directories under it, files already in them are added to the changed files.
+     */
+    private void register(Path dir, Set<Path> changed) {
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (!filter.acceptsDirectory(dir))
+                        return FileVisitResult.SKIP_SUBTREE;
+
+                    logger.fine("Watching directory: " + dir);
+                    watchedDirs.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    changed.add(file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            this.logger.severe("Could not watch directory: " + e.getMessage());
+        }
+    }
+
+    private Set<Path> allFiles() {
+        var walker = new AsciidocChapFileVisitor(this.ignoreFiles);
+        try {
+            Files.walkFileTree(this.sourceDirPath, walker);
+        } catch (IOException e) {
+            this.logger.severe(e.getMessage());
+        }
+        return walker.getAdocFiles().stream().map(File::toPath).collect(Collectors.toSet());
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.watchService.close();
+    }
+}
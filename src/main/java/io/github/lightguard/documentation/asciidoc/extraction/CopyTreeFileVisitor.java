@@ -1,5 +1,7 @@
 package io.github.lightguard.documentation.asciidoc.extraction;
 
+import io.github.lightguard.documentation.asciidoc.extraction.model.OutputTree;
+
 import java.io.IOException;
 import java.nio.file.CopyOption;
 import java.nio.file.FileAlreadyExistsException;
@@ -17,7 +19,6 @@ import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
 import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 /**
  * Basic FileVisitor specialization which copies files.
@@ -26,8 +27,10 @@ public class CopyTreeFileVisitor extends SimpleFileVisitor<Path> {
     final Path targetPath;
     final Path sourcePath;
     final PathMatcher pathMatcher;
+    final OutputTree output;
     private final Logger logger;
     private final Stack<Path> directories;
+    private SplitMetrics metrics;
 
     /**
      * Builds a new instance which copies all files using "glob:*.*" for the matcher.
@@ -37,7 +40,18 @@ public class CopyTreeFileVisitor extends SimpleFileVisitor<Path> {
      * @param targetPath target to copy to
      */
     public CopyTreeFileVisitor(Path sourcePath, Path targetPath) {
-        this(sourcePath, targetPath, "glob:**");
+        this(sourcePath, targetPath, OutputTree.fileSystem());
+    }
+
+    /**
+     * Builds a new instance which copies all files to the given output.
+     *
+     * @param sourcePath source of the copy
+     * @param targetPath target to copy to
+     * @param output     output the target is in
+     */
+    public CopyTreeFileVisitor(Path sourcePath, Path targetPath, OutputTree output) {
+        this(sourcePath, targetPath, "glob:**", output);
     }
 
     /**
@@ -48,6 +62,18 @@ public class CopyTreeFileVisitor extends SimpleFileVisitor<Path> {
      * @param filePatternToCopy passed to the PathMatcher builder, see {@link FileSystem#getPathMatcher} for more information.
      */
     public CopyTreeFileVisitor(Path sourcePath, Path targetPath, String filePatternToCopy) {
+        this(sourcePath, targetPath, filePatternToCopy, OutputTree.fileSystem());
+    }
+
+    /**
+     * Builds a new instance using the supplied value for the path matcher, copying to the given output.
+     *
+     * @param sourcePath        source of the copy
+     * @param targetPath        target to copy to
+     * @param filePatternToCopy passed to the PathMatcher builder, see {@link FileSystem#getPathMatcher} for more information.
+     * @param output            output the target is in
+     */
+    public CopyTreeFileVisitor(Path sourcePath, Path targetPath, String filePatternToCopy, OutputTree output) {
         if (!filePatternToCopy.startsWith("glob:") && !filePatternToCopy.startsWith("regex:")) {
             throw new IllegalArgumentException("Illegal file pattern: " + filePatternToCopy);
         }
@@ -57,6 +83,28 @@ public class CopyTreeFileVisitor extends SimpleFileVisitor<Path> {
         this.logger = LogManager.getLogManager().getLogger("");
         this.pathMatcher = FileSystems.getDefault().getPathMatcher(filePatternToCopy);
         this.directories = new Stack<>();
+        this.output = output;
+    }
+
+    /**
+     * Counts the files copied, and their bytes, in the metrics of a split.
+     *
+     * @param metrics metrics of the split doing the copy
+     */
+    void setMetrics(SplitMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Counts a copied file.
+     *
+     * @param bytes size of the file
+     */
+    void copied(long bytes) {
+        if (this.metrics != null) {
+            this.metrics.add(SplitMetrics.Counter.FILES_COPIED, 1);
+            this.metrics.add(SplitMetrics.Counter.BYTES_COPIED, bytes);
+        }
     }
 
     @Override
@@ -71,14 +119,14 @@ public class CopyTreeFileVisitor extends SimpleFileVisitor<Path> {
 
         // If the dir is a symlink, create the link and move on
         if (Files.isSymbolicLink(dir)) {
-            Files.createSymbolicLink(newDirectory, Files.readSymbolicLink(dir));
+            this.output.createSymbolicLink(newDirectory, Files.readSymbolicLink(dir));
             return FileVisitResult.SKIP_SUBTREE;
         }
 
         try {
-            if (!newDirectory.toFile().exists()) {
+            if (!this.output.exists(newDirectory)) {
                 this.logger.fine("Creating directory: " + newDirectory);
-                Files.createDirectory(newDirectory);
+                this.output.createDirectory(newDirectory);
             }
 
             this.directories.push(newDirectory);
@@ -104,9 +152,8 @@ public class CopyTreeFileVisitor extends SimpleFileVisitor<Path> {
         if (pathMatcher.matches(file)) {
             try {
                 this.logger.fine("Copying file: '" + file + "' to new directory: '" + targetPath.resolve(file.getParent()) + "'");
-                CopyOption[] options = new CopyOption[]{COPY_ATTRIBUTES, REPLACE_EXISTING};
-
-                Files.copy(file, directories.peek().resolve(file.getFileName()), options);
+                this.output.copy(file, directories.peek().resolve(file.getFileName()));
+                copied(attrs.size());
             } catch (IOException x) {
                 logger.severe(String.format("Unable to copy: %s: %s%n", file, x));
             }
@@ -0,0 +1,135 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The threads of the stages of a split, connected by {@link StageQueue}s, so reading, parsing and writing overlap.
+ * Each stage runs on its own thread, failures are kept until the stage is awaited. A stage which fails fails all the
+ * queues, so the stages feeding it or waiting for it stop instead of blocking forever.
+ */
+class ExtractionPipeline {
+    private final int capacity;
+    private final List<StageStats> stages = new ArrayList<>();
+    private final Map<StageStats, Thread> threads = new LinkedHashMap<>();
+    private final Map<StageStats, Throwable> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final List<StageQueue<?>> queues = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param capacity number of items each queue holds before blocking the stage feeding it
+     */
+    ExtractionPipeline(int capacity) {
+        this.capacity = capacity;
+    }
+
+    StageStats stage(String name, int workers) {
+        var stage = new StageStats(name, workers);
+        this.stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Creates the queue feeding a stage.
+     */
+    <T> StageQueue<T> queue(StageStats consumer) {
+        var queue = new StageQueue<T>(this.capacity, consumer);
+        this.queues.add(queue);
+        if (!this.failures.isEmpty())
+            queue.fail();
+        return queue;
+    }
+
+    /**
+     * Runs a stage on a thread of its own.
+     */
+    void start(StageStats stage, StageStats.Work<IOException> body) {
+        var thread = new Thread(() -> {
+            stage.started();
+            try {
+                body.run();
+            } catch (Throwable t) {
+                this.failures.put(stage, t);
+                this.queues.forEach(StageQueue::fail);
+            } finally {
+                stage.finished();
+            }
+        }, "splitter-" + stage.getName());
+        thread.setDaemon(true);
+        this.threads.put(stage, thread);
+        thread.start();
+    }
+
+    /**
+     * Waits for a stage to end, rethrowing what made it fail.
+     */
+    void await(StageStats stage) throws IOException {
+        join(this.threads.get(stage));
+        rethrow(this.failures.get(stage));
+    }
+
+    /**
+     * Waits for all the stages to end, rethrowing the first failure.
+     */
+    void await() throws IOException {
+        for (var thread : this.threads.values())
+            join(thread);
+        for (var stage : this.threads.keySet())
+            rethrow(this.failures.get(stage));
+    }
+
+    /**
+     * Interrupts the stages still running and waits for them to end, their failures are dropped.
+     */
+    void cancel() {
+        this.threads.values().forEach(Thread::interrupt);
+        for (var thread : this.threads.values()) {
+            try {
+                join(thread);
+            } catch (CancellationException e) {
+                // Already cancelling
+            }
+        }
+    }
+
+    /**
+     * Rethrows the first failure of a stage, if a stage failed.
+     */
+    void rethrowFailure() throws IOException {
+        Throwable first;
+        synchronized (this.failures) {
+            first = this.failures.values().stream().findFirst().orElse(null);
+        }
+        rethrow(first);
+    }
+
+    List<StageStats> getStats() {
+        return Collections.unmodifiableList(this.stages);
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Extraction was interrupted");
+        }
+    }
+
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure == null)
+            return;
+        if (failure instanceof IOException)
+            throw (IOException) failure;
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        throw new RuntimeException(failure);
+    }
+}
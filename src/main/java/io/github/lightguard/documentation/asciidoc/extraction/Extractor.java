@@ -2,131 +2,488 @@ package io.github.lightguard.documentation.asciidoc.extraction;
 
 import io.github.lightguard.documentation.asciidoc.Util;
 import io.github.lightguard.documentation.asciidoc.cli.Issue;
-import io.github.lightguard.documentation.asciidoc.extension.ReaderPreprocessor;
-import io.github.lightguard.documentation.asciidoc.extension.ReplaceWithTreeProcessor;
 import io.github.lightguard.documentation.asciidoc.extraction.model.Assembly;
 import io.github.lightguard.documentation.asciidoc.extraction.model.ExtractedModule;
+import io.github.lightguard.documentation.asciidoc.extraction.model.GitRepository;
+import io.github.lightguard.documentation.asciidoc.extraction.model.Location;
+import io.github.lightguard.documentation.asciidoc.extraction.model.OutputTree;
 import io.github.lightguard.documentation.asciidoc.extraction.model.Task;
-import org.asciidoctor.Asciidoctor;
-import org.asciidoctor.AttributesBuilder;
-import org.asciidoctor.OptionsBuilder;
-import org.asciidoctor.ast.Document;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Writer;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
 public class Extractor {
     public static final String TITLES_ENTERPRISE = "titles-enterprise";
     private final List<Assembly> assemblies;
-    private final Set<ExtractedModule> modules;
+    private final ModuleRegistry modules = new ModuleRegistry();
+    private final List<ExtractedModule> unwrittenModules = new ArrayList<>();
     private final List<Issue> issues = new ArrayList<>();
+    private final Set<Path> writtenModulePaths = new HashSet<>();
+    // What each chapter, keyed by its path relative to the source, added so it can be split again
+    private final Map<String, Assembly> chapterAssemblies = new HashMap<>();
+    private final Map<String, List<ExtractedModule>> chapterModules = new HashMap<>();
+    // Modules of the chapters an incremental split skipped, as recorded in the manifest
+    private final Map<String, List<SplitManifest.ModuleRecord>> chapterRecords = new HashMap<>();
+    // Files each chapter includes, so the chapters are split again when one of them changes
+    private final Map<String, Set<Path>> chapterIncludes = new ConcurrentHashMap<>();
+    // An incremental split finds the includes as it hashes the chapters, a full split leaves them to the first update
+    private boolean includesKnown;
+    private final Map<String, List<Path>> chapterOutputs = new HashMap<>();
     private final Task task;
+    private final ChapterParser parser;
+    private final OutputTree output;
     private final Logger logger;
+    private SplitManifest manifest;
+    private Consumer<Issue> issueListener = issue -> {};
+    private final AtomicInteger writtenFileCount = new AtomicInteger();
+    private final SplitMetrics metrics = new SplitMetrics();
+    private List<StageStats> stageStats = Collections.emptyList();
+    private int jobs = 1;
+    private boolean incremental;
+    private ModuleDeduplicator deduplicator;
+    private ParserEngine engine = ParserEngine.ASCIIDOCTOR;
 
     public Extractor(Task task) {
+        this(task, null);
+    }
+
+    /**
+     * Creates an extractor using an already started parser, which is left open.
+     *
+     * @param task   what to split
+     * @param parser parser for the chapter files, if null one is created by the engine for each call
+     */
+    public Extractor(Task task, ChapterParser parser) {
         this.task = task;
+        this.parser = parser;
+        this.output = task.getPushableLocation().getOutputTree();
         this.assemblies = new ArrayList<>();
-        this.modules = new HashSet<>();
         this.logger = LogManager.getLogManager().getLogger("");
     }
 
     /**
      * Process the source.
+     * The output is written to a staging directory next to the output directory and only moved into place once the
+     * split is complete, a failed split leaves the previous output as it was.
      *
      * @return exit code
      */
     public int process() {
-        logger.fine("Starting up Asciidoctor");
-        var preprocessor = new ReaderPreprocessor();
-        var replaceWithProcessor = new ReplaceWithTreeProcessor();
-
-        OptionsBuilder optionsBuilder = OptionsBuilder.options();
-        Asciidoctor asciidoctor = Asciidoctor.Factory.create();
-        asciidoctor.javaExtensionRegistry()
-                .preprocessor(preprocessor)
-                .treeprocessor(replaceWithProcessor);
+        this.metrics.started();
+        final Path sourceDirPath = this.task.getLocation().getDirectoryPath().normalize();
+        final Path outputDirPath = this.task.getPushableLocation().getDirectoryPath().normalize();
 
-        replaceWithProcessor.setReaderPreprocessor(preprocessor);
+        StagedOutput staged = null;
+        boolean committed = false;
+        try {
+            staged = stage(outputDirPath);
+            split(sourceDirPath, staged.getDirectory());
+            staged.commit();
+            committed = true;
+            relocateOutputs(staged);
+        } catch (IOException e) {
+            this.logger.severe(e.getMessage());
+        } finally {
+            if (staged != null && !committed) {
+                this.logger.severe("The split did not complete, the previous output was kept");
+                staged.discard();
+            }
+        }
 
-        // We need access to the line numbers and source
-        optionsBuilder.sourcemap(true);
-        optionsBuilder.attributes(AttributesBuilder.attributes().attributes(task.getAttributes()));
+        long errors = this.issues.stream().filter(Issue::isError).count();
 
-        final Path sourceDirPath = this.task.getLocation().getDirectoryPath().normalize();
-        final Path targetDirPath = this.task.getPushableLocation().getDirectoryPath().normalize();
+        if (this.deduplicator != null) {
+            this.logger.info("Deduplicated " + this.deduplicator.getDuplicateCount() + " modules, "
+                    + this.deduplicator.getUniqueCount() + " distinct modules");
+        }
 
         try {
-            var walker = new AsciidocChapFileVisitor(task.getIgnoreFiles());
-            Files.walkFileTree(sourceDirPath, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, walker);
+            this.task.getPushableLocation().close();
+        } catch (Exception e) {
+            this.logger.severe(e.getMessage());
+        }
+        recordGitTimes(this.task.getLocation());
+        recordGitTimes(this.task.getPushableLocation());
+        this.metrics.finished();
+        this.logger.info("Split " + this.metrics);
+        this.logger.warning("Found " + this.issues.size() + " issues. " + errors + " Errors.");
+
+        // We want to tell the script that there were errors and not to push
+        if (errors > 0 || !committed)
+            return -1;
 
-            this.logger.info("Processing files: " + walker.getAdocFiles());
+        return 0;
+    }
+
+    /**
+     * Splits the source into the target directory.
+     */
+    private void split(Path sourceDirPath, Path targetDirPath) throws IOException {
+        var pipeline = new ExtractionPipeline(queueCapacity());
+        try {
+            var previousManifest = this.incremental ? SplitManifest.load(this.output, targetDirPath) : new SplitManifest();
+            this.manifest = new SplitManifest();
+            this.includesKnown = this.incremental;
+            var unchanged = new AtomicInteger();
+
+            var walk = pipeline.stage("walk", 1);
+            var read = pipeline.stage("read", 1);
+            var assets = pipeline.stage("assets", 1);
+            StageQueue<File> files = pipeline.queue(read);
+
+            // Assets only go to their own directories, so they are copied while the chapters are split
+            var assetIssues = Collections.synchronizedList(new ArrayList<Issue>());
+            pipeline.start(assets, () -> {
+                var start = System.nanoTime();
+                copyAssets(sourceDirPath, targetDirPath, assetIssues::add);
+                assets.record(start);
+            });
+
+            pipeline.start(walk, () -> {
+                try {
+                    var start = System.nanoTime();
+                    var walker = new AsciidocChapFileVisitor(task.getIgnoreFiles(), files::put);
+                    Files.walkFileTree(sourceDirPath, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, walker);
+                    walk.record(start);
+                    this.metrics.record(SplitMetrics.Phase.WALK, start);
+                    this.metrics.add(SplitMetrics.Counter.FILES, walker.getAdocFiles().size());
+
+                    this.logger.info("Processing files: " + walker.getAdocFiles());
+                } finally {
+                    files.close();
+                }
+            });
 
-            for (File file : walker.getAdocFiles()) {
+            int split = splitChapters(pipeline, read, files, file -> {
                 // We only want to process chap files, others should be moved to modules.
-                if (!file.getName().startsWith("chap-") && !file.getName().startsWith("assembly-")) {
-                    try {
-                        this.logger.fine("Copying non chap- file '" + file + "' to modules directory");
-                        Path modulesDir = Files.createDirectories(targetDirPath.resolve("modules"));
-                        Files.copy(file.toPath(), modulesDir.resolve(file.getName()),
-                                StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
-                    } catch (IOException e) {
-                        this.logger.severe("Could not move non chapter file: " + e.getMessage());
-                    }
-                    continue;
+                if (!isChapter(file)) {
+                    copyToModules(file, targetDirPath);
+                    return null;
+                }
+
+                var chapterKey = chapterKey(sourceDirPath, file);
+                if (!this.incremental)
+                    return new PendingChapter(file, null);
+
+                var includes = new HashSet<Path>();
+                var hash = SplitManifest.hash(file.toPath(), task, includes);
+                this.chapterIncludes.put(chapterKey, includes);
+                if (previousManifest.isUpToDate(chapterKey, hash, this.output, targetDirPath)) {
+                    this.logger.fine("Chapter '" + file + "' is unchanged since the last split, skipping");
+                    return PendingChapter.unchanged(file);
                 }
+                return new PendingChapter(file, hash);
+            }, chapter -> {
+                var chapterKey = chapterKey(sourceDirPath, chapter.file);
+                this.manifest.carryOver(chapterKey, previousManifest);
+                var outputs = previousManifest.getOutputs(chapterKey).stream()
+                        .map(targetDirPath::resolve)
+                        .collect(Collectors.toList());
+                this.chapterOutputs.put(chapterKey, outputs);
+
+                // The modules are still registered, so the chapters split again are checked against them
+                final int knownIssues = this.issues.size();
+                var records = previousManifest.getModules(chapterKey);
+                records.forEach(module -> this.modules.register(module, chapter.file.toString(), this::addIssue));
+                this.chapterRecords.put(chapterKey, records);
+                this.writtenModulePaths.addAll(outputs);
+                if (this.issues.size() > knownIssues)
+                    this.manifest.markClashed(chapterKey);
+                unchanged.incrementAndGet();
+            }, sourceDirPath, targetDirPath);
+
+            pipeline.await();
+            assetIssues.forEach(this::addIssue);
+
+            if (this.incremental) {
+                deleteRemovedChapters(previousManifest, targetDirPath);
+                this.logger.info("Split " + split + " changed chapters, skipped " + unchanged
+                        + " unchanged chapters");
+                this.manifest.save(this.output, targetDirPath);
+            }
+
+            // create symlinks in assemblies
+            var start = System.nanoTime();
+            createAssemblySymlinks(sourceDirPath, targetDirPath);
+            this.metrics.record(SplitMetrics.Phase.SYMLINKS, start);
+        } finally {
+            recordStageStats(pipeline);
+        }
+    }
+
+    /**
+     * Deletes the output of the chapters in the previous manifest which weren't split or skipped this time, because
+     * they were removed or are now ignored. Files which a current chapter claims are kept.
+     */
+    private void deleteRemovedChapters(SplitManifest previousManifest, Path targetDirPath) {
+        var current = new HashSet<Path>();
+        this.chapterOutputs.values().forEach(current::addAll);
+
+        for (var chapterKey : previousManifest.getChapters()) {
+            if (this.manifest.getChapters().contains(chapterKey))
+                continue;
+
+            this.logger.info("Chapter '" + chapterKey + "' was removed, deleting its output");
+            previousManifest.getOutputs(chapterKey).stream()
+                    .map(targetDirPath::resolve)
+                    .filter(output -> !current.contains(output))
+                    .forEach(output -> {
+                        try {
+                            logger.fine("Deleting output of removed chapter: " + output);
+                            this.output.deleteIfExists(output);
+                        } catch (IOException e) {
+                            logger.severe("Could not delete output of removed chapter: " + e.getMessage());
+                        }
+                    });
+        }
+    }
 
-                logger.fine("Loading file '" + file.getAbsolutePath() + "' into asciidoctor");
-                var doc = asciidoctor.loadFile(file, optionsBuilder.asMap());
-                var loc = Paths.get(doc.getSourceLocation().getDir()).getFileName();
-                doc.setAttribute("splitter-doc-root", loc, true);
-                var lines = preprocessor.getLines();
+    private StagedOutput stage(Path outputDirPath) throws IOException {
+        if (!this.task.getPushableLocation().isStaged() || outputDirPath.getParent() == null)
+            return StagedOutput.inPlace(outputDirPath);
+        return StagedOutput.stage(outputDirPath);
+    }
 
-                findSections(doc, lines, preprocessor.getAssemblyBody());
+    /**
+     * Points the recorded outputs of the chapters at the output directory, instead of the staging directory they
+     * were written to.
+     */
+    private void relocateOutputs(StagedOutput staged) {
+        this.chapterOutputs.replaceAll((chapterKey, outputs) -> outputs.stream()
+                .map(staged::relocate)
+                .collect(Collectors.toList()));
+
+        var written = new ArrayList<>(this.writtenModulePaths);
+        this.writtenModulePaths.clear();
+        written.forEach(path -> this.writtenModulePaths.add(staged.relocate(path)));
+    }
 
-                writeModules(targetDirPath);
-                writeAssemblies(targetDirPath);
+    /**
+     * Splits changed files again, after {@link #process()} has run.
+     * Changed chapters replace everything they produced before, output which the chapter no longer produces is
+     * deleted. Other asciidoc files are copied to the modules directory again, or deleted from it if they were
+     * removed, and the chapters including them are split again.
+     *
+     * @param changedFiles files which were changed, added or removed in the source
+     * @return exit code for the issues found in the changed files
+     */
+    public int update(Collection<File> changedFiles) {
+        final Path sourceDirPath = this.task.getLocation().getDirectoryPath().normalize();
+        final Path targetDirPath = this.task.getPushableLocation().getDirectoryPath().normalize();
+        final int knownIssues = this.issues.size();
+
+        var chapters = new ArrayList<File>();
+        var chapterHashes = new HashMap<File, String>();
+        var previousOutputs = new HashMap<String, List<Path>>();
+
+        if (!this.includesKnown) {
+            this.chapterOutputs.keySet().forEach(chapterKey -> {
+                var chapterFile = sourceDirPath.resolve(chapterKey);
+                if (Files.exists(chapterFile))
+                    this.chapterIncludes.put(chapterKey, SplitManifest.includes(chapterFile, this.task));
+            });
+            this.includesKnown = true;
+        }
+
+        var changedChapters = new LinkedHashMap<String, File>();
+        for (File file : changedFiles) {
+            if (isChapter(file)) {
+                changedChapters.putIfAbsent(chapterKey(sourceDirPath, file), file);
+                continue;
             }
 
-            // Create the _images and _artifacts directories
-            createAndCopyDir(sourceDirPath.resolve("_artifacts"), targetDirPath);
-            createAndCopyDir(sourceDirPath.resolve("_images"), targetDirPath);
+            if (file.exists())
+                copyToModules(file, targetDirPath);
+            else
+                deleteFromModules(file, targetDirPath);
+
+            var included = file.toPath().toAbsolutePath().normalize();
+            this.chapterIncludes.forEach((chapterKey, includes) -> {
+                if (includes.contains(included)) {
+                    this.logger.fine("Chapter '" + chapterKey + "' includes changed file '" + file + "'");
+                    changedChapters.putIfAbsent(chapterKey, sourceDirPath.resolve(chapterKey).toFile());
+                }
+            });
+        }
 
-            // Create and setup titles-enterprise folder, if necessary
-            if (!Files.exists(targetDirPath.resolve(TITLES_ENTERPRISE))) {
-                logger.info("Copying files from " + TITLES_ENTERPRISE);
-                moveTitles(sourceDirPath.resolve(TITLES_ENTERPRISE), targetDirPath);
-            } else {
-                logger.info(TITLES_ENTERPRISE + " exists in output already, ignoring copy");
+        changedChapters.forEach((chapterKey, file) -> {
+            previousOutputs.put(chapterKey, forgetChapter(chapterKey));
+
+            if (!file.exists()) {
+                this.logger.info("Chapter '" + file + "' was removed, deleting its output");
+                this.chapterIncludes.remove(chapterKey);
+                if (this.incremental)
+                    this.manifest.forget(chapterKey);
+                return;
             }
 
-            // create symlinks in assemblies
-            createAssemblySymlinks(sourceDirPath, targetDirPath);
+            var includes = new HashSet<Path>();
+            if (this.incremental)
+                chapterHashes.put(file, SplitManifest.hash(file.toPath(), task, includes));
+            else
+                includes.addAll(SplitManifest.includes(file.toPath(), task));
+            this.chapterIncludes.put(chapterKey, includes);
+            chapters.add(file);
+        });
+
+        this.logger.info("Splitting changed files: " + chapters);
+        var pipeline = new ExtractionPipeline(queueCapacity());
+        try {
+            var changes = pipeline.stage("changes", 1);
+            var read = pipeline.stage("read", 1);
+            StageQueue<File> files = pipeline.queue(read);
+            pipeline.start(changes, () -> {
+                try {
+                    chapters.forEach(files::put);
+                } finally {
+                    files.close();
+                }
+            });
+
+            splitChapters(pipeline, read, files, file -> new PendingChapter(file, chapterHashes.get(file)),
+                    chapter -> {}, sourceDirPath, targetDirPath);
+            pipeline.await();
         } catch (IOException e) {
             this.logger.severe(e.getMessage());
+        } finally {
+            recordStageStats(pipeline);
         }
 
-        long errors = this.issues.stream().filter(Issue::isError).count();
+        // Whatever the previous split wrote and this one didn't is stale
+        previousOutputs.forEach((chapterKey, outputs) -> {
+            var current = this.chapterOutputs.getOrDefault(chapterKey, Collections.emptyList());
+            outputs.stream()
+                    .filter(output -> !current.contains(output) && !this.writtenModulePaths.contains(output))
+                    .forEach(output -> {
+                        try {
+                            logger.fine("Deleting stale output: " + output);
+                            this.output.deleteIfExists(output);
+                        } catch (IOException e) {
+                            logger.severe("Could not delete stale output: " + e.getMessage());
+                        }
+                    });
+        });
 
-        try {
-            this.task.getPushableLocation().close();
-        } catch (Exception e) {
-            this.logger.severe(e.getMessage());
+        if (this.incremental) {
+            try {
+                this.manifest.save(this.output, targetDirPath);
+            } catch (IOException e) {
+                this.logger.severe(e.getMessage());
+            }
         }
-        this.logger.warning("Found " + this.issues.size() + " issues. " + errors + " Errors.");
 
-        // We want to tell the script that there were errors and not to push
+        var newIssues = this.issues.subList(knownIssues, this.issues.size());
+        long errors = newIssues.stream().filter(Issue::isError).count();
+        this.logger.warning("Found " + newIssues.size() + " issues. " + errors + " Errors.");
+
         if (errors > 0)
             return -1;
 
         return 0;
     }
 
+    private static boolean isChapter(File file) {
+        return file.getName().startsWith("chap-") || file.getName().startsWith("assembly-");
+    }
+
+    private void copyToModules(File file, Path targetDirPath) {
+        try {
+            this.logger.fine("Copying non chap- file '" + file + "' to modules directory");
+            Path modulesDir = targetDirPath.resolve("modules");
+            this.output.createDirectories(modulesDir);
+            this.output.copy(file.toPath(), modulesDir.resolve(file.getName()));
+            this.metrics.add(SplitMetrics.Counter.FILES_COPIED, 1);
+            this.metrics.add(SplitMetrics.Counter.BYTES_COPIED, file.length());
+        } catch (IOException e) {
+            this.logger.severe("Could not move non chapter file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the copy of a removed file from the modules directory, unless a module was written to it.
+     */
+    private void deleteFromModules(File file, Path targetDirPath) {
+        var copy = targetDirPath.resolve("modules").resolve(file.getName());
+        if (this.writtenModulePaths.contains(copy))
+            return;
+
+        try {
+            this.logger.fine("Deleting copy of removed file '" + file + "' from modules directory");
+            this.output.deleteIfExists(copy);
+        } catch (IOException e) {
+            this.logger.severe("Could not delete copy of removed file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Registers the parsed chapter and renders what it added for the write stage.
+     *
+     * @param hash    hash of the chapter for the manifest, only used for incremental splits
+     * @param writer  write stage, creating the output directories
+     * @param outputs takes the rendered files
+     */
+    private void splitChapter(ParsedChapter chapter, Path sourceDirPath, Path targetDirPath, String hash,
+                              OutputWriter writer, Consumer<OutputFile> outputs) {
+        var chapterKey = chapterKey(sourceDirPath, chapter.getFile());
+        final int knownIssues = this.issues.size();
+        var assembly = findSections(chapter);
+        var clashed = this.issues.size() > knownIssues;
+        this.chapterAssemblies.put(chapterKey, assembly);
+        var registered = new ArrayList<>(this.unwrittenModules);
+        this.chapterModules.put(chapterKey, registered);
+
+        // Only write what this chapter added, everything before it is already on disk
+        var written = new ArrayList<>(renderModules(targetDirPath, writer, outputs));
+        renderAssembly(targetDirPath, assembly, writer, outputs).ifPresent(written::add);
+        this.chapterOutputs.put(chapterKey, written);
+
+        if (this.incremental) {
+            this.manifest.record(chapterKey, hash,
+                    written.stream().map(p -> targetDirPath.relativize(p).toString()).collect(Collectors.toList()),
+                    registered.stream().map(SplitManifest.ModuleRecord::of).collect(Collectors.toList()),
+                    clashed);
+        }
+    }
+
+    /**
+     * Unregisters the assembly and modules of a chapter, so it can be split again.
+     *
+     * @return the files written for the chapter
+     */
+    private List<Path> forgetChapter(String chapterKey) {
+        var assembly = this.chapterAssemblies.remove(chapterKey);
+        if (assembly != null)
+            this.assemblies.remove(assembly);
+
+        var chapterModules = this.chapterModules.remove(chapterKey);
+        if (chapterModules != null)
+            this.modules.removeAll(chapterModules);
+
+        var records = this.chapterRecords.remove(chapterKey);
+        if (records != null)
+            this.modules.removeRecorded(records);
+
+        var outputs = this.chapterOutputs.remove(chapterKey);
+        if (outputs == null)
+            return Collections.emptyList();
+
+        this.writtenModulePaths.removeAll(outputs);
+        return outputs;
+    }
+
     /**
      * Create symlinks in assemblies directory for ccutils to run correctly
      *
@@ -139,8 +496,8 @@ public class Extractor {
 
         try {
             // Create symlinks for modules, _artifacts, and _images
-            if (Files.notExists(assembliesDir.resolve("modules"))) // We only need this once
-                Files.createSymbolicLink(assembliesDir.resolve("modules"),
+            if (!this.output.exists(assembliesDir.resolve("modules"))) // We only need this once
+                this.output.createSymbolicLink(assembliesDir.resolve("modules"),
                         assembliesDir.relativize(targetDirPath.resolve("modules")));
         } catch (FileAlreadyExistsException e) {
             this.logger.info("Symlink 'modules' already exists, continuing, please verify.");
@@ -150,7 +507,7 @@ public class Extractor {
 
         try {
             if (Files.exists(sourceDirPath.resolve("_artifacts")))
-                Files.createSymbolicLink(assembliesDir.resolve("_artifacts"),
+                this.output.createSymbolicLink(assembliesDir.resolve("_artifacts"),
                         assembliesDir.relativize(targetDirPath.resolve("_artifacts")));
         } catch (FileAlreadyExistsException e) {
             this.logger.info("Symlink '_artifacts' already exists, continuing, please verify.");
@@ -160,12 +517,12 @@ public class Extractor {
 
         try {
             if (Files.exists(sourceDirPath.resolve("_images"))) {
-                Files.createSymbolicLink(assembliesDir.resolve("_images"),
+                this.output.createSymbolicLink(assembliesDir.resolve("_images"),
                         assembliesDir.relativize(targetDirPath.resolve("_images")));
 
                 // Add it for modules too
                 var modulesDir = assembliesDir.resolve("../modules");
-                Files.createSymbolicLink(modulesDir.resolve("_images"),
+                this.output.createSymbolicLink(modulesDir.resolve("_images"),
                         modulesDir.relativize(targetDirPath.resolve("_images")));
             }
         } catch (FileAlreadyExistsException e) {
@@ -176,108 +533,409 @@ public class Extractor {
     }
 
     /**
-     * returns true if all went well. false if there was some problem with
-     * uniqueness.
+     * Runs the files taken from the queue through the read, parse, render and write stages.
+     * Chapters are parsed by {@link #jobs} workers sharing the one parser, and rendered on the calling thread in the
+     * order of the files so the output matches a sequential run. Writing overlaps with the rendering of the next
+     * chapters.
+     *
+     * @param readStage stage reading the files, its thread is started here
+     * @param files     files to split, closed once all files are in
+     * @param read      what the read stage does with a file, returns the chapter to split or null to skip the file
+     * @param carryOver called, on the calling thread and in order, for chapters which are unchanged
+     * @return number of chapters split
+     */
+    private int splitChapters(ExtractionPipeline pipeline, StageStats readStage, StageQueue<File> files,
+                              ChapterReader read, Consumer<PendingChapter> carryOver,
+                              Path sourceDirPath, Path targetDirPath) throws IOException {
+        var parseStage = pipeline.stage("parse", this.jobs);
+        var renderStage = pipeline.stage("render", 1);
+        var writeStage = pipeline.stage("write", 1);
+        StageQueue<PendingChapter> pending = pipeline.queue(renderStage);
+        StageQueue<OutputFile> outputs = pipeline.queue(writeStage);
+
+        var parser = this.parser != null ? this.parser : createParser();
+        var executor = Executors.newFixedThreadPool(this.jobs);
+        parseStage.started();
+        renderStage.started();
+        try {
+            pipeline.start(readStage, () -> {
+                try {
+                    File file;
+                    while ((file = files.take()) != null) {
+                        var start = System.nanoTime();
+                        var chapter = read.read(file);
+                        if (chapter != null && !chapter.unchanged) {
+                            var chapterFile = file;
+                            chapter.parsed = executor.submit(() -> {
+                                var parseStart = System.nanoTime();
+                                try {
+                                    var parsed = parser.parse(chapterFile);
+                                    recordParse(parsed);
+                                    return parsed;
+                                } finally {
+                                    parseStage.record(parseStart);
+                                }
+                            });
+                        }
+                        readStage.record(start);
+                        this.metrics.record(SplitMetrics.Phase.READ, start);
+
+                        if (chapter != null)
+                            pending.put(chapter);
+                    }
+                } finally {
+                    pending.close();
+                }
+            });
+
+            var writer = new OutputWriter(this.output, this.task.getRewriteRules(), this.writtenFileCount,
+                    this.metrics);
+            pipeline.start(writeStage, () -> writer.run(outputs, writeStage));
+
+            int split = 0;
+            boolean rendered = false;
+            try {
+                PendingChapter chapter;
+                while ((chapter = pending.take()) != null) {
+                    if (chapter.unchanged) {
+                        carryOver.accept(chapter);
+                        continue;
+                    }
+
+                    var parsed = result(chapter.parsed);
+                    var start = System.nanoTime();
+                    splitChapter(parsed, sourceDirPath, targetDirPath, chapter.hash, writer, outputs::put);
+                    renderStage.record(start);
+                    this.metrics.record(SplitMetrics.Phase.RENDER, start);
+                    split++;
+                }
+                rendered = true;
+                outputs.close();
+                pipeline.await(readStage);
+                pipeline.await(writeStage);
+                writer.getIssues().forEach(this::addIssue);
+            } catch (RuntimeException | IOException e) {
+                // A failure abandons the writes still queued, the interrupted write stage stops at the next file.
+                // Unlike a sequential split, not everything rendered before the failure is written, the staged
+                // output is discarded anyway.
+                if (!rendered)
+                    outputs.close();
+                pipeline.cancel();
+                // Stopped by a failed queue, what failed is the stage which failed it
+                if (e instanceof CancellationException)
+                    pipeline.rethrowFailure();
+                throw e;
+            }
+            return split;
+        } finally {
+            renderStage.finished();
+            parseStage.finished();
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (parser != this.parser)
+                parser.close();
+        }
+    }
+
+    /**
+     * Creates the parser of the engine, for asciidoctor this is where JRuby starts.
+     */
+    private ChapterParser createParser() {
+        var start = System.nanoTime();
+        var parser = this.engine.create(task.getAttributes());
+        this.metrics.record(SplitMetrics.Phase.PARSER_START, start);
+        return parser;
+    }
+
+    private void recordParse(ParsedChapter chapter) {
+        this.metrics.add(SplitMetrics.Phase.LOAD, chapter.getLoadNanos());
+        this.metrics.add(SplitMetrics.Phase.PREPROCESS, chapter.getPreprocessNanos());
+        this.metrics.add(SplitMetrics.Phase.ASSEMBLY, chapter.getAssemblyNanos());
+        this.metrics.add(SplitMetrics.Counter.CHAPTERS, 1);
+        this.metrics.add(SplitMetrics.Counter.LINES, chapter.getLineCount());
+    }
+
+    /**
+     * Adds the time spent cloning and pushing, if the location is a git repository.
      */
-    private void findSections(Document doc, List<String> lines, StringBuilder processedBody) {
-        var assembly = new Assembly(doc, lines, processedBody);
+    private void recordGitTimes(Location location) {
+        if (!(location instanceof GitRepository))
+            return;
+        var repository = (GitRepository) location;
+        if (repository.getCloneNanos() > 0)
+            this.metrics.add(SplitMetrics.Phase.CLONE, repository.getCloneNanos());
+        if (repository.getPushNanos() > 0)
+            this.metrics.add(SplitMetrics.Phase.PUSH, repository.getPushNanos());
+    }
+
+    private static ParsedChapter result(Future<ParsedChapter> parsed) {
+        try {
+            return parsed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Each queue holds enough items to keep all the parse workers busy.
+     */
+    private int queueCapacity() {
+        return Math.max(16, 2 * this.jobs);
+    }
+
+    private void recordStageStats(ExtractionPipeline pipeline) {
+        this.stageStats = pipeline.getStats();
+        this.metrics.setStages(this.stageStats);
+        this.stageStats.forEach(stage -> this.logger.info("Stage " + stage));
+    }
+
+    private static String chapterKey(Path sourceDirPath, File file) {
+        return sourceDirPath.relativize(file.toPath().toAbsolutePath().normalize()).toString()
+                .replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Registers the assembly of the parsed chapter and its modules.
+     * Modules which clash with an already registered module are reported as an issue, see {@link ModuleRegistry}.
+     *
+     * @return the assembly found in the chapter
+     */
+    private Assembly findSections(ParsedChapter chapter) {
+        var assembly = chapter.getAssembly();
         logger.fine("Found assembly: " + assembly.toString());
 
         this.assemblies.add(assembly);
         for (var module : assembly.getModules()) {
-            if (!this.modules.add(module)) {
-                var duplicate = this.modules.stream().filter(m -> m.equals(module)).findFirst();
-                addIssue(Issue.error("Module with non-unique id. " + module + " is a duplicate of " + duplicate, doc));
-            }
+            var location = chapter.getFile() + ": line " + module.getSection().getLineNumber();
+            if (this.modules.register(module, location, this::addIssue))
+                this.unwrittenModules.add(module);
+        }
+        return assembly;
+    }
+
+    /**
+     * Sets the number of chapter files parsed in parallel, defaults to one.
+     *
+     * @param jobs number of parallel jobs
+     */
+    public void setJobs(int jobs) {
+        if (jobs < 1) {
+            throw new IllegalArgumentException("jobs must be at least 1");
         }
-        // We should have all the assemblies, and all of their modules now
+        this.jobs = jobs;
+    }
+
+    /**
+     * Enables skipping chapters which haven't changed since the last split into the same output.
+     * A {@link SplitManifest} is kept in the output to know what has changed.
+     *
+     * @param incremental true to only split changed chapters
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Enables writing modules with the same title and body as an already written module only once, the assemblies
+     * include the first of them instead. Only for full splits, changing a chapter could change or remove the module
+     * the assemblies of other chapters include.
+     *
+     * @param deduplicate true to write identical modules once
+     */
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicator = deduplicate ? new ModuleDeduplicator() : null;
+    }
+
+    /**
+     * Number of modules which weren't written because an identical module was.
+     *
+     * @return count of duplicate modules, 0 unless deduplicating
+     */
+    public int getDeduplicatedModuleCount() {
+        return this.deduplicator == null ? 0 : this.deduplicator.getDuplicateCount();
+    }
+
+    /**
+     * Sets the engine parsing the chapter files when no parser was given, defaults to asciidoctor.
+     *
+     * @param engine engine to parse the chapters with
+     */
+    public void setEngine(ParserEngine engine) {
+        this.engine = Objects.requireNonNull(engine);
+    }
+
+    /**
+     * Sets a listener called with each issue as it is found, in addition to it being logged.
+     *
+     * @param issueListener called with every issue
+     */
+    public void setIssueListener(Consumer<Issue> issueListener) {
+        this.issueListener = Objects.requireNonNull(issueListener);
+    }
+
+    /**
+     * Number of module and assembly files written so far in this run.
+     *
+     * @return count of written files
+     */
+    public int getWrittenFileCount() {
+        return writtenFileCount.get();
+    }
+
+    /**
+     * How busy each stage of the last run was.
+     *
+     * @return stats of the stages, in the order they were created
+     */
+    public List<StageStats> getStageStats() {
+        return stageStats;
+    }
+
+    /**
+     * Where the time of the runs so far went and how much they read and wrote.
+     *
+     * @return metrics of the runs
+     */
+    public SplitMetrics getMetrics() {
+        return metrics;
     }
 
     private void addIssue(Issue error) {
         this.logger.severe(error.toString());
         this.issues.add(error);
+        this.issueListener.accept(error);
     }
 
-    private void writeAssemblies(Path outputDirectory) {
-        this.assemblies.forEach(a -> {
-            try {
-                // Create any directories that need to be created
-                Path assembliesDir = Files
-                        .createDirectories(outputDirectory.resolve("assemblies"));
-
-                if (a.shouldCreateAssembly()) {
-                    var outputFile = assembliesDir.resolve(a.getFilename());
-                    logger.fine("Writing assembly file: " + outputFile);
-                    try (Writer output = new FileWriter(outputFile.toFile())) {
-                        // TODO: We could search the source for parent-context and add if necessary
-                        //       Disabling for now.
-                        if (task.isPv2())
-                            output.append(Util.fixForPv2(a.getSource()));
-                        else
-                            output.append(Util.tweakSource(a.getSource()));
-                    }
-                }
-            } catch (IOException e) {
-                logger.severe("Error writing assembly (" + a + "): " + e.getMessage());
-                throw new RuntimeException(e);
-            }
-        });
+    private Optional<Path> renderAssembly(Path outputDirectory, Assembly a, OutputWriter writer,
+                                          Consumer<OutputFile> outputs) {
+        Path assembliesDir = createOutputDirectory(writer, outputDirectory.resolve("assemblies"));
+        if (a.shouldCreateAssembly()) {
+            var outputFile = assembliesDir.resolve(a.getFilename());
+            logger.fine("Writing assembly file: " + outputFile);
+            // TODO: We could search the source for parent-context and add if necessary
+            //       Disabling for now.
+            var source = this.deduplicator == null
+                    ? a.getSource()
+                    : this.deduplicator.pointIncludesAtCanonicalModules(a.getSource());
+            var content = task.isPv2() ? Util.fixForPv2(source) : Util.tweakSource(source);
+            outputs.accept(new OutputFile(outputFile, content, a));
+            this.metrics.add(SplitMetrics.Counter.ASSEMBLIES, 1);
+            return Optional.of(outputFile);
+        }
+        return Optional.empty();
     }
 
-    private void writeModules(Path targetDirectory) {
-        // Create the modules directory and write the files
+    /**
+     * Renders the modules registered since the last call, each module is only written once.
+     *
+     * @param targetDirectory root of the output
+     * @param writer          write stage, creating the output directories
+     * @param outputs         takes the rendered modules
+     * @return the files to be written
+     */
+    private List<Path> renderModules(Path targetDirectory, OutputWriter writer, Consumer<OutputFile> outputs) {
+        var rendered = new ArrayList<Path>();
+        Path modulesDir = createOutputDirectory(writer, targetDirectory.resolve("modules"));
         try {
-            // Create the output directories
-            Path modulesDir = Files.createDirectories(targetDirectory.resolve("modules"));
-            Set<Path> visitedPaths = new HashSet<>();
-
-            for (ExtractedModule module : this.modules) {
-                // Create output file
-                Path topicFolder = Files.createDirectories(modulesDir.resolve(module.getFolder()));
-                Path moduleOutputFile = Paths.get(topicFolder.toString(), module.getFileName());
-
-                if (moduleOutputFile.toFile().exists()) {
-                    if (visitedPaths.contains(moduleOutputFile)) {
-                        this.logger.severe("Already written to this file: " + moduleOutputFile + " for " + module);
-                        return;
-                    }
-                } else {
-                    moduleOutputFile = Files.createFile(moduleOutputFile);
+            for (ExtractedModule module : this.unwrittenModules) {
+                if (this.deduplicator != null && this.deduplicator.isDuplicate(module)) {
+                    this.logger.fine("Not writing " + module + ", it is identical to an already written module");
+                    continue;
                 }
-                visitedPaths.add(moduleOutputFile);
 
-                logger.fine("Writing module file: " + moduleOutputFile);
+                Path moduleOutputFile = modulesDir.resolve(module.getFolder()).resolve(module.getFileName());
 
-                // Output the module
-                try (Writer output = new FileWriter(moduleOutputFile.toFile())) {
-                    output
-                            // Adding the id of the module
-                            .append("[id='").append(module.getId()).append("_{context}']\n")
-                            // Adding the section title
-                            .append("= ").append(module.getSection().getTitle()).append("\n");
-                    if (task.isPv2())
-                        output.append(":imagesdir: ../_images\n");
-
-                    output.append(module.getSource());
+                // Each output path is only written once per run, the first module to claim it wins
+                if (!this.writtenModulePaths.add(moduleOutputFile)) {
+                    this.logger.severe("Already written to this file: " + moduleOutputFile + " for " + module);
+                    continue;
                 }
+
+                logger.fine("Writing module file: " + moduleOutputFile);
+
+                var header = new StringBuilder()
+                        // Adding the id of the module
+                        .append("[id='").append(module.getId()).append("_{context}']\n")
+                        // Adding the section title
+                        .append("= ").append(module.getTitle()).append("\n");
+                if (task.isPv2())
+                    header.append(":imagesdir: ../_images\n");
+
+                // The body is rewritten from the chapter lines as it is written
+                var body = module.getSourceSlice();
+                outputs.accept(new OutputFile(moduleOutputFile, out -> {
+                    out.append(header);
+                    body.writeTo(out);
+                }, module));
+                rendered.add(moduleOutputFile);
+                this.metrics.add(SplitMetrics.Counter.MODULES, 1);
             }
+        } finally {
+            this.unwrittenModules.clear();
+        }
+        return rendered;
+    }
+
+    /**
+     * Creates the modules or assemblies directory, which exist as soon as a chapter was split, even one without
+     * output, the symlinks depend on them.
+     */
+    private Path createOutputDirectory(OutputWriter writer, Path directory) {
+        try {
+            return writer.createDirectory(directory);
         } catch (IOException e) {
-            logger.severe("Error writing a module: " + e.getMessage());
+            logger.severe("Error creating output directory: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Copies the _artifacts, _images and titles-enterprise directories, on the assets stage's thread.
+     *
+     * @param issues takes the issues found, added to the run once the chapters are split
+     */
+    private void copyAssets(Path sourceDirPath, Path targetDirPath, Consumer<Issue> issues) {
+        // Create the _images and _artifacts directories
+        var start = System.nanoTime();
+        createAndCopyDir(sourceDirPath.resolve("_artifacts"), targetDirPath, issues);
+        createAndCopyDir(sourceDirPath.resolve("_images"), targetDirPath, issues);
+        this.metrics.record(SplitMetrics.Phase.COPY_ASSETS, start);
+
+        // Create and setup titles-enterprise folder, if necessary
+        if (!this.output.exists(targetDirPath.resolve(TITLES_ENTERPRISE))) {
+            logger.info("Copying files from " + TITLES_ENTERPRISE);
+            var titlesStart = System.nanoTime();
+            moveTitles(sourceDirPath.resolve(TITLES_ENTERPRISE), targetDirPath, issues);
+            this.metrics.record(SplitMetrics.Phase.COPY_TITLES, titlesStart);
+        } else {
+            logger.info(TITLES_ENTERPRISE + " exists in output already, ignoring copy");
         }
     }
 
-    private void createAndCopyDir(Path sourceDir, Path targetDir) {
+    private void createAndCopyDir(Path sourceDir, Path targetDir, Consumer<Issue> issues) {
         try {
             if (sourceDir.toFile().exists()) {
-                Files.walkFileTree(sourceDir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
-                        new CopyTreeFileVisitor(sourceDir, targetDir));
+                var visitor = new CopyTreeFileVisitor(sourceDir, targetDir, this.output);
+                visitor.setMetrics(this.metrics);
+                Files.walkFileTree(sourceDir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, visitor);
             }
         } catch (IOException e) {
             if (e instanceof FileAlreadyExistsException) {
                 logger.fine("Directory already exists, please verify output: " + ((FileAlreadyExistsException) e).getFile());
                 return;
             }
-            addIssue(Issue.error(e.toString(), null));
+            issues.accept(Issue.error(e.toString(), null));
         }
     }
 
@@ -286,18 +944,53 @@ public class Extractor {
      *
      * @param sourceDir
      * @param targetDir
+     * @param issues
      */
-    private void moveTitles(Path sourceDir, Path targetDir) {
+    private void moveTitles(Path sourceDir, Path targetDir, Consumer<Issue> issues) {
         try {
             logger.fine("Moving files from the titles-enterprise directory");
-            Files.walkFileTree(sourceDir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
-                    new TitlesEnterpriseCopyTreeFileVisitor(sourceDir, targetDir));
+            var visitor = new TitlesEnterpriseCopyTreeFileVisitor(sourceDir, targetDir, this.output,
+                    this.task.getRewriteRules());
+            visitor.setMetrics(this.metrics);
+            Files.walkFileTree(sourceDir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, visitor);
         } catch (IOException e) {
             if (e instanceof FileAlreadyExistsException) {
                 logger.fine("File already exists, please verify output: " + ((FileAlreadyExistsException) e).getFile());
                 return;
             }
-            addIssue(Issue.error(e.toString(), null));
+            issues.accept(Issue.error(e.toString(), null));
+        }
+    }
+
+    /**
+     * What the read stage does with each file.
+     */
+    @FunctionalInterface
+    private interface ChapterReader {
+        PendingChapter read(File file) throws IOException;
+    }
+
+    /**
+     * A chapter on its way from the read stage to the render stage.
+     */
+    private static class PendingChapter {
+        private final File file;
+        private final String hash;
+        private final boolean unchanged;
+        private Future<ParsedChapter> parsed;
+
+        PendingChapter(File file, String hash) {
+            this(file, hash, false);
+        }
+
+        private PendingChapter(File file, String hash, boolean unchanged) {
+            this.file = file;
+            this.hash = hash;
+            this.unchanged = unchanged;
+        }
+
+        static PendingChapter unchanged(File file) {
+            return new PendingChapter(file, null, true);
         }
     }
 }
@@ -0,0 +1,92 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import io.github.lightguard.documentation.asciidoc.extraction.model.ExtractedModule;
+import io.github.lightguard.documentation.asciidoc.extraction.model.SourceSlice;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds modules with the same title and body as a module already written, so only the first of them is written and
+ * the assemblies include it instead of the others.
+ * Modules are looked up by a fingerprint of their title and body, the title and body are only compared when the
+ * fingerprint matches. The id line of the duplicates is lost, the includes point at the file of the first module.
+ */
+class ModuleDeduplicator {
+    private static final String MODULE_INCLUDE = "include::modules" + File.separator;
+
+    private final Map<Long, ExtractedModule> canonicalModules = new HashMap<>();
+    // Path of each duplicate below the modules directory, to the path of the module written instead
+    private final Map<String, String> aliases = new HashMap<>();
+
+    /**
+     * Checks if a module with the same title and body was already written.
+     *
+     * @param module module about to be written
+     * @return true if the module is a duplicate, it is then included as the first module instead
+     */
+    boolean isDuplicate(ExtractedModule module) {
+        var fingerprint = Long.rotateLeft(new SourceSlice.Fingerprint().append(module.getTitle()).value(), 17)
+                ^ module.getSourceSlice().fingerprint();
+
+        var canonical = this.canonicalModules.putIfAbsent(fingerprint, module);
+        if (canonical == null || canonical == module || !canonical.getTitle().equals(module.getTitle())
+                || !canonical.getSourceSlice().equals(module.getSourceSlice()))
+            return false;
+
+        var path = ModuleRegistry.path(module);
+        var canonicalPath = ModuleRegistry.path(canonical);
+        if (path.equals(canonicalPath))
+            return false;
+
+        this.aliases.put(path, canonicalPath);
+        return true;
+    }
+
+    /**
+     * Points the module includes of an assembly at the modules written instead of the duplicates.
+     *
+     * @param source assembly source, with the includes made by the preprocessor
+     * @return the source, the same instance if it doesn't include any duplicate
+     */
+    String pointIncludesAtCanonicalModules(String source) {
+        if (this.aliases.isEmpty() || !source.contains(MODULE_INCLUDE))
+            return source;
+
+        StringBuilder out = null;
+        int copied = 0;
+        int start = 0;
+        while ((start = source.indexOf(MODULE_INCLUDE, start)) >= 0) {
+            int pathStart = start + MODULE_INCLUDE.length();
+            int pathEnd = source.indexOf('[', pathStart);
+            int lineEnd = source.indexOf('\n', pathStart);
+            boolean lineStart = start == 0 || source.charAt(start - 1) == '\n';
+            if (lineStart && pathEnd >= 0 && (lineEnd < 0 || pathEnd < lineEnd)) {
+                var canonical = this.aliases.get(source.substring(pathStart, pathEnd).replace(File.separatorChar, '/'));
+                if (canonical != null) {
+                    if (out == null)
+                        out = new StringBuilder(source.length());
+                    out.append(source, copied, pathStart).append(canonical.replace('/', File.separatorChar));
+                    copied = pathEnd;
+                }
+            }
+            start = pathStart;
+        }
+        return out == null ? source : out.append(source, copied, source.length()).toString();
+    }
+
+    /**
+     * Number of modules which weren't written because they are duplicates.
+     */
+    int getDuplicateCount() {
+        return this.aliases.size();
+    }
+
+    /**
+     * Number of distinct modules seen.
+     */
+    int getUniqueCount() {
+        return this.canonicalModules.size();
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import io.github.lightguard.documentation.asciidoc.cli.Issue;
+import io.github.lightguard.documentation.asciidoc.extraction.model.ExtractedModule;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The modules found so far in a run, indexed by fingerprint, output path and id.
+ * Each new module is checked against all the registered ones with three lookups, the content of a module is only
+ * compared when its fingerprint matches one already registered. Clashes are reported with the locations of both
+ * modules:
+ * <ul>
+ *     <li>the same module found twice is an error, and the second one is dropped</li>
+ *     <li>a different module written to the same file is a warning, and the second one is dropped</li>
+ *     <li>a module id used by modules in different files is a warning, both are kept</li>
+ * </ul>
+ * Modules of chapters an incremental split skips are registered from the {@link SplitManifest}, their content is
+ * only known by its fingerprint.
+ */
+class ModuleRegistry {
+    private final Map<Long, Entry> byFingerprint = new HashMap<>();
+    private final Map<String, Entry> byPath = new HashMap<>();
+    private final Map<String, Entry> byId = new HashMap<>();
+
+    /**
+     * Registers a module, unless it clashes with a registered one.
+     *
+     * @param module   module found in a chapter
+     * @param location where the module starts, as shown in issues
+     * @param issues   takes the clashes with registered modules
+     * @return true if the module was registered and has to be written
+     */
+    boolean register(ExtractedModule module, String location, Consumer<Issue> issues) {
+        return register(new Entry(module, location), issues);
+    }
+
+    /**
+     * Registers a module of a chapter which wasn't split again, unless it clashes with a registered one.
+     *
+     * @param module   module as recorded in the manifest of the previous split
+     * @param location chapter of the module, as shown in issues
+     * @param issues   takes the clashes with registered modules
+     * @return true if the module was registered
+     */
+    boolean register(SplitManifest.ModuleRecord module, String location, Consumer<Issue> issues) {
+        return register(new Entry(module, location), issues);
+    }
+
+    private boolean register(Entry entry, Consumer<Issue> issues) {
+        var location = entry.location;
+        var sameFingerprint = this.byFingerprint.get(entry.fingerprint);
+        if (sameFingerprint != null && entry.hasSameContentAs(sameFingerprint)) {
+            issues.accept(Issue.errorAt("Module with non-unique id. " + entry.subject + " is a duplicate of "
+                    + sameFingerprint.subject + " at " + sameFingerprint.location, location));
+            return false;
+        }
+
+        var samePath = this.byPath.get(entry.path);
+        if (samePath != null) {
+            issues.accept(Issue.warningAt("Module " + entry.subject + " is written to " + entry.path + " like "
+                    + samePath.subject + " at " + samePath.location + ", it is skipped", location));
+            return false;
+        }
+
+        var sameId = this.byId.get(entry.id);
+        if (sameId != null) {
+            issues.accept(Issue.warningAt("Module " + entry.subject + " has the same id as " + sameId.subject + " at "
+                    + sameId.location, location));
+        } else {
+            this.byId.put(entry.id, entry);
+        }
+
+        this.byFingerprint.putIfAbsent(entry.fingerprint, entry);
+        this.byPath.put(entry.path, entry);
+        return true;
+    }
+
+    /**
+     * Unregisters the modules, so they can be registered again.
+     *
+     * @param modules modules registered before
+     */
+    void removeAll(Collection<ExtractedModule> modules) {
+        for (var module : modules)
+            remove(module, module.getFingerprint(), path(module), module.getId());
+    }
+
+    /**
+     * Unregisters the modules registered from the manifest, so the chapter they came from can be split again.
+     *
+     * @param modules modules registered before
+     */
+    void removeRecorded(Collection<SplitManifest.ModuleRecord> modules) {
+        for (var module : modules)
+            remove(module, module.getFingerprint(), module.getPath(), module.getId());
+    }
+
+    private void remove(Object subject, long fingerprint, String path, String id) {
+        this.byFingerprint.computeIfPresent(fingerprint, (key, entry) -> unless(subject, entry));
+        this.byPath.computeIfPresent(path, (key, entry) -> unless(subject, entry));
+        this.byId.computeIfPresent(id, (key, entry) -> unless(subject, entry));
+    }
+
+    private static Entry unless(Object subject, Entry entry) {
+        return entry.subject == subject ? null : entry;
+    }
+
+    /**
+     * Number of registered modules.
+     */
+    int size() {
+        return this.byPath.size();
+    }
+
+    /**
+     * Where the module is written, relative to the modules directory.
+     */
+    static String path(ExtractedModule module) {
+        return module.getFolder() + "/" + module.getFileName();
+    }
+
+    private static class Entry {
+        // Null for a module recorded in the manifest
+        private final ExtractedModule module;
+        // What the issues show of the module
+        private final Object subject;
+        private final String location;
+        private final String id;
+        private final long fingerprint;
+        private final String path;
+
+        Entry(ExtractedModule module, String location) {
+            this.module = module;
+            this.subject = module;
+            this.location = location;
+            this.id = module.getId();
+            this.fingerprint = module.getFingerprint();
+            this.path = path(module);
+        }
+
+        Entry(SplitManifest.ModuleRecord module, String location) {
+            this.module = null;
+            this.subject = module;
+            this.location = location;
+            this.id = module.getId();
+            this.fingerprint = module.getFingerprint();
+            this.path = module.getPath();
+        }
+
+        /**
+         * Compares the content of modules with the same fingerprint, which is all there is for recorded modules.
+         */
+        boolean hasSameContentAs(Entry other) {
+            return this.module == null || other.module == null || this.module.equals(other.module);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import io.github.lightguard.documentation.asciidoc.extraction.model.OutputContent;
+
+import java.nio.file.Path;
+
+/**
+ * A rendered module or assembly on its way to the {@link OutputWriter}.
+ */
+class OutputFile {
+    private final Path path;
+    private final OutputContent content;
+    private final Object source;
+
+    /**
+     * @param path    where the file is written
+     * @param content content of the file
+     * @param source  module or assembly the file was rendered from, to report failures
+     */
+    OutputFile(Path path, CharSequence content, Object source) {
+        this(path, OutputContent.of(content), source);
+    }
+
+    /**
+     * @param path    where the file is written
+     * @param content content of the file, appended as it is written
+     * @param source  module or assembly the file was rendered from, to report failures
+     */
+    OutputFile(Path path, OutputContent content, Object source) {
+        this.path = path;
+        this.content = content;
+        this.source = source;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    OutputContent getContent() {
+        return content;
+    }
+
+    Object getSource() {
+        return source;
+    }
+}
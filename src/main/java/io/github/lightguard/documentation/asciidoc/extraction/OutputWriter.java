@@ -0,0 +1,152 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import io.github.lightguard.documentation.asciidoc.RewriteRules;
+import io.github.lightguard.documentation.asciidoc.cli.Issue;
+import io.github.lightguard.documentation.asciidoc.extraction.model.OutputContent;
+import io.github.lightguard.documentation.asciidoc.extraction.model.OutputTree;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The write stage of the {@link ExtractionPipeline}: writes the rendered files behind the render stage.
+ * Files are taken in batches and each directory is only created once per run, a file which can't be written is kept
+ * as an issue and doesn't stop the split. The rewrite rules of the task are applied to each file as it is written.
+ * Without rules the content of a file is appended straight to the output, it is never held as a whole.
+ */
+class OutputWriter {
+    /**
+     * Most files taken from the queue at once.
+     */
+    static final int BATCH_SIZE = 32;
+
+    private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+    private final List<Issue> issues = Collections.synchronizedList(new ArrayList<>());
+    private final OutputTree output;
+    private final RewriteRules rewriteRules;
+    private final AtomicInteger writtenFileCount;
+    private final SplitMetrics metrics;
+
+    /**
+     * @param output           where the files are written
+     * @param rewriteRules     rewrites applied to the content of each file
+     * @param writtenFileCount incremented for each file written
+     * @param metrics          takes the time spent writing and the files and bytes written
+     */
+    OutputWriter(OutputTree output, RewriteRules rewriteRules, AtomicInteger writtenFileCount, SplitMetrics metrics) {
+        this.output = output;
+        this.rewriteRules = rewriteRules;
+        this.writtenFileCount = writtenFileCount;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Creates a directory, unless it was already created in this run.
+     *
+     * @param directory directory to create, with its parents
+     * @return the directory
+     * @throws IOException if the directory can't be created
+     */
+    Path createDirectory(Path directory) throws IOException {
+        if (!this.directories.contains(directory)) {
+            this.output.createDirectories(directory);
+            this.directories.add(directory);
+        }
+        return directory;
+    }
+
+    /**
+     * Writes the files from the queue until it is closed.
+     *
+     * @param files rendered files
+     * @param stage stats of the write stage
+     */
+    void run(StageQueue<OutputFile> files, StageStats stage) {
+        List<OutputFile> batch;
+        while ((batch = files.takeBatch(BATCH_SIZE)) != null) {
+            var start = System.nanoTime();
+            batch.forEach(this::write);
+            stage.record(start, batch.size());
+            this.metrics.record(SplitMetrics.Phase.WRITE, start);
+        }
+    }
+
+    /**
+     * Files which couldn't be written.
+     *
+     * @return issues found by the writer, read once the stage has ended
+     */
+    List<Issue> getIssues() {
+        return issues;
+    }
+
+    private void write(OutputFile file) {
+        try {
+            createDirectory(file.getPath().getParent());
+            var content = this.rewriteRules.isEmpty()
+                    ? file.getContent()
+                    : OutputContent.of(this.rewriteRules.apply(file.getContent().render()));
+            var counter = new ByteCounter();
+            this.output.write(file.getPath(), out -> content.writeTo(counter.counting(out)));
+            this.writtenFileCount.incrementAndGet();
+            this.metrics.add(SplitMetrics.Counter.FILES_WRITTEN, 1);
+            this.metrics.add(SplitMetrics.Counter.BYTES_WRITTEN, counter.bytes);
+        } catch (IOException | RuntimeException e) {
+            // A file which can't be written, or whose rewrite fails, doesn't stop the others
+            this.issues.add(Issue.error("Could not write " + file.getSource() + " to " + file.getPath() + ": "
+                    + e.getMessage(), null));
+        }
+    }
+
+    /**
+     * Counts the UTF-8 bytes of the content appended to a file, as it is passed on.
+     * Content can be appended more than once, only the last time counts.
+     */
+    private static class ByteCounter {
+        private long bytes;
+
+        Appendable counting(Appendable out) {
+            this.bytes = 0;
+            return new Appendable() {
+                @Override
+                public Appendable append(CharSequence text) throws IOException {
+                    for (int i = 0; i < text.length(); i++)
+                        count(text.charAt(i));
+                    out.append(text);
+                    return this;
+                }
+
+                @Override
+                public Appendable append(CharSequence text, int start, int end) throws IOException {
+                    for (int i = start; i < end; i++)
+                        count(text.charAt(i));
+                    out.append(text, start, end);
+                    return this;
+                }
+
+                @Override
+                public Appendable append(char c) throws IOException {
+                    count(c);
+                    out.append(c);
+                    return this;
+                }
+            };
+        }
+
+        private void count(char c) {
+            // A surrogate pair is 4 bytes, 2 for each half
+            if (c < 0x80)
+                this.bytes += 1;
+            else if (c < 0x800 || Character.isSurrogate(c))
+                this.bytes += 2;
+            else
+                this.bytes += 3;
+        }
+    }
+}
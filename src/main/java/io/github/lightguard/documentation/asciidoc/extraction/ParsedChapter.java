@@ -0,0 +1,72 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import io.github.lightguard.documentation.asciidoc.extraction.model.Assembly;
+
+import java.io.File;
+
+/**
+ * A chapter file after it has been parsed and split into an {@link Assembly}.
+ */
+public class ParsedChapter {
+    private final File file;
+    private final String location;
+    private final Assembly assembly;
+    private final int lineCount;
+    private final long loadNanos;
+    private final long preprocessNanos;
+    private final long assemblyNanos;
+
+    public ParsedChapter(File file, String location, Assembly assembly) {
+        this(file, location, assembly, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param lineCount       lines of the chapter
+     * @param loadNanos       time spent loading the chapter, without its preprocessing
+     * @param preprocessNanos time spent preprocessing the chapter
+     * @param assemblyNanos   time spent building the assembly
+     */
+    public ParsedChapter(File file, String location, Assembly assembly, int lineCount, long loadNanos,
+                         long preprocessNanos, long assemblyNanos) {
+        this.file = file;
+        this.location = location;
+        this.assembly = assembly;
+        this.lineCount = lineCount;
+        this.loadNanos = loadNanos;
+        this.preprocessNanos = preprocessNanos;
+        this.assemblyNanos = assemblyNanos;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Where the chapter starts, as shown in issues.
+     *
+     * @return source location of the chapter
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    public Assembly getAssembly() {
+        return assembly;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    public long getPreprocessNanos() {
+        return preprocessNanos;
+    }
+
+    public long getAssemblyNanos() {
+        return assemblyNanos;
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import java.util.Map;
+
+/**
+ * The ways of parsing chapter files.
+ */
+public enum ParserEngine {
+    /**
+     * Loads each chapter with asciidoctor, running on JRuby.
+     */
+    ASCIIDOCTOR {
+        @Override
+        public ChapterParser create(Map<String, Object> attributes) {
+            return new AsciidoctorChapterParser(attributes);
+        }
+    },
+
+    /**
+     * Only scans the chapter lines for the sections, in plain Java, see {@link ScannerChapterParser}.
+     */
+    SCANNER {
+        @Override
+        public ChapterParser create(Map<String, Object> attributes) {
+            return new ScannerChapterParser(attributes);
+        }
+    };
+
+    /**
+     * Creates a parser, which has to be closed once done.
+     *
+     * @param attributes attributes for the documents
+     * @return new parser
+     */
+    public abstract ChapterParser create(Map<String, Object> attributes);
+}
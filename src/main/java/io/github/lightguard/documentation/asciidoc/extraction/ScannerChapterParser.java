@@ -0,0 +1,74 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import io.github.lightguard.documentation.asciidoc.extension.LineStore;
+import io.github.lightguard.documentation.asciidoc.extension.ReaderPreprocessor;
+import io.github.lightguard.documentation.asciidoc.extension.ReplaceWithTreeProcessor;
+import io.github.lightguard.documentation.asciidoc.extraction.model.Assembly;
+import io.github.lightguard.documentation.asciidoc.scanner.SectionScanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Turns chapter files into assemblies with the {@link SectionScanner}, without starting asciidoctor.
+ * The scanner only looks for the structure of the chapter, which is all the splitter needs.
+ */
+public class ScannerChapterParser implements ChapterParser {
+    private final Map<String, Object> attributes;
+    private final ReaderPreprocessor preprocessor;
+    private final Logger logger;
+
+    public ScannerChapterParser(Map<String, Object> attributes) {
+        this.attributes = attributes == null ? Map.of() : attributes;
+        this.preprocessor = new ReaderPreprocessor();
+        this.logger = LogManager.getLogManager().getLogger("");
+    }
+
+    @Override
+    public ChapterParser withAttributes(Map<String, Object> attributes) {
+        return new ScannerChapterParser(attributes);
+    }
+
+    @Override
+    public ParsedChapter parse(File file) {
+        logger.fine("Scanning file '" + file.getAbsolutePath() + "'");
+        var start = System.nanoTime();
+        var dir = file.getAbsoluteFile().toPath().normalize().getParent();
+        var source = this.preprocessor.preprocess(readLines(file), dir.getFileName());
+
+        var chapter = new SectionScanner(this.attributes, file.getName(), dir.getFileName().toString())
+                .scan(source.getLines());
+
+        // Same as the ReplaceWithTreeProcessor does with the asciidoctor blocks
+        if (source.getReplaceWithLines().length > 0) {
+            source.updateLines(chapter.getReplaceWithBlocks().stream()
+                    .map(block -> ReplaceWithTreeProcessor.lineUpdate(block.getLineNumber(), block.getLineCount(),
+                            block.getAttributes(),
+                            List.of(ReplaceWithTreeProcessor.replacementInclude(block.getAttributes()))))
+                    .collect(Collectors.toList()));
+        }
+
+        var loaded = System.nanoTime();
+        var assembly = new Assembly(chapter, source.getLineStore(), source.getAssemblyBody());
+        return new ParsedChapter(file, chapter.getLocation(), assembly, source.getLineStore().size(),
+                loaded - start - source.getPreprocessNanos(), source.getPreprocessNanos(), System.nanoTime() - loaded);
+    }
+
+    private static LineStore readLines(File file) {
+        try {
+            return LineStore.read(file.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + file, e);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,466 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import io.github.lightguard.documentation.asciidoc.extraction.model.ExtractedModule;
+import io.github.lightguard.documentation.asciidoc.extraction.model.OutputTree;
+import io.github.lightguard.documentation.asciidoc.extraction.model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Record of the chapters split into an output location, used to skip chapters which have not changed since the
+ * previous run.
+ * Each chapter has a hash of everything that affects its output (the file and the files it includes, the attributes,
+ * the ignored files, the pantheon v2 flag, the rewrite rules and the splitter version), the list of files it produced,
+ * relative to the output location, and the modules it registered. The modules of a skipped chapter are registered
+ * from the manifest, so the chapters split again are still checked against them. A chapter whose modules clashed with
+ * another chapter's depends on that chapter, it is never skipped.
+ * Lists are stored one entry per key, numbered from 0, so any character can appear in a path or module id.
+ */
+public class SplitManifest {
+    public static final String FILE_NAME = ".splitter-manifest";
+    private static final String HASH_PREFIX = "hash.";
+    private static final String OUTPUTS_PREFIX = "outputs.";
+    private static final String MODULES_PREFIX = "modules.";
+    private static final String CLASHED_PREFIX = "clashed.";
+    // Same as asciidoctor's limit of nested includes
+    private static final int MAX_INCLUDE_DEPTH = 64;
+    private static final Pattern INCLUDE = Pattern.compile("^include::([^\\s\\[](?:[^\\[]*[^\\s\\[])?)\\[.*]$");
+    private static final Pattern ATTRIBUTE_ENTRY = Pattern.compile("^:(\\w[\\w-]*):\\s*(.*)$");
+    private static final Pattern ATTRIBUTE_REFERENCE = Pattern.compile("\\{(\\w[\\w-]*)}");
+
+    private final Map<String, String> hashes;
+    private final Map<String, List<String>> outputs;
+    private final Map<String, List<ModuleRecord>> modules;
+    private final Set<String> clashed;
+
+    public SplitManifest() {
+        this.hashes = new TreeMap<>();
+        this.outputs = new HashMap<>();
+        this.modules = new HashMap<>();
+        this.clashed = new HashSet<>();
+    }
+
+    /**
+     * Loads the manifest from the output directory, an empty manifest is returned if there isn't one.
+     *
+     * @param output    output the manifest is read from
+     * @param targetDir root of the output
+     * @return manifest of the previous run
+     * @throws IOException if the manifest can not be read
+     */
+    public static SplitManifest load(OutputTree output, Path targetDir) throws IOException {
+        var manifest = new SplitManifest();
+        var manifestFile = targetDir.resolve(FILE_NAME);
+
+        if (!output.exists(manifestFile))
+            return manifest;
+
+        var properties = new Properties();
+        properties.load(new StringReader(output.readString(manifestFile)));
+
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(HASH_PREFIX)) {
+                var chapter = key.substring(HASH_PREFIX.length());
+                var outputs = new ArrayList<String>();
+                for (int i = 0; properties.containsKey(OUTPUTS_PREFIX + chapter + "." + i); i++)
+                    outputs.add(properties.getProperty(OUTPUTS_PREFIX + chapter + "." + i));
+                var modules = new ArrayList<ModuleRecord>();
+                for (int i = 0; properties.containsKey(MODULES_PREFIX + chapter + "." + i + ModuleRecord.ID); i++)
+                    modules.add(ModuleRecord.load(properties, MODULES_PREFIX + chapter + "." + i));
+
+                manifest.record(chapter, properties.getProperty(key), outputs, modules,
+                        Boolean.parseBoolean(properties.getProperty(CLASHED_PREFIX + chapter)));
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest to the output directory.
+     *
+     * @param output    output the manifest is written to
+     * @param targetDir root of the output
+     * @throws IOException if the manifest can not be written
+     */
+    public void save(OutputTree output, Path targetDir) throws IOException {
+        var properties = new Properties();
+        this.hashes.forEach((chapter, hash) -> {
+            properties.setProperty(HASH_PREFIX + chapter, hash);
+            var outputs = this.outputs.get(chapter);
+            for (int i = 0; i < outputs.size(); i++)
+                properties.setProperty(OUTPUTS_PREFIX + chapter + "." + i, outputs.get(i));
+            var modules = this.modules.get(chapter);
+            for (int i = 0; i < modules.size(); i++)
+                modules.get(i).store(properties, MODULES_PREFIX + chapter + "." + i);
+            if (this.clashed.contains(chapter))
+                properties.setProperty(CLASHED_PREFIX + chapter, "true");
+        });
+
+        var stored = new StringWriter();
+        properties.store(stored, null);
+
+        // Drop the timestamp comment and sort the entries so the file only changes when the split does
+        var entries = stored.toString().lines()
+                .filter(line -> !line.startsWith("#"))
+                .sorted()
+                .collect(Collectors.joining("\n", "", "\n"));
+        output.write(targetDir.resolve(FILE_NAME), entries);
+    }
+
+    /**
+     * Records the output of a chapter.
+     *
+     * @param chapter chapter path, relative to the source directory
+     * @param hash    hash of the chapter, see {@link #hash(Path, Task)}
+     * @param files   files produced by the chapter, relative to the output directory
+     */
+    public void record(String chapter, String hash, Collection<String> files) {
+        record(chapter, hash, files, Collections.emptyList(), false);
+    }
+
+    /**
+     * Records the output and the modules of a chapter.
+     *
+     * @param chapter chapter path, relative to the source directory
+     * @param hash    hash of the chapter, see {@link #hash(Path, Task)}
+     * @param files   files produced by the chapter, relative to the output directory
+     * @param modules modules the chapter registered
+     * @param clashed whether modules of the chapter clashed with modules of other chapters
+     */
+    public void record(String chapter, String hash, Collection<String> files, Collection<ModuleRecord> modules,
+                       boolean clashed) {
+        this.hashes.put(chapter, hash);
+        this.outputs.put(chapter, new ArrayList<>(files));
+        this.modules.put(chapter, new ArrayList<>(modules));
+        if (clashed)
+            this.clashed.add(chapter);
+        else
+            this.clashed.remove(chapter);
+    }
+
+    /**
+     * Copies the entry of a chapter from another manifest.
+     *
+     * @param chapter  chapter path, relative to the source directory
+     * @param previous manifest to copy from
+     */
+    public void carryOver(String chapter, SplitManifest previous) {
+        record(chapter, previous.hashes.get(chapter), previous.outputs.get(chapter), previous.modules.get(chapter),
+                previous.clashed.contains(chapter));
+    }
+
+    /**
+     * Notes that modules of a chapter clashed with modules of other chapters, so it is split again next time.
+     *
+     * @param chapter chapter path, relative to the source directory
+     */
+    public void markClashed(String chapter) {
+        this.clashed.add(chapter);
+    }
+
+    /**
+     * Removes the entry of a chapter, used when the chapter no longer exists.
+     *
+     * @param chapter chapter path, relative to the source directory
+     */
+    public void forget(String chapter) {
+        this.hashes.remove(chapter);
+        this.outputs.remove(chapter);
+        this.modules.remove(chapter);
+        this.clashed.remove(chapter);
+    }
+
+    /**
+     * Chapters in the manifest.
+     *
+     * @return chapter paths, relative to the source directory
+     */
+    public Set<String> getChapters() {
+        return Collections.unmodifiableSet(this.hashes.keySet());
+    }
+
+    /**
+     * Modules a chapter registered.
+     *
+     * @param chapter chapter path, relative to the source directory
+     * @return the recorded modules, empty if the chapter isn't in the manifest
+     */
+    public List<ModuleRecord> getModules(String chapter) {
+        return Collections.unmodifiableList(this.modules.getOrDefault(chapter, Collections.emptyList()));
+    }
+
+    /**
+     * Files produced by a chapter, relative to the output directory.
+     *
+     * @param chapter chapter path, relative to the source directory
+     * @return the recorded files, empty if the chapter isn't in the manifest
+     */
+    public List<String> getOutputs(String chapter) {
+        return Collections.unmodifiableList(this.outputs.getOrDefault(chapter, Collections.emptyList()));
+    }
+
+    /**
+     * Checks if the chapter was split with the same hash and all of its output is still in place.
+     *
+     * @param chapter   chapter path, relative to the source directory
+     * @param hash      current hash of the chapter
+     * @param output    output the chapter was split into
+     * @param targetDir root of the output
+     * @return true if the chapter does not need to be split again
+     */
+    public boolean isUpToDate(String chapter, String hash, OutputTree output, Path targetDir) {
+        if (!hash.equals(this.hashes.get(chapter)) || this.clashed.contains(chapter))
+            return false;
+
+        return this.outputs.get(chapter).stream().allMatch(file -> output.exists(targetDir.resolve(file)));
+    }
+
+    /**
+     * Hashes everything which affects the output of a chapter.
+     *
+     * @param chapterFile chapter file
+     * @param task        task the chapter is split for
+     * @return hex encoded hash
+     */
+    public static String hash(Path chapterFile, Task task) {
+        return hash(chapterFile, task, new HashSet<>());
+    }
+
+    /**
+     * Hashes everything which affects the output of a chapter.
+     *
+     * @param chapterFile chapter file
+     * @param task        task the chapter is split for
+     * @param includes    takes the files the chapter includes, directly or through other includes
+     * @return hex encoded hash
+     */
+    public static String hash(Path chapterFile, Task task, Set<Path> includes) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(("version=" + splitterVersion() + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(("pv2=" + task.isPv2() + "\n").getBytes(StandardCharsets.UTF_8));
+            if (!task.getRewriteRules().isEmpty())
+                digest.update(("rules=" + task.getRewriteRules().getFingerprint() + "\n").getBytes(StandardCharsets.UTF_8));
+
+            // Attributes and ignored files are sorted so the order they were given in doesn't matter
+            var taskAttributes = task.getAttributes() == null ? Map.<String, Object>of() : task.getAttributes();
+            var attributes = new TreeMap<>(taskAttributes).entrySet().stream()
+                    .map(e -> e.getKey() + "=" + e.getValue())
+                    .collect(Collectors.joining("\n", "", "\n"));
+            digest.update(attributes.getBytes(StandardCharsets.UTF_8));
+            if (task.getIgnoreFiles() != null) {
+                var ignored = task.getIgnoreFiles().stream()
+                        .map(File::getPath)
+                        .sorted()
+                        .collect(Collectors.joining("\n", "ignore=", "\n"));
+                digest.update(ignored.getBytes(StandardCharsets.UTF_8));
+            }
+
+            walkIncludes(digest, chapterFile, task, includes);
+
+            var hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Files a chapter includes, directly or through other includes, the same ones its hash covers.
+     *
+     * @param chapterFile chapter file
+     * @param task        task the chapter is split for
+     * @return absolute paths of the included files, including the missing ones
+     */
+    public static Set<Path> includes(Path chapterFile, Task task) {
+        var includes = new HashSet<Path>();
+        try {
+            walkIncludes(null, chapterFile, task, includes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return includes;
+    }
+
+    private static void walkIncludes(MessageDigest digest, Path chapterFile, Task task, Set<Path> includes)
+            throws IOException {
+        var taskAttributes = task.getAttributes() == null ? Map.<String, Object>of() : task.getAttributes();
+        var attributes = new HashMap<String, String>();
+        taskAttributes.forEach((name, value) -> attributes.put(name, String.valueOf(value)));
+        var file = chapterFile.toAbsolutePath().normalize();
+        attributes.putIfAbsent("docdir", file.getParent().toString());
+        walkIncludes(digest, file, attributes, taskAttributes.keySet(), includes, 0);
+    }
+
+    /**
+     * Hashes the file and, as asciidoctor would inline them, the files it includes.
+     * Include targets are resolved with the attributes set so far, relative to the including file. A target which
+     * doesn't resolve only counts as the line of the include, which is hashed with the file. A missing file is
+     * hashed as missing, so creating it changes the hash.
+     *
+     * @param digest     digest the files are hashed into, null to only find the included files
+     * @param attributes attributes defined so far, updated with the entries of the file
+     * @param locked     attributes given with the task, which the documents can't change
+     * @param included   files already hashed, each file is hashed once
+     */
+    private static void walkIncludes(MessageDigest digest, Path file, Map<String, String> attributes,
+                                     Set<String> locked, Set<Path> included, int depth) throws IOException {
+        var bytes = Files.readAllBytes(file);
+        if (digest != null)
+            digest.update(bytes);
+        if (depth >= MAX_INCLUDE_DEPTH)
+            return;
+
+        for (var line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+            line = line.strip();
+            var entry = ATTRIBUTE_ENTRY.matcher(line);
+            if (entry.matches()) {
+                if (!locked.contains(entry.group(1)))
+                    attributes.put(entry.group(1), entry.group(2));
+                continue;
+            }
+
+            var include = INCLUDE.matcher(line);
+            if (!include.matches())
+                continue;
+            var target = resolveAttributes(include.group(1), attributes);
+            if (target == null || target.contains("://"))
+                continue;
+
+            var includedFile = file.getParent().resolve(target).normalize();
+            if (digest != null)
+                digest.update(("include=" + includedFile + "\n").getBytes(StandardCharsets.UTF_8));
+            if (!included.add(includedFile))
+                continue;
+            if (Files.isRegularFile(includedFile))
+                walkIncludes(digest, includedFile, attributes, locked, included, depth + 1);
+            else if (digest != null)
+                digest.update("missing\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Replaces the attribute references in the text.
+     *
+     * @return the text with the values of the attributes, null if an attribute isn't set
+     */
+    private static String resolveAttributes(String text, Map<String, String> attributes) {
+        var matcher = ATTRIBUTE_REFERENCE.matcher(text);
+        var resolved = new StringBuilder();
+        while (matcher.find()) {
+            var value = attributes.get(matcher.group(1));
+            if (value == null)
+                return null;
+            matcher.appendReplacement(resolved, Matcher.quoteReplacement(value));
+        }
+        return matcher.appendTail(resolved).toString();
+    }
+
+    /**
+     * Version of the splitter, as set by the build.
+     *
+     * @return version of the splitter
+     */
+    public static String splitterVersion() {
+        try (InputStream in = SplitManifest.class.getResourceAsStream("/splitter.properties")) {
+            var properties = new Properties();
+            if (in != null)
+                properties.load(in);
+            return properties.getProperty("version", "unknown");
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * A module registered by a chapter, as much of it as the {@link ModuleRegistry} needs to check other modules
+     * against it.
+     */
+    public static class ModuleRecord {
+        private static final String ID = ".id";
+        private static final String FINGERPRINT = ".fingerprint";
+        private static final String PATH = ".path";
+
+        private final String id;
+        private final long fingerprint;
+        private final String path;
+
+        ModuleRecord(String id, long fingerprint, String path) {
+            this.id = id;
+            this.fingerprint = fingerprint;
+            this.path = path;
+        }
+
+        static ModuleRecord of(ExtractedModule module) {
+            return new ModuleRecord(module.getId(), module.getFingerprint(), ModuleRegistry.path(module));
+        }
+
+        /**
+         * Reads the record stored under the key.
+         */
+        static ModuleRecord load(Properties properties, String key) {
+            var fingerprint = properties.getProperty(key + FINGERPRINT);
+            var path = properties.getProperty(key + PATH);
+            if (fingerprint == null || path == null)
+                throw new IllegalArgumentException("Incomplete module record: " + key);
+            return new ModuleRecord(properties.getProperty(key + ID), Long.parseUnsignedLong(fingerprint, 16), path);
+        }
+
+        /**
+         * Stores the record under the key, one property per field.
+         */
+        void store(Properties properties, String key) {
+            properties.setProperty(key + ID, this.id);
+            properties.setProperty(key + FINGERPRINT, Long.toHexString(this.fingerprint));
+            properties.setProperty(key + PATH, this.path);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Where the module was written, relative to the modules directory.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String toString() {
+            return "ExtractedModule{id='" + id + "_{context}', path=" + path + "}";
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where the time of a split went and how much it read and wrote, see {@link Extractor#getMetrics()}.
+ * Phases running on several threads, like the parsing of chapters, add up the time of every thread, so their sum
+ * can be more than the wall time of the split. The {@link StageStats} of the run show how the phases overlapped.
+ */
+public class SplitMetrics {
+    /**
+     * Timed parts of a split.
+     */
+    public enum Phase {
+        /** Cloning the git repositories of the task. */
+        CLONE("clone"),
+        /** Creating the parser, which boots JRuby for asciidoctor. */
+        PARSER_START("parserStart"),
+        /** Walking the source for the asciidoc files. */
+        WALK("walk"),
+        /** Reading the files found, copying the ones which aren't chapters to the modules. */
+        READ("read"),
+        /** Loading a chapter into asciidoctor or the scanner, without its preprocessing. */
+        LOAD("load"),
+        /** Marking the preprocessor directives of a chapter and building its assembly body. */
+        PREPROCESS("preprocess"),
+        /** Building the assembly, and its modules, of a loaded chapter. */
+        ASSEMBLY("assembly"),
+        /** Registering the modules of a chapter and rendering its files. */
+        RENDER("render"),
+        /** Writing the rendered modules and assemblies. */
+        WRITE("write"),
+        /** Copying the _artifacts and _images directories. */
+        COPY_ASSETS("copyAssets"),
+        /** Copying the titles-enterprise directory. */
+        COPY_TITLES("copyTitles"),
+        /** Creating the symlinks of the assemblies and modules directories. */
+        SYMLINKS("symlinks"),
+        /** Pushing the output repository. */
+        PUSH("push");
+
+        private final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    /**
+     * Counted work of a split.
+     */
+    public enum Counter {
+        /** Asciidoc files found in the source. */
+        FILES("files"),
+        /** Chapters parsed. */
+        CHAPTERS("chapters"),
+        /** Lines of the chapters parsed. */
+        LINES("lines"),
+        /** Modules rendered, without the duplicates which weren't. */
+        MODULES("modules"),
+        /** Assemblies rendered. */
+        ASSEMBLIES("assemblies"),
+        /** Modules and assemblies written. */
+        FILES_WRITTEN("filesWritten"),
+        /** UTF-8 bytes of the modules and assemblies written. */
+        BYTES_WRITTEN("bytesWritten"),
+        /** Files copied from the source. */
+        FILES_COPIED("filesCopied"),
+        /** Bytes of the files copied from the source. */
+        BYTES_COPIED("bytesCopied");
+
+        private final String key;
+
+        Counter(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private final LongAdder[] phaseNanos = adders(Phase.values().length);
+    private final LongAdder[] phaseCounts = adders(Phase.values().length);
+    private final LongAdder[] counters = adders(Counter.values().length);
+    private volatile List<StageStats> stages = Collections.emptyList();
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    private static LongAdder[] adders(int count) {
+        var adders = new LongAdder[count];
+        for (int i = 0; i < count; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+
+    void started() {
+        this.startNanos = System.nanoTime();
+        this.endNanos = 0;
+    }
+
+    void finished() {
+        this.endNanos = System.nanoTime();
+    }
+
+    /**
+     * Records one run of the phase, which started at the given time.
+     *
+     * @param phase      phase which ran
+     * @param startNanos {@link System#nanoTime()} when the phase started
+     */
+    void record(Phase phase, long startNanos) {
+        add(phase, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records one run of the phase, which took the given time.
+     *
+     * @param phase phase which ran
+     * @param nanos time it took
+     */
+    void add(Phase phase, long nanos) {
+        this.phaseNanos[phase.ordinal()].add(nanos);
+        this.phaseCounts[phase.ordinal()].increment();
+    }
+
+    void add(Counter counter, long amount) {
+        this.counters[counter.ordinal()].add(amount);
+    }
+
+    void setStages(List<StageStats> stages) {
+        this.stages = stages;
+    }
+
+    public long getNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * How many times the phase ran, once per chapter for the parsing phases.
+     */
+    public long getCount(Phase phase) {
+        return phaseCounts[phase.ordinal()].sum();
+    }
+
+    public long get(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * Time from the start of the split to its end, or to now if it is still running.
+     *
+     * @return elapsed time in milliseconds
+     */
+    public long getWallMillis() {
+        var end = this.endNanos == 0 ? System.nanoTime() : this.endNanos;
+        return this.startNanos == 0 ? 0 : (end - this.startNanos) / 1_000_000;
+    }
+
+    public double getLinesPerSecond() {
+        return perSecond(get(Counter.LINES));
+    }
+
+    public double getModulesPerSecond() {
+        return perSecond(get(Counter.MODULES));
+    }
+
+    private double perSecond(long amount) {
+        var millis = getWallMillis();
+        return millis == 0 ? 0 : amount * 1000.0 / millis;
+    }
+
+    /**
+     * The metrics, with the stats of each stage, as a JSON object.
+     *
+     * @return JSON text
+     */
+    public String toJson() {
+        var json = new StringBuilder("{\n  \"wallMillis\": ").append(getWallMillis())
+                .append(",\n  \"linesPerSecond\": ").append(String.format(Locale.ROOT, "%.1f", getLinesPerSecond()))
+                .append(",\n  \"modulesPerSecond\": ").append(String.format(Locale.ROOT, "%.1f", getModulesPerSecond()))
+                .append(",\n  \"phases\": {");
+        for (var phase : Phase.values()) {
+            json.append(phase.ordinal() == 0 ? "\n" : ",\n")
+                    .append("    \"").append(phase.key).append("\": {\"millis\": ")
+                    .append(String.format(Locale.ROOT, "%.3f", getNanos(phase) / 1_000_000.0))
+                    .append(", \"count\": ").append(getCount(phase)).append('}');
+        }
+        json.append("\n  },\n  \"counters\": {");
+        for (var counter : Counter.values()) {
+            json.append(counter.ordinal() == 0 ? "\n" : ",\n")
+                    .append("    \"").append(counter.key).append("\": ").append(get(counter));
+        }
+        json.append("\n  },\n  \"stages\": [");
+        var stages = this.stages;
+        for (int i = 0; i < stages.size(); i++) {
+            var stage = stages.get(i);
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"name\": \"").append(stage.getName())
+                    .append("\", \"workers\": ").append(stage.getWorkers())
+                    .append(", \"items\": ").append(stage.getItems())
+                    .append(", \"busyMillis\": ").append(stage.getBusyMillis())
+                    .append(", \"elapsedMillis\": ").append(stage.getElapsedMillis())
+                    .append(", \"utilization\": ").append(String.format(Locale.ROOT, "%.2f", stage.getUtilization()))
+                    .append(", \"maxQueueDepth\": ").append(stage.getMaxQueueDepth()).append('}');
+        }
+        return json.append(stages.isEmpty() ? "]\n}\n" : "\n  ]\n}\n").toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d lines, %d modules in %d ms: %.0f lines/s, %.1f modules/s",
+                get(Counter.LINES), get(Counter.MODULES), getWallMillis(), getLinesPerSecond(),
+                getModulesPerSecond());
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Bounded queue between two stages of the {@link ExtractionPipeline}.
+ * A full queue blocks the stage feeding it until the next stage catches up. A queue is failed when a stage of the
+ * pipeline fails, the stages waiting on it then stop instead of waiting for a stage which is gone.
+ *
+ * @param <T> items passed between the stages
+ */
+class StageQueue<T> {
+    private static final Object END = new Object();
+    private static final Object FAILED = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final StageStats consumer;
+    private volatile boolean failed;
+
+    StageQueue(int capacity, StageStats consumer) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.consumer = consumer;
+    }
+
+    /**
+     * Adds an item, waiting for room in the queue.
+     *
+     * @throws CancellationException if the thread is interrupted while waiting, or the queue failed
+     */
+    void put(T item) {
+        putObject(item);
+        if (this.failed)
+            throw failure();
+        this.consumer.queued(this.queue.size());
+    }
+
+    /**
+     * Tells the consuming stage there are no more items, unless the queue failed.
+     */
+    void close() {
+        if (!this.failed)
+            putObject(END);
+    }
+
+    /**
+     * Fails the queue, the items still queued are dropped and the stages waiting on it are woken up.
+     * Each later {@link #put} or {@link #take} throws.
+     */
+    void fail() {
+        this.failed = true;
+        // Makes room for a waiting producer, and wakes a waiting consumer
+        this.queue.clear();
+        this.queue.offer(FAILED);
+    }
+
+    /**
+     * Takes the next item, waiting for one.
+     *
+     * @return next item, null once the queue has been closed
+     * @throws CancellationException if the thread is interrupted while waiting, or the queue failed
+     */
+    @SuppressWarnings("unchecked")
+    T take() {
+        try {
+            var item = this.queue.take();
+            if (item == FAILED) {
+                // Leave the marker for any other consumer
+                this.queue.offer(FAILED);
+                throw failure();
+            }
+            if (item == END) {
+                // Leave the marker for any other consumer
+                this.queue.put(END);
+                return null;
+            }
+            return (T) item;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Extraction was interrupted");
+        }
+    }
+
+    /**
+     * Takes the next item, waiting for one, and whatever else is already queued.
+     *
+     * @param max most items to take
+     * @return items taken, null once the queue has been closed
+     * @throws CancellationException if the thread is interrupted while waiting, or the queue failed
+     */
+    @SuppressWarnings("unchecked")
+    List<T> takeBatch(int max) {
+        var first = take();
+        if (first == null)
+            return null;
+
+        var batch = new ArrayList<T>();
+        batch.add(first);
+        Object item;
+        while (batch.size() < max && (item = this.queue.poll()) != null) {
+            if (item == END || item == FAILED) {
+                // Leave the marker for the next call
+                this.queue.offer(item);
+                break;
+            }
+            batch.add((T) item);
+        }
+        return batch;
+    }
+
+    private static CancellationException failure() {
+        return new CancellationException("Extraction was cancelled, a stage failed");
+    }
+
+    private void putObject(Object item) {
+        try {
+            this.queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Extraction was interrupted");
+        }
+    }
+}
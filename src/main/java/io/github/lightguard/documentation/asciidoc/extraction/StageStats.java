@@ -0,0 +1,124 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How busy a stage of the {@link ExtractionPipeline} was and how much work waited in front of it.
+ * A stage close to 100% utilization, with a full queue in front of it, is the bottleneck of the run.
+ */
+public class StageStats {
+    private final String name;
+    private final int workers;
+    private final LongAdder items = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder queueSamples = new LongAdder();
+    private final LongAdder queueDepthTotal = new LongAdder();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    StageStats(String name, int workers) {
+        this.name = name;
+        this.workers = workers;
+    }
+
+    void started() {
+        this.startNanos = System.nanoTime();
+    }
+
+    void finished() {
+        this.endNanos = System.nanoTime();
+    }
+
+    /**
+     * Records one item of work, which started at the given time, as busy time.
+     *
+     * @param startNanos {@link System#nanoTime()} when the work started
+     */
+    void record(long startNanos) {
+        record(startNanos, 1);
+    }
+
+    /**
+     * Records a batch of items, which started at the given time, as busy time.
+     *
+     * @param startNanos {@link System#nanoTime()} when the work started
+     * @param items      number of items in the batch
+     */
+    void record(long startNanos, int items) {
+        this.busyNanos.add(System.nanoTime() - startNanos);
+        this.items.add(items);
+    }
+
+    /**
+     * Records the depth of the input queue after an item was added to it.
+     */
+    void queued(int depth) {
+        this.queueSamples.increment();
+        this.queueDepthTotal.add(depth);
+        this.maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public long getItems() {
+        return items.sum();
+    }
+
+    public long getBusyMillis() {
+        return busyNanos.sum() / 1_000_000;
+    }
+
+    /**
+     * Time from the start of the stage to its end, or to now if it is still running.
+     *
+     * @return elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        var end = this.endNanos == 0 ? System.nanoTime() : this.endNanos;
+        return this.startNanos == 0 ? 0 : (end - this.startNanos) / 1_000_000;
+    }
+
+    /**
+     * Share of the stage's elapsed time its workers spent working.
+     *
+     * @return utilization between 0 and 1
+     */
+    public double getUtilization() {
+        var end = this.endNanos == 0 ? System.nanoTime() : this.endNanos;
+        var available = (end - this.startNanos) * (double) this.workers;
+        return this.startNanos == 0 || available <= 0 ? 0 : Math.min(1, busyNanos.sum() / available);
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public double getAverageQueueDepth() {
+        var samples = queueSamples.sum();
+        return samples == 0 ? 0 : queueDepthTotal.sum() / (double) samples;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s: %d items, %d ms busy, %.0f%% utilization of %d workers, "
+                        + "queue max %d avg %.1f", name, getItems(), getBusyMillis(), getUtilization() * 100, workers,
+                getMaxQueueDepth(), getAverageQueueDepth());
+    }
+
+    /**
+     * What a stage does on its thread.
+     */
+    @FunctionalInterface
+    interface Work<E extends Exception> {
+        void run() throws E;
+    }
+}
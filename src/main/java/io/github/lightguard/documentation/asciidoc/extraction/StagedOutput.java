@@ -0,0 +1,266 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+/**
+ * Output of a split written to a staging directory next to the target, and swapped in once the split is complete.
+ * The staging directory starts with hard links to the files of the existing output, so only the files the split
+ * writes take space and time. The split replaces files rather than writing over them, so a split which fails leaves
+ * the previous output as it was.
+ * Only one split at a time can stage an output, the others are refused until it is committed or discarded.
+ */
+class StagedOutput {
+    private final Path target;
+    private final Path staging;
+    private final Path previous;
+    private final Logger logger;
+    private final Path lockFile;
+    private FileChannel lockChannel;
+
+    private StagedOutput(Path target, Path staging, Path previous, Path lockFile) {
+        this.target = target;
+        this.staging = staging;
+        this.previous = previous;
+        this.lockFile = lockFile;
+        this.logger = LogManager.getLogManager().getLogger("");
+    }
+
+    /**
+     * Creates the staging directory for the target.
+     *
+     * @param target output directory of the split
+     * @return the staged output
+     * @throws IOException if the staging directory can't be created, or another split is staging the target
+     */
+    static StagedOutput stage(Path target) throws IOException {
+        var name = target.getFileName().toString();
+        var staged = new StagedOutput(target, target.resolveSibling("." + name + ".staging"),
+                target.resolveSibling("." + name + ".previous"), target.resolveSibling("." + name + ".lock"));
+        staged.lock();
+
+        try {
+            // Left behind by a run which was killed
+            deleteTree(staged.staging);
+            if (Files.exists(staged.previous, LinkOption.NOFOLLOW_LINKS) && Files.notExists(target)) {
+                Files.move(staged.previous, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            deleteTree(staged.previous);
+
+            if (Files.isDirectory(target)) {
+                staged.linkTree(target, staged.staging);
+            } else {
+                Files.createDirectories(staged.staging);
+            }
+        } catch (IOException | RuntimeException e) {
+            staged.unlock();
+            throw e;
+        }
+        return staged;
+    }
+
+    /**
+     * Takes the lock of the target, the staging directory is only touched while holding it.
+     */
+    private void lock() throws IOException {
+        var channel = FileChannel.open(this.lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another split of this process
+            lock = null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Another split is writing to " + this.target);
+        }
+        this.lockChannel = channel;
+    }
+
+    private void unlock() {
+        if (this.lockChannel == null)
+            return;
+
+        try {
+            // Deleted while still locked, so no other split can take the lock on the old file
+            Files.deleteIfExists(this.lockFile);
+            this.lockChannel.close();
+        } catch (IOException e) {
+            this.logger.warning("Could not release the lock of the output: " + e.getMessage());
+        }
+        this.lockChannel = null;
+    }
+
+    /**
+     * Output written in place, for outputs which can't be staged.
+     *
+     * @param target output directory of the split
+     * @return output without a staging directory
+     */
+    static StagedOutput inPlace(Path target) {
+        return new StagedOutput(target, target, null, null);
+    }
+
+    /**
+     * Directory the split writes to.
+     */
+    Path getDirectory() {
+        return staging;
+    }
+
+    /**
+     * Moves the staged output into place, the previous output is deleted once the new one is in place.
+     *
+     * @throws IOException if the output couldn't be moved, the previous output is then left in place
+     */
+    void commit() throws IOException {
+        if (this.staging.equals(this.target))
+            return;
+
+        try {
+            swap();
+        } finally {
+            unlock();
+        }
+    }
+
+    private void swap() throws IOException {
+        if (Files.notExists(this.target, LinkOption.NOFOLLOW_LINKS)) {
+            Files.move(this.staging, this.target, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        }
+
+        try {
+            Files.move(this.target, this.previous, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // The target is a mount point or similar, the best left is copying over it
+            this.logger.warning("Output can't be swapped in atomically, copying it instead: " + e.getMessage());
+            copyTree(this.staging, this.target);
+            deleteTree(this.staging);
+            return;
+        }
+
+        try {
+            Files.move(this.staging, this.target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(this.previous, this.target, StandardCopyOption.ATOMIC_MOVE);
+            throw e;
+        }
+        deleteTree(this.previous);
+    }
+
+    /**
+     * Deletes the staged output, the previous output stays as it was.
+     */
+    void discard() {
+        if (this.staging.equals(this.target))
+            return;
+
+        try {
+            deleteTree(this.staging);
+        } catch (IOException e) {
+            this.logger.severe("Could not delete the staged output: " + e.getMessage());
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Where a path in the staged output ends up once the output is in place.
+     */
+    Path relocate(Path staged) {
+        return this.target.resolve(this.staging.relativize(staged));
+    }
+
+    /**
+     * Recreates the directories of a tree and hard links its files, symlinks are copied as symlinks. Files are
+     * copied if the file system doesn't support hard links.
+     */
+    private void linkTree(Path source, Path target) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            private boolean linking = true;
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                var staged = target.resolve(source.relativize(file));
+                if (this.linking && attrs.isRegularFile()) {
+                    try {
+                        Files.createLink(staged, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (UnsupportedOperationException | IOException e) {
+                        logger.fine("Can't hard link the output, copying it instead: " + e.getMessage());
+                        this.linking = false;
+                    }
+                }
+                Files.copy(file, staged, LinkOption.NOFOLLOW_LINKS, StandardCopyOption.COPY_ATTRIBUTES,
+                        StandardCopyOption.REPLACE_EXISTING);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Copies a directory, symlinks are copied as symlinks.
+     */
+    private static void copyTree(Path source, Path target) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.copy(file, target.resolve(source.relativize(file)), LinkOption.NOFOLLOW_LINKS,
+                        StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (Files.notExists(root, LinkOption.NOFOLLOW_LINKS))
+            return;
+
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null)
+                    throw exc;
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
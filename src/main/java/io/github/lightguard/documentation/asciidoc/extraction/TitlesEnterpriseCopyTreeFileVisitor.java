@@ -1,6 +1,8 @@
 package io.github.lightguard.documentation.asciidoc.extraction;
 
+import io.github.lightguard.documentation.asciidoc.RewriteRules;
 import io.github.lightguard.documentation.asciidoc.Util;
+import io.github.lightguard.documentation.asciidoc.extraction.model.OutputTree;
 
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
@@ -13,12 +15,26 @@ import java.util.Objects;
  * A specific instance of CopyTreeFileVisitor used for the "titles-enterprise" directory.
  */
 public class TitlesEnterpriseCopyTreeFileVisitor extends CopyTreeFileVisitor {
+    private final RewriteRules rewriteRules;
+
     public TitlesEnterpriseCopyTreeFileVisitor(Path sourcePath, Path targetPath) {
         super(sourcePath, targetPath);
+        this.rewriteRules = RewriteRules.none();
     }
 
     public TitlesEnterpriseCopyTreeFileVisitor(Path sourcePath, Path targetPath, String filePatternToCopy) {
         super(sourcePath, targetPath, filePatternToCopy);
+        this.rewriteRules = RewriteRules.none();
+    }
+
+    public TitlesEnterpriseCopyTreeFileVisitor(Path sourcePath, Path targetPath, OutputTree output) {
+        this(sourcePath, targetPath, output, RewriteRules.none());
+    }
+
+    public TitlesEnterpriseCopyTreeFileVisitor(Path sourcePath, Path targetPath, OutputTree output,
+                                               RewriteRules rewriteRules) {
+        super(sourcePath, targetPath, output);
+        this.rewriteRules = rewriteRules;
     }
 
     @Override
@@ -39,13 +55,13 @@ public class TitlesEnterpriseCopyTreeFileVisitor extends CopyTreeFileVisitor {
                     var assemblies = targetPath.resolve(newDir).resolve("assemblies");
 
                     // Create symlink for assemblies and modules
-                    Files.createSymbolicLink(assemblies,
+                    this.output.createSymbolicLink(assemblies,
                             assemblies.getParent().relativize(targetPath.resolve("assemblies")));
 
                     return FileVisitResult.SKIP_SUBTREE;
                 }
 
-                Files.createSymbolicLink(newDirectory, Files.readSymbolicLink(dir));
+                this.output.createSymbolicLink(newDirectory, Files.readSymbolicLink(dir));
                 return FileVisitResult.SKIP_SUBTREE;
             }
         }
@@ -68,11 +84,12 @@ public class TitlesEnterpriseCopyTreeFileVisitor extends CopyTreeFileVisitor {
             var newFile = targetPath.resolve(file.toString().substring(start));
 
             // Create the directory structure if we need to
-            if (!Files.exists(newFile.getParent())) {
-                Files.createDirectories(newFile.getParent());
+            if (!this.output.exists(newFile.getParent())) {
+                this.output.createDirectories(newFile.getParent());
             }
 
-            Files.writeString(newFile, Util.fixIncludes(lines, false));
+            this.output.write(newFile, this.rewriteRules.apply(Util.fixIncludes(lines, false)));
+            copied(attrs.size());
             return FileVisitResult.CONTINUE;
         }
         return super.visitFile(file, attrs);
@@ -1,33 +1,36 @@
 package io.github.lightguard.documentation.asciidoc.extraction.model;
 
 import io.github.lightguard.documentation.asciidoc.Util;
-import io.github.lightguard.documentation.asciidoc.extension.ReaderPreprocessor;
-import org.asciidoctor.ast.Document;
-import org.asciidoctor.ast.Section;
-import org.asciidoctor.ast.StructuralNode;
+import io.github.lightguard.documentation.asciidoc.extension.LineStore;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
  * An Assembly is essentially a full document from an asciidoc perspective.
  * An Assembly can contain links to modules and also have some additional text, typically before the includes, sort of like a preamble.
+ * The preamble and the modules are slices of the chapter lines, they are only rewritten when they are written.
  */
 public class Assembly {
+    private static final Pattern PRE_PROCESS_START_PATTERN = Pattern.compile(".*if(n?)(def|eval)::(.+)?\\[]$");
 
     private String id;
     private String idWithoutContext;
     private String context;
     private List<ExtractedModule> modules;
-    private StringBuilder source;
+    private SourceSlice preamble;
+    private CharSequence processedBody;
     private boolean createAssembly;
 
-    public Assembly(Document doc, List<String> lines, StringBuilder processedBody) {
-        this.id = (doc.getId() == null ? doc.getBlocks().get(0).getId() : doc.getId());
+    public Assembly(ChapterOutline doc, LineStore store, StringBuilder processedBody) {
+        // Shared by the slices without a copy, which would be a string per line. The parsers hand over the lines of the
+        // source they took, nothing changes them afterwards.
+        var lines = store.asList();
+        this.id = doc.getId();
         // If there isn't an explicit id, it starts with an _
         if (this.id.startsWith("_")) {
             // Don't use the first character (an underscore) and replace underscore with hyphen
@@ -52,28 +55,22 @@ public class Assembly {
 
         this.context = this.id;
         this.modules = new ArrayList<>();
-        this.source = new StringBuilder();
 
-        this.createAssembly = Boolean.parseBoolean(doc.getAttribute("assembly", "true").toString());
-
-        // Adding the id of the module
-        this.source.append("[id='assembly-").append(this.idWithoutContext).append("']\n"); // I don't think we need the context for assemblies
+        this.createAssembly = Boolean.parseBoolean(doc.getAttribute("assembly", "true"));
 
         // Grab the preamble
-        var sections = doc.findBy(Map.of("context", ":section"));
+        var sections = doc.getSections();
 
         // The first block should be the section with the document title
         final int preambleEndLineNumber = getPreambleEndLineNumber(doc, lines);
 
-        for (int i = sections.get(0).getSourceLocation().getLineNumber() - 1; i < preambleEndLineNumber; i++) {
-            this.source.append(Util.fixIncludes(lines.get(i))).append("\n");
-        }
+        this.preamble = new SourceSlice(lines, sections.get(0).getLineNumber() - 1, preambleEndLineNumber,
+                Util::fixIncludes);
 
         List<SectionWrapper> moduleSources = new ArrayList<>();
 
         var modules = sections.stream()
                 .filter(ExtractedModule::isNodeAModule)
-                .map(Section.class::cast)
                 .collect(Collectors.toList());
 
         var modulesItr = modules.listIterator();
@@ -86,7 +83,7 @@ public class Assembly {
                     continue;
 
                 var nextSection = modules.get(modulesItr.nextIndex());
-                var sectionEndLineNumber = nextSection.getSourceLocation().getLineNumber() - 1;
+                var sectionEndLineNumber = nextSection.getLineNumber() - 1;
 
                 var nextSectionLine = lines.get(sectionEndLineNumber);
                 // We have to find the end of this section by looking at the next section and going back looking for
@@ -98,14 +95,14 @@ public class Assembly {
                 }
 
                 // Add it to the list
-                moduleSources.add(new SectionWrapper(section, getSectionSource(lines, section, sectionEndLineNumber)));
+                moduleSources.add(new SectionWrapper(section, getSectionSource(store, section, sectionEndLineNumber)));
             } else {
                 // For sanity, Additional Resources is a module, but not counted as one here
                 if (section.getAttributes().containsValue("_additional-resources"))
                     continue;
 
                 // Add it to the list
-                moduleSources.add(new SectionWrapper(section, getSectionSource(lines, section, lines.size())));
+                moduleSources.add(new SectionWrapper(section, getSectionSource(store, section, lines.size())));
             }
         }
 
@@ -113,13 +110,13 @@ public class Assembly {
             var extractedModule = new ExtractedModule(wrapper.getSection(), wrapper.getSource());
             this.modules.add(extractedModule);
         });
-        this.source.append("\n").append(processedBody);
+        this.processedBody = processedBody;
     }
 
-    private int getPreambleEndLineNumber(StructuralNode doc, List<String> lines) {
+    private int getPreambleEndLineNumber(ChapterOutline doc, List<String> lines) {
         // Find the first module, it may not be the first section
-        var nextSection = doc.findBy(Map.of("context", ":section")).stream().filter(ExtractedModule::isNodeAModule).findFirst().orElseThrow();
-        var sectionEndLineNumber = nextSection.getSourceLocation().getLineNumber() - 1;
+        var nextSection = doc.getSections().stream().filter(ExtractedModule::isNodeAModule).findFirst().orElseThrow();
+        var sectionEndLineNumber = nextSection.getLineNumber() - 1;
 
         var nextSectionLine = lines.get(sectionEndLineNumber);
         // We have to find the end of this section by looking at the next section and going back looking for
@@ -131,41 +128,32 @@ public class Assembly {
         return sectionEndLineNumber;
     }
 
-    private String getSectionSource(List<String> lines, StructuralNode section, int nextSectionStart) {
-        var startingLine = section.getSourceLocation().getLineNumber();
+    private SourceSlice getSectionSource(LineStore lines, SectionOutline section, int nextSectionStart) {
+        var startingLine = section.getLineNumber();
+        var level = section.getLevel();
         var unmatchedIfdef = false;
-        var preProcessStartPattern = Pattern.compile(".*if(n?)(def|eval)::(.+)?\\[]$");
-        StringBuilder sectionSource = new StringBuilder();
         for (int i = startingLine; i < nextSectionStart; i++) {
-            if (lines.get(i).startsWith(ReaderPreprocessor.SPLITTER_COMMENT)
-                && preProcessStartPattern.matcher(lines.get(i)).matches())
+            var text = lines.text(i);
+            if (lines.isMarked(i) && PRE_PROCESS_START_PATTERN.matcher(text).matches())
                 unmatchedIfdef = true;
 
-            if (i + 1 < nextSectionStart && lines.get(i).contains("endif::")) {
-                unmatchedIfdef = false;
-            }
-
-//            // We don't want lines that contain with ifdef::
-//            if (lines.get(i).contains("ifdef::"))
-//                continue;
-//
-//            // We also don't want lines that contain endif::
-//            if (lines.get(i).contains("endif::"))
-//                continue;
-
-            // We don't want to end with an endif
-            if (i + 1 >= nextSectionStart && i + 1 < lines.size()
-                && lines.get(i).startsWith(ReaderPreprocessor.SPLITTER_COMMENT + "endif::")
-                && lines.get(i + 1).trim().isBlank()
-                && !unmatchedIfdef) {
+            if (i + 1 < nextSectionStart && text.contains("endif::")) {
                 unmatchedIfdef = false;
-                continue;
             }
+        }
 
-            sectionSource.append(Util.fixSectionLevelForModule(Util.tweakSource(lines.get(i)), section.getLevel())).append("\n");
-
+        // We don't want to end with an endif
+        var sectionEnd = nextSectionStart;
+        var last = nextSectionStart - 1;
+        if (last >= startingLine && last + 1 < lines.size()
+            && lines.isMarked(last) && lines.text(last).startsWith("endif::")
+            && lines.text(last + 1).trim().isBlank()
+            && !unmatchedIfdef) {
+            sectionEnd = last;
         }
-        return sectionSource.toString();
+
+        return new SourceSlice(lines.asList(), startingLine, sectionEnd,
+                line -> Util.fixSectionLevelForModule(Util.tweakSource(line), level));
     }
 
     public String getId() {
@@ -180,8 +168,21 @@ public class Assembly {
         return Collections.unmodifiableList(this.modules);
     }
 
+    /**
+     * The assembly as it is written: its id, the preamble and the body built by the preprocessor.
+     *
+     * @return assembly source
+     */
     public String getSource() {
-        return source.toString();
+        var source = new StringBuilder()
+                // Adding the id of the module
+                .append("[id='assembly-").append(this.idWithoutContext).append("']\n"); // I don't think we need the context for assemblies
+        try {
+            this.preamble.writeTo(source);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return source.append("\n").append(this.processedBody).toString();
     }
 
     public String getFilename() {
@@ -0,0 +1,31 @@
+package io.github.lightguard.documentation.asciidoc.extraction.model;
+
+import java.util.List;
+
+/**
+ * What the splitter needs to know about a parsed chapter, whichever engine parsed it.
+ */
+public interface ChapterOutline {
+    /**
+     * Id of the document, or of its first block if the document doesn't have one.
+     *
+     * @return id, may be null
+     */
+    String getId();
+
+    /**
+     * Value of a document attribute once the whole document has been parsed.
+     *
+     * @param name         attribute name
+     * @param defaultValue value if the attribute isn't set
+     * @return attribute value
+     */
+    String getAttribute(String name, String defaultValue);
+
+    /**
+     * All the sections of the document, in document order.
+     *
+     * @return sections
+     */
+    List<SectionOutline> getSections();
+}
@@ -1,21 +1,23 @@
 package io.github.lightguard.documentation.asciidoc.extraction.model;
 
 import io.github.lightguard.documentation.asciidoc.Util;
-import org.asciidoctor.ast.Section;
-import org.asciidoctor.ast.StructuralNode;
 
 import java.util.Objects;
 
+/**
+ * A module found in a chapter. It only keeps a {@link SectionSnapshot} of its section, so the parsed chapter can be
+ * garbage collected as soon as it has been split.
+ */
 public class ExtractedModule {
     private String id;
-    private Section section;
-    private String source;
+    private SectionSnapshot section;
+    private SourceSlice source;
     private String moduleType;
     private int leveloffset = 0;
     private boolean additonalResources = false;
     private String folder;
 
-    static boolean isNodeAModule(StructuralNode node) {
+    static boolean isNodeAModule(SectionOutline node) {
         if (node.getAttributes().containsKey(Util.MODULE_TYPE_ATTRIBUTE))
             return true;
 
@@ -43,9 +45,6 @@ public class ExtractedModule {
     }
 
     public String getFolder() {
-        if (this.folder == null) {
-            this.folder = this.section.getAttribute("splitter-doc-root", "", true).toString();
-        }
         return folder;
     }
 
@@ -55,11 +54,13 @@ public class ExtractedModule {
                "id='" + id + "_{context}'" +
                //", section=" + section +
                // ", sources=" + sources +
-               ", parentid=" + Util.getFullId(section.getParent()) +
+               ", parentid=" + section.getParentFullId() +
                '}';
     }
 
-    public ExtractedModule(Section section, String lines) {
+    public ExtractedModule(SectionOutline outline, SourceSlice lines) {
+        var section = SectionSnapshot.of(outline);
+
         // According to the modular docs, there should only be one underscore used to split the context.
         // We want the first part of that split
         // If there isn't an explicit id, it starts with an _
@@ -75,10 +76,11 @@ public class ExtractedModule {
             this.id = this.id.substring(0, this.id.lastIndexOf("{context}") - 1);
         }
 
-        this.moduleType = Util.getModuleType(section);
+        this.moduleType = Util.getModuleType(section.getAttributes(), section.getId());
 
         this.section = section;
         this.leveloffset = section.getLevel();
+        this.folder = section.getFolder();
 
         this.source = lines;
         this.additonalResources = "Additional resources".equalsIgnoreCase(section.getTitle());
@@ -88,14 +90,51 @@ public class ExtractedModule {
         return id;
     }
 
-    public Section getSection() {
+    public SectionOutline getSection() {
         return section;
     }
 
+    /**
+     * Title of the module, as asciidoctor would convert it.
+     *
+     * @return section title
+     */
+    public String getTitle() {
+        return section.getTitle();
+    }
+
+    /**
+     * Body of the module, rewritten for the module file.
+     *
+     * @return module source
+     */
     public String getSource() {
+        return this.source.render();
+    }
+
+    /**
+     * Body of the module, only rewritten as it is written.
+     *
+     * @return lines of the module body
+     */
+    public SourceSlice getSourceSlice() {
         return this.source;
     }
 
+    /**
+     * 64 bit hash of the id, module type and source, modules which are {@link #equals(Object)} have the same one.
+     *
+     * @return fingerprint of the module
+     */
+    public long getFingerprint() {
+        var fingerprint = new SourceSlice.Fingerprint()
+                .append(id).append('\0')
+                .append(moduleType).append('\0')
+                .value();
+        // Mixes in the source, whose own fingerprint is cached for the other users of the slice
+        return Long.rotateLeft(fingerprint, 31) ^ source.fingerprint() * 0x9e3779b97f4a7c15L;
+    }
+
     public String getFileName() {
         if (id.contains(moduleType))
             return id + ".adoc".toLowerCase();
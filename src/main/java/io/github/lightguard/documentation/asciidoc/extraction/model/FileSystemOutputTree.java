@@ -0,0 +1,79 @@
+package io.github.lightguard.documentation.asciidoc.extraction.model;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * {@link OutputTree} on disk.
+ */
+class FileSystemOutputTree implements OutputTree {
+    static final FileSystemOutputTree INSTANCE = new FileSystemOutputTree();
+
+    private FileSystemOutputTree() {
+    }
+
+    @Override
+    public boolean exists(Path path) {
+        return Files.exists(path);
+    }
+
+    @Override
+    public void createDirectory(Path directory) throws IOException {
+        Files.createDirectory(directory);
+    }
+
+    @Override
+    public void createDirectories(Path directory) throws IOException {
+        Files.createDirectories(directory);
+    }
+
+    @Override
+    public void write(Path file, CharSequence content) throws IOException {
+        unlink(file);
+        try (Writer output = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            output.append(content);
+        }
+    }
+
+    @Override
+    public void write(Path file, OutputContent content) throws IOException {
+        unlink(file);
+        try (Writer output = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            content.writeTo(output);
+        }
+    }
+
+    /**
+     * Removes a file before it is written, a staged output shares its files with the previous output through hard
+     * links. Symlinks are kept, and written through.
+     */
+    private static void unlink(Path file) throws IOException {
+        if (Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS))
+            Files.delete(file);
+    }
+
+    @Override
+    public void copy(Path source, Path target) throws IOException {
+        Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void createSymbolicLink(Path link, Path target) throws IOException {
+        Files.createSymbolicLink(link, target);
+    }
+
+    @Override
+    public boolean deleteIfExists(Path path) throws IOException {
+        return Files.deleteIfExists(path);
+    }
+
+    @Override
+    public String readString(Path file) throws IOException {
+        return Files.readString(file, StandardCharsets.UTF_8);
+    }
+}
@@ -25,6 +25,8 @@ public class GitRepository implements PushableLocation, AutoCloseable {
     private final boolean willPush;
     private Path dirPath;
     private Git gitRepo;
+    private long cloneNanos;
+    private long pushNanos;
 
     public GitRepository(String url, String branch, boolean willPush) {
         this(url, branch, "", "", willPush);
@@ -62,6 +64,24 @@ public class GitRepository implements PushableLocation, AutoCloseable {
         return branch;
     }
 
+    /**
+     * Time spent cloning the repository, 0 until it is cloned.
+     *
+     * @return clone time in nanoseconds
+     */
+    public long getCloneNanos() {
+        return cloneNanos;
+    }
+
+    /**
+     * Time spent committing and pushing to the repository, 0 until it is pushed.
+     *
+     * @return push time in nanoseconds
+     */
+    public long getPushNanos() {
+        return pushNanos;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -90,6 +110,12 @@ public class GitRepository implements PushableLocation, AutoCloseable {
                '}';
     }
 
+    @Override
+    public boolean isStaged() {
+        // A clone is only published by its push, so it is written in place
+        return false;
+    }
+
     @Override
     public Path getDirectoryPath() {
         if (dirPath == null) {
@@ -104,6 +130,7 @@ public class GitRepository implements PushableLocation, AutoCloseable {
     private void cloneRepository() {
         try {
             System.out.println("Cloning repository...");
+            var start = System.nanoTime();
 
             var uri = new URIish(url);
 
@@ -126,6 +153,7 @@ public class GitRepository implements PushableLocation, AutoCloseable {
 
             gitRepo = cloneCommand.call();
             dirPath = gitRepo.getRepository().getDirectory().toPath().getParent();
+            cloneNanos = System.nanoTime() - start;
         } catch (IOException | GitAPIException e) {
             System.out.println("Error executing git commands: " + e.getLocalizedMessage());
             throw new RuntimeException(e);
@@ -144,6 +172,7 @@ public class GitRepository implements PushableLocation, AutoCloseable {
             cloneRepository();
         }
 
+        var start = System.nanoTime();
         try {
             var branchExists = gitRepo.branchList().setListMode(ListBranchCommand.ListMode.ALL).call().parallelStream()
                     .anyMatch(ref -> ref.getName().equals(branch));
@@ -164,6 +193,7 @@ public class GitRepository implements PushableLocation, AutoCloseable {
                 pushCommand.setCredentialsProvider(new UsernamePasswordCredentialsProvider(username, password));
 
             pushCommand.call();
+            pushNanos += System.nanoTime() - start;
         } catch (GitAPIException e) {
             System.out.println("Error executing git commands: " + e.getLocalizedMessage());
             throw new RuntimeException(e);
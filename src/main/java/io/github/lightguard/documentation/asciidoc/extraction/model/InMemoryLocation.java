@@ -0,0 +1,279 @@
+package io.github.lightguard.documentation.asciidoc.extraction.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An output location kept in memory, nothing is written to disk.
+ * Used to find out what a split produces, the directory is only used to name the files, it doesn't have to exist.
+ * The content stays available after the location is closed. Copied files are only recorded with their source and
+ * size, their content is read from the source if it is asked for.
+ */
+public class InMemoryLocation implements PushableLocation, OutputTree {
+    // Links are followed at most this many times while resolving a path, like the file system's loop limit
+    private static final int MAX_LINKS = 40;
+
+    private final Path directory;
+    private final Directory root = new Directory();
+
+    public InMemoryLocation(Path directory) {
+        this.directory = directory.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public Path getDirectoryPath() {
+        return this.directory;
+    }
+
+    @Override
+    public OutputTree getOutputTree() {
+        return this;
+    }
+
+    @Override
+    public void push() {
+        // Nothing to push
+    }
+
+    @Override
+    public void close() {
+        // The content is kept, it is what the split produced
+    }
+
+    @Override
+    public synchronized boolean exists(Path path) {
+        return find(path, true, 0) != null;
+    }
+
+    @Override
+    public synchronized void createDirectory(Path directory) throws IOException {
+        var parent = parentOf(directory);
+        if (parent.entries.containsKey(name(directory)))
+            throw new FileAlreadyExistsException(directory.toString());
+        parent.entries.put(name(directory), new Directory());
+    }
+
+    @Override
+    public synchronized void createDirectories(Path directory) throws IOException {
+        var relative = relativize(directory);
+        if (relative.toString().isEmpty())
+            return;
+
+        var current = this.directory;
+        for (var name : relative) {
+            current = current.resolve(name);
+            var node = find(current, true, 0);
+            if (node instanceof Directory)
+                continue;
+            if (node != null || find(current, false, 0) != null)
+                throw new FileAlreadyExistsException(current.toString());
+            parentOf(current).entries.put(name.toString(), new Directory());
+        }
+    }
+
+    @Override
+    public synchronized void write(Path file, CharSequence content) throws IOException {
+        put(file, new File(content.toString().getBytes(StandardCharsets.UTF_8)), 0);
+    }
+
+    @Override
+    public void copy(Path source, Path target) throws IOException {
+        var copied = new File(source.toAbsolutePath(), Files.size(source));
+        synchronized (this) {
+            put(target, copied, 0);
+        }
+    }
+
+    @Override
+    public synchronized void createSymbolicLink(Path link, Path target) throws IOException {
+        var parent = parentOf(link);
+        if (parent.entries.containsKey(name(link)))
+            throw new FileAlreadyExistsException(link.toString());
+        parent.entries.put(name(link), new Link(target));
+    }
+
+    @Override
+    public synchronized boolean deleteIfExists(Path path) throws IOException {
+        var parent = find(path.getParent(), true, 0);
+        if (!(parent instanceof Directory))
+            return false;
+
+        var node = ((Directory) parent).entries.get(name(path));
+        if (node instanceof Directory && !((Directory) node).entries.isEmpty())
+            throw new DirectoryNotEmptyException(path.toString());
+        return ((Directory) parent).entries.remove(name(path)) != null;
+    }
+
+    @Override
+    public synchronized String readString(Path file) throws IOException {
+        var node = find(file, true, 0);
+        if (node instanceof Directory)
+            throw new FileSystemException(file.toString(), null, "Is a directory");
+        if (node == null)
+            throw new NoSuchFileException(file.toString());
+        return new String(((File) node).content(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Files in the location, relative to its directory.
+     *
+     * @return size in bytes of each file, sorted by path
+     */
+    public synchronized Map<Path, Long> getFiles() {
+        var files = new TreeMap<Path, Long>();
+        collect(this.root, Path.of(""), files, null);
+        return files;
+    }
+
+    /**
+     * Symlinks in the location, relative to its directory.
+     *
+     * @return target of each symlink, sorted by path
+     */
+    public synchronized Map<Path, Path> getSymbolicLinks() {
+        var links = new TreeMap<Path, Path>();
+        collect(this.root, Path.of(""), null, links);
+        return links;
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryLocation{" +
+                "directory='" + directory + '\'' +
+                '}';
+    }
+
+    private static void collect(Directory directory, Path path, Map<Path, Long> files, Map<Path, Path> links) {
+        directory.entries.forEach((name, node) -> {
+            var entry = path.resolve(name);
+            if (node instanceof Directory)
+                collect((Directory) node, entry, files, links);
+            else if (node instanceof File && files != null)
+                files.put(entry, ((File) node).size);
+            else if (node instanceof Link && links != null)
+                links.put(entry, ((Link) node).target);
+        });
+    }
+
+    private void put(Path file, File content, int links) throws IOException {
+        var parent = parentOf(file);
+        var node = parent.entries.get(name(file));
+        if (node instanceof Directory)
+            throw new FileSystemException(file.toString(), null, "Is a directory");
+        if (node instanceof Link) {
+            // Written through the link, like on disk
+            if (links >= MAX_LINKS)
+                throw new FileSystemException(file.toString(), null, "Too many levels of symbolic links");
+            put(file.resolveSibling(((Link) node).target).normalize(), content, links + 1);
+            return;
+        }
+        parent.entries.put(name(file), content);
+    }
+
+    private Directory parentOf(Path path) throws IOException {
+        var parent = find(path.getParent(), true, 0);
+        if (!(parent instanceof Directory))
+            throw new NoSuchFileException(String.valueOf(path.getParent()));
+        return (Directory) parent;
+    }
+
+    /**
+     * Finds the node at the path, following the links on the way.
+     *
+     * @param followLast whether a link at the path itself is followed
+     * @return the node, null if there is none
+     */
+    private Node find(Path path, boolean followLast, int links) {
+        if (path == null || links > MAX_LINKS)
+            return null;
+
+        Path relative;
+        try {
+            relative = relativize(path);
+        } catch (IOException e) {
+            return null;
+        }
+
+        Node node = this.root;
+        var current = this.directory;
+        if (relative.toString().isEmpty())
+            return node;
+        for (int i = 0; i < relative.getNameCount(); i++) {
+            if (!(node instanceof Directory))
+                return null;
+
+            node = ((Directory) node).entries.get(relative.getName(i).toString());
+            current = current.resolve(relative.getName(i));
+            if (node == null)
+                return null;
+
+            var last = i == relative.getNameCount() - 1;
+            if (node instanceof Link && (!last || followLast)) {
+                var target = current.resolveSibling(((Link) node).target).normalize();
+                if (!last)
+                    target = target.resolve(relative.subpath(i + 1, relative.getNameCount()));
+                return find(target, followLast, links + 1);
+            }
+        }
+        return node;
+    }
+
+    private Path relativize(Path path) throws IOException {
+        var normalized = path.toAbsolutePath().normalize();
+        if (!normalized.startsWith(this.directory))
+            throw new FileSystemException(path.toString(), null, "Outside of " + this.directory);
+        return this.directory.relativize(normalized);
+    }
+
+    private static String name(Path path) {
+        return path.getFileName().toString();
+    }
+
+    private abstract static class Node {
+    }
+
+    private static class Directory extends Node {
+        // Sorted, so the content is listed in a stable order
+        private final Map<String, Node> entries = new TreeMap<>();
+    }
+
+    private static class File extends Node {
+        // Null for a copied file
+        private final byte[] content;
+        // Null for a written file
+        private final Path source;
+        private final long size;
+
+        File(byte[] content) {
+            this.content = content;
+            this.source = null;
+            this.size = content.length;
+        }
+
+        File(Path source, long size) {
+            this.content = null;
+            this.source = source;
+            this.size = size;
+        }
+
+        byte[] content() throws IOException {
+            return this.content != null ? this.content : Files.readAllBytes(this.source);
+        }
+    }
+
+    private static class Link extends Node {
+        private final Path target;
+
+        Link(Path target) {
+            this.target = target;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.lightguard.documentation.asciidoc.extraction.model;
+
+import java.io.IOException;
+
+/**
+ * Content of an output file, appended straight to where it is written instead of being built as a string first.
+ */
+@FunctionalInterface
+public interface OutputContent {
+    /**
+     * Content which is already a string.
+     *
+     * @param text content of the file
+     * @return the content
+     */
+    static OutputContent of(CharSequence text) {
+        return out -> out.append(text);
+    }
+
+    /**
+     * Appends the content, can be called more than once.
+     *
+     * @param out where the content goes
+     * @throws IOException if the content can't be appended
+     */
+    void writeTo(Appendable out) throws IOException;
+
+    /**
+     * The whole content as a string.
+     *
+     * @return the content
+     */
+    default String render() {
+        var out = new StringBuilder();
+        try {
+            writeTo(out);
+        } catch (IOException e) {
+            // A StringBuilder doesn't throw
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.lightguard.documentation.asciidoc.extraction.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The files, directories and symlinks a split creates below the directory of its {@link PushableLocation}.
+ * Paths are the absolute paths the split would create on disk, files are read from and written in UTF-8.
+ */
+public interface OutputTree {
+    /**
+     * Output written straight to the file system.
+     *
+     * @return the file system output
+     */
+    static OutputTree fileSystem() {
+        return FileSystemOutputTree.INSTANCE;
+    }
+
+    /**
+     * Checks if a file, directory or symlink target exists.
+     */
+    boolean exists(Path path);
+
+    /**
+     * Creates a directory, its parent has to exist.
+     *
+     * @throws java.nio.file.FileAlreadyExistsException if something already exists at the path
+     */
+    void createDirectory(Path directory) throws IOException;
+
+    /**
+     * Creates a directory and its missing parents.
+     */
+    void createDirectories(Path directory) throws IOException;
+
+    /**
+     * Writes a file, replacing it if it exists.
+     */
+    void write(Path file, CharSequence content) throws IOException;
+
+    /**
+     * Writes a file as its content is appended, replacing it if it exists.
+     */
+    default void write(Path file, OutputContent content) throws IOException {
+        write(file, content.render());
+    }
+
+    /**
+     * Copies a file from the file system, replacing the target if it exists.
+     *
+     * @param source file on disk
+     * @param target where to copy it to
+     */
+    void copy(Path source, Path target) throws IOException;
+
+    /**
+     * Creates a symlink.
+     *
+     * @throws java.nio.file.FileAlreadyExistsException if something already exists at the path
+     */
+    void createSymbolicLink(Path link, Path target) throws IOException;
+
+    /**
+     * Deletes a file, symlink or empty directory.
+     *
+     * @return false if there was nothing to delete
+     */
+    boolean deleteIfExists(Path path) throws IOException;
+
+    /**
+     * Reads a file.
+     */
+    String readString(Path file) throws IOException;
+}
@@ -13,6 +13,25 @@ public interface PushableLocation extends Location, AutoCloseable {
      */
     void push();
 
+    /**
+     * Where the files of a split are created, on disk in the directory of the location unless overridden.
+     *
+     * @return output of the location
+     */
+    default OutputTree getOutputTree() {
+        return OutputTree.fileSystem();
+    }
+
+    /**
+     * Whether a split is written next to the location first and only moved into place once it is complete.
+     * Locations with a push of their own, like a git repository, are written in place.
+     *
+     * @return true to stage the output of a split
+     */
+    default boolean isStaged() {
+        return getOutputTree() == OutputTree.fileSystem();
+    }
+
     static PushableLocation locationWrapper(Location loc, Runnable pushAction) {
         if (Objects.isNull(loc)) {
             throw new IllegalArgumentException("loc must be non-null");
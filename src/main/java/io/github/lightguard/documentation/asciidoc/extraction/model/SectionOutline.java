@@ -0,0 +1,47 @@
+package io.github.lightguard.documentation.asciidoc.extraction.model;
+
+import java.util.Map;
+
+/**
+ * A section of a parsed chapter, see {@link ChapterOutline}.
+ */
+public interface SectionOutline {
+    String getId();
+
+    int getLevel();
+
+    /**
+     * Title after substitutions, as asciidoctor would convert it.
+     *
+     * @return section title
+     */
+    String getTitle();
+
+    /**
+     * Attributes from the block attribute lines above the section title.
+     *
+     * @return section attributes
+     */
+    Map<String, Object> getAttributes();
+
+    /**
+     * Line of the section title, starting at 1.
+     *
+     * @return line number
+     */
+    int getLineNumber();
+
+    /**
+     * Name of the directory containing the chapter.
+     *
+     * @return folder name
+     */
+    String getFolder();
+
+    /**
+     * Ids of the parents of the section, used to tell sections apart in messages.
+     *
+     * @return parent ids
+     */
+    String getParentFullId();
+}
@@ -0,0 +1,84 @@
+package io.github.lightguard.documentation.asciidoc.extraction.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link SectionOutline} with everything read up front, so it doesn't keep the parsed document alive.
+ * Outlines from asciidoctor read through to the Ruby AST, holding on to one would keep the whole document from being
+ * garbage collected until the end of the run.
+ */
+public final class SectionSnapshot implements SectionOutline {
+    private final String id;
+    private final int level;
+    private final String title;
+    private final Map<String, Object> attributes;
+    private final int lineNumber;
+    private final String folder;
+    private final String parentFullId;
+
+    private SectionSnapshot(SectionOutline section) {
+        this.id = section.getId();
+        this.level = section.getLevel();
+        this.title = section.getTitle();
+        this.attributes = Collections.unmodifiableMap(new LinkedHashMap<>(section.getAttributes()));
+        this.lineNumber = section.getLineNumber();
+        this.folder = section.getFolder();
+        this.parentFullId = section.getParentFullId();
+    }
+
+    /**
+     * Reads everything from the section.
+     *
+     * @param section section of a parsed document
+     * @return the snapshot, the section itself if it already is one
+     */
+    public static SectionSnapshot of(SectionOutline section) {
+        return section instanceof SectionSnapshot ? (SectionSnapshot) section : new SectionSnapshot(section);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public String getTitle() {
+        return title;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public String getFolder() {
+        return folder;
+    }
+
+    @Override
+    public String getParentFullId() {
+        return parentFullId;
+    }
+
+    @Override
+    public String toString() {
+        return "SectionSnapshot{" +
+               "id='" + id + '\'' +
+               ", level=" + level +
+               ", lineNumber=" + lineNumber +
+               '}';
+    }
+}
@@ -1,21 +1,19 @@
 package io.github.lightguard.documentation.asciidoc.extraction.model;
 
-import org.asciidoctor.ast.Section;
-
 public class SectionWrapper {
-    private Section section;
-    private String source;
+    private SectionOutline section;
+    private SourceSlice source;
 
-    public SectionWrapper(Section section, String source) {
+    public SectionWrapper(SectionOutline section, SourceSlice source) {
         this.section = section;
         this.source = source;
     }
 
-    public Section getSection() {
+    public SectionOutline getSection() {
         return section;
     }
 
-    public String getSource() {
+    public SourceSlice getSource() {
         return source;
     }
 }
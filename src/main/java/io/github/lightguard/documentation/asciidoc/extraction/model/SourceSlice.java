@@ -0,0 +1,171 @@
+package io.github.lightguard.documentation.asciidoc.extraction.model;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+/**
+ * A range of the lines of a chapter, each line rewritten when the slice is written.
+ * The lines are shared by all the slices of the chapter, so the text of a module is only held once, and the rewritten
+ * text only exists while it is written. Equality and the hash code are those of the rewritten text as a string.
+ */
+public final class SourceSlice implements OutputContent {
+    private final List<String> lines;
+    private final int from;
+    private final int to;
+    private final UnaryOperator<String> rewrite;
+    private int hash;
+    private boolean hashIsZero;
+    private long fingerprint;
+    private boolean hasFingerprint;
+
+    /**
+     * @param lines   lines of the chapter, they must not change afterwards
+     * @param from    first line of the slice, starting at 0
+     * @param to      line after the last line of the slice
+     * @param rewrite applied to each line as it is written
+     */
+    public SourceSlice(List<String> lines, int from, int to, UnaryOperator<String> rewrite) {
+        if (to > from)
+            Objects.checkFromToIndex(from, to, lines.size());
+        this.lines = lines;
+        this.from = from;
+        this.to = Math.max(from, to);
+        this.rewrite = rewrite;
+    }
+
+    /**
+     * Number of lines in the slice.
+     */
+    public int getLineCount() {
+        return to - from;
+    }
+
+    /**
+     * Appends each rewritten line followed by a new line.
+     */
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        for (int i = from; i < to; i++) {
+            out.append(rewrite.apply(lines.get(i))).append('\n');
+        }
+    }
+
+    @Override
+    public String toString() {
+        return render();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SourceSlice that = (SourceSlice) o;
+        return hashCode() == that.hashCode() && render().equals(that.render());
+    }
+
+    /**
+     * Same as the hash code of {@link #render()}, without building the string.
+     */
+    @Override
+    public int hashCode() {
+        int h = this.hash;
+        if (h == 0 && !this.hashIsZero) {
+            var hasher = new StringHasher();
+            try {
+                writeTo(hasher);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            h = hasher.hash;
+            if (h == 0)
+                this.hashIsZero = true;
+            else
+                this.hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * 64 bit hash of the rewritten text, for telling slices apart without comparing them.
+     *
+     * @return FNV-1a hash of the chars of {@link #render()}
+     */
+    public long fingerprint() {
+        if (!this.hasFingerprint) {
+            var hasher = new Fingerprint();
+            try {
+                writeTo(hasher);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            this.fingerprint = hasher.value();
+            this.hasFingerprint = true;
+        }
+        return this.fingerprint;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the chars appended to it.
+     */
+    public static final class Fingerprint implements Appendable {
+        private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+        private static final long PRIME = 0x100000001b3L;
+
+        private long hash = OFFSET_BASIS;
+
+        @Override
+        public Fingerprint append(CharSequence csq) {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Fingerprint append(CharSequence csq, int start, int end) {
+            for (int i = start; i < end; i++) {
+                append(csq.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public Fingerprint append(char c) {
+            hash = (hash ^ (c & 0xff)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+            return this;
+        }
+
+        /**
+         * Hash of everything appended so far.
+         */
+        public long value() {
+            return hash;
+        }
+    }
+
+    /**
+     * Computes {@link String#hashCode()} of what is appended.
+     */
+    private static class StringHasher implements Appendable {
+        private int hash;
+
+        @Override
+        public Appendable append(CharSequence csq) {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) {
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + csq.charAt(i);
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            hash = 31 * hash + c;
+            return this;
+        }
+    }
+}
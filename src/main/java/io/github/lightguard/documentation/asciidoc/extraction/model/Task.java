@@ -1,5 +1,7 @@
 package io.github.lightguard.documentation.asciidoc.extraction.model;
 
+import io.github.lightguard.documentation.asciidoc.RewriteRules;
+
 import java.io.File;
 import java.util.Collections;
 import java.util.List;
@@ -15,17 +17,24 @@ public class Task {
     private final Map<String, Object> attributes;
     private final List<File> ignoreFiles;
     private final boolean pv2;
+    private final RewriteRules rewriteRules;
 
     public Task(Location location, PushableLocation pushableLocation) {
         this(location, pushableLocation, Collections.emptyMap(), Collections.emptyList(), false);
     }
 
     public Task(Location location, PushableLocation pushableLocation, Map<String, Object> attributes, List<File> ignoreFiles, boolean pv2) {
+        this(location, pushableLocation, attributes, ignoreFiles, pv2, RewriteRules.none());
+    }
+
+    public Task(Location location, PushableLocation pushableLocation, Map<String, Object> attributes, List<File> ignoreFiles, boolean pv2,
+                RewriteRules rewriteRules) {
         this.location = location;
         this.pushableLocation = pushableLocation;
         this.attributes = Objects.isNull(attributes) ? Collections.emptyMap() : attributes;
         this.ignoreFiles = Objects.isNull(ignoreFiles) ? Collections.emptyList() : ignoreFiles;
         this.pv2 = pv2;
+        this.rewriteRules = Objects.isNull(rewriteRules) ? RewriteRules.none() : rewriteRules;
     }
 
     /**
@@ -57,6 +66,14 @@ public class Task {
         return pv2;
     }
 
+    /**
+     * Gets the rewrites applied to the output after the built-in ones
+     * @return rewrite rules, empty if there are none
+     */
+    public RewriteRules getRewriteRules() {
+        return rewriteRules;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -69,12 +86,13 @@ public class Task {
         return Objects.equals(location, task.location) &&
                Objects.equals(pushableLocation, task.pushableLocation) &&
                Objects.equals(pv2, task.pv2) &&
+               Objects.equals(rewriteRules, task.rewriteRules) &&
                Objects.equals(attributes, task.attributes) && Objects.equals(ignoreFiles, task.ignoreFiles);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(location, pushableLocation, attributes, ignoreFiles, pv2);
+        return Objects.hash(location, pushableLocation, attributes, ignoreFiles, pv2, rewriteRules);
     }
 
     @Override
@@ -85,6 +103,7 @@ public class Task {
                ", attributes=" + attributes +
                ", ignoreFiles=" + ignoreFiles +
                ", pv2=" + pv2 +
+               ", rewriteRules=" + rewriteRules +
                '}';
     }
 }
@@ -0,0 +1,156 @@
+package io.github.lightguard.documentation.asciidoc.scanner;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses a block attribute list, such as {@code [source,java,id='example']}, the way asciidoctor does.
+ * Positional attributes are keyed by their 1-based index, named attributes by their name.
+ */
+class AttributeList {
+    private static final Pattern NAME = Pattern.compile("[" + Rx.WORD + "][" + Rx.WORD + "\\-.]*");
+    private static final Pattern BLANK = Pattern.compile("[ \\t]+");
+    private static final Pattern SKIP = Pattern.compile("[ \\t]*(,|$)");
+    private static final Pattern TO_DELIMITER = Pattern.compile(".*?(?=[ \\t]*(,|$))");
+    private static final Pattern TO_DOUBLE_QUOTE = Pattern.compile(".*?[^\\\\](?=\")");
+    private static final Pattern TO_SINGLE_QUOTE = Pattern.compile(".*?[^\\\\](?=')");
+
+    private final String source;
+    private final UnaryOperator<String> subs;
+    private int pos;
+
+    /**
+     * @param source attribute list, without the brackets
+     * @param subs   substitutions applied to single quoted values, null for none
+     */
+    AttributeList(String source, UnaryOperator<String> subs) {
+        this.source = source;
+        this.subs = subs;
+    }
+
+    void parseInto(Map<Object, Object> attributes, List<String> positionalNames) {
+        int index = 0;
+        while (parseAttribute(attributes, index, positionalNames)) {
+            if (eos())
+                break;
+            scan(SKIP);
+            index++;
+        }
+    }
+
+    private boolean parseAttribute(Map<Object, Object> attributes, int index, List<String> positionalNames) {
+        boolean more = true;
+        boolean singleQuoted = false;
+        String name;
+        String value = null;
+
+        scan(BLANK);
+        var c = peek();
+        if (c == '"') {
+            this.pos++;
+            name = parseAttributeValue('"');
+        } else if (c == '\'') {
+            this.pos++;
+            name = parseAttributeValue('\'');
+            singleQuoted = !name.startsWith("'");
+        } else {
+            name = scan(NAME);
+            var blank = name == null ? null : scan(BLANK);
+            var skipped = blank == null ? 0 : blank.length();
+            if (eos()) {
+                if (name == null && !this.source.stripTrailing().endsWith(","))
+                    return false;
+                more = false;
+            } else if ((c = this.source.charAt(this.pos++)) == ',') {
+                this.pos--;
+            } else if (name != null) {
+                if (c == '=') {
+                    scan(BLANK);
+                    if (eos()) {
+                        value = "";
+                    } else if ((c = this.source.charAt(this.pos++)) == '"') {
+                        value = parseAttributeValue('"');
+                    } else if (c == '\'') {
+                        value = parseAttributeValue('\'');
+                        singleQuoted = !value.startsWith("'");
+                    } else if (c == ',') {
+                        value = "";
+                        this.pos--;
+                    } else {
+                        value = c + scanToDelimiter();
+                        if (value.equals("None"))
+                            return true;
+                    }
+                } else {
+                    name = name + " ".repeat(skipped) + c + scanToDelimiter();
+                }
+            } else {
+                name = c + scanToDelimiter();
+            }
+        }
+
+        if (value != null) {
+            if (name.equals("options") || name.equals("opts")) {
+                if (value.contains(",")) {
+                    for (var option : value.replace(" ", "").split(",")) {
+                        if (!option.isEmpty())
+                            attributes.put(option + "-option", "");
+                    }
+                } else if (!value.isEmpty()) {
+                    attributes.put(value + "-option", "");
+                }
+            } else if (singleQuoted && this.subs != null && !name.equals("title") && !name.equals("reftext")) {
+                attributes.put(name, this.subs.apply(value));
+            } else {
+                attributes.put(name, value);
+            }
+        } else {
+            if (singleQuoted && this.subs != null)
+                name = this.subs.apply(name);
+            if (index < positionalNames.size() && name != null)
+                attributes.put(positionalNames.get(index), name);
+            attributes.put(index + 1, name);
+        }
+        return more;
+    }
+
+    private String parseAttributeValue(char quote) {
+        if (peek() == quote) {
+            this.pos++;
+            return "";
+        }
+
+        var value = scan(quote == '"' ? TO_DOUBLE_QUOTE : TO_SINGLE_QUOTE);
+        if (value != null) {
+            this.pos++;
+            return value.indexOf('\\') >= 0 ? value.replace("\\" + quote, String.valueOf(quote)) : value;
+        }
+        return quote + scanToDelimiter();
+    }
+
+    private String scanToDelimiter() {
+        return scan(TO_DELIMITER);
+    }
+
+    private boolean eos() {
+        return this.pos >= this.source.length();
+    }
+
+    private char peek() {
+        return eos() ? 0 : this.source.charAt(this.pos);
+    }
+
+    private String scan(Pattern pattern) {
+        Matcher matcher = pattern.matcher(this.source)
+                .region(this.pos, this.source.length())
+                .useTransparentBounds(true)
+                .useAnchoringBounds(false);
+        if (!matcher.lookingAt())
+            return null;
+        this.pos = matcher.end();
+        return matcher.group();
+    }
+}
@@ -0,0 +1,782 @@
+package io.github.lightguard.documentation.asciidoc.scanner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The document level state asciidoctor keeps while parsing: attributes, which of them were locked by the API,
+ * the ids in use and the substitutions applied to titles and attribute values.
+ * Only the html5 backend in the secure safe mode, asciidoctor's defaults, is modelled.
+ */
+class DocumentState {
+    private static final String DEL = "\u007f";
+    private static final String CAN = "\u0018";
+
+    private static final Map<String, String> INTRINSIC_ATTRIBUTES = Map.ofEntries(
+            Map.entry("startsb", "["), Map.entry("endsb", "]"), Map.entry("vbar", "|"), Map.entry("caret", "^"),
+            Map.entry("asterisk", "*"), Map.entry("tilde", "~"), Map.entry("plus", "&#43;"),
+            Map.entry("backslash", "\\"), Map.entry("backtick", "`"), Map.entry("blank", ""), Map.entry("empty", ""),
+            Map.entry("sp", " "), Map.entry("two-colons", "::"), Map.entry("two-semicolons", ";;"),
+            Map.entry("nbsp", "&#160;"), Map.entry("deg", "&#176;"), Map.entry("zwsp", "&#8203;"),
+            Map.entry("quot", "&#34;"), Map.entry("apos", "&#39;"), Map.entry("lsquo", "&#8216;"),
+            Map.entry("rsquo", "&#8217;"), Map.entry("ldquo", "&#8220;"), Map.entry("rdquo", "&#8221;"),
+            Map.entry("wj", "&#8288;"), Map.entry("brvbar", "&#166;"), Map.entry("pp", "&#43;&#43;"),
+            Map.entry("cpp", "C&#43;&#43;"), Map.entry("amp", "&"), Map.entry("lt", "<"), Map.entry("gt", ">"));
+
+    private static final Map<String, String> DEFAULT_ATTRIBUTES = Map.ofEntries(
+            Map.entry("appendix-caption", "Appendix"), Map.entry("appendix-refsig", "Appendix"),
+            Map.entry("caution-caption", "Caution"), Map.entry("chapter-refsig", "Chapter"),
+            Map.entry("example-caption", "Example"), Map.entry("figure-caption", "Figure"),
+            Map.entry("important-caption", "Important"), Map.entry("last-update-label", "Last updated"),
+            Map.entry("note-caption", "Note"), Map.entry("part-refsig", "Part"), Map.entry("prewrap", ""),
+            Map.entry("sectids", ""), Map.entry("section-refsig", "Section"), Map.entry("table-caption", "Table"),
+            Map.entry("tip-caption", "Tip"), Map.entry("toc-placement", "auto"),
+            Map.entry("toc-title", "Table of Contents"), Map.entry("untitled-label", "Untitled"),
+            Map.entry("version-label", "Version"), Map.entry("warning-caption", "Warning"));
+
+    private static final List<Quote> QUOTES = List.of(
+            Quote.unconstrained("strong", "\\*\\*(.+?)\\*\\*"),
+            Quote.constrained("strong", ";:}", "\\*", "\\*"),
+            Quote.constrained("double", ";:}", "\"`", "`\""),
+            Quote.constrained("single", ";:`}", "'`", "`'"),
+            Quote.unconstrained("monospaced", "``(.+?)``"),
+            new Quote("monospaced", false, "(^|[^" + Rx.WORD + ";:\"'`}])(?:\\[([^\\]]+)])?`(\\S|\\S.*?\\S)`(?!["
+                    + Rx.WORD + "\"'`])", true),
+            Quote.unconstrained("emphasis", "__(.+?)__"),
+            Quote.constrained("emphasis", ";:}", "_", "_"),
+            Quote.unconstrained("mark", "##(.+?)##"),
+            Quote.constrained("mark", "&;:}", "#", "#"),
+            new Quote("superscript", true, "\\\\?(?:\\[([^\\]]+)])?\\^(\\S+?)\\^", false),
+            new Quote("subscript", true, "\\\\?(?:\\[([^\\]]+)])?~(\\S+?)~", false));
+
+    private static final List<Quote> COMPAT_QUOTES = List.of(
+            QUOTES.get(0),
+            QUOTES.get(1),
+            Quote.constrained("double", ";:}", "``", "''"),
+            Quote.constrained("emphasis", ";:}", "'", "'"),
+            Quote.constrained("single", ";:}", "`", "'"),
+            Quote.unconstrained("monospaced", "\\+\\+(.+?)\\+\\+"),
+            Quote.constrained("monospaced", ";:}", "\\+", "\\+"),
+            QUOTES.get(6),
+            QUOTES.get(7),
+            QUOTES.get(8),
+            QUOTES.get(9),
+            QUOTES.get(10),
+            QUOTES.get(11));
+
+    private static final Map<String, String[]> QUOTE_TAGS = Map.of(
+            "monospaced", new String[]{"<code>", "</code>"},
+            "emphasis", new String[]{"<em>", "</em>"},
+            "strong", new String[]{"<strong>", "</strong>"},
+            "double", new String[]{"&#8220;", "&#8221;", null},
+            "single", new String[]{"&#8216;", "&#8217;", null},
+            "mark", new String[]{"<mark>", "</mark>"},
+            "superscript", new String[]{"<sup>", "</sup>"},
+            "subscript", new String[]{"<sub>", "</sub>"});
+
+    private static final List<Replacement> REPLACEMENTS = List.of(
+            new Replacement("\\\\?\\(C\\)", "&#169;", Restore.NONE),
+            new Replacement("\\\\?\\(R\\)", "&#174;", Restore.NONE),
+            new Replacement("\\\\?\\(TM\\)", "&#8482;", Restore.NONE),
+            new Replacement("(?: |\\n|^|\\\\)--(?: |\\n|$)", "&#8201;&#8212;&#8201;", Restore.NONE),
+            new Replacement("([" + Rx.WORD + "])\\\\?--(?=[" + Rx.WORD + "])", "&#8212;&#8203;", Restore.LEADING),
+            new Replacement("\\\\?\\.\\.\\.", "&#8230;&#8203;", Restore.NONE),
+            new Replacement("\\\\?`'", "&#8217;", Restore.NONE),
+            new Replacement("([" + Rx.ALNUM + "])\\\\?'(?=[" + Rx.ALPHA + "])", "&#8217;", Restore.LEADING),
+            new Replacement("\\\\?-&gt;", "&#8594;", Restore.NONE),
+            new Replacement("\\\\?=&gt;", "&#8658;", Restore.NONE),
+            new Replacement("\\\\?&lt;-", "&#8592;", Restore.NONE),
+            new Replacement("\\\\?&lt;=", "&#8656;", Restore.NONE),
+            new Replacement("\\\\?(&)amp;((?:[a-zA-Z][a-zA-Z]+\\d{0,2}|#\\d\\d\\d{0,4}|#x[\\da-fA-F][\\da-fA-F]"
+                    + "[\\da-fA-F]{0,3});)", "", Restore.BOUNDING));
+
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+    private final Set<String> lockedAttributes = new HashSet<>();
+    private final Map<String, Object> counters = new HashMap<>();
+    private final Set<String> refs = new HashSet<>();
+    private Map<String, Object> headerAttributes;
+    private String doctype;
+    private boolean compatMode;
+
+    /**
+     * @param apiAttributes attributes passed to the parser, locked against changes by the document
+     * @param docfile       name of the document file
+     */
+    DocumentState(Map<String, Object> apiAttributes, String docfile) {
+        var overrides = new LinkedHashMap<String, Object>();
+        apiAttributes.forEach((key, value) -> {
+            if (key.startsWith("!")) {
+                key = key.substring(1);
+                value = "@".equals(value) ? Boolean.FALSE : null;
+            } else if (key.endsWith("!")) {
+                key = key.substring(0, key.length() - 1);
+                value = "@".equals(value) ? Boolean.FALSE : null;
+            } else if (key.endsWith("@")) {
+                key = key.substring(0, key.length() - 1);
+                value = value + "@";
+            }
+            overrides.put(key.toLowerCase(Locale.ROOT), value);
+        });
+
+        this.attributes.put("attribute-undefined", "drop-line");
+        this.attributes.put("attribute-missing", "skip");
+        this.attributes.putAll(DEFAULT_ATTRIBUTES);
+        this.attributes.put("notitle", "");
+        overrides.put("embedded", "");
+        overrides.put("asciidoctor", "");
+        overrides.put("asciidoctor-version", "2.0.16");
+        overrides.put("safe-mode-name", "secure");
+        overrides.put("safe-mode-secure", "");
+        overrides.put("safe-mode-level", 20);
+        overrides.putIfAbsent("max-include-depth", 64);
+        overrides.putIfAbsent("allow-uri-read", null);
+        if (overrides.containsKey("numbered"))
+            overrides.put("sectnums", overrides.remove("numbered"));
+        if (overrides.containsKey("hardbreaks"))
+            overrides.put("hardbreaks-option", overrides.remove("hardbreaks"));
+        overrides.put("docfile", docfile);
+        overrides.put("docdir", "");
+        overrides.putIfAbsent("copycss", null);
+        overrides.putIfAbsent("source-highlighter", null);
+        overrides.putIfAbsent("backend", "html5");
+        overrides.putIfAbsent("user-home", ".");
+        overrides.putIfAbsent("max-attribute-value-size", 4096);
+        overrides.putIfAbsent("linkcss", "");
+        overrides.putIfAbsent("icons", null);
+
+        overrides.forEach((key, value) -> {
+            var locked = true;
+            if (value == null || Boolean.FALSE.equals(value)) {
+                this.attributes.remove(key);
+                locked = value == null;
+            } else {
+                var text = value.toString();
+                if (value instanceof String && text.endsWith("@")) {
+                    value = text.substring(0, text.length() - 1);
+                    locked = false;
+                }
+                this.attributes.put(key, value);
+            }
+            if (locked)
+                this.lockedAttributes.add(key);
+        });
+
+        var dot = docfile.lastIndexOf('.');
+        this.attributes.putIfAbsent("docname", dot > 0 ? docfile.substring(0, dot) : docfile);
+        this.attributes.putIfAbsent("docfilesuffix", dot > 0 ? docfile.substring(dot) : "");
+        this.attributes.put("backend", "html5");
+        this.attributes.put("backend-html5", "");
+        this.attributes.put("basebackend", "html");
+        this.attributes.put("basebackend-html", "");
+        this.attributes.put("filetype", "html");
+        this.attributes.put("filetype-html", "");
+        this.attributes.put("htmlsyntax", "html");
+        this.attributes.put("outfilesuffix", ".html");
+        this.attributes.putIfAbsent("stylesdir", ".");
+        this.attributes.putIfAbsent("iconsdir", this.attributes.getOrDefault("imagesdir", "./images") + "/icons");
+        this.compatMode = overrides.containsKey("compat-mode");
+        updateDoctype(this.attributes.containsKey("doctype") ? this.attributes.get("doctype").toString() : "article");
+    }
+
+    String getDoctype() {
+        return this.doctype;
+    }
+
+    Object getAttribute(String name) {
+        return this.attributes.get(name);
+    }
+
+    boolean hasAttribute(String name) {
+        return this.attributes.containsKey(name);
+    }
+
+    /**
+     * Sets an attribute directly, as the parser does for the few attributes it derives from the header.
+     */
+    void putAttribute(String name, Object value) {
+        this.attributes.put(name, value);
+    }
+
+    boolean isLocked(String name) {
+        return this.lockedAttributes.contains(name);
+    }
+
+    /**
+     * Sets an attribute from the document, unless the API locked it.
+     *
+     * @return the value after substitutions, or null if the attribute is locked
+     */
+    String setAttribute(String name, String value) {
+        if (isLocked(name))
+            return null;
+
+        if (!value.isEmpty())
+            value = applyAttributeValueSubs(value);
+        if (this.headerAttributes == null && name.equals("doctype"))
+            updateDoctype(value);
+        else
+            this.attributes.put(name, value);
+        return value;
+    }
+
+    boolean deleteAttribute(String name) {
+        if (isLocked(name))
+            return false;
+        this.attributes.remove(name);
+        return true;
+    }
+
+    /**
+     * Stores an attribute entry, see asciidoctor's {@code Parser.store_attribute}.
+     *
+     * @param name  name of the entry, with a leading or trailing {@code !} to unset it
+     * @param value value of the entry
+     * @return the value stored, null if the attribute was unset
+     */
+    String storeAttribute(String name, String value) {
+        if (name.endsWith("!")) {
+            name = name.substring(0, name.length() - 1);
+            value = null;
+        } else if (name.startsWith("!")) {
+            name = name.substring(1);
+            value = null;
+        }
+
+        name = Rx.INVALID_ATTRIBUTE_NAME_CHARS.matcher(name).replaceAll("").toLowerCase(Locale.ROOT);
+        if (name.equals("numbered")) {
+            name = "sectnums";
+        } else if (name.equals("hardbreaks")) {
+            name = "hardbreaks-option";
+        } else if (name.equals("showtitle")) {
+            storeAttribute("notitle", value == null ? "" : null);
+        }
+
+        if (value == null) {
+            deleteAttribute(name);
+            return null;
+        }
+
+        if (name.equals("leveloffset")) {
+            if (value.startsWith("+"))
+                value = String.valueOf(leveloffset() + toInt(value.substring(1)));
+            else if (value.startsWith("-"))
+                value = String.valueOf(leveloffset() - toInt(value.substring(1)));
+        }
+        var resolved = setAttribute(name, value);
+        return resolved == null ? value : resolved;
+    }
+
+    /**
+     * The leveloffset attribute as a number, 0 if it isn't set.
+     */
+    int leveloffset() {
+        var value = this.attributes.get("leveloffset");
+        return value == null ? 0 : toInt(value.toString());
+    }
+
+    /**
+     * Adds an id to the ids in use.
+     *
+     * @return false if the id was already in use
+     */
+    boolean register(String id) {
+        return this.refs.add(id);
+    }
+
+    /**
+     * Takes the snapshot of the attributes the document is left with once it is parsed.
+     */
+    void finalizeHeader() {
+        if (this.lockedAttributes.contains("sectnums") && this.attributes.containsKey("sectnums"))
+            this.lockedAttributes.remove("sectnums");
+        this.compatMode = this.attributes.containsKey("compat-mode");
+        this.headerAttributes = new LinkedHashMap<>(this.attributes);
+    }
+
+    boolean isHeaderFinalized() {
+        return this.headerAttributes != null;
+    }
+
+    void restoreHeaderAttributes() {
+        this.attributes.clear();
+        this.attributes.putAll(this.headerAttributes);
+    }
+
+    private void updateDoctype(String newDoctype) {
+        if (newDoctype == null || newDoctype.equals(this.doctype))
+            return;
+
+        if (this.doctype != null) {
+            this.attributes.remove("doctype-" + this.doctype);
+            this.attributes.remove("backend-html5-doctype-" + this.doctype);
+            this.attributes.remove("basebackend-html-doctype-" + this.doctype);
+        }
+        this.attributes.put("backend-html5-doctype-" + newDoctype, "");
+        this.attributes.put("basebackend-html-doctype-" + newDoctype, "");
+        this.attributes.put("doctype-" + newDoctype, "");
+        this.attributes.put("doctype", newDoctype);
+        this.doctype = newDoctype;
+    }
+
+    /**
+     * Generates the id of a section from its converted title, see asciidoctor's {@code Section.generate_id}.
+     */
+    String generateId(String title) {
+        var prefix = this.attributes.containsKey("idprefix") ? String.valueOf(this.attributes.get("idprefix")) : "_";
+        String separator;
+        String separators = null;
+        if (this.attributes.containsKey("idseparator")) {
+            separator = String.valueOf(this.attributes.get("idseparator"));
+            if (separator.length() > 1) {
+                separator = separator.substring(0, 1);
+                this.attributes.put("idseparator", separator);
+            }
+            if (!separator.isEmpty())
+                separators = separator.equals("-") || separator.equals(".") ? " .-" : " " + separator + ".-";
+        } else {
+            separator = "_";
+            separators = " _.-";
+        }
+
+        var id = prefix + Rx.INVALID_SECTION_ID_CHARS.matcher(title.toLowerCase(Locale.ROOT)).replaceAll("");
+        if (separators == null) {
+            id = id.replace(" ", "");
+        } else {
+            var squeezed = new StringBuilder();
+            var replacing = false;
+            for (int i = 0; i < id.length(); i++) {
+                var c = id.charAt(i);
+                if (separators.indexOf(c) >= 0) {
+                    if (!replacing)
+                        squeezed.append(separator);
+                    replacing = true;
+                } else {
+                    squeezed.append(c);
+                    replacing = false;
+                }
+            }
+            id = squeezed.toString();
+            if (id.endsWith(separator))
+                id = id.substring(0, id.length() - 1);
+            if (prefix.isEmpty() && id.startsWith(separator))
+                id = id.substring(1);
+        }
+
+        if (!this.refs.contains(id))
+            return id;
+
+        int count = 2;
+        while (this.refs.contains(id + separator + count))
+            count++;
+        return id + separator + count;
+    }
+
+    /**
+     * The substitutions applied to titles and to single quoted attribute values, except for inline macros and
+     * passthroughs, which don't affect the structure.
+     */
+    String applyNormalSubs(String text) {
+        if (text.isEmpty())
+            return text;
+        text = subSpecialchars(text);
+        text = subQuotes(text);
+        if (text.contains("{"))
+            text = subAttributes(text, null);
+        text = subReplacements(text);
+        return subPostReplacements(text);
+    }
+
+    String applyHeaderSubs(String text) {
+        if (text.isEmpty())
+            return text;
+        text = subSpecialchars(text);
+        return text.contains("{") ? subAttributes(text, null) : text;
+    }
+
+    private String applyAttributeValueSubs(String value) {
+        var matcher = Rx.ATTRIBUTE_ENTRY_PASS_MACRO.matcher(value);
+        if (matcher.find()) {
+            value = matcher.group(2);
+            if (matcher.group(1) != null)
+                value = applyPassSubs(value, matcher.group(1));
+        } else {
+            value = applyHeaderSubs(value);
+        }
+
+        var maxSize = this.attributes.get("max-attribute-value-size");
+        if (maxSize != null) {
+            var limit = Math.abs(toInt(maxSize.toString()));
+            var bytes = value.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            if (bytes.length > limit) {
+                // Drop whole characters until the value fits, like asciidoctor does
+                while (value.getBytes(java.nio.charset.StandardCharsets.UTF_8).length > limit)
+                    value = value.substring(0, value.length() - 1);
+            }
+        }
+        return value;
+    }
+
+    private String applyPassSubs(String value, String subs) {
+        for (var sub : subs.split(",")) {
+            switch (sub) {
+                case "c":
+                case "specialchars":
+                case "specialcharacters":
+                    value = subSpecialchars(value);
+                    break;
+                case "q":
+                case "quotes":
+                    value = subQuotes(value);
+                    break;
+                case "a":
+                case "attributes":
+                    if (value.contains("{"))
+                        value = subAttributes(value, null);
+                    break;
+                case "r":
+                case "replacements":
+                    value = subReplacements(value);
+                    break;
+                case "p":
+                case "post_replacements":
+                    value = subPostReplacements(value);
+                    break;
+                case "n":
+                case "normal":
+                    value = applyNormalSubs(value);
+                    break;
+                case "h":
+                case "header":
+                    value = applyHeaderSubs(value);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return value;
+    }
+
+    String subSpecialchars(String text) {
+        if (text.indexOf('<') < 0 && text.indexOf('>') < 0 && text.indexOf('&') < 0)
+            return text;
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * Replaces attribute references, see asciidoctor's {@code Substitutors#sub_attributes}.
+     *
+     * @param text             text with references
+     * @param attributeMissing how to handle missing attributes, null for the document setting
+     * @return the text with the references replaced
+     */
+    String subAttributes(String text, String attributeMissing) {
+        var drop = new boolean[3]; // drop, drop line, drop empty line
+        var missing = attributeMissing;
+        var matcher = Rx.ATTRIBUTE_REFERENCE.matcher(text);
+        var result = new StringBuilder();
+        while (matcher.find()) {
+            String replacement;
+            if ("\\".equals(matcher.group(1)) || "\\".equals(matcher.group(4))) {
+                replacement = "{" + matcher.group(2) + "}";
+            } else if (matcher.group(3) != null) {
+                var args = matcher.group(2).split(":", 3);
+                replacement = "";
+                switch (args[0]) {
+                    case "set":
+                        var value = storeAttribute(args[1], args.length > 2 ? args[2] : "");
+                        drop[0] = true;
+                        if (value != null || !"drop-line".equals(stringAttribute("attribute-undefined", "drop-line")))
+                            drop[2] = true;
+                        else
+                            drop[1] = true;
+                        replacement = drop[1] && !drop[2] ? CAN : DEL;
+                        break;
+                    case "counter2":
+                        counter(args[1], args.length > 2 ? args[2] : null);
+                        drop[0] = drop[2] = true;
+                        replacement = DEL;
+                        break;
+                    default:
+                        replacement = String.valueOf(counter(args[1], args.length > 2 ? args[2] : null));
+                        break;
+                }
+            } else {
+                var key = matcher.group(2).toLowerCase(Locale.ROOT);
+                if (this.attributes.containsKey(key)) {
+                    replacement = String.valueOf(this.attributes.get(key));
+                } else if (INTRINSIC_ATTRIBUTES.containsKey(key)) {
+                    replacement = INTRINSIC_ATTRIBUTES.get(key);
+                } else {
+                    if (missing == null)
+                        missing = stringAttribute("attribute-missing", "skip");
+                    switch (missing) {
+                        case "drop":
+                            drop[0] = drop[2] = true;
+                            replacement = DEL;
+                            break;
+                        case "drop-line":
+                            drop[0] = drop[1] = true;
+                            replacement = CAN;
+                            break;
+                        default:
+                            replacement = matcher.group();
+                            break;
+                    }
+                }
+            }
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(result);
+        text = result.toString();
+
+        if (!drop[0])
+            return text;
+
+        if (drop[2]) {
+            var lines = new ArrayList<String>();
+            for (var line : text.replaceAll(DEL + "+", DEL).split("\n", -1)) {
+                if (line.equals(DEL) || (drop[1] && line.contains(CAN)))
+                    continue;
+                lines.add(line);
+            }
+            return String.join("\n", lines).replace(DEL, "");
+        } else if (text.contains("\n")) {
+            var lines = new ArrayList<String>();
+            for (var line : text.split("\n", -1)) {
+                if (!line.contains(CAN))
+                    lines.add(line);
+            }
+            return String.join("\n", lines);
+        }
+        return "";
+    }
+
+    private Object counter(String name, String seed) {
+        Object next;
+        var locked = isLocked(name);
+        Object current;
+        if ((locked && (current = this.counters.get(name)) != null)
+                || ((current = this.attributes.get(name)) != null && !current.toString().isEmpty())) {
+            next = nextValue(current);
+        } else if (seed != null) {
+            next = seed.matches("-?\\d+") && String.valueOf(toInt(seed)).equals(seed) ? (Object) toInt(seed) : seed;
+        } else {
+            next = 1;
+        }
+        this.counters.put(name, next);
+        if (!locked)
+            this.attributes.put(name, next);
+        return next;
+    }
+
+    private static Object nextValue(Object current) {
+        if (current instanceof Integer)
+            return (Integer) current + 1;
+        var text = current.toString();
+        if (text.matches("-?\\d+") && String.valueOf(toInt(text)).equals(text))
+            return toInt(text) + 1;
+        if (text.length() == 1 && Character.isLetterOrDigit(text.charAt(0)) && text.charAt(0) != 'z'
+                && text.charAt(0) != 'Z' && text.charAt(0) != '9')
+            return String.valueOf((char) (text.charAt(0) + 1));
+        // Ruby's String#succ for anything longer isn't worth following exactly
+        return text + "1";
+    }
+
+    String subQuotes(String text) {
+        if (!(this.compatMode ? Rx.QUOTED_TEXT_SNIFF_COMPAT : Rx.QUOTED_TEXT_SNIFF).matcher(text).find())
+            return text;
+
+        for (var quote : this.compatMode ? COMPAT_QUOTES : QUOTES)
+            text = quote.pattern.matcher(text).replaceAll(match -> Matcher.quoteReplacement(convertQuoted(match, quote)));
+        return text;
+    }
+
+    private String convertQuoted(MatchResult match, Quote quote) {
+        String escapedAttributes = null;
+        if (match.group().startsWith("\\")) {
+            if (!quote.unconstrained && match.group(2) != null)
+                escapedAttributes = "[" + match.group(2) + "]";
+            else
+                return match.group().substring(1);
+        }
+
+        var type = quote.type;
+        var attributeList = quote.unconstrained ? match.group(1) : match.group(2);
+        var text = quote.unconstrained ? match.group(2) : match.group(3);
+        var prefix = quote.unconstrained ? "" : match.group(1);
+        if (escapedAttributes != null)
+            return escapedAttributes + quoted(type, text, null, null);
+
+        String id = null;
+        String role = null;
+        if (attributeList != null) {
+            var attributes = parseQuotedTextAttributes(attributeList);
+            id = attributes.get("id");
+            role = attributes.get("role");
+            if (type.equals("mark"))
+                type = "unquoted";
+        }
+        return prefix + quoted(type, text, id, role);
+    }
+
+    private static String quoted(String type, String text, String id, String role) {
+        var tags = QUOTE_TAGS.getOrDefault(type, new String[]{"", "", null});
+        var open = tags[0];
+        var close = tags[1];
+        var tag = tags.length == 2;
+        if (id != null) {
+            var classAttribute = role != null ? " class=\"" + role + "\"" : "";
+            if (tag)
+                return open.substring(0, open.length() - 1) + " id=\"" + id + "\"" + classAttribute + ">" + text + close;
+            return "<span id=\"" + id + "\"" + classAttribute + ">" + open + text + close + "</span>";
+        } else if (role != null) {
+            if (tag)
+                return open.substring(0, open.length() - 1) + " class=\"" + role + "\">" + text + close;
+            return "<span class=\"" + role + "\">" + open + text + close + "</span>";
+        }
+        return open + text + close;
+    }
+
+    private Map<String, String> parseQuotedTextAttributes(String text) {
+        if (text.contains("{"))
+            text = subAttributes(text, null);
+        if (text.contains(","))
+            text = text.substring(0, text.indexOf(','));
+        text = text.strip();
+
+        var attributes = new HashMap<String, String>();
+        if (text.isEmpty())
+            return attributes;
+
+        if (text.startsWith(".") || text.startsWith("#")) {
+            var hash = text.indexOf('#');
+            var before = hash < 0 ? text : text.substring(0, hash);
+            var after = hash < 0 ? "" : text.substring(hash + 1);
+            if (after.isEmpty()) {
+                if (before.length() > 1)
+                    attributes.put("role", before.replace('.', ' ').stripLeading());
+            } else {
+                var dot = after.indexOf('.');
+                var id = dot < 0 ? after : after.substring(0, dot);
+                var roles = dot < 0 ? "" : after.substring(dot + 1);
+                if (!id.isEmpty())
+                    attributes.put("id", id);
+                if (roles.isEmpty()) {
+                    if (before.length() > 1)
+                        attributes.put("role", before.replace('.', ' ').stripLeading());
+                } else if (before.length() > 1) {
+                    attributes.put("role", (before + "." + roles).replace('.', ' ').stripLeading());
+                } else {
+                    attributes.put("role", roles.replace('.', ' '));
+                }
+            }
+        } else {
+            attributes.put("role", text);
+        }
+        return attributes;
+    }
+
+    String subReplacements(String text) {
+        if (!Rx.REPLACEABLE_TEXT.matcher(text).find())
+            return text;
+
+        for (var replacement : REPLACEMENTS)
+            text = replacement.pattern.matcher(text).replaceAll(match -> Matcher.quoteReplacement(replacement.apply(match)));
+        return text;
+    }
+
+    String subPostReplacements(String text) {
+        if (this.attributes.get("hardbreaks-option") != null) {
+            var lines = text.split("\n", -1);
+            if (lines.length < 2)
+                return text;
+            var result = new StringBuilder();
+            for (int i = 0; i < lines.length - 1; i++) {
+                var line = lines[i];
+                result.append(line.endsWith(" +") ? line.substring(0, line.length() - 2) : line).append("<br>\n");
+            }
+            return result.append(lines[lines.length - 1]).toString();
+        } else if (text.contains("+") && text.contains(" +")) {
+            return Rx.HARD_LINE_BREAK.matcher(text).replaceAll(match -> Matcher.quoteReplacement(match.group(1) + "<br>"));
+        }
+        return text;
+    }
+
+    private String stringAttribute(String name, String defaultValue) {
+        var value = this.attributes.get(name);
+        return value == null ? defaultValue : value.toString();
+    }
+
+    /**
+     * Ruby's {@code String#to_i}: the leading number, 0 if there is none.
+     */
+    static int toInt(String text) {
+        var matcher = Pattern.compile("^\\s*([-+]?\\d+)").matcher(text);
+        if (!matcher.find())
+            return 0;
+        try {
+            return Integer.parseInt(matcher.group(1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static class Quote {
+        private final String type;
+        private final boolean unconstrained;
+        private final Pattern pattern;
+
+        Quote(String type, boolean unconstrained, String regex, boolean dotAll) {
+            this.type = type;
+            this.unconstrained = unconstrained;
+            this.pattern = Pattern.compile(regex, Pattern.MULTILINE | (dotAll ? Pattern.DOTALL : 0));
+        }
+
+        static Quote unconstrained(String type, String markup) {
+            return new Quote(type, true, "\\\\?(?:\\[([^\\]]+)])?" + markup, true);
+        }
+
+        static Quote constrained(String type, String excluded, String open, String close) {
+            return new Quote(type, false, "(^|[^" + Rx.WORD + excluded + "])(?:\\[([^\\]]+)])?" + open
+                    + "(\\S|\\S.*?\\S)" + close + "(?![" + Rx.WORD + "])", true);
+        }
+    }
+
+    private enum Restore {
+        NONE, LEADING, BOUNDING
+    }
+
+    private static class Replacement {
+        private final Pattern pattern;
+        private final String text;
+        private final Restore restore;
+
+        Replacement(String regex, String text, Restore restore) {
+            this.pattern = Pattern.compile(regex, Pattern.MULTILINE);
+            this.text = text;
+            this.restore = restore;
+        }
+
+        String apply(MatchResult match) {
+            if (match.group().contains("\\"))
+                return match.group().replaceFirst("\\\\", "");
+            switch (this.restore) {
+                case NONE:
+                    return this.text;
+                case BOUNDING:
+                    return match.group(1) + this.text + match.group(2);
+                default:
+                    return match.group(1) + this.text;
+            }
+        }
+    }
+}
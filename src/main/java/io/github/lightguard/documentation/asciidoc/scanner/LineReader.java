@@ -0,0 +1,224 @@
+package io.github.lightguard.documentation.asciidoc.scanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Cursor over the lines being scanned, with the same moves as the asciidoctor reader.
+ * Preprocessor directives have already been dealt with, so lines are only ever read, peeked at and put back.
+ */
+class LineReader {
+    private final List<String> lines;
+    private int index;
+    private int firstLineNumber;
+    private int mark;
+
+    LineReader(List<String> lines, int firstLineNumber) {
+        this.lines = new ArrayList<>(lines);
+        this.firstLineNumber = firstLineNumber;
+    }
+
+    /**
+     * Line number of the next line.
+     */
+    int getLineNumber() {
+        return this.firstLineNumber + this.index;
+    }
+
+    void mark() {
+        this.mark = getLineNumber();
+    }
+
+    /**
+     * Line number at the last {@link #mark()}.
+     */
+    int getMark() {
+        return this.mark;
+    }
+
+    boolean hasMoreLines() {
+        return this.index < this.lines.size();
+    }
+
+    String peekLine() {
+        return hasMoreLines() ? this.lines.get(this.index) : null;
+    }
+
+    List<String> peekLines(int count) {
+        return this.lines.subList(this.index, Math.min(this.lines.size(), this.index + count));
+    }
+
+    boolean nextLineEmpty() {
+        var line = peekLine();
+        return line == null || line.isEmpty();
+    }
+
+    String readLine() {
+        return hasMoreLines() ? this.lines.get(this.index++) : null;
+    }
+
+    void unshift(String line) {
+        if (this.index > 0) {
+            this.lines.set(--this.index, line);
+        } else {
+            this.lines.add(0, line);
+            this.firstLineNumber--;
+        }
+    }
+
+    void unshiftAll(List<String> restored) {
+        for (int i = restored.size() - 1; i >= 0; i--)
+            unshift(restored.get(i));
+    }
+
+    /**
+     * Skips blank lines.
+     *
+     * @return number of lines skipped, or -1 if there are no lines left
+     */
+    int skipBlankLines() {
+        int skipped = 0;
+        while (hasMoreLines()) {
+            if (!peekLine().isEmpty())
+                return skipped;
+            this.index++;
+            skipped++;
+        }
+        return -1;
+    }
+
+    /**
+     * Skips line comments and comment blocks.
+     */
+    void skipCommentLines() {
+        String line;
+        while ((line = peekLine()) != null && !line.isEmpty() && line.startsWith("//")) {
+            if (line.startsWith("///")) {
+                if (line.length() > 3 && uniform(line, '/')) {
+                    readLinesUntil(new Until().terminator(line).skipFirstLine().readLastLine(), null);
+                } else {
+                    break;
+                }
+            } else {
+                this.index++;
+            }
+        }
+    }
+
+    /**
+     * Skips line comments.
+     *
+     * @return the lines skipped
+     */
+    List<String> skipLineComments() {
+        var comments = new ArrayList<String>();
+        String line;
+        while ((line = peekLine()) != null && !line.isEmpty() && line.startsWith("//"))
+            comments.add(readLine());
+        return comments;
+    }
+
+    /**
+     * Reads lines until the terminator, a blank line or a line the condition breaks on, depending on the options.
+     *
+     * @param until     when to stop reading
+     * @param condition extra lines to stop at, may be null
+     * @return the lines read
+     */
+    List<String> readLinesUntil(Until until, Predicate<String> condition) {
+        var result = new ArrayList<String>();
+        var breakOnBlankLines = until.terminator == null && until.breakOnBlankLines;
+        var breakOnListContinuation = until.terminator == null && until.breakOnListContinuation;
+        var preserveLastLine = until.preserveLastLine;
+        var lineRead = false;
+
+        if (until.skipFirstLine)
+            readLine();
+
+        String line;
+        while ((line = readLine()) != null) {
+            boolean stop;
+            if (until.terminator != null) {
+                stop = line.equals(until.terminator);
+            } else if (breakOnBlankLines && line.isEmpty()) {
+                stop = true;
+            } else if (breakOnListContinuation && lineRead && line.equals("+")) {
+                preserveLastLine = true;
+                stop = true;
+            } else {
+                stop = condition != null && condition.test(line);
+            }
+
+            if (stop) {
+                if (until.readLastLine)
+                    result.add(line);
+                if (preserveLastLine)
+                    unshift(line);
+                break;
+            }
+
+            if (!(until.skipLineComments && line.startsWith("//") && !line.startsWith("///"))) {
+                result.add(line);
+                lineRead = true;
+            }
+        }
+        return result;
+    }
+
+    static boolean uniform(String text, char c) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != c)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Options of {@link #readLinesUntil(Until, Predicate)}.
+     */
+    static class Until {
+        private String terminator;
+        private boolean breakOnBlankLines;
+        private boolean breakOnListContinuation;
+        private boolean preserveLastLine;
+        private boolean readLastLine;
+        private boolean skipFirstLine;
+        private boolean skipLineComments;
+
+        Until terminator(String terminator) {
+            this.terminator = terminator;
+            return this;
+        }
+
+        Until breakOnBlankLines() {
+            this.breakOnBlankLines = true;
+            return this;
+        }
+
+        Until breakOnListContinuation() {
+            this.breakOnListContinuation = true;
+            return this;
+        }
+
+        Until preserveLastLine() {
+            this.preserveLastLine = true;
+            return this;
+        }
+
+        Until readLastLine() {
+            this.readLastLine = true;
+            return this;
+        }
+
+        Until skipFirstLine() {
+            this.skipFirstLine = true;
+            return this;
+        }
+
+        Until skipLineComments(boolean skip) {
+            this.skipLineComments = skip;
+            return this;
+        }
+    }
+}
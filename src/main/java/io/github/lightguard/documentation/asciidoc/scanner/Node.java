@@ -0,0 +1,68 @@
+package io.github.lightguard.documentation.asciidoc.scanner;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A block found by the {@link SectionScanner}: the document, a section or any other block.
+ * Only what the splitter reads, and what the scanner needs to follow asciidoctor's rules, is kept.
+ */
+class Node {
+    String context;
+    Node parent;
+    final Map<Object, Object> attributes = new LinkedHashMap<>();
+    final List<Node> blocks = new ArrayList<>();
+    String style;
+    String id;
+    String title;
+    String convertedTitle;
+    String sectname;
+    boolean special;
+    boolean compound;
+    int level;
+    int lineNumber;
+    int lineCount;
+
+    Node(String context, Node parent) {
+        this.context = context;
+        this.parent = parent;
+    }
+
+    boolean isSection() {
+        return this.context.equals("section");
+    }
+
+    boolean isDocument() {
+        return this.context.equals("document");
+    }
+
+    /**
+     * Whether this is a block of its own in asciidoctor's model, as opposed to a section, a list or a table.
+     */
+    boolean isBlock() {
+        switch (this.context) {
+            case "document":
+            case "section":
+            case "ulist":
+            case "olist":
+            case "dlist":
+            case "colist":
+            case "table":
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Sections below this node, this node included, in document order.
+     */
+    void collectSections(List<Node> sections) {
+        if (isSection())
+            sections.add(this);
+        for (var block : this.blocks)
+            block.collectSections(sections);
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.lightguard.documentation.asciidoc.scanner;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The asciidoctor regular expressions the scanner needs, translated to Java.
+ * Ruby's {@code \p{Word}}, {@code \p{Alpha}} and {@code \p{Alnum}} are Unicode aware, so they are spelled out as
+ * Unicode classes here.
+ */
+final class Rx {
+    static final String WORD = "\\p{L}\\p{M}\\p{Nd}\\p{Pc}";
+    static final String ALPHA = "\\p{IsAlphabetic}";
+    static final String ALNUM = "\\p{IsAlphabetic}\\p{Nd}";
+
+    // Preprocessor directives
+    static final Pattern CONDITIONAL_DIRECTIVE =
+            Pattern.compile("^(\\\\)?(ifdef|ifndef|ifeval|endif)::(\\S*?(?:([,+])\\S*?)?)\\[(.+)?]$");
+    static final Pattern INCLUDE_DIRECTIVE = Pattern.compile("^(\\\\)?include::([^\\[][^\\[]*)\\[(.+)?]$");
+
+    // Document header and attributes
+    static final Pattern ATTRIBUTE_ENTRY = Pattern.compile("^:(!?[" + WORD + "][^:]*):(?:[ \\t]+(.*))?$");
+    static final Pattern ATTRIBUTE_REFERENCE =
+            Pattern.compile("(\\\\)?\\{([" + WORD + "][" + WORD + "-]*|(set|counter2?):.+?)(\\\\)?}");
+    static final Pattern ATTRIBUTE_ENTRY_PASS_MACRO = Pattern.compile("^pass:([a-z]+(?:,[a-z-]+)*)?\\[(.*)]$",
+            Pattern.DOTALL);
+    static final Pattern INVALID_ATTRIBUTE_NAME_CHARS = Pattern.compile("[^" + WORD + "-]");
+    static final Pattern REVISION_INFO_LINE =
+            Pattern.compile("^(?:[^\\d{]*(.*?),)? *(?!:)(.*?)(?: *(?!^),?: *(.*))?$");
+
+    // Block metadata
+    static final Pattern BLOCK_ANCHOR =
+            Pattern.compile("^\\[\\[(?:|([" + ALPHA + "_:][" + WORD + "\\-:.]*)(?:, *(.+))?)]]$");
+    static final Pattern BLOCK_ATTRIBUTE_LIST = Pattern.compile("^\\[(|[" + WORD + ".#%{,\"'].*)]$");
+    static final Pattern BLOCK_ATTRIBUTE_LINE = Pattern.compile("^\\[(?:|[" + WORD + ".#%{,\"'].*|\\[(?:|["
+            + ALPHA + "_:][" + WORD + "\\-:.]*(?:, *.+)?)])]$");
+    static final Pattern BLOCK_TITLE = Pattern.compile("^\\.(\\.?[^ \\t.].*)$");
+
+    // Sections
+    static final Pattern ATX_SECTION_TITLE = Pattern.compile("^(=={0,5}|#{1,6})[ \\t]+(.+?)(?:[ \\t]+\\1)?$");
+    static final Pattern SETEXT_SECTION_TITLE = Pattern.compile("^((?!\\.).*?[" + ALNUM + "].*)$");
+    static final Pattern INLINE_SECTION_ANCHOR =
+            Pattern.compile(" (\\\\)?\\[\\[([" + ALPHA + "_:][" + WORD + "\\-:.]*)(?:, *(.+))?]]$");
+    static final Pattern INVALID_SECTION_ID_CHARS = Pattern.compile("<[^>]+>|&(?:[a-z][a-z]+\\d{0,2}|#\\d\\d\\d{0,4}"
+            + "|#x[\\da-f][\\da-f][\\da-f]{0,3});|[^ " + WORD + "\\-.]+?");
+    static final Pattern SECTION_LEVEL_STYLE = Pattern.compile("^sect\\d$");
+    static final Map<Character, Integer> SETEXT_SECTION_LEVELS = Map.of('=', 0, '-', 1, '~', 2, '^', 3, '+', 4);
+
+    // Blocks
+    static final Pattern ADMONITION_PARAGRAPH = Pattern.compile("^(NOTE|TIP|IMPORTANT|WARNING|CAUTION):[ \\t]+");
+    static final Pattern LITERAL_PARAGRAPH = Pattern.compile("^([ \\t]+.*)$");
+    static final Pattern BLOCK_MEDIA_MACRO = Pattern.compile("^(image|video|audio)::(\\S|\\S.*?\\S)\\[(.+)?]$");
+    static final Pattern BLOCK_TOC_MACRO = Pattern.compile("^toc::\\[(.+)?]$");
+    static final Pattern MARKDOWN_THEMATIC_BREAK = Pattern.compile("^ {0,3}([-*_])( *)\\1\\2\\1$");
+    static final Pattern EXT_LAYOUT_BREAK = Pattern.compile("^(?:'{3,}|<{3,}|([-*_])( *)\\1\\2\\1)$");
+    static final Pattern TRAILING_DIGITS = Pattern.compile("\\d+$");
+
+    // Lists
+    static final Pattern ANY_LIST = Pattern.compile("^(?:[ \\t]*(?:-|\\*\\**|\\.\\.*|\\u2022|\\d+\\.|[a-zA-Z]\\."
+            + "|[IVXivx]+\\))[ \\t]|(?!//[^/])[ \\t]*[^ \\t].*?(?::::{0,2}|;;)(?:$|[ \\t])|<(?:\\d+|\\.)>[ \\t])");
+    static final Pattern UNORDERED_LIST = Pattern.compile("^[ \\t]*(-|\\*\\**|\\u2022)[ \\t]+(.*)$");
+    static final Pattern ORDERED_LIST =
+            Pattern.compile("^[ \\t]*(\\.\\.*|\\d+\\.|[a-zA-Z]\\.|[IVXivx]+\\))[ \\t]+(.*)$");
+    static final Pattern DESCRIPTION_LIST =
+            Pattern.compile("^(?!//[^/])[ \\t]*([^ \\t].*?)(:::{0,2}|;;)(?:$|[ \\t]+(.*)$)");
+    static final Map<String, Pattern> DESCRIPTION_LIST_SIBLING = Map.of(
+            "::", descriptionListSibling("::"),
+            ":::", descriptionListSibling(":::"),
+            "::::", descriptionListSibling("::::"),
+            ";;", Pattern.compile("^(?!//[^/])[ \\t]*([^ \\t].*?)(;;)(?:$|[ \\t]+(.*)$)"));
+    static final Pattern CALLOUT_LIST = Pattern.compile("^<(\\d+|\\.)>[ \\t]+(.*)$");
+    static final Map<String, Pattern> ORDERED_LIST_MARKERS = Map.of(
+            "arabic", Pattern.compile("\\d+\\."),
+            "loweralpha", Pattern.compile("[a-z]\\."),
+            "lowerroman", Pattern.compile("[ivx]+\\)"),
+            "upperalpha", Pattern.compile("[A-Z]\\."),
+            "upperroman", Pattern.compile("[IVX]+\\)"));
+
+    // Inline anchors
+    static final Pattern INLINE_ANCHOR_SCAN = Pattern.compile("(?:^|[^\\\\\\[])\\[\\[([" + ALPHA + "_:][" + WORD
+            + "\\-:.]*)(?:, *(.+?))?]]|(?:^|[^\\\\])anchor:([" + ALPHA + "_:][" + WORD
+            + "\\-:.]*)\\[(?:]|(.*?[^\\\\])])", Pattern.MULTILINE);
+    static final Pattern LEADING_INLINE_ANCHOR =
+            Pattern.compile("^\\[\\[([" + ALPHA + "_:][" + WORD + "\\-:.]*)(?:, *(.+?))?]]");
+    static final Pattern INLINE_BIBLIO_ANCHOR =
+            Pattern.compile("^\\[\\[\\[([" + ALPHA + "_:][" + WORD + "\\-:.]*)(?:, *(.+?))?]]]");
+
+    // Substitutions
+    static final Pattern QUOTED_TEXT_SNIFF = Pattern.compile("[*_`#^~]");
+    static final Pattern QUOTED_TEXT_SNIFF_COMPAT = Pattern.compile("[*'_+#^~]");
+    static final Pattern REPLACEABLE_TEXT = Pattern.compile("[&']|--|\\.\\.\\.|\\([CRT]M?\\)");
+    static final Pattern HARD_LINE_BREAK = Pattern.compile("^(.*) \\+$", Pattern.MULTILINE);
+
+    private Rx() {
+    }
+
+    private static Pattern descriptionListSibling(String marker) {
+        return Pattern.compile("^(?!//[^/])[ \\t]*([^ \\t].*?[^:]|[^ \\t:])(" + marker + ")(?:$|[ \\t]+(.*)$)");
+    }
+
+    /**
+     * Ruby's {@code =~}: whether the pattern is found anywhere in the text.
+     */
+    static boolean find(Pattern pattern, String text) {
+        return text != null && pattern.matcher(text).find();
+    }
+}
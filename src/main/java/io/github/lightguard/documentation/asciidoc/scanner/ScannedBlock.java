@@ -0,0 +1,42 @@
+package io.github.lightguard.documentation.asciidoc.scanner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A block found by the {@link SectionScanner}, other than a section.
+ */
+public class ScannedBlock {
+    private final int lineNumber;
+    private final int lineCount;
+    private final Map<String, Object> attributes;
+
+    ScannedBlock(Node block) {
+        this.lineNumber = block.lineNumber;
+        this.lineCount = block.lineCount;
+        this.attributes = new LinkedHashMap<>();
+        block.attributes.forEach((key, value) -> this.attributes.put(String.valueOf(key), value));
+    }
+
+    /**
+     * Line the block starts at, its delimiter line for delimited blocks.
+     *
+     * @return line number, starting at 1
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Number of content lines, 0 for blocks made of other blocks.
+     *
+     * @return line count
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.lightguard.documentation.asciidoc.scanner;
+
+import io.github.lightguard.documentation.asciidoc.extraction.model.ChapterOutline;
+import io.github.lightguard.documentation.asciidoc.extraction.model.SectionOutline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * {@link ChapterOutline} of a chapter found by the {@link SectionScanner}.
+ */
+public class ScannedChapter implements ChapterOutline {
+    private final Node document;
+    private final Node header;
+    private final DocumentState doc;
+    private final String docfile;
+    private final String folder;
+
+    ScannedChapter(Node document, Node header, DocumentState doc, String docfile, String folder) {
+        this.document = document;
+        this.header = header;
+        this.doc = doc;
+        this.docfile = docfile;
+        this.folder = folder;
+    }
+
+    @Override
+    public String getId() {
+        return document.id == null ? document.blocks.get(0).id : document.id;
+    }
+
+    @Override
+    public String getAttribute(String name, String defaultValue) {
+        var value = doc.getAttribute(name);
+        return value == null ? defaultValue : value.toString();
+    }
+
+    @Override
+    public List<SectionOutline> getSections() {
+        // The document title comes first, as a section, like asciidoctor does when searching for sections
+        var sections = new ArrayList<Node>();
+        if (header != null)
+            sections.add(header);
+        document.collectSections(sections);
+        return sections.stream()
+                .map(section -> new ScannedSection(section, doc, folder))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Where the chapter starts, in the same form as asciidoctor's source locations.
+     *
+     * @return source location of the chapter
+     */
+    public String getLocation() {
+        return docfile + ": line " + document.lineNumber;
+    }
+
+    /**
+     * Blocks marked with {@code replace-with}, at any depth, in document order. The blocks inside a marked block are
+     * replaced along with it, so they aren't listed.
+     *
+     * @return blocks to replace
+     */
+    public List<ScannedBlock> getReplaceWithBlocks() {
+        var blocks = new ArrayList<ScannedBlock>();
+        collectReplaceWithBlocks(document, blocks);
+        return blocks;
+    }
+
+    private static void collectReplaceWithBlocks(Node node, List<ScannedBlock> blocks) {
+        for (var block : node.blocks) {
+            if (block.isBlock() && block.attributes.containsKey("replace-with"))
+                blocks.add(new ScannedBlock(block));
+            else
+                collectReplaceWithBlocks(block, blocks);
+        }
+    }
+}
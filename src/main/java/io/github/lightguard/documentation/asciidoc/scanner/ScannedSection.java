@@ -0,0 +1,68 @@
+package io.github.lightguard.documentation.asciidoc.scanner;
+
+import io.github.lightguard.documentation.asciidoc.extraction.model.SectionOutline;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link SectionOutline} of a section found by the {@link SectionScanner}.
+ */
+class ScannedSection implements SectionOutline {
+    private final Node section;
+    private final DocumentState doc;
+    private final String folder;
+
+    ScannedSection(Node section, DocumentState doc, String folder) {
+        this.section = section;
+        this.doc = doc;
+        this.folder = folder;
+    }
+
+    @Override
+    public String getId() {
+        return section.id;
+    }
+
+    @Override
+    public int getLevel() {
+        return section.level;
+    }
+
+    @Override
+    public String getTitle() {
+        if (section.convertedTitle == null)
+            section.convertedTitle = doc.applyNormalSubs(section.title);
+        return section.convertedTitle;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        var attributes = new LinkedHashMap<String, Object>();
+        section.attributes.forEach((key, value) -> attributes.put(String.valueOf(key), value));
+        return attributes;
+    }
+
+    @Override
+    public int getLineNumber() {
+        return section.lineNumber;
+    }
+
+    @Override
+    public String getFolder() {
+        var folder = section.attributes.get("splitter-doc-root");
+        return folder == null ? this.folder : folder.toString();
+    }
+
+    @Override
+    public String getParentFullId() {
+        // Same as Util.getFullId, for the parent of the section
+        var node = section.parent;
+        var buf = new StringBuilder(String.valueOf(node.id));
+        while (node.parent != null) {
+            buf.insert(0, node.id + "/");
+            node = node.parent;
+        }
+        return buf.toString();
+    }
+}
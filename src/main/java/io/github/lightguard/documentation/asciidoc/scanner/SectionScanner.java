@@ -0,0 +1,1421 @@
+package io.github.lightguard.documentation.asciidoc.scanner;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the sections of a chapter in plain Java, following the rules asciidoctor's parser uses to tell section
+ * titles, attribute lines, ids and the blocks in between apart, without building or converting any content.
+ * <p>
+ * The lines must have gone through the splitter's preprocessor first, so conditional directives are already
+ * commented out. Include directives are not followed, as asciidoctor doesn't follow them in its secure safe mode
+ * either. Inline macros and passthroughs in titles aren't converted, author lines aren't parsed into attributes and
+ * the cells of AsciiDoc tables aren't parsed.
+ * <p>
+ * A scanner holds the state of the document it scans, so use one instance per document.
+ */
+public class SectionScanner {
+    private static final Set<String> ADMONITION_STYLES = Set.of("NOTE", "TIP", "IMPORTANT", "WARNING", "CAUTION");
+    private static final Set<String> PARAGRAPH_STYLES = Set.of("comment", "example", "literal", "listing", "normal",
+            "open", "pass", "quote", "sidebar", "source", "verse", "abstract", "partintro");
+    private static final Set<String> VERBATIM_STYLES = Set.of("literal", "listing", "source", "verse");
+    private static final List<String> NESTABLE_LISTS = List.of("ulist", "olist", "dlist");
+    private static final List<String> ORDERED_LIST_STYLES =
+            List.of("arabic", "loweralpha", "lowerroman", "upperalpha", "upperroman");
+    private static final Map<String, String> ORDERED_LIST_FIRST_MARKERS = Map.of("arabic", "1.", "loweralpha", "a.",
+            "lowerroman", "i)", "upperalpha", "A.", "upperroman", "I)");
+    private static final Map<String, Delimiter> DELIMITERS = Map.ofEntries(
+            Map.entry("--", new Delimiter("open", Set.of("comment", "example", "literal", "listing", "pass", "quote",
+                    "sidebar", "source", "verse", "admonition", "abstract", "partintro"))),
+            Map.entry("----", new Delimiter("listing", Set.of("literal", "source"))),
+            Map.entry("....", new Delimiter("literal", Set.of("listing", "source"))),
+            Map.entry("====", new Delimiter("example", Set.of("admonition"))),
+            Map.entry("****", new Delimiter("sidebar", Set.of())),
+            Map.entry("____", new Delimiter("quote", Set.of("verse"))),
+            Map.entry("++++", new Delimiter("pass", Set.of("stem", "latexmath", "asciimath"))),
+            Map.entry("|===", new Delimiter("table", Set.of())),
+            Map.entry(",===", new Delimiter("table", Set.of())),
+            Map.entry(":===", new Delimiter("table", Set.of())),
+            Map.entry("!===", new Delimiter("table", Set.of())),
+            Map.entry("////", new Delimiter("comment", Set.of())),
+            Map.entry("```", new Delimiter("fenced_code", Set.of())));
+    private static final Set<String> DELIMITER_HEADS =
+            Set.of("--", "..", "==", "**", "__", "++", "|=", ",=", ":=", "!=", "//", "``");
+
+    private static final int INACTIVE = 0;
+    private static final int ACTIVE = 1;
+    private static final int FROZEN = 2;
+
+    private final String docfile;
+    private final String folder;
+    private final DocumentState doc;
+    private final Node document;
+    private Node header;
+    private boolean hasHeader;
+
+    /**
+     * @param attributes attributes passed to asciidoctor for the document
+     * @param docfile    name of the chapter file
+     * @param folder     name of the directory containing the chapter
+     */
+    public SectionScanner(Map<String, Object> attributes, String docfile, String folder) {
+        this.docfile = docfile;
+        this.folder = folder;
+        this.doc = new DocumentState(attributes, docfile);
+        this.document = new Node("document", null);
+    }
+
+    /**
+     * Scans the preprocessed lines of the chapter.
+     *
+     * @param lines lines of the chapter, as returned by the splitter's preprocessor
+     * @return the sections and document attributes found
+     */
+    public ScannedChapter scan(List<String> lines) {
+        var reader = new LineReader(unescapeDirectives(lines), 1);
+        this.document.lineNumber = 1;
+
+        var blockAttributes = parseDocumentHeader(reader);
+        while (reader.hasMoreLines()) {
+            var next = nextSection(reader, this.document, blockAttributes);
+            blockAttributes = next.attributes;
+            if (next.section != null)
+                this.document.blocks.add(next.section);
+        }
+        this.doc.restoreHeaderAttributes();
+
+        return new ScannedChapter(this.document, this.header, this.doc, this.docfile, this.folder);
+    }
+
+    /**
+     * Does what asciidoctor's reader does to the directives left once the conditionals are commented out.
+     */
+    private static List<String> unescapeDirectives(List<String> lines) {
+        var result = new ArrayList<String>(lines.size());
+        for (var line : lines) {
+            if (line.endsWith("]") && !line.startsWith("[") && line.contains("::")) {
+                Matcher matcher;
+                if (line.contains("if") && (matcher = Rx.CONDITIONAL_DIRECTIVE.matcher(line)).find()) {
+                    if (matcher.group(1) != null)
+                        line = line.substring(1);
+                } else if ((line.startsWith("inc") || line.startsWith("\\inc"))
+                        && (matcher = Rx.INCLUDE_DIRECTIVE.matcher(line)).find()) {
+                    line = matcher.group(1) != null ? line.substring(1) : "link:" + matcher.group(2) + "[]";
+                }
+            }
+            result.add(line);
+        }
+        return result;
+    }
+
+    private Map<Object, Object> parseDocumentHeader(LineReader reader) {
+        var blockAttributes = reader.skipBlankLines() >= 0
+                ? parseBlockMetadataLines(reader, new LinkedHashMap<>(), false)
+                : new LinkedHashMap<Object, Object>();
+
+        var level = isNextLineSection(reader, blockAttributes);
+        var implicitDoctitle = level != null
+                && level + (this.doc.hasAttribute("leveloffset") ? this.doc.leveloffset() : 0) == 0;
+        if (implicitDoctitle && blockAttributes.get("title") != null) {
+            this.doc.finalizeHeader();
+            blockAttributes.put("invalid-header", Boolean.TRUE);
+            return blockAttributes;
+        }
+
+        var doctitle = this.doc.getAttribute("doctitle");
+        if (doctitle != null && !doctitle.toString().isEmpty())
+            header(doctitle.toString());
+
+        if (implicitDoctitle) {
+            var lineNumber = reader.getLineNumber();
+            var title = parseSectionTitle(reader, null);
+            this.document.id = title.id;
+            if (doctitle == null || doctitle.toString().isEmpty()) {
+                header(title.title);
+                var value = this.doc.subSpecialchars(title.title);
+                if (value.contains("{"))
+                    value = this.doc.subAttributes(value, "skip");
+                this.doc.putAttribute("doctitle", value);
+            }
+            this.header.lineNumber = lineNumber;
+            if (!title.atx && !this.doc.isLocked("compat-mode"))
+                this.doc.putAttribute("compat-mode", "");
+            if (blockAttributes.get("separator") != null && !this.doc.isLocked("title-separator"))
+                this.doc.putAttribute("title-separator", blockAttributes.get("separator"));
+            if (blockAttributes.get("id") != null)
+                this.document.id = str(blockAttributes.get("id"));
+            if (blockAttributes.get("role") != null)
+                this.doc.putAttribute("role", blockAttributes.get("role"));
+            if (blockAttributes.get("reftext") != null)
+                this.doc.putAttribute("reftext", blockAttributes.get("reftext"));
+            blockAttributes.clear();
+            parseHeaderMetadata(reader);
+            if (this.document.id != null)
+                this.doc.register(this.document.id);
+        }
+
+        this.doc.finalizeHeader();
+        if (this.document.id == null && this.doc.getAttribute("css-signature") != null)
+            this.document.id = this.doc.getAttribute("css-signature").toString();
+        return blockAttributes;
+    }
+
+    /**
+     * Sets the document title, asciidoctor keeps it as a level 0 section which isn't part of the document blocks.
+     */
+    private void header(String title) {
+        if (this.header == null) {
+            this.header = new Node("section", this.document);
+            this.header.sectname = "header";
+            this.hasHeader = true;
+        }
+        this.header.title = title;
+    }
+
+    private void parseHeaderMetadata(LineReader reader) {
+        processAttributeEntries(reader);
+
+        if (reader.hasMoreLines() && !reader.nextLineEmpty()) {
+            // The author line, author attributes aren't modelled
+            reader.readLine();
+            processAttributeEntries(reader);
+
+            if (reader.hasMoreLines() && !reader.nextLineEmpty()) {
+                var revisionLine = reader.readLine();
+                var matcher = Rx.REVISION_INFO_LINE.matcher(revisionLine);
+                if (matcher.find()) {
+                    var revision = new LinkedHashMap<String, String>();
+                    if (matcher.group(1) != null)
+                        revision.put("revnumber", matcher.group(1).stripTrailing());
+                    var component = matcher.group(2).strip();
+                    if (!component.isEmpty()) {
+                        if (matcher.group(1) == null && component.startsWith("v"))
+                            revision.put("revnumber", component.substring(1));
+                        else
+                            revision.put("revdate", component);
+                    }
+                    if (matcher.group(3) != null)
+                        revision.put("revremark", matcher.group(3).stripTrailing());
+                    revision.forEach((key, value) -> {
+                        if (!this.doc.hasAttribute(key))
+                            this.doc.putAttribute(key, this.doc.applyHeaderSubs(value));
+                    });
+                } else {
+                    reader.unshift(revisionLine);
+                }
+            }
+
+            processAttributeEntries(reader);
+            reader.skipBlankLines();
+        } else if (!this.doc.hasAttribute("author")) {
+            this.doc.putAttribute("authorcount", 0);
+        }
+    }
+
+    private void processAttributeEntries(LineReader reader) {
+        reader.skipCommentLines();
+        while (reader.hasMoreLines()) {
+            var matcher = Rx.ATTRIBUTE_ENTRY.matcher(reader.peekLine());
+            if (!matcher.find())
+                break;
+            processAttributeEntry(reader, matcher);
+            reader.readLine();
+            reader.skipCommentLines();
+        }
+    }
+
+    private void processAttributeEntry(LineReader reader, MatchResult match) {
+        var value = match.group(2);
+        if (value == null || value.isEmpty()) {
+            value = "";
+        } else if (value.endsWith(" \\") || value.endsWith(" +")) {
+            var continuation = value.substring(value.length() - 2);
+            value = value.substring(0, value.length() - 2).stripTrailing();
+            String next;
+            while (reader.readLine() != null && !(next = orEmpty(reader.peekLine())).isEmpty()) {
+                next = next.stripLeading();
+                var keepOpen = next.endsWith(continuation);
+                if (keepOpen)
+                    next = next.substring(0, next.length() - 2).stripTrailing();
+                value = value + (value.endsWith(" +") ? "\n" : " ") + next;
+                if (!keepOpen)
+                    break;
+            }
+        }
+        this.doc.storeAttribute(match.group(1), value);
+    }
+
+    private SectionResult nextSection(LineReader reader, Node parent, Map<Object, Object> attributes) {
+        Node preamble = null;
+        Node intro = null;
+        var part = false;
+        Node section;
+        int currentLevel;
+        var book = "book".equals(this.doc.getDoctype());
+
+        if (parent.isDocument() && parent.blocks.isEmpty() && (this.hasHeader
+                || attributes.remove("invalid-header") != null || isNextLineSection(reader, attributes) == null)) {
+            if (this.hasHeader || (book && !"abstract".equals(attributes.get(1)))) {
+                preamble = intro = new Node("preamble", parent);
+                preamble.compound = true;
+                parent.blocks.add(preamble);
+            }
+            section = parent;
+            currentLevel = 0;
+        } else {
+            section = initializeSection(reader, parent, attributes);
+            var title = attributes.get("title");
+            attributes = new LinkedHashMap<>();
+            if (title != null)
+                attributes.put("title", title);
+            currentLevel = section.level;
+            if (currentLevel == 0)
+                part = book;
+        }
+
+        reader.skipBlankLines();
+
+        while (reader.hasMoreLines()) {
+            parseBlockMetadataLines(reader, attributes, false);
+            var nextLevel = isNextLineSection(reader, attributes);
+            if (nextLevel != null) {
+                if (this.doc.hasAttribute("leveloffset"))
+                    nextLevel = Math.max(0, nextLevel + this.doc.leveloffset());
+                if (nextLevel > currentLevel || (nextLevel == 0 && section == this.document)) {
+                    var next = nextSection(reader, section, attributes);
+                    attributes = next.attributes;
+                    if (next.section != null)
+                        section.blocks.add(next.section);
+                } else {
+                    break;
+                }
+            } else {
+                var block = nextBlock(reader, intro != null ? intro : section, attributes, false, null, false);
+                if (block != null) {
+                    if (part)
+                        intro = emulatePartIntro(section, intro, block);
+                    block.parent = intro != null ? intro : section;
+                    block.parent.blocks.add(block);
+                    attributes.clear();
+                }
+            }
+
+            if (reader.skipBlankLines() < 0)
+                break;
+        }
+
+        if (!part && preamble != null) {
+            this.document.blocks.remove(0);
+            if (!preamble.blocks.isEmpty()) {
+                if (book || !this.document.blocks.isEmpty()) {
+                    this.document.blocks.add(0, preamble);
+                } else {
+                    for (var child : preamble.blocks) {
+                        child.parent = this.document;
+                        this.document.blocks.add(child);
+                    }
+                }
+            }
+        }
+
+        return new SectionResult(section == parent ? null : section, new LinkedHashMap<>(attributes));
+    }
+
+    /**
+     * Wraps the first blocks of a part in an open block with the partintro style, as asciidoctor does.
+     *
+     * @return the block later blocks of the part go into, if any
+     */
+    private static Node emulatePartIntro(Node section, Node intro, Node block) {
+        if (section.blocks.isEmpty()) {
+            if (!"partintro".equals(block.style)) {
+                if (block.context.equals("paragraph")) {
+                    block.context = "open";
+                    block.style = "partintro";
+                } else {
+                    intro = new Node("open", section);
+                    intro.compound = true;
+                    intro.style = "partintro";
+                    section.blocks.add(intro);
+                }
+            }
+        } else if (section.blocks.size() == 1) {
+            var first = section.blocks.get(0);
+            if (intro == null && !first.compound) {
+                intro = new Node("open", section);
+                intro.compound = true;
+                intro.style = "partintro";
+                section.blocks.remove(0);
+                if ("partintro".equals(first.style)) {
+                    first.context = "paragraph";
+                    first.style = null;
+                }
+                first.parent = intro;
+                intro.blocks.add(first);
+                section.blocks.add(intro);
+            }
+        }
+        return intro;
+    }
+
+    private Node initializeSection(LineReader reader, Node parent, Map<Object, Object> attributes) {
+        var book = "book".equals(this.doc.getDoctype());
+        var lineNumber = reader.getLineNumber();
+        var style = str(attributes.get(1));
+        var title = parseSectionTitle(reader, str(attributes.get("id")));
+
+        var section = new Node("section", parent);
+        section.lineNumber = lineNumber;
+        section.level = title.level;
+        if (style != null) {
+            if (book && style.equals("abstract")) {
+                section.sectname = "chapter";
+                section.level = 1;
+            } else if (style.startsWith("sect") && Rx.SECTION_LEVEL_STYLE.matcher(style).find()) {
+                section.sectname = "section";
+            } else {
+                section.sectname = style;
+                section.special = true;
+                if (section.level == 0)
+                    section.level = 1;
+            }
+        } else if (book) {
+            section.sectname = section.level == 0 ? "part" : (section.level > 1 ? "section" : "chapter");
+        } else if ("manpage".equals(this.doc.getDoctype()) && title.title.equalsIgnoreCase("synopsis")) {
+            section.sectname = "synopsis";
+            section.special = true;
+        } else {
+            section.sectname = "section";
+        }
+
+        if (title.reftext != null)
+            attributes.put("reftext", title.reftext);
+        section.id = title.id;
+        section.title = title.title;
+
+        var generated = false;
+        if (section.id == null && this.doc.hasAttribute("sectids")) {
+            section.id = this.doc.generateId(convertTitle(section));
+            generated = true;
+        }
+        if (section.id != null) {
+            if (!generated && title.title.contains("{"))
+                convertTitle(section);
+            this.doc.register(section.id);
+        }
+
+        section.attributes.putAll(attributes);
+        reader.skipBlankLines();
+        return section;
+    }
+
+    /**
+     * Converts the title of a section once, with the document attributes as they are now.
+     */
+    String convertTitle(Node node) {
+        if (node.convertedTitle == null && node.title != null)
+            node.convertedTitle = this.doc.applyNormalSubs(node.title);
+        return node.convertedTitle;
+    }
+
+    private Integer isNextLineSection(LineReader reader, Map<Object, Object> attributes) {
+        var style = attributes.get(1);
+        if ("discrete".equals(style) || "float".equals(style))
+            return null;
+        var next = reader.peekLines(2);
+        return isSectionTitle(next.isEmpty() ? "" : next.get(0), next.size() > 1 ? next.get(1) : null);
+    }
+
+    private static Integer isSectionTitle(String line1, String line2) {
+        var level = atxSectionTitle(line1);
+        if (level != null || line2 == null || line2.isEmpty())
+            return level;
+        return setextSectionTitle(line1, line2);
+    }
+
+    private static Integer atxSectionTitle(String line) {
+        if (!line.startsWith("=") && !line.startsWith("#"))
+            return null;
+        var matcher = Rx.ATX_SECTION_TITLE.matcher(line);
+        return matcher.find() ? matcher.group(1).length() - 1 : null;
+    }
+
+    private static Integer setextSectionTitle(String line1, String line2) {
+        var level = Rx.SETEXT_SECTION_LEVELS.get(line2.charAt(0));
+        if (level != null && LineReader.uniform(line2, line2.charAt(0))
+                && Rx.SETEXT_SECTION_TITLE.matcher(line1).find() && Math.abs(line1.length() - line2.length()) < 2)
+            return level;
+        return null;
+    }
+
+    private SectionTitle parseSectionTitle(LineReader reader, String id) {
+        var result = new SectionTitle();
+        result.id = id;
+        var line1 = reader.readLine();
+
+        Matcher matcher;
+        String line2;
+        Integer level;
+        if ((line1.startsWith("=") || line1.startsWith("#"))
+                && (matcher = Rx.ATX_SECTION_TITLE.matcher(line1)).find()) {
+            result.level = matcher.group(1).length() - 1;
+            result.title = matcher.group(2);
+            result.atx = true;
+        } else if ((line2 = reader.peekLine()) != null && !line2.isEmpty()
+                && (level = Rx.SETEXT_SECTION_LEVELS.get(line2.charAt(0))) != null
+                && LineReader.uniform(line2, line2.charAt(0))
+                && (matcher = Rx.SETEXT_SECTION_TITLE.matcher(line1)).find()
+                && Math.abs(line1.length() - line2.length()) < 2) {
+            result.level = level;
+            result.title = matcher.group(1);
+            reader.readLine();
+        } else {
+            throw new IllegalStateException("Unrecognized section at line " + (reader.getLineNumber() - 1));
+        }
+
+        if (id == null && result.title.endsWith("]]")) {
+            var anchor = Rx.INLINE_SECTION_ANCHOR.matcher(result.title);
+            if (anchor.find() && anchor.group(1) == null) {
+                result.title = result.title.substring(0, result.title.length() - anchor.group().length());
+                result.id = anchor.group(2);
+                result.reftext = anchor.group(3);
+            }
+        }
+
+        if (this.doc.hasAttribute("leveloffset"))
+            result.level = Math.max(0, result.level + this.doc.leveloffset());
+        return result;
+    }
+
+    private Map<Object, Object> parseBlockMetadataLines(LineReader reader, Map<Object, Object> attributes,
+                                                        boolean textOnly) {
+        while (parseBlockMetadataLine(reader, attributes, textOnly)) {
+            reader.readLine();
+            if (reader.skipBlankLines() < 0)
+                break;
+        }
+        return attributes;
+    }
+
+    private boolean parseBlockMetadataLine(LineReader reader, Map<Object, Object> attributes, boolean textOnly) {
+        var line = reader.peekLine();
+        if (line == null)
+            return false;
+
+        var normal = false;
+        if (textOnly) {
+            if (!line.startsWith("[") && !line.startsWith("/"))
+                return false;
+        } else {
+            normal = line.startsWith("[") || line.startsWith(".") || line.startsWith("/") || line.startsWith(":");
+            if (!normal)
+                return false;
+        }
+
+        Matcher matcher;
+        if (line.startsWith("[")) {
+            if (line.startsWith("[[")) {
+                if (line.endsWith("]]") && (matcher = Rx.BLOCK_ANCHOR.matcher(line)).find()) {
+                    attributes.put("id", matcher.group(1));
+                    var reftext = matcher.group(2);
+                    if (reftext != null)
+                        attributes.put("reftext", reftext.contains("{") ? this.doc.subAttributes(reftext, null) : reftext);
+                    return true;
+                }
+            } else if (line.endsWith("]") && (matcher = Rx.BLOCK_ATTRIBUTE_LIST.matcher(line)).find()) {
+                var currentStyle = attributes.get(1);
+                if (parseAttributes(matcher.group(1), List.of(), true, attributes) && attributes.get(1) != null) {
+                    var style = parseStyleAttribute(attributes);
+                    attributes.put(1, style != null ? style : currentStyle);
+                }
+                return true;
+            }
+        } else if (normal && line.startsWith(".")) {
+            if ((matcher = Rx.BLOCK_TITLE.matcher(line)).find()) {
+                attributes.put("title", matcher.group(1));
+                return true;
+            }
+        } else if (!normal || line.startsWith("/")) {
+            if (line.startsWith("//")) {
+                if (line.equals("//"))
+                    return true;
+                if (normal && LineReader.uniform(line, '/')) {
+                    if (line.length() != 3) {
+                        reader.readLinesUntil(new LineReader.Until().terminator(line).skipFirstLine().preserveLastLine(),
+                                null);
+                        return true;
+                    }
+                } else if (!line.startsWith("///")) {
+                    return true;
+                }
+            }
+        } else if (normal && line.startsWith(":") && (matcher = Rx.ATTRIBUTE_ENTRY.matcher(line)).find()) {
+            processAttributeEntry(reader, matcher);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Parses an attribute list into the attributes, see asciidoctor's {@code AbstractNode#parse_attributes}.
+     *
+     * @return false if the list was empty
+     */
+    private boolean parseAttributes(String source, List<String> positionalNames, boolean subResult,
+                                    Map<Object, Object> attributes) {
+        if (source == null || source.isEmpty())
+            return false;
+        if (source.contains("{"))
+            source = this.doc.subAttributes(source, null);
+        new AttributeList(source, subResult ? this.doc::applyNormalSubs : null).parseInto(attributes, positionalNames);
+        return true;
+    }
+
+    private static String parseStyleAttribute(Map<Object, Object> attributes) {
+        var raw = str(attributes.get(1));
+        if (raw == null || raw.contains(" ")) {
+            attributes.put("style", raw);
+            return raw;
+        }
+
+        String name = null;
+        var accum = new StringBuilder();
+        String style = null;
+        String id = null;
+        var roles = new ArrayList<String>();
+        var options = new ArrayList<String>();
+        for (int i = 0; i <= raw.length(); i++) {
+            var c = i < raw.length() ? raw.charAt(i) : 0;
+            if (c == '.' || c == '#' || c == '%' || c == 0) {
+                var value = accum.toString();
+                if (name == null) {
+                    if (!value.isEmpty())
+                        style = value;
+                } else if (!value.isEmpty()) {
+                    if (name.equals("id"))
+                        id = value;
+                    else if (name.equals("role"))
+                        roles.add(value);
+                    else
+                        options.add(value);
+                }
+                accum.setLength(0);
+                if (c == 0 && name == null) {
+                    attributes.put("style", raw);
+                    return raw;
+                }
+                name = c == '.' ? "role" : c == '#' ? "id" : "option";
+            } else {
+                accum.append(c);
+            }
+        }
+
+        if (style != null)
+            attributes.put("style", style);
+        if (id != null)
+            attributes.put("id", id);
+        if (!roles.isEmpty()) {
+            var existing = str(attributes.get("role"));
+            attributes.put("role", existing == null || existing.isEmpty()
+                    ? String.join(" ", roles) : existing + " " + String.join(" ", roles));
+        }
+        for (var option : options)
+            attributes.put(option + "-option", "");
+        return style;
+    }
+
+    private Node nextBlock(LineReader reader, Node parent, Map<Object, Object> attributes, boolean textOnly,
+                           String listType, boolean parseMetadata) {
+        var skipped = reader.skipBlankLines();
+        if (skipped < 0)
+            return null;
+        if (textOnly && skipped > 0)
+            textOnly = false;
+
+        if (parseMetadata) {
+            while (parseBlockMetadataLine(reader, attributes, textOnly)) {
+                reader.readLine();
+                if (reader.skipBlankLines() < 0)
+                    return null;
+            }
+        }
+
+        reader.mark();
+        var line = reader.readLine();
+        var style = str(attributes.get(1));
+        Node block = null;
+        String blockContext = null;
+        String terminator = null;
+
+        var delimiter = delimitedBlock(line);
+        if (delimiter != null) {
+            blockContext = delimiter.context;
+            terminator = delimiter.terminator;
+            if (style == null) {
+                style = blockContext;
+                attributes.put("style", style);
+            } else if (!style.equals(blockContext)) {
+                if (delimiter.masq.contains(style))
+                    blockContext = style;
+                else if (delimiter.masq.contains("admonition") && ADMONITION_STYLES.contains(style))
+                    blockContext = "admonition";
+                else
+                    style = blockContext;
+            }
+        } else {
+            found:
+            {
+                if (style != null && VERBATIM_STYLES.contains(style)) {
+                    blockContext = style;
+                    reader.unshift(line);
+                    break found;
+                }
+
+                var ch0 = line.charAt(0);
+                var indented = ch0 == ' ' || ch0 == '\t';
+                if (!textOnly) {
+                    if (ch0 == ' ') {
+                        var stripped = line.stripLeading();
+                        if ((stripped.startsWith("-") || stripped.startsWith("*") || stripped.startsWith("_"))
+                                && Rx.MARKDOWN_THEMATIC_BREAK.matcher(line).find()) {
+                            block = new Node("thematic_break", parent);
+                            break found;
+                        }
+                    } else if (ch0 != '\t') {
+                        if ("'<-*_".indexOf(ch0) >= 0 && Rx.EXT_LAYOUT_BREAK.matcher(line).find()) {
+                            block = new Node(ch0 == '<' ? "page_break" : "thematic_break", parent);
+                            break found;
+                        } else if (line.endsWith("]") && line.contains("::")) {
+                            Matcher matcher;
+                            if ((ch0 == 'i' || line.startsWith("video:") || line.startsWith("audio:"))
+                                    && (matcher = Rx.BLOCK_MEDIA_MACRO.matcher(line)).find()) {
+                                block = mediaBlock(parent, matcher, attributes);
+                                if (block == null)
+                                    return null;
+                                break found;
+                            } else if (ch0 == 't' && line.startsWith("toc:")
+                                    && (matcher = Rx.BLOCK_TOC_MACRO.matcher(line)).find()) {
+                                block = new Node("toc", parent);
+                                parseAttributes(matcher.group(1), List.of(), false, attributes);
+                                break found;
+                            }
+                        }
+                    }
+                }
+
+                Matcher matcher;
+                if (!indented && ch0 == '<' && (matcher = Rx.CALLOUT_LIST.matcher(line)).find()) {
+                    reader.unshift(line);
+                    block = parseCalloutList(reader, matcher, parent);
+                    attributes.put("style", "arabic");
+                    break found;
+                } else if (Rx.UNORDERED_LIST.matcher(line).find()) {
+                    reader.unshift(line);
+                    if (style == null && parent.isSection() && "bibliography".equals(parent.sectname)) {
+                        style = "bibliography";
+                        attributes.put("style", style);
+                    }
+                    block = parseList(reader, "ulist", parent, style);
+                    break found;
+                } else if (Rx.ORDERED_LIST.matcher(line).find()) {
+                    reader.unshift(line);
+                    block = parseList(reader, "olist", parent, style);
+                    if (block.style != null)
+                        attributes.put("style", block.style);
+                    break found;
+                } else if ((line.contains("::") || line.contains(";;"))
+                        && (matcher = Rx.DESCRIPTION_LIST.matcher(line)).find()) {
+                    reader.unshift(line);
+                    block = parseDescriptionList(reader, matcher, parent);
+                    break found;
+                } else if (("float".equals(style) || "discrete".equals(style))
+                        && isSectionTitle(line, reader.peekLine()) != null) {
+                    reader.unshift(line);
+                    var title = parseSectionTitle(reader, str(attributes.get("id")));
+                    if (title.reftext != null)
+                        attributes.put("reftext", title.reftext);
+                    block = new Node("floating_title", parent);
+                    block.title = title.title;
+                    attributes.remove("title");
+                    block.id = title.id != null ? title.id
+                            : this.doc.hasAttribute("sectids") ? this.doc.generateId(convertTitle(block)) : null;
+                    block.level = title.level;
+                    break found;
+                } else if (style != null && !style.equals("normal")) {
+                    if (PARAGRAPH_STYLES.contains(style)) {
+                        blockContext = style;
+                        reader.unshift(line);
+                        break found;
+                    } else if (ADMONITION_STYLES.contains(style)) {
+                        blockContext = "admonition";
+                        reader.unshift(line);
+                        break found;
+                    }
+                    style = null;
+                }
+
+                reader.unshift(line);
+                block = paragraph(reader, parent, attributes, line, indented && style == null, textOnly,
+                        skipped == 0 ? listType : null);
+            }
+        }
+
+        if (block == null) {
+            switch (blockContext) {
+                case "listing":
+                case "source":
+                    block = buildBlock("listing", "verbatim", terminator, parent, reader);
+                    break;
+                case "fenced_code":
+                    block = buildBlock("listing", "verbatim", terminator.substring(0, 3), parent, reader);
+                    break;
+                case "table":
+                    reader.readLinesUntil(new LineReader.Until().terminator(terminator).skipLineComments(true), null);
+                    block = new Node("table", parent);
+                    break;
+                case "sidebar":
+                case "admonition":
+                case "example":
+                    block = buildBlock(blockContext, "compound", terminator, parent, reader);
+                    break;
+                case "open":
+                case "abstract":
+                case "partintro":
+                    block = buildBlock("open", "compound", terminator, parent, reader);
+                    break;
+                case "literal":
+                    block = buildBlock(blockContext, "verbatim", terminator, parent, reader);
+                    break;
+                case "quote":
+                case "verse":
+                    block = buildBlock(blockContext, blockContext.equals("verse") ? "verbatim" : "compound",
+                            terminator, parent, reader);
+                    break;
+                case "stem":
+                case "latexmath":
+                case "asciimath":
+                    block = buildBlock("stem", "raw", terminator, parent, reader);
+                    break;
+                case "pass":
+                    block = buildBlock(blockContext, "raw", terminator, parent, reader);
+                    break;
+                case "comment":
+                    buildBlock(blockContext, "skip", terminator, parent, reader);
+                    attributes.clear();
+                    return null;
+                default:
+                    throw new IllegalStateException("Unsupported block type " + blockContext + " at line "
+                            + reader.getLineNumber());
+            }
+        }
+
+        block.lineNumber = reader.getMark();
+        var title = str(attributes.remove("title"));
+        if (title != null)
+            block.title = title;
+        block.style = str(attributes.get("style"));
+        if (block.id == null)
+            block.id = str(attributes.get("id"));
+        if (block.id != null) {
+            if (title != null && title.contains("{"))
+                convertTitle(block);
+            this.doc.register(block.id);
+        }
+        block.attributes.putAll(attributes);
+        return block;
+    }
+
+    private Node mediaBlock(Node parent, Matcher matcher, Map<Object, Object> attributes) {
+        var context = matcher.group(1);
+        var target = matcher.group(2);
+        var block = new Node(context, parent);
+        List<String> positionalNames;
+        switch (context) {
+            case "video":
+                positionalNames = List.of("poster", "width", "height");
+                break;
+            case "audio":
+                positionalNames = List.of();
+                break;
+            default:
+                positionalNames = List.of("alt", "width", "height");
+                break;
+        }
+        parseAttributes(matcher.group(3), positionalNames, false, attributes);
+        attributes.remove("style");
+
+        if (target.contains("{")) {
+            var expanded = this.doc.subAttributes(target, null);
+            if (expanded.isEmpty() && "drop-line".equals(String.valueOf(this.doc.getAttribute("attribute-missing")))
+                    && this.doc.subAttributes(target + " ", "drop-line").isEmpty()) {
+                attributes.clear();
+                return null;
+            }
+            target = expanded;
+        }
+        if (context.equals("image"))
+            attributes.put("imagesdir", this.doc.getAttribute("imagesdir"));
+        attributes.put("target", target);
+        return block;
+    }
+
+    private Node paragraph(LineReader reader, Node parent, Map<Object, Object> attributes, String line,
+                           boolean literal, boolean textOnly, String adjacentListType) {
+        Node block;
+        List<String> lines;
+        if (literal) {
+            lines = readParagraphLines(reader, adjacentListType != null, textOnly);
+            block = new Node(textOnly || "dlist".equals(adjacentListType) ? "paragraph" : "literal", parent);
+            block.lineCount = lines.size();
+            return block;
+        }
+
+        lines = readParagraphLines(reader, adjacentListType != null, true);
+        var ch0 = line.charAt(0);
+        Matcher matcher;
+        if (textOnly) {
+            block = new Node("paragraph", parent);
+        } else if ("NTIWC".indexOf(ch0) >= 0 && line.contains(":")
+                && (matcher = Rx.ADMONITION_PARAGRAPH.matcher(line)).find()) {
+            attributes.put("style", matcher.group(1));
+            block = new Node("admonition", parent);
+        } else if (ch0 == '>' && line.startsWith("> ")) {
+            var quoted = new ArrayList<String>();
+            for (var quotedLine : lines)
+                quoted.add(quotedLine.equals(">") ? "" : quotedLine.startsWith("> ") ? quotedLine.substring(2) : quotedLine);
+            if (quoted.get(quoted.size() - 1).startsWith("-- ")) {
+                quoted.remove(quoted.size() - 1);
+                while (!quoted.isEmpty() && quoted.get(quoted.size() - 1).isEmpty())
+                    quoted.remove(quoted.size() - 1);
+            }
+            lines = quoted;
+            attributes.put("style", "quote");
+            block = buildBlock("quote", "compound", null, parent, new LineReader(quoted, 1), true);
+        } else if (ch0 == '"' && lines.size() > 1 && lines.get(lines.size() - 1).startsWith("-- ")
+                && lines.get(lines.size() - 2).endsWith("\"")) {
+            lines = new ArrayList<>(lines);
+            lines.remove(lines.size() - 1);
+            while (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty())
+                lines.remove(lines.size() - 1);
+            attributes.put("style", "quote");
+            block = new Node("quote", parent);
+        } else {
+            block = new Node("paragraph", parent);
+        }
+
+        if (!block.compound)
+            block.lineCount = lines.size();
+        catalogInlineAnchors(String.join("\n", lines));
+        return block;
+    }
+
+    private Node buildBlock(String context, String contentModel, String terminator, Node parent, LineReader reader) {
+        return buildBlock(context, contentModel, terminator, parent, reader, false);
+    }
+
+    /**
+     * Reads the lines of a block, see asciidoctor's {@code Parser.build_block}.
+     *
+     * @param prepared whether the reader only holds the lines of the block, asciidoctor passes false as terminator
+     */
+    private Node buildBlock(String context, String contentModel, String terminator, Node parent, LineReader reader,
+                            boolean prepared) {
+        var parseAs = contentModel.equals("skip") || contentModel.equals("raw") ? "simple" : contentModel;
+        List<String> lines = null;
+        LineReader blockReader = null;
+
+        if (prepared) {
+            blockReader = reader;
+        } else if (terminator == null) {
+            if (parseAs.equals("verbatim")) {
+                lines = reader.readLinesUntil(new LineReader.Until().breakOnBlankLines().breakOnListContinuation(),
+                        null);
+            } else {
+                if (contentModel.equals("compound"))
+                    contentModel = "simple";
+                lines = readParagraphLines(reader, false, true);
+            }
+        } else if (!parseAs.equals("compound")) {
+            lines = reader.readLinesUntil(new LineReader.Until().terminator(terminator), null);
+        } else {
+            var lineNumber = reader.getLineNumber();
+            blockReader = new LineReader(reader.readLinesUntil(new LineReader.Until().terminator(terminator), null),
+                    lineNumber);
+        }
+
+        if (contentModel.equals("skip"))
+            return null;
+
+        var block = new Node(context, parent);
+        if (contentModel.equals("compound")) {
+            block.compound = true;
+            parseBlocks(blockReader, block);
+        } else {
+            block.lineCount = lines.size();
+        }
+        return block;
+    }
+
+    private void parseBlocks(LineReader reader, Node parent) {
+        while (true) {
+            var block = nextBlock(reader, parent, new LinkedHashMap<>(), false, null, true);
+            if (block != null)
+                parent.blocks.add(block);
+            else if (!reader.hasMoreLines())
+                break;
+        }
+    }
+
+    private List<String> readParagraphLines(LineReader reader, boolean breakAtList, boolean skipLineComments) {
+        Predicate<String> condition = breakAtList
+                ? line -> delimitedBlock(line) != null || isBlockAttributeLine(line)
+                        || Rx.ANY_LIST.matcher(line).find()
+                : line -> isBlockAttributeLine(line) || delimitedBlock(line) != null;
+        return reader.readLinesUntil(new LineReader.Until().breakOnBlankLines().breakOnListContinuation()
+                .preserveLastLine().skipLineComments(skipLineComments), condition);
+    }
+
+    private static boolean isBlockAttributeLine(String line) {
+        return line.startsWith("[") && Rx.BLOCK_ATTRIBUTE_LINE.matcher(line).find();
+    }
+
+    /**
+     * Whether the line opens a delimited block, see asciidoctor's {@code Parser.is_delimited_block?}.
+     *
+     * @return the block the line opens, null if it doesn't open one
+     */
+    private static DelimitedBlock delimitedBlock(String line) {
+        var length = line.length();
+        if (length < 2 || !DELIMITER_HEADS.contains(line.substring(0, 2)))
+            return null;
+
+        String tip;
+        if (length == 2) {
+            tip = line;
+        } else {
+            tip = length < 5 ? line : line.substring(0, 4);
+            if (tip.startsWith("`")) {
+                if (tip.length() == 4) {
+                    if (tip.equals("````") || !(tip = tip.substring(0, 3)).equals("```"))
+                        return null;
+                    line = tip;
+                    length = 3;
+                } else if (!tip.equals("```")) {
+                    return null;
+                }
+            } else if (tip.length() == 3) {
+                return null;
+            }
+        }
+
+        var delimiter = DELIMITERS.get(tip);
+        if (delimiter == null)
+            return null;
+        if (length == tip.length()
+                || (tip.length() == 4 && LineReader.uniform(line.substring(1), tip.charAt(3))))
+            return new DelimitedBlock(delimiter.context, delimiter.masq, line);
+        return null;
+    }
+
+    private Node parseList(LineReader reader, String listType, Node parent, String style) {
+        var list = new Node(listType, parent);
+        var pattern = listType.equals("ulist") ? Rx.UNORDERED_LIST : Rx.ORDERED_LIST;
+        Matcher matcher;
+        while (reader.hasMoreLines() && (matcher = pattern.matcher(reader.peekLine())).find()) {
+            parseListItem(reader, list, matcher, matcher.group(1), style);
+            if (reader.skipBlankLines() < 0)
+                break;
+        }
+        return list;
+    }
+
+    private Node parseDescriptionList(LineReader reader, MatchResult match, Node parent) {
+        var list = new Node("dlist", parent);
+        var sibling = Rx.DESCRIPTION_LIST_SIBLING.get(match.group(2));
+        parseListItem(reader, list, match, sibling, null);
+        Matcher matcher;
+        while (reader.hasMoreLines() && (matcher = sibling.matcher(reader.peekLine())).find())
+            parseListItem(reader, list, matcher, sibling, null);
+        return list;
+    }
+
+    private Node parseCalloutList(LineReader reader, MatchResult match, Node parent) {
+        var list = new Node("colist", parent);
+        while (match != null) {
+            parseListItem(reader, list, match, "<1>", null);
+            var next = reader.peekLine();
+            Matcher matcher;
+            match = next != null && (matcher = Rx.CALLOUT_LIST.matcher(next)).find() ? matcher : null;
+            if (match != null)
+                reader.mark();
+        }
+        return list;
+    }
+
+    private void parseListItem(LineReader reader, Node list, MatchResult match, Object siblingTrait, String style) {
+        var listType = list.context;
+        var dlist = listType.equals("dlist");
+        Boolean hasText;
+        if (dlist) {
+            var term = match.group(1);
+            Matcher anchor;
+            if (term.startsWith("[[") && (anchor = Rx.LEADING_INLINE_ANCHOR.matcher(term)).find())
+                catalogInlineAnchor(anchor.group(1), anchor.group(2));
+            hasText = match.group(3) != null ? Boolean.TRUE : null;
+        } else {
+            hasText = Boolean.TRUE;
+            var text = match.group(2);
+            Matcher anchor;
+            switch (listType) {
+                case "ulist":
+                    if (text.startsWith("[")) {
+                        if ("bibliography".equals(style)) {
+                            if ((anchor = Rx.INLINE_BIBLIO_ANCHOR.matcher(text)).find())
+                                this.doc.register(anchor.group(1));
+                        } else if (text.startsWith("[[") && (anchor = Rx.LEADING_INLINE_ANCHOR.matcher(text)).find()) {
+                            catalogInlineAnchor(anchor.group(1), anchor.group(2));
+                        }
+                    }
+                    break;
+                case "olist":
+                    var resolved = resolveOrderedListMarker((String) siblingTrait);
+                    siblingTrait = resolved[0];
+                    if (list.attributes.isEmpty() && list.style == null && style == null) {
+                        list.style = resolved[1] != null ? resolved[1]
+                                : ((String) siblingTrait).length() <= ORDERED_LIST_STYLES.size()
+                                ? ORDERED_LIST_STYLES.get(((String) siblingTrait).length() - 1) : "arabic";
+                    }
+                    list.attributes.put("items", Boolean.TRUE);
+                    if (text.startsWith("[[") && (anchor = Rx.LEADING_INLINE_ANCHOR.matcher(text)).find())
+                        catalogInlineAnchor(anchor.group(1), anchor.group(2));
+                    break;
+                default:
+                    if (text.startsWith("[[") && (anchor = Rx.LEADING_INLINE_ANCHOR.matcher(text)).find())
+                        catalogInlineAnchor(anchor.group(1), anchor.group(2));
+                    break;
+            }
+        }
+
+        reader.readLine();
+        var lineNumber = reader.getLineNumber();
+        var itemReader = new LineReader(readLinesForListItem(reader, listType, siblingTrait, hasText != null),
+                lineNumber);
+        if (itemReader.hasMoreLines()) {
+            var comments = itemReader.skipLineComments();
+            var subsequent = itemReader.peekLine();
+            if (subsequent != null) {
+                if (!comments.isEmpty())
+                    itemReader.unshiftAll(comments);
+                if (!subsequent.isEmpty() && !dlist)
+                    hasText = null;
+            }
+
+            var item = new Node("list_item", list);
+            nextBlock(itemReader, item, new LinkedHashMap<>(), hasText == null, listType, true);
+            while (itemReader.hasMoreLines())
+                nextBlock(itemReader, item, new LinkedHashMap<>(), false, listType, true);
+        }
+    }
+
+    private List<String> readLinesForListItem(LineReader reader, String listType, Object siblingTrait,
+                                              boolean hasText) {
+        var buffer = new ArrayList<String>();
+        var continuation = INACTIVE;
+        var withinNestedList = false;
+        var detachedContinuation = -1;
+        var dlist = listType.equals("dlist");
+        // Text after the term of the last nested list match, asciidoctor reads it from the last regexp match ($3)
+        String lastItemText = null;
+
+        String line = null;
+        while (reader.hasMoreLines()) {
+            line = reader.readLine();
+            if (isSiblingListItem(line, listType, siblingTrait))
+                break;
+
+            var previous = buffer.isEmpty() ? null : buffer.get(buffer.size() - 1);
+            if ("+".equals(previous)) {
+                if (continuation == INACTIVE) {
+                    continuation = ACTIVE;
+                    hasText = true;
+                    if (!withinNestedList)
+                        buffer.set(buffer.size() - 1, "");
+                }
+                if (line.equals("+")) {
+                    if (continuation != FROZEN) {
+                        continuation = FROZEN;
+                        buffer.add(line);
+                    }
+                    line = null;
+                    continue;
+                }
+            }
+
+            var delimiter = delimitedBlock(line);
+            if (delimiter != null) {
+                if (continuation != ACTIVE)
+                    break;
+                buffer.add(line);
+                buffer.addAll(reader.readLinesUntil(new LineReader.Until().terminator(delimiter.terminator)
+                        .readLastLine(), null));
+                continuation = INACTIVE;
+            } else if (dlist && continuation != ACTIVE && Rx.BLOCK_ATTRIBUTE_LINE.matcher(line).find()) {
+                break;
+            } else if (continuation == ACTIVE && !line.isEmpty()) {
+                if (Rx.LITERAL_PARAGRAPH.matcher(line).find()) {
+                    reader.unshift(line);
+                    buffer.addAll(readLiteralLines(reader, dlist, listType, siblingTrait));
+                    continuation = INACTIVE;
+                } else if (Rx.BLOCK_TITLE.matcher(line).find() || Rx.BLOCK_ATTRIBUTE_LINE.matcher(line).find()
+                        || Rx.ATTRIBUTE_ENTRY.matcher(line).find()) {
+                    buffer.add(line);
+                } else {
+                    var nested = withinNestedList
+                            ? (Rx.DESCRIPTION_LIST.matcher(line).find() ? "dlist" : null)
+                            : nestedListType(line, null);
+                    if (nested != null) {
+                        withinNestedList = true;
+                        if (nested.equals("dlist") && (lastItemText == null || lastItemText.isEmpty()))
+                            hasText = false;
+                    }
+                    buffer.add(line);
+                    continuation = INACTIVE;
+                }
+            } else if (previous != null && previous.isEmpty()) {
+                if (line.isEmpty()) {
+                    if (reader.skipBlankLines() < 0 || (line = reader.readLine()) == null) {
+                        line = null;
+                        break;
+                    }
+                    if (isSiblingListItem(line, listType, siblingTrait))
+                        break;
+                }
+
+                if (line.equals("+")) {
+                    detachedContinuation = buffer.size();
+                    buffer.add(line);
+                } else if (hasText) {
+                    if (isSiblingListItem(line, listType, siblingTrait))
+                        break;
+                    var itemText = new String[1];
+                    var nested = nestedListType(line, itemText);
+                    lastItemText = itemText[0];
+                    if (nested != null) {
+                        buffer.add(line);
+                        withinNestedList = true;
+                        if (nested.equals("dlist") && (lastItemText == null || lastItemText.isEmpty()))
+                            hasText = false;
+                    } else if (Rx.LITERAL_PARAGRAPH.matcher(line).find()) {
+                        reader.unshift(line);
+                        buffer.addAll(readLiteralLines(reader, dlist, listType, siblingTrait));
+                    } else {
+                        break;
+                    }
+                } else {
+                    if (!withinNestedList)
+                        buffer.remove(buffer.size() - 1);
+                    buffer.add(line);
+                    hasText = true;
+                }
+            } else {
+                if (!line.isEmpty())
+                    hasText = true;
+                var itemText = new String[1];
+                String nested;
+                if (withinNestedList) {
+                    var matcher = Rx.DESCRIPTION_LIST.matcher(line);
+                    nested = matcher.find() ? "dlist" : null;
+                    itemText[0] = nested != null ? matcher.group(3) : null;
+                } else {
+                    nested = nestedListType(line, itemText);
+                }
+                lastItemText = itemText[0];
+                if (nested != null) {
+                    withinNestedList = true;
+                    if (nested.equals("dlist") && (lastItemText == null || lastItemText.isEmpty()))
+                        hasText = false;
+                }
+                buffer.add(line);
+            }
+            line = null;
+        }
+
+        if (line != null)
+            reader.unshift(line);
+
+        if (detachedContinuation >= 0)
+            buffer.set(detachedContinuation, "");
+
+        while (!buffer.isEmpty()) {
+            var last = buffer.get(buffer.size() - 1);
+            if (last.isEmpty()) {
+                buffer.remove(buffer.size() - 1);
+            } else {
+                if (last.equals("+"))
+                    buffer.remove(buffer.size() - 1);
+                break;
+            }
+        }
+        return buffer;
+    }
+
+    private List<String> readLiteralLines(LineReader reader, boolean dlist, String listType, Object siblingTrait) {
+        return reader.readLinesUntil(new LineReader.Until().preserveLastLine().breakOnBlankLines()
+                        .breakOnListContinuation(),
+                dlist ? line -> isSiblingListItem(line, listType, siblingTrait) : null);
+    }
+
+    /**
+     * The kind of list the line starts, if any.
+     *
+     * @param itemText receives the text after a description list term, may be null
+     */
+    private static String nestedListType(String line, String[] itemText) {
+        for (var type : NESTABLE_LISTS) {
+            var matcher = listPattern(type).matcher(line);
+            if (matcher.find()) {
+                if (itemText != null)
+                    itemText[0] = type.equals("dlist") ? matcher.group(3) : null;
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static Pattern listPattern(String listType) {
+        switch (listType) {
+            case "ulist":
+                return Rx.UNORDERED_LIST;
+            case "olist":
+                return Rx.ORDERED_LIST;
+            case "dlist":
+                return Rx.DESCRIPTION_LIST;
+            default:
+                return Rx.CALLOUT_LIST;
+        }
+    }
+
+    private static boolean isSiblingListItem(String line, String listType, Object siblingTrait) {
+        if (siblingTrait instanceof Pattern)
+            return ((Pattern) siblingTrait).matcher(line).find();
+
+        var matcher = listPattern(listType).matcher(line);
+        if (!matcher.find())
+            return false;
+        String marker;
+        switch (listType) {
+            case "ulist":
+                marker = matcher.group(1);
+                break;
+            case "olist":
+                marker = resolveOrderedListMarker(matcher.group(1))[0];
+                break;
+            default:
+                marker = "<1>";
+                break;
+        }
+        return siblingTrait.equals(marker);
+    }
+
+    /**
+     * The first marker of the series the marker belongs to, and the implicit list style.
+     */
+    private static String[] resolveOrderedListMarker(String marker) {
+        if (marker.startsWith("."))
+            return new String[]{marker, null};
+        for (var style : ORDERED_LIST_STYLES) {
+            if (Rx.ORDERED_LIST_MARKERS.get(style).matcher(marker).find())
+                return new String[]{ORDERED_LIST_FIRST_MARKERS.get(style), style};
+        }
+        return new String[]{marker, null};
+    }
+
+    private void catalogInlineAnchor(String id, String reftext) {
+        if (reftext != null && reftext.contains("{"))
+            this.doc.subAttributes(reftext, null);
+        this.doc.register(id);
+    }
+
+    private void catalogInlineAnchors(String text) {
+        if (!text.contains("[[") && !text.contains("or:"))
+            return;
+
+        var matcher = Rx.INLINE_ANCHOR_SCAN.matcher(text);
+        while (matcher.find()) {
+            String id;
+            var reftext = matcher.group(1) != null ? matcher.group(2) : matcher.group(4);
+            if (matcher.group(1) != null) {
+                id = matcher.group(1);
+                if (reftext != null && reftext.contains("{") && this.doc.subAttributes(reftext, null).isEmpty())
+                    continue;
+            } else {
+                id = matcher.group(3);
+                if (reftext != null) {
+                    if (reftext.contains("]")) {
+                        reftext = reftext.replace("\\]", "]");
+                        if (reftext.contains("{"))
+                            this.doc.subAttributes(reftext, null);
+                    } else if (reftext.contains("{") && this.doc.subAttributes(reftext, null).isEmpty()) {
+                        continue;
+                    }
+                }
+            }
+            this.doc.register(id);
+        }
+    }
+
+    private static String str(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static String orEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static class SectionTitle {
+        private String id;
+        private String reftext;
+        private String title;
+        private int level;
+        private boolean atx;
+    }
+
+    private static class SectionResult {
+        private final Node section;
+        private final Map<Object, Object> attributes;
+
+        SectionResult(Node section, Map<Object, Object> attributes) {
+            this.section = section;
+            this.attributes = attributes;
+        }
+    }
+
+    private static class Delimiter {
+        private final String context;
+        private final Set<String> masq;
+
+        Delimiter(String context, Set<String> masq) {
+            this.context = context;
+            this.masq = masq;
+        }
+    }
+
+    private static class DelimitedBlock {
+        private final String context;
+        private final Set<String> masq;
+        private final String terminator;
+
+        DelimitedBlock(String context, Set<String> masq, String terminator) {
+            this.context = context;
+            this.masq = masq;
+            this.terminator = terminator;
+        }
+    }
+}
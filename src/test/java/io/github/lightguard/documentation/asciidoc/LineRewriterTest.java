@@ -0,0 +1,182 @@
+package io.github.lightguard.documentation.asciidoc;
+
+import io.github.lightguard.documentation.asciidoc.extension.ReaderPreprocessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class LineRewriterTest {
+    private static final String[] TOKENS = {
+            "include::", "chap-", "assembly-", "{asciidoc-dir}/", "[tags=", "[]", "[", "]", ".adoc", ".", "/", "-",
+            "a", "B", "7", "_", " ", "\t", "=", "==", "$1", "\\", "null", ":", "é", "\n", "\r", "\u0085", "\u2028",
+            ReaderPreprocessor.SPLITTER_COMMENT
+    };
+
+    @Test
+    public void rewritesTheDocsLikeTheRegularExpressions() throws IOException {
+        List<String> sources;
+        try (Stream<Path> files = Files.walk(Path.of("src/test/resources/docs"))) {
+            sources = files.filter(file -> file.toString().endsWith(".adoc"))
+                    .map(LineRewriterTest::read)
+                    .collect(Collectors.toList());
+        }
+
+        assertThat(sources).isNotEmpty();
+        for (var source : sources) {
+            // Whole sources only go through the include rewrites, section levels are fixed line by line
+            assertSameResult(source, Regex::tweakSource, Util::tweakSource);
+            assertSameResult(source, s -> Regex.fixIncludes(s, false), s -> Util.fixIncludes(s, false));
+            source.lines().forEach(LineRewriterTest::assertSameAsRegex);
+        }
+    }
+
+    @Test
+    public void rewritesRandomLinesLikeTheRegularExpressions() {
+        var random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            var line = new StringBuilder();
+            for (int tokens = random.nextInt(12); tokens >= 0; tokens--)
+                line.append(TOKENS[random.nextInt(TOKENS.length)]);
+            assertSameAsRegex(line.toString());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "include::chap-a.adoc[] include::x/y.adoc[tags=m]",
+            "include::a/chap-b/chap-c.d.e[]x[]",
+            "include::chap-.adoc[]",
+            "include::chap-a.[]",
+            "include::{asciidoc-dir}/a/b.adoc[tags=c] [tags=d]",
+            "include::{asciidoc-dir}/b.adoc[tags=c]",
+            "include::/x[tags=]]",
+            "include::a-b.adoc[] include::c.adoc[d]",
+            "include::a/b[c$1]",
+            "include::a/b[\\]",
+            "include::modules/x/y[null]",
+            "text chap-one // -- splitter comment -- include::chap-two.adoc[]",
+            "ch// -- splitter comment -- ap-x",
+            "== Title, with punctuation!",
+            "=\tTitle",
+            "=== Tïtle",
+            "=",
+            "= "
+    })
+    public void rewritesEdgeCasesLikeTheRegularExpressions(String line) {
+        assertSameAsRegex(line);
+    }
+
+    @Test
+    public void returnsLinesWithoutRewritesAsTheyAre() {
+        var line = "Just some text, nothing to include.";
+
+        assertThat(LineRewriter.TWEAK_SOURCE.rewrite(line)).isSameAs(line);
+        assertThat(LineRewriter.FIX_INCLUDES.rewrite(line)).isSameAs(line);
+    }
+
+    @Test
+    public void rewritesLongLinesInLinearTime() {
+        var includes = "include::" + "a/chap-".repeat(50_000) + "b.".repeat(50_000) + "[tags=".repeat(10_000);
+        var words = "include::a-".repeat(50_000);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            LineRewriter.TWEAK_SOURCE.rewrite(includes);
+            LineRewriter.TWEAK_SOURCE.rewrite(words);
+        });
+    }
+
+    private static void assertSameAsRegex(String source) {
+        assertSameResult(source, Regex::tweakSource, Util::tweakSource);
+        assertSameResult(source, s -> Regex.fixIncludes(s, true), s -> Util.fixIncludes(s, true));
+        assertSameResult(source, s -> Regex.fixIncludes(s, false), s -> Util.fixIncludes(s, false));
+        assertSameResult(source, Regex::fixModuleInclude, Util::fixModuleInclude);
+        for (int offset = -1; offset <= 3; offset++) {
+            var level = offset;
+            assertSameResult(source, s -> Regex.fixSectionLevelForModule(s, level),
+                    s -> Util.fixSectionLevelForModule(s, level));
+        }
+    }
+
+    private static void assertSameResult(String source, Function<String, String> expected,
+                                         Function<String, String> actual) {
+        assertThat(apply(actual, source)).as("Rewrite of <%s>", source).isEqualTo(apply(expected, source));
+    }
+
+    private static String apply(Function<String, String> rewrite, String source) {
+        try {
+            return rewrite.apply(source);
+        } catch (RuntimeException e) {
+            return e.getClass().getName();
+        }
+    }
+
+    private static String read(Path file) {
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The regular expressions {@link Util} used before {@link LineRewriter}.
+     */
+    private static class Regex {
+        static String fixIncludes(String source, boolean shouldFixModules) {
+            var sourceFixed = source.replaceAll("(?<include>include::)(?<path>(\\w|/|-)*)?chap-(?<filename>.+)\\.(?<extension>.+)\\[]",
+                            "${include}assemblies/assembly-${filename}.${extension}[]")
+                    .replaceAll("(?<include>include::)(?<path>(\\w|/|-)*)?assembly-(?<filename>.+)\\.(?<extension>.+)\\[]",
+                            "${include}assemblies/assembly-${filename}.${extension}[]")
+                    .replaceAll("(?<include>include::)(\\{asciidoc-dir}/)?(?<path>(\\w|/|-)*)/(?<filename>.*)\\[tags=(?<module>.+)]",
+                            "${include}modules/${path}/${module}.adoc[leveloffset=+1]");
+            if (shouldFixModules) {
+                sourceFixed = sourceFixed.replaceAll("(?<include>include::)(?<filename>[\\p{Alpha}\\-]+\\.adoc)\\[(?<opts>.*)]",
+                        "${include}modules/${filename}[${opts}]");
+            }
+            return sourceFixed;
+        }
+
+        static String fixModuleInclude(String source) {
+            var pattern = Pattern.compile("(?<include>include::)(?<path>(\\w|/|-)*)/(?<filename>.+)\\[(?<params>.+)]");
+            var matcher = pattern.matcher(source);
+            if (matcher.matches()) {
+                var params = "null".equals(matcher.group("params")) ? "" : matcher.group("params");
+                return matcher.replaceAll("${include}modules/${path}/${filename}[" + params + "]")
+                        .replaceAll("modules/modules/", "../../modules/");
+            }
+            return source;
+        }
+
+        static String tweakSource(String source) {
+            var tweaked = source.replaceAll("chap-", "assembly-")
+                    .replaceAll(ReaderPreprocessor.SPLITTER_COMMENT, "");
+            return fixModuleInclude(fixIncludes(tweaked, true));
+        }
+
+        static String fixSectionLevelForModule(String source, int offset) {
+            var pattern = Pattern.compile("^(?<sectionLevel>=+)\\s(?<title>(?:\\w|\\s|\\p{Punct})+)");
+            var matcher = pattern.matcher(source);
+            if (matcher.matches()) {
+                var sectionLevel = matcher.group("sectionLevel");
+                return sectionLevel.substring(0, sectionLevel.length() - offset) + " " + matcher.group("title");
+            }
+            return source;
+        }
+    }
+}
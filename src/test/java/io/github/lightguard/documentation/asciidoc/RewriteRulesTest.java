@@ -0,0 +1,120 @@
+package io.github.lightguard.documentation.asciidoc;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RewriteRulesTest {
+    @Test
+    public void rewritesOnlyLinesWithTheTrigger() throws IOException {
+        var rules = RewriteRules.parse("# Product names\n"
+                + "{product}\t\\{product}\tKogito\n"
+                + "\n"
+                + "include::\tinclude::(\\w+)/old/\tinclude::$1/new/\n", "rules");
+
+        assertThat(rules.size()).isEqualTo(2);
+        assertThat(rules.apply("Welcome to {product}\ninclude::a/old/b.adoc[]\nNothing here").toString())
+                .isEqualTo("Welcome to Kogito\ninclude::a/new/b.adoc[]\nNothing here");
+    }
+
+    @Test
+    public void returnsSourcesWithoutTriggersAsTheyAre() throws IOException {
+        var source = "No trigger\nin any line\n";
+
+        assertThat(RewriteRules.parse("{product}\t\\{product}\tKogito", "rules").apply(source)).isSameAs(source);
+        assertThat(RewriteRules.none().apply(source)).isSameAs(source);
+    }
+
+    @Test
+    public void appliesRulesInOrderToTheRewrittenLine() throws IOException {
+        var rules = RewriteRules.parse("old\told\tnew\n"
+                + "new\tnew\tnewer\n"
+                + "newer\tnewer\tnewest\n", "rules");
+
+        assertThat(rules.apply("old").toString()).isEqualTo("newest");
+    }
+
+    @Test
+    public void findsOverlappingTriggers() throws IOException {
+        var rules = RewriteRules.parse("hers\t^\t[hers]\n"
+                + "she\t^\t[she]\n"
+                + "he\t^\t[he]\n"
+                + "his\t^\t[his]\n", "rules");
+
+        // "ushers" contains hers, she and he, but not his
+        assertThat(rules.apply("ushers").toString()).isEqualTo("[he][she][hers]ushers");
+    }
+
+    @Test
+    public void rewritesLikeRunningEveryRule() throws IOException {
+        var random = new Random(13);
+        var words = new String[]{"chap", "assembly", "module", "include::", "ab", "ba", "a", "{", "}", "-", "::"};
+
+        var content = new StringBuilder();
+        var expressions = new Pattern[200];
+        var replacements = new String[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            var trigger = words[random.nextInt(words.length)] + words[random.nextInt(words.length)];
+            expressions[i] = Pattern.compile(Pattern.quote(trigger));
+            replacements[i] = "<" + i + ">";
+            content.append(trigger).append('\t').append(expressions[i].pattern()).append('\t').append(replacements[i])
+                    .append('\n');
+        }
+        var rules = RewriteRules.parse(content.toString(), "rules");
+
+        for (int line = 0; line < 2_000; line++) {
+            var source = new StringBuilder();
+            for (int word = random.nextInt(10); word >= 0; word--) {
+                source.append(words[random.nextInt(words.length)]);
+            }
+
+            var expected = source.toString();
+            for (int i = 0; i < expressions.length; i++) {
+                expected = expressions[i].matcher(expected).replaceAll(replacements[i]);
+            }
+            assertThat(rules.apply(source).toString()).as("Rewrite of %s", source).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void fingerprintChangesWithTheRules() throws IOException {
+        var rules = RewriteRules.parse("a\ta\tb", "rules");
+
+        assertThat(rules.getFingerprint()).isEqualTo(RewriteRules.parse("a\ta\tb\n", "rules").getFingerprint());
+        assertThat(rules.getFingerprint()).isNotEqualTo(RewriteRules.parse("a\ta\tc", "rules").getFingerprint());
+        assertThat(RewriteRules.none().getFingerprint()).isEmpty();
+    }
+
+    @Test
+    public void reportsInvalidRules() {
+        assertThatThrownBy(() -> RewriteRules.parse("a\tb", "rules.tsv"))
+                .isInstanceOf(IOException.class)
+                .hasMessageStartingWith("rules.tsv:1:");
+        assertThatThrownBy(() -> RewriteRules.parse("\n\tb\tc", "rules.tsv"))
+                .hasMessage("rules.tsv:2: the trigger is empty");
+        assertThatThrownBy(() -> RewriteRules.parse("a\t(\tc", "rules.tsv"))
+                .hasMessageStartingWith("rules.tsv:1: invalid expression");
+    }
+
+    @Test
+    public void reportsReplacementsWhichCantApply() throws IOException {
+        assertThatThrownBy(() -> RewriteRules.parse("include::\tinclude::(.*)\tinclude::$7", "rules.tsv"))
+                .isInstanceOf(IOException.class)
+                .hasMessage("rules.tsv:1: invalid replacement: no group 7");
+        assertThatThrownBy(() -> RewriteRules.parse("a\t(?<name>a)\t${other}", "rules.tsv"))
+                .hasMessage("rules.tsv:1: invalid replacement: no group named other");
+        assertThatThrownBy(() -> RewriteRules.parse("a\ta\tb\\", "rules.tsv"))
+                .hasMessageStartingWith("rules.tsv:1: invalid replacement: nothing to escape");
+        assertThatThrownBy(() -> RewriteRules.parse("a\ta\tb$", "rules.tsv"))
+                .hasMessageStartingWith("rules.tsv:1: invalid replacement: group is missing");
+
+        // Further digits are literal when there is no such group, like the matcher reads them
+        var rules = RewriteRules.parse("a\t(?<name>a)(b)\t${name}$21\\$", "rules.tsv");
+        assertThat(rules.apply("ab").toString()).isEqualTo("ab1$");
+    }
+}
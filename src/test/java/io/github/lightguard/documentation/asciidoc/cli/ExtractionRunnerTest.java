@@ -7,12 +7,16 @@ import org.junit.jupiter.api.Test;
 import picocli.CommandLine;
 
 import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -308,6 +312,117 @@ public class ExtractionRunnerTest extends ExtractionRunnerBase {
         assertThat(Files.lines(module)).containsOnlyOnce(":imagesdir: ../_images");
     }
 
+    @Test
+    public void testDryRunOnlyPrintsTheOutput() throws Exception {
+        final var sourceDirectory = new File("src/test/resources/docs/content-test");
+        var options = new String[]{"-s", sourceDirectory.getAbsolutePath(),
+                "-o", this.outputDirectory.getAbsolutePath(), "--dry-run"};
+
+        var printed = new StringWriter();
+        var commandLine = new CommandLine(new ExtractionRunner());
+        commandLine.setOut(new PrintWriter(printed));
+        commandLine.execute(options);
+
+        assertThat(this.outputDirectory.list()).isEmpty();
+        assertThat(printed.toString())
+                .contains("  assemblies/assembly-one.adoc (")
+                .contains("  modules/content-test/con-module-two.adoc (")
+                .contains("  assemblies/modules -> ../modules")
+                .containsPattern("\\d+ files \\(\\d+ bytes\\), \\d+ symlinks");
+    }
+
+    @Test
+    public void testRewriteRulesAreAppliedToTheOutput() throws Exception {
+        final var sourceDirectory = new File("src/test/resources/docs/content-test");
+        var rules = Files.createTempFile("rewrite-rules", ".tsv");
+        Files.writeString(rules, "HelloWorld\tclass HelloWorld\tclass HelloKogito\n"
+                + "preamble\tpreamble for an (\\w+)\tintroduction to an $1\n");
+        var options = new String[]{"-s", sourceDirectory.getAbsolutePath(),
+                "-o", this.outputDirectory.getAbsolutePath(), "--rewrite-rules", rules.toString()};
+
+        try {
+            new CommandLine(new ExtractionRunner()).execute(options);
+        } finally {
+            Files.delete(rules);
+        }
+
+        var output = this.outputDirectory.toPath();
+        assertThat(Files.readString(output.resolve("assemblies/assembly-one.adoc")))
+                .contains("Here's some introduction to an assembly.");
+        assertThat(Files.readString(output.resolve("modules/content-test/con-module-two.adoc")))
+                .contains("public class HelloKogito {")
+                .doesNotContain("HelloWorld");
+    }
+
+    @Test
+    public void testMetricsAreWrittenAsJson() throws Exception {
+        final var sourceDirectory = new File("src/test/resources/docs/content-test");
+        var metrics = Files.createTempFile("metrics", ".json");
+        var options = new String[]{"-s", sourceDirectory.getAbsolutePath(),
+                "-o", this.outputDirectory.getAbsolutePath(), "--metrics", metrics.toString()};
+
+        String json;
+        try {
+            new CommandLine(new ExtractionRunner()).execute(options);
+            json = Files.readString(metrics);
+        } finally {
+            Files.delete(metrics);
+        }
+
+        // The chapter has no assets, everything in the output apart from the symlinks was written by the split
+        List<Path> written;
+        try (var paths = Files.walk(this.outputDirPath)) {
+            written = paths.filter(Files::isRegularFile).filter(path -> !Files.isSymbolicLink(path))
+                    .collect(Collectors.toList());
+        }
+        long bytes = 0;
+        for (var path : written)
+            bytes += Files.size(path);
+
+        assertThat(json)
+                .contains("\"parserStart\": {", "\"load\": {", "\"preprocess\": {", "\"assembly\": {",
+                        "\"write\": {", "\"copyAssets\": {", "\"symlinks\": {", "\"clone\": {\"millis\": 0.000")
+                .contains("\"chapters\": 1,", "\"filesWritten\": " + written.size() + ",",
+                        "\"bytesWritten\": " + bytes + ",", "\"bytesCopied\": 0")
+                .containsPattern("\"lines\": [1-9]\\d*,")
+                .containsPattern("\"linesPerSecond\": [1-9][\\d.]*,")
+                .containsPattern("\"name\": \"parse\", \"workers\": 1, \"items\": 1,");
+    }
+
+    @Test
+    public void testDedupWritesIdenticalModulesOnce() throws Exception {
+        final var sourceDirectory = new File("src/test/resources/docs/dedup");
+        var options = new String[]{"-s", sourceDirectory.getAbsolutePath(),
+                "-o", this.outputDirectory.getAbsolutePath(), "--dedup"};
+
+        new CommandLine(new ExtractionRunner()).execute(options);
+
+        var output = this.outputDirectory.toPath();
+        var modules = output.resolve("modules");
+        assertThat(modules.resolve("one/proc-first-steps.adoc")).exists();
+        assertThat(modules.resolve("two/proc-other-steps.adoc")).exists();
+
+        // Only the module of the chapter split first is written, both assemblies include it
+        var written = Stream.of("one/con-shared-setup.adoc", "two/con-setup-again.adoc")
+                .filter(module -> Files.exists(modules.resolve(module)))
+                .collect(Collectors.toList());
+        assertThat(written).hasSize(1);
+        assertThat(Files.readString(output.resolve("assemblies/assembly-one.adoc")))
+                .contains("include::modules/" + written.get(0) + "[leveloffset=+2]");
+        assertThat(Files.readString(output.resolve("assemblies/assembly-two.adoc")))
+                .contains("include::modules/" + written.get(0) + "[leveloffset=+2]")
+                .contains("include::modules/two/proc-other-steps.adoc[leveloffset=+2]");
+    }
+
+    @Test
+    public void testDedupIsOnlyForFullSplits() {
+        var options = new String[]{"-s", "src/test/resources/docs/dedup",
+                "-o", this.outputDirectory.getAbsolutePath(), "--dedup", "--incremental"};
+
+        var exitCode = new CommandLine(new ExtractionRunner()).execute(options);
+        assertThat(exitCode).isEqualTo(2);
+    }
+
     @Test
     @Disabled("xref needs some rework")
     public void testFullTripXrefCheck() throws Exception {
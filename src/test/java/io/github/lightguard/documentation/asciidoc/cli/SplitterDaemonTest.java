@@ -0,0 +1,168 @@
+package io.github.lightguard.documentation.asciidoc.cli;
+
+import io.github.lightguard.documentation.asciidoc.extraction.ParserEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SplitterDaemonTest extends ExtractionRunnerBase {
+    @TempDir
+    Path tokenDirectory;
+
+    @Test
+    void warmRequestsMatchTheCli() throws Exception {
+        final var sourceDirectory = new File(ExtractionRunner.class.getClassLoader()
+                .getResource("docs/optaplanner-vaccination").toURI());
+
+        // Cold: the CLI starts its own asciidoctor
+        var coldOutput = Files.createDirectory(this.outputDirPath.resolve("cold"));
+        var coldExitCode = new CommandLine(new ExtractionRunner()).execute("-s", sourceDirectory.getAbsolutePath(),
+                "-o", coldOutput.toAbsolutePath().toString());
+
+        try (var daemon = new SplitterDaemon(0, 2, this.tokenDirectory)) {
+            var serving = new Thread(daemon::serve);
+            serving.start();
+
+            var client = new SplitterClient(daemon.getPort(), this.tokenDirectory);
+            for (int i = 0; i < 3; i++) {
+                var warmOutput = Files.createDirectory(this.outputDirPath.resolve("warm-" + i));
+                var issues = new ArrayList<String>();
+
+                var exitCode = client.split(new SplitRequest(sourceDirectory, warmOutput.toFile(), Map.of(),
+                        List.of(), false, 1, false), issues::add);
+
+                // The fixture has no titles-enterprise, which is reported as an error
+                assertThat(exitCode).isEqualTo(coldExitCode).isEqualTo(-1);
+                assertThat(issues).isNotEmpty().allMatch(issue -> issue.startsWith("ERROR: "));
+                assertThat(snapshot(warmOutput)).isEqualTo(snapshot(coldOutput));
+            }
+
+            daemon.close();
+            serving.join(TimeUnit.SECONDS.toMillis(30));
+            assertThat(serving.isAlive()).isFalse();
+            assertThat(SplitterDaemon.tokenFile(this.tokenDirectory, daemon.getPort())).doesNotExist();
+        }
+    }
+
+    @Test
+    void requestWithoutTheTokenIsRefused() throws Exception {
+        try (var daemon = new SplitterDaemon(0, 1, this.tokenDirectory)) {
+            var serving = new Thread(daemon::serve);
+            serving.start();
+
+            var tokenFile = SplitterDaemon.tokenFile(this.tokenDirectory, daemon.getPort());
+            assertThat(Files.getPosixFilePermissions(tokenFile))
+                    .isEqualTo(PosixFilePermissions.fromString("rw-------"));
+
+            var otherTokens = Files.createDirectories(this.tokenDirectory.resolve("other"));
+            Files.writeString(SplitterDaemon.tokenFile(otherTokens, daemon.getPort()), "guessed");
+            var issues = new ArrayList<String>();
+            var exitCode = new SplitterClient(daemon.getPort(), otherTokens).split(new SplitRequest(
+                    new File("src/test/resources"), this.outputDirectory, Map.of(), List.of(), false, 1, false),
+                    issues::add);
+
+            assertThat(exitCode).isEqualTo(-1);
+            assertThat(issues).containsExactly("ERROR: The token does not match the token of the daemon");
+            assertThat(this.outputDirPath.resolve("modules")).doesNotExist();
+        }
+    }
+
+    @Test
+    void idleConnectionIsClosed() throws Exception {
+        try (var daemon = new SplitterDaemon(0, 1, this.tokenDirectory)) {
+            daemon.setRequestTimeout(Duration.ofMillis(200));
+            var serving = new Thread(daemon::serve);
+            serving.start();
+
+            // Sends nothing, the only thread of the daemon is freed for the next request
+            try (var idle = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort());
+                 var reader = new BufferedReader(
+                         new InputStreamReader(idle.getInputStream(), StandardCharsets.UTF_8))) {
+                idle.setSoTimeout(30_000);
+                assertThat(reader.readLine()).isEqualTo("error No request was sent within 200 ms");
+                assertThat(reader.readLine()).isEqualTo("exit -1");
+            }
+
+            var issues = new ArrayList<String>();
+            var request = new SplitRequest(new File("src/test/resources"), this.outputDirectory, Map.of(), List.of(),
+                    false, 0, false);
+            assertThat(new SplitterClient(daemon.getPort(), this.tokenDirectory).split(request, issues::add))
+                    .isEqualTo(-1);
+            assertThat(issues).containsExactly("ERROR: jobs must be at least 1");
+        }
+    }
+
+    @Test
+    void requestsKeepTheirEngine() throws Exception {
+        var written = new StringWriter();
+        new SplitRequest(new File("src"), new File("out"), Map.of(), List.of(), false, 1, false, null,
+                ParserEngine.SCANNER).write(new PrintWriter(written));
+
+        var request = SplitRequest.read(new BufferedReader(new StringReader(written.toString())));
+        assertThat(request.getEngine()).isEqualTo(ParserEngine.SCANNER);
+    }
+
+    @Test
+    void requestedJobsAreLimitedToTheProcessors() throws Exception {
+        var request = SplitRequest.read(new BufferedReader(new StringReader("source=src\noutput=out\njobs=100000\n")));
+
+        assertThat(request.getJobs()).isEqualTo(Runtime.getRuntime().availableProcessors());
+    }
+
+    @Test
+    void invalidRequestIsAnError() throws Exception {
+        try (var daemon = new SplitterDaemon(0, 1, this.tokenDirectory)) {
+            var serving = new Thread(daemon::serve);
+            serving.start();
+
+            var issues = new ArrayList<String>();
+            var request = new SplitRequest(new File("src/test/resources"), this.outputDirectory, Map.of(), List.of(),
+                    false, 0, false);
+            var exitCode = new SplitterClient(daemon.getPort(), this.tokenDirectory).split(request, issues::add);
+
+            assertThat(exitCode).isEqualTo(-1);
+            assertThat(issues).containsExactly("ERROR: jobs must be at least 1");
+        }
+    }
+
+    /**
+     * Relative path to file contents (or link target) of everything under the directory.
+     */
+    private static Map<String, String> snapshot(Path dir) throws IOException {
+        Map<String, String> contents = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                if (Files.isSymbolicLink(file)) {
+                    contents.put(dir.relativize(file).toString(), "-> " + Files.readSymbolicLink(file));
+                } else if (Files.isRegularFile(file)) {
+                    contents.put(dir.relativize(file).toString(), Files.readString(file));
+                }
+            }
+        }
+        return contents;
+    }
+}
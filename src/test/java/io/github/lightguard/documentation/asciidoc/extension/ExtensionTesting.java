@@ -42,7 +42,7 @@ public class ExtensionTesting {
 
         var adoc = new File(this.getClass().getClassLoader().getResource("docs/processor-test/replacewith.adoc").toURI());
         var doc = asciidoctor.loadFile(adoc, optionsBuilder.asMap());
-        var lines = readerPreprocessor.getLines();
+        var lines = readerPreprocessor.takeSource(doc).getLines();
 
         assertThat(lines).contains("include::new-doc.adoc[leveloffset=+1]");
         assertThat(lines).doesNotContain("[replace-with=\"new-doc.adoc\" replace-with-param=\"leveloffset=+1\"]");
@@ -0,0 +1,242 @@
+package io.github.lightguard.documentation.asciidoc.extension;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LineIndexTest {
+    private static final String[] LINES = {
+            "", " ", "[id=\"con-module_{context}\"]", "[id='a-proc_{context}']", "[id=\"other_{context}\"]",
+            "= Title", "== Section", "=== Sub section", "==No space", "ifdef::KOGITO[]", "ifndef::context[]",
+            "ifeval::[{x} == 1]", "ifdef::parent-context[:context: {parent-context}]", "endif::[]", "endif::KOGITO[]",
+            "// tag::one[]", "// end::one[]", "////", ":context: module", "[role=\"_additional-resources\"]",
+            "== Additional resources", "[#conclusion]", ":parent-context: {context}", "Some text", "* item"
+    };
+
+    @Test
+    public void classifiesEachLine() {
+        var index = LineIndex.classify(List.of("[id=\"con-module_{context}\"]", "=== Module", "", "ifdef::a[]",
+                "endif::[]", "// tag::t[]", "// end::t[]", "////", ":context: x", "ifdef::x[{parent-context}]"));
+
+        assertThat(index.is(0, LineIndex.MODULE_ID)).isTrue();
+        assertThat(index.moduleId(0)).isEqualTo("con-module");
+        assertThat(index.is(1, LineIndex.SECTION)).isTrue();
+        assertThat(index.sectionLevel(1)).isEqualTo(3);
+        assertThat(index.is(2, LineIndex.BLANK)).isTrue();
+        assertThat(index.is(3, LineIndex.CONDITIONAL)).isTrue();
+        assertThat(index.is(4, LineIndex.ENDIF)).isTrue();
+        assertThat(index.is(5, LineIndex.TAG_START)).isTrue();
+        assertThat(index.is(6, LineIndex.TAG_END)).isTrue();
+        assertThat(index.is(7, LineIndex.COMMENT_FENCE)).isTrue();
+        assertThat(index.is(8, LineIndex.CONTEXT)).isTrue();
+        assertThat(index.is(9, LineIndex.CONDITIONAL | LineIndex.PARENT_CONTEXT_ATTRIBUTE)).isTrue();
+        assertThat(index.isWithin(10, LineIndex.BLANK)).isFalse();
+    }
+
+    @Test
+    public void preprocessesTheDocsLikeTheRegularExpressions() throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(Path.of("src/test/resources/docs"))) {
+            files = walk.filter(file -> file.getFileName().toString().matches("chap-.*\\.adoc"))
+                    .collect(Collectors.toList());
+        }
+
+        assertThat(files).isNotEmpty();
+        for (Path file : files) {
+            assertSameAsRegex(Files.readAllLines(file, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void preprocessesRandomLinesLikeTheRegularExpressions() {
+        var random = new Random(14);
+        for (int document = 0; document < 20_000; document++) {
+            var lines = new ArrayList<String>();
+            for (int line = random.nextInt(12); line >= 0; line--) {
+                lines.add(LINES[random.nextInt(LINES.length)]);
+            }
+            assertSameAsRegex(lines);
+        }
+    }
+
+    private static void assertSameAsRegex(List<String> lines) {
+        var expectedLines = new ArrayList<>(lines);
+        var actualLines = LineStore.of(lines);
+
+        assertThat(preprocess(actualLines.asList(), () -> new ReaderPreprocessor().preprocess(actualLines, Path.of("docs"))))
+                .as("Preprocessing %s", lines)
+                .isEqualTo(preprocess(expectedLines, () -> regexPreprocess(expectedLines, Path.of("docs"))));
+    }
+
+    /**
+     * The assembly body and the lines once they are marked, or the exception.
+     */
+    private static List<String> preprocess(List<String> lines, Supplier<PreprocessedSource> preprocessor) {
+        try {
+            var result = new ArrayList<>(List.of(preprocessor.get().getAssemblyBody().toString()));
+            result.addAll(lines);
+            return result;
+        } catch (RuntimeException e) {
+            return List.of(e.toString());
+        }
+    }
+
+    /**
+     * {@link ReaderPreprocessor#preprocess(LineStore, Path)} as it was before the lines were classified once.
+     */
+    private static PreprocessedSource regexPreprocess(List<String> lines, Path folderName) {
+        var assemblyBody = new StringBuilder();
+        boolean withinComment = false;
+        boolean withinModule = false;
+        boolean beforeAllModules = true;
+        boolean preProcessorStartModule = false;
+
+        // Regex used for finding a few things used in the loop
+        var idPattern = Pattern.compile("\\[id=[\"'](?<moduleId>((con|ref|proc)-.+)|.+-(con|ref|proc))_\\{context}[\"']]");
+        var levelOffsetPattern = Pattern.compile("(?<offsetSize>^=+) .*");
+        var preProcessStartPattern = Pattern.compile("if(n?)(def|eval)::(.+)?\\[(.+)?]$");
+        var contextAttribPattern = Pattern.compile("^:context:.*$");
+
+        // We need to look at each line to check for ifdefs, I wish there were a better way to do this.
+        for (int i = 0; i < lines.size(); i++) {
+            var currLine = lines.get(i);
+            var idMatcher = idPattern.matcher(currLine);
+
+            // "strip out" attributes for this
+            if (contextAttribPattern.matcher(currLine).matches()) {
+                lines.set(i, ReaderPreprocessor.SPLITTER_COMMENT + currLine);
+            }
+
+            // Flip the comment section
+            if (currLine.matches("^////")) {
+                withinComment = !withinComment;
+            }
+
+            // No longer in a module
+            if (currLine.trim().isEmpty()) {
+                if (idPattern.matcher(lines.get(i + 1)).matches())
+                    withinModule = false;
+
+                // check to see if the next section is within a conditional
+                if (preProcessStartPattern.matcher(lines.get(i + 1)).matches()) {
+                    // We also need to guard against IndexOutOfBounds
+                    if (i + 2 < lines.size() && idPattern.matcher(lines.get(i + 2)).matches()) {
+                        preProcessorStartModule = true;
+                        withinModule = false;
+                    }
+                }
+
+                if (lines.get(i - 1).startsWith("// end::") && i + 1 < lines.size() && lines.get(i + 1).startsWith("// tag::")) {
+                    assemblyBody.append(lines.get(i - 1).trim()).append("\n");
+                }
+            }
+
+            // If this is a module (by checking the id matches), create the appropriate include in the assembly body
+            if (idMatcher.matches()) {
+                withinModule = true;
+                beforeAllModules = false;
+                var levelOffsetMatcher = levelOffsetPattern.matcher(lines.get(i + 1));
+
+                // Add in the starting of a tag, if it exists
+                if (i - 1 > 0 && lines.get(i - 1).startsWith("// tag::")) {
+                    assemblyBody.append(lines.get(i - 1).trim()).append("\n");
+                }
+
+                if (levelOffsetMatcher.matches() && !withinComment) {
+                    assemblyBody.append("include::modules")
+                            .append(File.separator)
+                            .append(folderName)
+                            .append(File.separator)
+                            .append(idMatcher.group("moduleId")).append(".adoc")
+                            .append("[leveloffset=+")
+                            .append(levelOffsetMatcher.group("offsetSize").length() - 1)
+                            .append("]").append("\n\n");
+                }
+            }
+
+            // I want to check for starting and ending of tags on the line after we've seen it, to
+            // verify if we're actually within a module or not.
+
+            // end tag
+            if (!withinModule && i - 1 > 0 && lines.get(i - 1).startsWith("// end::")) {
+                assemblyBody.append(lines.get(i - 1).trim()).append("\n");
+            }
+
+            // Special case for additional resources or conclusion (kafka)
+            if (currLine.contains("[#conclusion]") || (currLine.contains("[role=\"_additional-resources\"]") &&
+                    lines.get(i + 1).toLowerCase().contains("== additional resources")) && !withinComment) {
+                withinModule = false;
+                // Get the additional resources until a section break or the end of a preprocessor
+                for (int j = 0; i + j < lines.size(); j++) {
+                    final String nextLine = lines.get(i + j);
+                    if (nextLine.startsWith("endif::") || idPattern.matcher(nextLine).matches() || i + j > lines.size()) {
+                        break;
+                    } else {
+                        assemblyBody.append(nextLine).append("\n");
+                    }
+                }
+            }
+
+            // Preprocessor hell
+            if (preProcessStartPattern.matcher(currLine).matches() || currLine.startsWith("endif::")) {
+                // I want preprocessor directives ignored
+                lines.set(i, ReaderPreprocessor.SPLITTER_COMMENT + currLine);
+
+                // special case endif (check for bounds, and also next and next next line for module boundary
+                if (currLine.startsWith("endif::")
+                        && preProcessorStartModule
+                        && ((i + 1 < lines.size() && idPattern.matcher(lines.get(i + 1)).matches())
+                        || (i + 2 < lines.size() && idPattern.matcher(lines.get(i + 2)).matches()))) {
+                    assemblyBody.append(currLine).append("\n");
+                    preProcessorStartModule = false;
+                }
+
+                // Check for the end of a file
+                if (currLine.startsWith("endif::")
+                        && (i + 1 < lines.size() && lines.get(i + 1).trim().isEmpty())
+                        && (i + 2 < lines.size() && preProcessStartPattern.matcher(lines.get(i + 2)).matches())
+                        && lines.get(i + 2).contains("{parent-context}")) {
+                    assemblyBody.append(currLine).append("\n");
+                }
+
+                // Also check if we're ending a tag and a preprocessor
+                if (currLine.startsWith("endif::") && lines.get(i - 1).startsWith("// end::")) {
+                    assemblyBody.append(lines.get(i - 1)).append("\n").append(currLine).append("\n");
+                }
+
+                // Case for an ifdef and a module starting or ending additional resources or conclusion (for kafka)
+                if (preProcessStartPattern.matcher(currLine).matches()
+                        && i + 1 < lines.size()
+                        && (idPattern.matcher(lines.get(i + 1)).matches() || lines.get(i + 1).contains("[role=\"_additional-resources\"]") || lines.get(i + 1).contains("[#conclusion]"))) {
+                    assemblyBody.append(currLine).append("\n");
+                }
+
+                // Starting a tag after a preprocessor
+                if (preProcessStartPattern.matcher(currLine).matches()
+                        && i + 1 < lines.size() && lines.get(i + 1).startsWith("// tag::")) {
+                    assemblyBody.append(currLine).append("\n");
+                }
+
+                // Get the last two lines of the assembly file
+                if (currLine.contains("parent-context") && !beforeAllModules) {
+                    assemblyBody.append(currLine).append("\n");
+                }
+            }
+        }
+
+        return new PreprocessedSource(LineStore.of(lines), assemblyBody);
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.lightguard.documentation.asciidoc.extension;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LineStoreTest {
+    @Test
+    public void readsTheSameLinesAsAsciidoctorFromTheFixtures() throws IOException {
+        List<Path> files;
+        try (var paths = Files.walk(Paths.get("src/test/resources/docs"))) {
+            files = paths.filter(path -> path.toString().endsWith(".adoc")).collect(Collectors.toList());
+        }
+
+        assertThat(files).isNotEmpty();
+        for (var file : files) {
+            assertThat(LineStore.read(file).asList()).as(file.toString()).isEqualTo(readAsString(file));
+        }
+    }
+
+    @Test
+    public void stripsLikeAsciidoctor() throws IOException {
+        assertSameLines("﻿= Title\r\n\r\n== Section \t\r\nText\u000B\f\0\n\n  \n");
+        assertSameLines("= Tïtle ünicode\n\n\n== Sectión\nno new line at the end");
+        assertSameLines("\r\n\n");
+        assertSameLines("");
+        assertSameLines("﻿");
+    }
+
+    @Test
+    public void mapsLargeFiles() throws IOException {
+        var content = new StringBuilder();
+        for (int i = 0; content.length() < LineStore.MAPPED_FILE_SIZE; i++) {
+            content.append("== Section ").append(i).append(" \r\n\nSome text ü\n");
+        }
+        assertSameLines(content.append("\n\n").toString());
+    }
+
+    @Test
+    public void marksLinesWithoutChangingTheirText() {
+        var lines = LineStore.of(List.of("= Title", "ifdef::a[]", "Text ü", "endif::[]"));
+        lines.mark(1);
+        lines.mark(3);
+
+        assertThat(lines.asList()).containsExactly("= Title", ReaderPreprocessor.SPLITTER_COMMENT + "ifdef::a[]",
+                "Text ü", ReaderPreprocessor.SPLITTER_COMMENT + "endif::[]");
+        assertThat(lines.text(1)).isEqualTo("ifdef::a[]");
+        assertThat(lines.isMarked(1)).isTrue();
+        assertThat(lines.isMarked(2)).isFalse();
+    }
+
+    @Test
+    public void replacedLinesDontChangeTheFile() throws IOException {
+        var file = write("= Title\n\nifdef::a[]\n[replace-with=x]\nText\n");
+        var lines = LineStore.read(file);
+        lines.mark(2);
+
+        lines.replace(2, "include::x.adoc[]");
+        lines.replace(3, "");
+
+        assertThat(lines.asList()).containsExactly("= Title", "", "include::x.adoc[]", "", "Text");
+        assertThat(lines.isMarked(2)).isFalse();
+        assertThat(Files.readString(file)).isEqualTo("= Title\n\nifdef::a[]\n[replace-with=x]\nText\n");
+    }
+
+    private static void assertSameLines(String content) throws IOException {
+        var file = write(content);
+        assertThat(LineStore.read(file).asList()).isEqualTo(readAsString(file));
+    }
+
+    /**
+     * How the lines were read before they were kept as bytes.
+     */
+    private static List<String> readAsString(Path file) throws IOException {
+        var data = Files.readString(file, StandardCharsets.UTF_8);
+        if (data.startsWith("﻿"))
+            data = data.substring(1);
+
+        var lines = new ArrayList<String>();
+        for (var line : data.split("\n", -1)) {
+            int end = line.length();
+            while (end > 0 && " \t\r\n\u000B\f\0".indexOf(line.charAt(end - 1)) >= 0)
+                end--;
+            lines.add(line.substring(0, end));
+        }
+        while (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty())
+            lines.remove(lines.size() - 1);
+        return lines;
+    }
+
+    private static Path write(String content) throws IOException {
+        var file = Files.createTempFile("line-store", ".adoc");
+        file.toFile().deleteOnExit();
+        return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
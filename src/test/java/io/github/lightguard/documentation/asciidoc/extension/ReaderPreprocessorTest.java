@@ -2,16 +2,28 @@ package io.github.lightguard.documentation.asciidoc.extension;
 
 import java.io.File;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.AttributesBuilder;
 import org.asciidoctor.OptionsBuilder;
+import org.asciidoctor.ast.Document;
 import org.asciidoctor.extension.JavaExtensionRegistry;
+import org.asciidoctor.extension.Treeprocessor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class ReaderPreprocessorTest {
     private Asciidoctor asciidoctor;
@@ -38,7 +50,7 @@ public class ReaderPreprocessorTest {
 
         var adoc = new File(this.getClass().getClassLoader().getResource("docs/preprocess/single-line-ifdef.adoc").toURI());
         var doc = asciidoctor.loadFile(adoc, optionsBuilder.asMap());
-        var lines = readerPreprocessor.getLines();
+        var lines = readerPreprocessor.takeSource(doc).getLines();
 
         assertThat(lines).contains(ReaderPreprocessor.SPLITTER_COMMENT + "endif::[]");
         assertThat(lines).contains(ReaderPreprocessor.SPLITTER_COMMENT + "ifdef::context[:parent-context: {context}]");
@@ -52,7 +64,7 @@ public class ReaderPreprocessorTest {
 
         var adoc = new File(this.getClass().getClassLoader().getResource("docs/preprocess/remove-ifdef-line.adoc").toURI());
         var doc = asciidoctor.loadFile(adoc, optionsBuilder.asMap());
-        var lines = readerPreprocessor.getLines();
+        var lines = readerPreprocessor.takeSource(doc).getLines();
 
         assertThat(lines).contains(ReaderPreprocessor.SPLITTER_COMMENT + "endif::[]");
         assertThat(lines).contains(ReaderPreprocessor.SPLITTER_COMMENT + "ifdef::localtime[]");
@@ -67,13 +79,89 @@ public class ReaderPreprocessorTest {
 
         var adoc = new File(this.getClass().getClassLoader().getResource("docs/preprocess/ifeval-test.adoc").toURI());
         var doc = asciidoctor.loadFile(adoc, optionsBuilder.asMap());
-        var lines = readerPreprocessor.getLines();
+        var lines = readerPreprocessor.takeSource(doc).getLines();
 
         assertThat(lines).contains(ReaderPreprocessor.SPLITTER_COMMENT + "ifeval::[\"{cmdcli}\" == \"oc\"]");
         assertThat(lines).contains("* If using a version of OpenShift earlier than OpenShift 4 the link:https://github.com/coreos/prometheus-operator/tree/master/contrib/kube-prometheus[Prometheus Operator^] and Custom Resource Definitions must be installed.");
         assertThat(lines).contains(ReaderPreprocessor.SPLITTER_COMMENT + "endif::[]");
     }
 
+    @Test
+    public void testConcurrentLoadsShareOneInstance() throws Exception {
+        var readerPreprocessor = new ReaderPreprocessor();
+        var treeprocessor = new ReplaceWithTreeProcessor();
+        treeprocessor.setReaderPreprocessor(readerPreprocessor);
+
+        registry.preprocessor(readerPreprocessor)
+                .treeprocessor(treeprocessor);
+
+        var fixtures = List.of("docs/content-test/chap-test.adoc",
+                "docs/nested-ifdef/chap-kogito-creating-running.adoc",
+                "docs/kafka-ifdef/chap-getting-started.adoc",
+                "docs/issue-82/chap-kogito-deploying-on-openshift.adoc",
+                "docs/optaplanner-real-world/chap-planner-configuration.adoc",
+                "docs/processor-test/end-to-end/chap-kogito-configuring.adoc",
+                "docs/processor-test/replacewith.adoc");
+
+        // What each document looks like when loaded on its own
+        Map<File, List<String>> expected = new HashMap<>();
+        for (var fixture : fixtures) {
+            var adoc = new File(this.getClass().getClassLoader().getResource(fixture).toURI());
+            var doc = asciidoctor.loadFile(adoc, optionsBuilder.asMap());
+            var source = readerPreprocessor.takeSource(doc);
+            expected.put(adoc, withAssemblyBody(source));
+        }
+
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var results = new ArrayList<Future<Boolean>>();
+            for (int round = 0; round < 4; round++) {
+                var files = new ArrayList<>(expected.keySet());
+                Collections.shuffle(files, new Random(round));
+                for (var file : files) {
+                    results.add(executor.submit(() -> {
+                        var doc = asciidoctor.loadFile(file, optionsBuilder.asMap());
+                        return expected.get(file).equals(withAssemblyBody(readerPreprocessor.takeSource(doc)));
+                    }));
+                }
+            }
+
+            for (var result : results) {
+                assertThat(result.get(5, TimeUnit.MINUTES)).isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testNestedReplaceWith() throws URISyntaxException {
+        var readerPreprocessor = new ReaderPreprocessor();
+        var treeprocessor = new ReplaceWithTreeProcessor();
+        treeprocessor.setReaderPreprocessor(readerPreprocessor);
+
+        registry.preprocessor(readerPreprocessor)
+                .treeprocessor(treeprocessor);
+
+        var adoc = new File(this.getClass().getClassLoader().getResource("docs/processor-test/nested-replacewith.adoc").toURI());
+        var doc = asciidoctor.loadFile(adoc, optionsBuilder.asMap());
+        var source = readerPreprocessor.takeSource(doc);
+
+        assertThat(source.getReplaceWithLines()).containsExactly(8, 13);
+        assertThat(source.getLines()).doesNotContain("link:{asciidoc-dir}/nested-doc.adoc[See this section for more info].",
+                "link:{asciidoc-dir}/item-doc.adoc[See this item for more info].");
+        assertThat(source.getLines()).contains("include::nested-doc.adoc[leveloffset=+2]",
+                "include::item-doc.adoc[leveloffset=+2]",
+                "One more paragraph which stays.");
+        assertThat(source.getLines()).hasSize(16);
+    }
+
+    private static List<String> withAssemblyBody(PreprocessedSource source) {
+        var all = new ArrayList<>(source.getLines());
+        all.add(source.getAssemblyBody().toString());
+        return all;
+    }
+
     @Test
     @Disabled("xref needs some rework")
     public void testXrefMacroReplace() throws Exception {
@@ -83,7 +171,7 @@ public class ReaderPreprocessorTest {
 
         var adoc = new File(this.getClass().getClassLoader().getResource("docs/xref-test/chap-xref-test.adoc").toURI());
         var doc = asciidoctor.loadFile(adoc, optionsBuilder.asMap());
-        var lines = readerPreprocessor.getLines();
+        var lines = readerPreprocessor.takeSource(doc).getLines();
 
         assertThat(lines).doesNotContain("Create an xref macro: xref:test-section[]");
         assertThat(lines).contains("Create an xref macro: include::xref-test/chap-xref-test.adoc[tags=con-test-section]");
@@ -98,9 +186,32 @@ public class ReaderPreprocessorTest {
 
         var adoc = new File(this.getClass().getClassLoader().getResource("docs/xref-test/chap-xref-test.adoc").toURI());
         var doc = asciidoctor.loadFile(adoc, optionsBuilder.asMap());
-        var lines = readerPreprocessor.getLines();
+        var lines = readerPreprocessor.takeSource(doc).getLines();
 
         assertThat(lines).doesNotContain("Here's an inline xref <<test-section>>.");
         assertThat(lines).contains("Here's an inline xref include::xref-test/chap-xref-test.adoc[tags=con-test-section].");
     }
+
+    @Test
+    public void sourceOfAFailedLoadCanBeReleased() throws Exception {
+        var readerPreprocessor = new ReaderPreprocessor();
+
+        registry.preprocessor(readerPreprocessor).treeprocessor(new Treeprocessor() {
+            @Override
+            public Document process(Document document) {
+                throw new IllegalStateException("Failing after the preprocessor");
+            }
+        });
+
+        var adoc = new File(this.getClass().getClassLoader().getResource("docs/content-test/chap-test.adoc").toURI());
+        var sourceId = readerPreprocessor.newSourceId();
+        optionsBuilder.attributes(AttributesBuilder.attributes().attribute(ReaderPreprocessor.SOURCE_ID_ATTRIBUTE,
+                sourceId));
+
+        assertThatThrownBy(() -> asciidoctor.loadFile(adoc, optionsBuilder.asMap())).isNotNull();
+        assertThat(readerPreprocessor.getSourceCount()).isEqualTo(1);
+
+        readerPreprocessor.releaseSource(sourceId);
+        assertThat(readerPreprocessor.getSourceCount()).isZero();
+    }
 }
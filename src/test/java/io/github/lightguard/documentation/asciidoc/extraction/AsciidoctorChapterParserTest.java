@@ -0,0 +1,62 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import java.io.File;
+import java.util.Map;
+
+import io.github.lightguard.documentation.asciidoc.extension.ReaderPreprocessor;
+import io.github.lightguard.documentation.asciidoc.extraction.model.Assembly;
+import io.github.lightguard.documentation.asciidoc.extraction.model.ExtractedModule;
+import io.github.lightguard.documentation.asciidoc.extraction.model.SectionSnapshot;
+import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.OptionsBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AsciidoctorChapterParserTest {
+    @Test
+    public void modulesDoNotKeepTheParsedDocument() {
+        try (var parser = new AsciidoctorChapterParser(Map.of())) {
+            var chapter = parser.parse(new File("src/test/resources/docs/content-test/chap-test.adoc"));
+
+            assertThat(chapter.getAssembly().getModules()).isNotEmpty().allSatisfy(module -> {
+                assertThat(module.getSection()).isInstanceOf(SectionSnapshot.class);
+                assertThat(module.getFolder()).isEqualTo("content-test");
+            });
+            assertThat(chapter.getAssembly().getModules()).extracting(ExtractedModule::getTitle)
+                    .contains("Module Two");
+        }
+    }
+
+    @Test
+    public void readsEachSectionValueOnce() {
+        var asciidoctor = Asciidoctor.Factory.create();
+        try {
+            var preprocessor = new ReaderPreprocessor();
+            asciidoctor.javaExtensionRegistry().preprocessor(preprocessor);
+            var doc = asciidoctor.loadFile(new File("src/test/resources/docs/content-test/chap-test.adoc"),
+                    OptionsBuilder.options().sourcemap(true).asMap());
+            var source = preprocessor.takeSource(doc);
+
+            var outline = new AsciidoctorChapterOutline(doc);
+            var assembly = new Assembly(outline, source.getLineStore(), source.getAssemblyBody());
+            var calls = outline.getBridgeCalls();
+
+            // Everything the assembly and its modules need is read when they are built
+            for (var section : outline.getSections()) {
+                section.getId();
+                section.getAttributes().containsKey("module-type");
+                section.getLineNumber();
+            }
+            assembly.getModules().forEach(ExtractedModule::getTitle);
+            assertThat(outline.getBridgeCalls()).isEqualTo(calls);
+
+            // One call to find the sections, at most the id, attributes, line number and level of each section,
+            // and for the modules the title, folder and parent id as well
+            var sections = outline.getSections().size();
+            assertThat(calls).isLessThanOrEqualTo(2 + 4 * sections + 3 * assembly.getModules().size());
+        } finally {
+            asciidoctor.shutdown();
+        }
+    }
+}
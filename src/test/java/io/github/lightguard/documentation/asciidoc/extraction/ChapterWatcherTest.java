@@ -0,0 +1,87 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import io.github.lightguard.documentation.asciidoc.cli.ExtractionRunnerBase;
+import io.github.lightguard.documentation.asciidoc.extraction.model.LocalDirectoryLocation;
+import io.github.lightguard.documentation.asciidoc.extraction.model.PushableLocation;
+import io.github.lightguard.documentation.asciidoc.extraction.model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChapterWatcherTest extends ExtractionRunnerBase {
+    private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private Path sourceDirPath;
+
+    @BeforeEach
+    void sourceSetUp() throws IOException {
+        this.sourceDirPath = Path.of("target/watcher-test-source");
+
+        if (Files.exists(this.sourceDirPath)) {
+            sourceTearDown();
+        }
+        Files.createDirectory(this.sourceDirPath);
+
+        var fixturePath = Path.of("src/test/resources/docs/optaplanner-vaccination");
+        Files.walkFileTree(fixturePath, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE,
+                new CopyTreeFileVisitor(fixturePath, this.sourceDirPath));
+    }
+
+    @AfterEach
+    void sourceTearDown() throws IOException {
+        Files.walkFileTree(this.sourceDirPath, new DeletionFileVisitor());
+    }
+
+    @Test
+    void changedFilesAreSplitAgain() throws Exception {
+        var task = new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()),
+                PushableLocation.locationWrapper(new LocalDirectoryLocation(this.outputDirectory), () -> {}));
+
+        try (var parser = new AsciidoctorChapterParser(Collections.emptyMap())) {
+            var extractor = new Extractor(task, parser);
+            extractor.process();
+
+            try (var watcher = new ChapterWatcher(extractor, task, Duration.ofMillis(100))) {
+                var watching = new Thread(watcher::run);
+                watching.start();
+
+                var chapter = this.sourceDirPath.resolve("optaplanner-vaccination/chap-optaplanner-vaccination.adoc");
+                Files.writeString(chapter, "\n[id=\"con-watched_{context}\"]\n== Watched\n\nAdded while watching.\n",
+                        StandardOpenOption.APPEND);
+                var addedModule = this.outputDirPath.resolve("modules/optaplanner-vaccination/con-watched.adoc");
+                assertThat(waitFor(addedModule)).isTrue();
+                assertThat(Files.readString(addedModule)).contains("Added while watching.");
+
+                var snippet = this.sourceDirPath.resolve("optaplanner-vaccination/snippet.adoc");
+                Files.writeString(snippet, "Some shared text.\n");
+                assertThat(waitFor(this.outputDirPath.resolve("modules/snippet.adoc"))).isTrue();
+
+                watcher.close();
+                watching.join(TIMEOUT_MILLIS);
+                assertThat(watching.isAlive()).isFalse();
+            }
+        }
+    }
+
+    private static boolean waitFor(Path file) throws InterruptedException {
+        var deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (Files.exists(file))
+                return true;
+            Thread.sleep(50);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,449 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import io.github.lightguard.documentation.asciidoc.cli.ExtractionRunnerBase;
+import io.github.lightguard.documentation.asciidoc.cli.Issue;
+import io.github.lightguard.documentation.asciidoc.extraction.model.InMemoryLocation;
+import io.github.lightguard.documentation.asciidoc.extraction.model.LocalDirectoryLocation;
+import io.github.lightguard.documentation.asciidoc.extraction.model.PushableLocation;
+import io.github.lightguard.documentation.asciidoc.extraction.model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+public class ExtractorTest extends ExtractionRunnerBase {
+    private Path sourceDirPath;
+
+    @BeforeEach
+    void sourceSetUp() throws IOException {
+        this.sourceDirPath = Path.of("target/extractor-test-source");
+
+        if (Files.exists(this.sourceDirPath)) {
+            sourceTearDown();
+        }
+        Files.createDirectory(this.sourceDirPath);
+    }
+
+    @AfterEach
+    void sourceTearDown() throws IOException {
+        Files.walkFileTree(this.sourceDirPath, new DeletionFileVisitor());
+    }
+
+    @Test
+    void writesEachOutputOnce() throws Exception {
+        // Several chapters in one source tree, so earlier output would be re-written by every later chapter
+        copyFixture("src/test/resources/docs/optaplanner-real-world");
+        copyFixture("src/test/resources/docs/optaplanner-vaccination");
+        copyFixture(ExtractionRunnerBase.KOGITO_ASCIIDOC_FOLDER + "/creating-running");
+
+        var extractor = new Extractor(new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()),
+                PushableLocation.locationWrapper(new LocalDirectoryLocation(this.outputDirectory), () -> {})));
+        extractor.process();
+
+        var assemblyFiles = listAdocFiles(this.outputDirPath.resolve("assemblies"), 1);
+        // Modules are placed in a folder per chapter, anything directly under modules is a copy
+        var moduleFiles = listAdocFiles(this.outputDirPath.resolve("modules"), 2).stream()
+                .filter(p -> !p.getParent().equals(this.outputDirPath.resolve("modules")))
+                .collect(Collectors.toList());
+
+        assertThat(assemblyFiles).hasSize(3);
+        assertThat(moduleFiles).hasSizeGreaterThan(3);
+        assertThat(extractor.getWrittenFileCount()).isEqualTo(assemblyFiles.size() + moduleFiles.size());
+    }
+
+    @Test
+    void reportsEveryStageOfTheSplit() throws Exception {
+        copyFixture("src/test/resources/docs/optaplanner-real-world");
+        copyFixture("src/test/resources/docs/optaplanner-vaccination");
+
+        var extractor = new Extractor(new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()),
+                PushableLocation.locationWrapper(new LocalDirectoryLocation(this.outputDirectory), () -> {})));
+        extractor.setJobs(2);
+        extractor.process();
+
+        Map<String, StageStats> stages = extractor.getStageStats().stream()
+                .collect(Collectors.toMap(StageStats::getName, stage -> stage));
+
+        assertThat(stages).containsOnlyKeys("walk", "read", "assets", "parse", "render", "write");
+        assertThat(stages.get("parse").getItems()).isEqualTo(2);
+        assertThat(stages.get("parse").getWorkers()).isEqualTo(2);
+        assertThat(stages.get("render").getItems()).isEqualTo(2);
+        assertThat(stages.get("write").getItems()).isEqualTo(extractor.getWrittenFileCount());
+        assertThat(stages.get("read").getMaxQueueDepth()).isPositive();
+        assertThat(stages.values()).allSatisfy(stage -> assertThat(stage.getUtilization()).isBetween(0.0, 1.0));
+    }
+
+    @Test
+    void parallelJobsMatchSequentialOutput() throws Exception {
+        copyFixture(ExtractionRunnerBase.KOGITO_ASCIIDOC_FOLDER + "/creating-running");
+        copyFixture("src/test/resources/docs/nested-ifdef");
+        copyFixture("src/test/resources/docs/issue-82");
+        copyFixture("src/test/resources/docs/kafka-ifdef");
+        copyFixture("src/test/resources/docs/missing-modules");
+        copyFixture("src/test/resources/docs/optaplanner-real-world");
+        copyFixture("src/test/resources/docs/optaplanner-vaccination");
+        copyFixture("src/test/resources/docs/examples/sample/input");
+
+        Map<Integer, Path> outputs = new TreeMap<>();
+        for (int jobs : new int[]{1, 2, 4, 8}) {
+            var output = Files.createDirectory(this.outputDirPath.resolve("jobs-" + jobs));
+            var extractor = new Extractor(new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()),
+                    PushableLocation.locationWrapper(new LocalDirectoryLocation(output.toFile()), () -> {})));
+            extractor.setJobs(jobs);
+
+            extractor.process();
+            outputs.put(jobs, output);
+        }
+
+        var expected = snapshot(outputs.get(1));
+        assertThat(expected).isNotEmpty();
+        for (var output : outputs.values()) {
+            assertThat(snapshot(output)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void reportsFilesWhichCannotBeWritten() throws Exception {
+        copyFixture("src/test/resources/docs/optaplanner-real-world");
+        copyFixture("src/test/resources/docs/optaplanner-vaccination");
+
+        var module = this.outputDirPath.resolve("modules/optaplanner-real-world/solver-con.adoc");
+        Files.createDirectories(module);
+
+        var extractor = new Extractor(new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()),
+                PushableLocation.locationWrapper(new LocalDirectoryLocation(this.outputDirectory), () -> {})));
+        var issues = new ArrayList<Issue>();
+        extractor.setIssueListener(issues::add);
+
+        // The other files are still written, the split fails because of the issue
+        assertThat(extractor.process()).isEqualTo(-1);
+        assertThat(issues).filteredOn(issue -> issue.toString().contains("optaplanner-real-world/solver-con.adoc"))
+                .singleElement().satisfies(issue -> assertThat(issue.isError()).isTrue());
+        assertThat(this.outputDirPath.resolve("modules/optaplanner-vaccination/con-continuous-planning.adoc"))
+                .isRegularFile();
+    }
+
+    @Test
+    void inMemoryOutputMatchesOutputOnDisk() throws Exception {
+        copyFixture("src/test/resources/docs/optaplanner-real-world");
+        copyFixture("src/test/resources/docs/optaplanner-vaccination");
+        copyFixture(ExtractionRunnerBase.KOGITO_ASCIIDOC_FOLDER + "/creating-running");
+
+        new Extractor(new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()),
+                PushableLocation.locationWrapper(new LocalDirectoryLocation(this.outputDirectory), () -> {}))).process();
+
+        var inMemory = new InMemoryLocation(this.outputDirPath.resolveSibling("in-memory"));
+        new Extractor(new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()), inMemory)).process();
+        assertThat(inMemory.getDirectoryPath()).doesNotExist();
+
+        // Copied files are read from their source, their sizes are known without reading them
+        Map<String, String> contents = new TreeMap<>();
+        for (var file : inMemory.getFiles().entrySet()) {
+            var path = file.getKey();
+            contents.put(path.toString(), inMemory.readString(inMemory.getDirectoryPath().resolve(path)));
+            assertThat(file.getValue()).isEqualTo(Files.size(this.outputDirPath.resolve(path)));
+        }
+        inMemory.getSymbolicLinks().forEach((link, target) -> contents.put(link.toString(), "-> " + target));
+
+        assertThat(contents).isEqualTo(snapshot(this.outputDirPath));
+    }
+
+    @Test
+    void failedWriteStageStopsTheSplit() throws Exception {
+        // More modules than the queue to the write stage holds, so rendering waits on the write stage
+        var text = new StringBuilder();
+        for (int module = 1; module <= 120; module++)
+            text.append("\n\n[id='con-module-").append(module).append("_{context}', module-type='con']\n== Module ")
+                    .append(module).append("\n\nSome text.\n");
+        Files.writeString(this.sourceDirPath.resolve("chap-large.adoc"), chapter("large", "con-last", text.toString()));
+
+        var writes = new AtomicInteger();
+        var output = new InMemoryLocation(this.outputDirPath.resolveSibling("in-memory")) {
+            @Override
+            public synchronized void write(Path file, CharSequence content) throws IOException {
+                if (writes.incrementAndGet() == 5)
+                    throw new Error("Write failure");
+                super.write(file, content);
+            }
+        };
+        var extractor = new Extractor(new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()), output));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(60),
+                () -> assertThatThrownBy(extractor::process).hasMessage("Write failure"));
+    }
+
+    @Test
+    void failedSplitKeepsThePreviousOutput() throws Exception {
+        copyFixture("src/test/resources/docs/optaplanner-real-world");
+        copyFixture("src/test/resources/docs/optaplanner-vaccination");
+
+        var task = new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()),
+                PushableLocation.locationWrapper(new LocalDirectoryLocation(this.outputDirectory), () -> {}));
+        new Extractor(task).process();
+        var previousOutput = snapshot(this.outputDirPath);
+
+        // One chapter fails to parse, the other may already be split by then
+        var changedChapter = this.sourceDirPath.resolve("optaplanner-vaccination/chap-optaplanner-vaccination.adoc");
+        Files.writeString(changedChapter, "\nSome more text.\n", StandardOpenOption.APPEND);
+        try (var parser = new AsciidoctorChapterParser(Collections.emptyMap())) {
+            var failing = new Extractor(task, new ChapterParser() {
+                @Override
+                public ParsedChapter parse(File file) {
+                    if (file.getName().equals("chap-optaplanner-vaccination.adoc"))
+                        throw new IllegalStateException("Parser failure");
+                    return parser.parse(file);
+                }
+
+                @Override
+                public ChapterParser withAttributes(Map<String, Object> attributes) {
+                    return this;
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+            assertThatThrownBy(failing::process).hasMessage("Parser failure");
+        }
+
+        assertThat(snapshot(this.outputDirPath)).isEqualTo(previousOutput);
+        try (var siblings = Files.list(this.outputDirPath.getParent())) {
+            assertThat(siblings.map(p -> p.getFileName().toString())).noneMatch(name -> name.endsWith(".staging"));
+        }
+    }
+
+    @Test
+    void incrementalRunOnlySplitsChangedChapters() throws Exception {
+        copyFixture("src/test/resources/docs/optaplanner-real-world");
+        copyFixture("src/test/resources/docs/optaplanner-vaccination");
+
+        var firstRun = incrementalExtractor(Collections.emptyMap());
+        firstRun.process();
+        assertThat(this.outputDirPath.resolve(SplitManifest.FILE_NAME)).exists();
+        var firstOutput = snapshot(this.outputDirPath);
+
+        // Nothing changed, nothing is written and the output is the same
+        var secondRun = incrementalExtractor(Collections.emptyMap());
+        secondRun.process();
+        assertThat(secondRun.getWrittenFileCount()).isZero();
+        assertThat(snapshot(this.outputDirPath)).isEqualTo(firstOutput);
+
+        // Only the changed chapter is split again
+        var changedChapter = this.sourceDirPath.resolve("optaplanner-vaccination/chap-optaplanner-vaccination.adoc");
+        Files.writeString(changedChapter, "\nSome more text.\n", StandardOpenOption.APPEND);
+        var untouchedModule = this.outputDirPath.resolve("modules/optaplanner-real-world/solver-con.adoc");
+        var untouchedModified = Files.getLastModifiedTime(untouchedModule);
+
+        var thirdRun = incrementalExtractor(Collections.emptyMap());
+        thirdRun.process();
+        assertThat(thirdRun.getWrittenFileCount()).isGreaterThan(0).isLessThan(firstRun.getWrittenFileCount());
+        assertThat(Files.getLastModifiedTime(untouchedModule)).isEqualTo(untouchedModified);
+
+        // Different attributes change every chapter
+        var fourthRun = incrementalExtractor(Map.of("KOGITO-ENT", "true"));
+        fourthRun.process();
+        assertThat(fourthRun.getWrittenFileCount()).isEqualTo(firstRun.getWrittenFileCount());
+    }
+
+    @Test
+    void incrementalRunSplitsChaptersWhoseIncludesChanged() throws Exception {
+        Files.createDirectory(this.sourceDirPath.resolve("snippets"));
+        var snippet = Files.writeString(this.sourceDirPath.resolve("snippets/note.adoc"), "A note.\n");
+        Files.writeString(this.sourceDirPath.resolve("chap-guide.adoc"), chapter("guide", "con-first",
+                "include::snippets/note.adoc[]"));
+
+        incrementalExtractor(Collections.emptyMap()).process();
+        var unchanged = incrementalExtractor(Collections.emptyMap());
+        unchanged.process();
+        assertThat(unchanged.getWrittenFileCount()).isZero();
+
+        Files.writeString(snippet, "A changed note.\n");
+        var changed = incrementalExtractor(Collections.emptyMap());
+        changed.process();
+        assertThat(changed.getWrittenFileCount()).isGreaterThan(0);
+    }
+
+    @Test
+    void incrementalRunDeletesOutputOfRemovedChapters() throws Exception {
+        Files.writeString(this.sourceDirPath.resolve("chap-kept.adoc"), chapter("kept", "con-kept", ""));
+        var removed = Files.writeString(this.sourceDirPath.resolve("chap-removed.adoc"),
+                chapter("removed", "con-removed", ""));
+
+        incrementalExtractor(Collections.emptyMap()).process();
+        assertThat(this.outputDirPath.resolve("modules/extractor-test-source/con-removed.adoc")).exists();
+
+        Files.delete(removed);
+        incrementalExtractor(Collections.emptyMap()).process();
+        assertThat(this.outputDirPath.resolve("assemblies/assembly-removed.adoc")).doesNotExist();
+        assertThat(this.outputDirPath.resolve("modules/extractor-test-source/con-removed.adoc")).doesNotExist();
+        assertThat(this.outputDirPath.resolve("modules/extractor-test-source/con-kept.adoc")).exists();
+    }
+
+    @Test
+    void incrementalRunKeepsPathsWithCommas() throws Exception {
+        var guides = Files.createDirectory(this.sourceDirPath.resolve("guides,old"));
+        Files.writeString(guides.resolve("chap-kept.adoc"), chapter("kept", "con-kept", ""));
+        var removed = Files.writeString(guides.resolve("chap-removed.adoc"), chapter("removed", "con-removed", ""));
+
+        incrementalExtractor(Collections.emptyMap()).process();
+        assertThat(this.outputDirPath.resolve("modules/guides,old/con-removed.adoc")).exists();
+
+        // The unchanged chapter is found in the manifest and skipped, the output of the removed one is deleted
+        Files.delete(removed);
+        var extractor = incrementalExtractor(Collections.emptyMap());
+        extractor.process();
+        assertThat(extractor.getWrittenFileCount()).isZero();
+        assertThat(this.outputDirPath.resolve("modules/guides,old/con-removed.adoc")).doesNotExist();
+        assertThat(this.outputDirPath.resolve("modules/guides,old/con-kept.adoc")).exists();
+    }
+
+    @Test
+    void incrementalRunChecksModulesAgainstSkippedChapters() throws Exception {
+        Files.writeString(this.sourceDirPath.resolve("chap-first.adoc"), chapter("shared", "con-shared", ""));
+        var second = Files.writeString(this.sourceDirPath.resolve("chap-second.adoc"),
+                chapter("second", "con-other", ""));
+        var incremental = Files.createDirectory(this.outputDirPath.resolve("incremental"));
+        incrementalExtractor(incremental).process();
+
+        // The second chapter now writes a different module to the file of the first chapter, which is skipped
+        Files.writeString(second, chapter("shared", "con-shared", "").replace("Some text.", "Other text."));
+        var issues = new ArrayList<Issue>();
+        var extractor = incrementalExtractor(incremental);
+        extractor.setIssueListener(issues::add);
+        extractor.process();
+        assertThat(issues).extracting(Issue::toString).anyMatch(issue -> issue.contains("is written to"));
+
+        // The chapter walked first keeps the file, like in a full split
+        var fresh = Files.createDirectory(this.outputDirPath.resolve("fresh"));
+        new Extractor(new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()),
+                PushableLocation.locationWrapper(new LocalDirectoryLocation(fresh.toFile()), () -> {}))).process();
+        var module = "modules/extractor-test-source/con-shared.adoc";
+        assertThat(incremental.resolve(module)).hasSameTextualContentAs(fresh.resolve(module));
+    }
+
+    @Test
+    void updateReplacesOutputOfChangedChapter() throws Exception {
+        copyFixture("src/test/resources/docs/optaplanner-real-world");
+        copyFixture("src/test/resources/docs/optaplanner-vaccination");
+
+        var updated = Files.createDirectory(this.outputDirPath.resolve("updated"));
+        var changedChapter = this.sourceDirPath.resolve("optaplanner-vaccination/chap-optaplanner-vaccination.adoc");
+
+        try (var parser = new AsciidoctorChapterParser(Collections.emptyMap())) {
+            var extractor = new Extractor(new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()),
+                    PushableLocation.locationWrapper(new LocalDirectoryLocation(updated.toFile()), () -> {})), parser);
+            extractor.process();
+            assertThat(updated.resolve("modules/optaplanner-vaccination/con-continuous-planning.adoc")).exists();
+
+            Files.writeString(changedChapter, Files.readString(changedChapter)
+                    .replace("con-continuous-planning_{context}", "con-replanning_{context}"));
+            extractor.update(List.of(changedChapter.toFile()));
+        }
+
+        // The module under the old id is gone, everything else matches a split of the changed source
+        assertThat(updated.resolve("modules/optaplanner-vaccination/con-continuous-planning.adoc")).doesNotExist();
+        assertThat(updated.resolve("modules/optaplanner-vaccination/con-replanning.adoc")).exists();
+
+        var fresh = Files.createDirectory(this.outputDirPath.resolve("fresh"));
+        new Extractor(new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()),
+                PushableLocation.locationWrapper(new LocalDirectoryLocation(fresh.toFile()), () -> {}))).process();
+        assertThat(snapshot(updated)).isEqualTo(snapshot(fresh));
+    }
+
+    /**
+     * A chapter with one module, the text is added before the module.
+     */
+    private static String chapter(String context, String moduleId, String text) {
+        return "[id='chap-" + context + "']\n= Chapter " + context + "\n:context: " + context + "\n\n" + text
+                + "\n\n[id='" + moduleId + "_{context}', module-type='con']\n== Module " + moduleId + "\n\nSome text.\n";
+    }
+
+    @Test
+    void updateSplitsChaptersIncludingChangedFiles() throws Exception {
+        var snippet = Files.writeString(this.sourceDirPath.resolve("snippet.adoc"), "A note.\n");
+        Files.writeString(this.sourceDirPath.resolve("chap-guide.adoc"), chapter("guide", "con-first",
+                "include::snippet.adoc[]"));
+        Files.writeString(this.sourceDirPath.resolve("chap-other.adoc"), chapter("other", "con-other", ""));
+
+        var extractor = new Extractor(new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()),
+                PushableLocation.locationWrapper(new LocalDirectoryLocation(this.outputDirectory), () -> {})));
+        extractor.process();
+        var written = extractor.getWrittenFileCount();
+
+        // Only the assembly and the module of the including chapter are written again
+        Files.writeString(snippet, "A changed note.\n");
+        extractor.update(List.of(snippet.toFile()));
+        assertThat(extractor.getWrittenFileCount()).isEqualTo(written + 2);
+        assertThat(this.outputDirPath.resolve("modules/snippet.adoc")).hasContent("A changed note.");
+
+        Files.delete(snippet);
+        extractor.update(List.of(snippet.toFile()));
+        assertThat(this.outputDirPath.resolve("modules/snippet.adoc")).doesNotExist();
+    }
+
+    private Extractor incrementalExtractor(Path output) {
+        var extractor = new Extractor(new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()),
+                PushableLocation.locationWrapper(new LocalDirectoryLocation(output.toFile()), () -> {})));
+        extractor.setIncremental(true);
+        return extractor;
+    }
+
+    private Extractor incrementalExtractor(Map<String, Object> attributes) {
+        var extractor = new Extractor(new Task(new LocalDirectoryLocation(this.sourceDirPath.toFile()),
+                PushableLocation.locationWrapper(new LocalDirectoryLocation(this.outputDirectory), () -> {}),
+                attributes, Collections.emptyList(), false));
+        extractor.setIncremental(true);
+        return extractor;
+    }
+
+    private void copyFixture(String fixture) throws IOException {
+        var fixturePath = Path.of(fixture);
+        Files.walkFileTree(fixturePath, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE,
+                new CopyTreeFileVisitor(fixturePath, this.sourceDirPath));
+    }
+
+    /**
+     * Relative path to file contents (or link target) of everything under the directory.
+     */
+    private static Map<String, String> snapshot(Path dir) throws IOException {
+        Map<String, String> contents = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                if (Files.isSymbolicLink(file)) {
+                    contents.put(dir.relativize(file).toString(), "-> " + Files.readSymbolicLink(file));
+                } else if (Files.isRegularFile(file)) {
+                    contents.put(dir.relativize(file).toString(), Files.readString(file));
+                }
+            }
+        }
+        return contents;
+    }
+
+    private static List<Path> listAdocFiles(Path dir, int depth) throws IOException {
+        try (Stream<Path> files = Files.walk(dir, depth)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(p -> new AsciidocFileFilter().accept(p.toFile()))
+                    .collect(Collectors.toList());
+        }
+    }
+}
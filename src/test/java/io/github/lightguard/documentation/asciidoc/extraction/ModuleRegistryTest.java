@@ -0,0 +1,126 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import io.github.lightguard.documentation.asciidoc.cli.Issue;
+import io.github.lightguard.documentation.asciidoc.extraction.model.ExtractedModule;
+import io.github.lightguard.documentation.asciidoc.extraction.model.SectionOutline;
+import io.github.lightguard.documentation.asciidoc.extraction.model.SourceSlice;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModuleRegistryTest {
+    private final ModuleRegistry registry = new ModuleRegistry();
+    private final List<Issue> issues = new ArrayList<>();
+
+    @Test
+    public void registersDistinctModules() {
+        assertThat(register(module("con-a_{context}", "folder", "Text"), "chap-a.adoc: line 3")).isTrue();
+        assertThat(register(module("con-b_{context}", "folder", "Text"), "chap-a.adoc: line 9")).isTrue();
+
+        assertThat(issues).isEmpty();
+        assertThat(registry.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void duplicateModuleIsAnErrorWithBothLocations() {
+        register(module("con-a_{context}", "folder", "Text"), "chap-a.adoc: line 3");
+
+        assertThat(register(module("con-a_{context}", "folder", "Text"), "chap-b.adoc: line 7")).isFalse();
+        assertThat(issues).singleElement().satisfies(issue -> {
+            assertThat(issue.isError()).isTrue();
+            assertThat(issue.toString()).startsWith("ERROR: chap-b.adoc: line 7: Module with non-unique id.")
+                    .endsWith(" at chap-a.adoc: line 3");
+        });
+    }
+
+    @Test
+    public void differentModuleWrittenToTheSameFileIsSkipped() {
+        register(module("con-a_{context}", "folder", "Text"), "chap-a.adoc: line 3");
+
+        assertThat(register(module("con-a_{context}", "folder", "Other text"), "chap-b.adoc: line 7")).isFalse();
+        assertThat(issues).singleElement().satisfies(issue -> {
+            assertThat(issue.isError()).isFalse();
+            assertThat(issue.toString()).contains("folder/con-a.adoc").endsWith(" at chap-a.adoc: line 3, it is skipped");
+        });
+    }
+
+    @Test
+    public void sameIdInAnotherFolderIsAWarning() {
+        register(module("con-a_{context}", "one", "Text"), "chap-a.adoc: line 3");
+
+        assertThat(register(module("con-a_{context}", "two", "Other text"), "chap-b.adoc: line 7")).isTrue();
+        assertThat(issues).singleElement().satisfies(issue -> {
+            assertThat(issue.isError()).isFalse();
+            assertThat(issue.toString()).contains("has the same id as").endsWith(" at chap-a.adoc: line 3");
+        });
+    }
+
+    @Test
+    public void removedModulesCanBeRegisteredAgain() {
+        var module = module("con-a_{context}", "folder", "Text");
+        register(module, "chap-a.adoc: line 3");
+        registry.removeAll(List.of(module));
+
+        assertThat(registry.size()).isZero();
+        assertThat(register(module("con-a_{context}", "folder", "Text"), "chap-a.adoc: line 3")).isTrue();
+        assertThat(issues).isEmpty();
+    }
+
+    private boolean register(ExtractedModule module, String location) {
+        return registry.register(module, location, issues::add);
+    }
+
+    private static ExtractedModule module(String id, String folder, String text) {
+        var lines = List.of("== Title", text);
+        return new ExtractedModule(new Section(id, folder), new SourceSlice(lines, 1, 2, line -> line));
+    }
+
+    private static class Section implements SectionOutline {
+        private final String id;
+        private final String folder;
+
+        Section(String id, String folder) {
+            this.id = id;
+            this.folder = folder;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public int getLevel() {
+            return 2;
+        }
+
+        @Override
+        public String getTitle() {
+            return "Title";
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return Map.of();
+        }
+
+        @Override
+        public int getLineNumber() {
+            return 1;
+        }
+
+        @Override
+        public String getFolder() {
+            return folder;
+        }
+
+        @Override
+        public String getParentFullId() {
+            return "chap-a";
+        }
+    }
+}
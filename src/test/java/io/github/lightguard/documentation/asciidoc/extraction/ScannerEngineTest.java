@@ -0,0 +1,145 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import io.github.lightguard.documentation.asciidoc.cli.ExtractionRunnerBase;
+import io.github.lightguard.documentation.asciidoc.extraction.model.LocalDirectoryLocation;
+import io.github.lightguard.documentation.asciidoc.extraction.model.PushableLocation;
+import io.github.lightguard.documentation.asciidoc.extraction.model.Task;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Splits every fixture with both engines, the scanner has to produce exactly what asciidoctor produces.
+ */
+public class ScannerEngineTest extends ExtractionRunnerBase {
+    private static final String DOCS = "src/test/resources/docs/";
+    // Expected output of the examples, and directories the splitter copies as they are
+    private static final Set<String> NOT_SPLIT = Set.of("output", "titles-enterprise", "_artifacts", "_images");
+    private static ChapterParser asciidoctor;
+
+    @BeforeAll
+    static void startAsciidoctor() {
+        asciidoctor = ParserEngine.ASCIIDOCTOR.create(Collections.emptyMap());
+    }
+
+    @AfterAll
+    static void stopAsciidoctor() {
+        asciidoctor.close();
+    }
+
+    /**
+     * Every directory right under the docs is a fixture, and so is every directory with asciidoc files, except the
+     * expected output of the examples and the directories the splitter only copies.
+     */
+    static Stream<Arguments> fixtures() throws IOException {
+        var docs = Path.of(DOCS);
+        var kogitoEnt = Map.<String, Object>of("KOGITO-ENT", "true");
+        var attributes = Map.of(
+                "examples/kogito/additional_resources", kogitoEnt,
+                "examples/kogito/preamble-test", kogitoEnt,
+                "preamble-include", kogitoEnt,
+                "processor-test/end-to-end", kogitoEnt,
+                "xref-test", kogitoEnt);
+        var ignoreFiles = Map.of(
+                "examples/kogito/ignore_files/asciidoc", List.of(new File("index.adoc")),
+                "issue-93", List.of(new File("ignoreDir-1"), new File("ignoreDir2"),
+                        new File("chap-ignore-file.adoc")));
+        var pantheonV2 = Set.of("content-test", "examples/kogito/input/doc-content/src/main/asciidoc/creating-running");
+
+        List<String> fixtures;
+        try (var files = Files.walk(docs)) {
+            fixtures = files.filter(path -> Files.isDirectory(path)
+                            ? docs.equals(path.getParent())
+                            : path.getFileName().toString().endsWith(".adoc"))
+                    .map(path -> Files.isDirectory(path) ? path : path.getParent())
+                    .map(dir -> docs.relativize(dir).toString().replace(File.separatorChar, '/'))
+                    .filter(fixture -> Stream.of(fixture.split("/")).noneMatch(NOT_SPLIT::contains))
+                    .distinct()
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        return fixtures.stream().flatMap(fixture -> Stream.of(false, true)
+                .filter(pv2 -> !pv2 || pantheonV2.contains(fixture))
+                .map(pv2 -> Arguments.of(fixture, attributes.getOrDefault(fixture, Map.of()),
+                        ignoreFiles.getOrDefault(fixture, List.of()), pv2)));
+    }
+
+    @ParameterizedTest(name = "{0} {1} pantheonV2: {3}")
+    @MethodSource("fixtures")
+    void scannerMatchesAsciidoctor(String fixture, Map<String, Object> attributes, List<File> ignoreFiles,
+                                   boolean pantheonV2) throws Exception {
+        var expected = split(fixture, attributes, ignoreFiles, pantheonV2, ParserEngine.ASCIIDOCTOR);
+        var actual = split(fixture, attributes, ignoreFiles, pantheonV2, ParserEngine.SCANNER);
+
+        assertThat(actual.failure).isEqualTo(expected.failure);
+        assertThat(actual.issues).isEqualTo(expected.issues);
+        assertThat(actual.files).isEqualTo(expected.files);
+    }
+
+    private Result split(String fixture, Map<String, Object> attributes, List<File> ignoreFiles, boolean pantheonV2,
+                         ParserEngine engine) throws IOException {
+        var output = Files.createDirectory(this.outputDirPath.resolve(engine.name().toLowerCase()));
+        var task = new Task(new LocalDirectoryLocation(new File(DOCS + fixture)),
+                PushableLocation.locationWrapper(new LocalDirectoryLocation(output.toFile()), () -> {}),
+                attributes, ignoreFiles, pantheonV2);
+
+        var extractor = engine == ParserEngine.ASCIIDOCTOR
+                ? new Extractor(task, asciidoctor.withAttributes(attributes))
+                : new Extractor(task);
+        extractor.setEngine(engine);
+
+        var result = new Result();
+        extractor.setIssueListener(issue -> result.issues.add(issue.toString()));
+        try {
+            extractor.process();
+        } catch (RuntimeException e) {
+            result.failure = e.getClass().getName();
+        }
+        result.files = snapshot(output);
+        return result;
+    }
+
+    /**
+     * Relative path to file contents (or link target) of everything under the directory.
+     */
+    private static Map<String, String> snapshot(Path dir) throws IOException {
+        Map<String, String> contents = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                if (Files.isSymbolicLink(file)) {
+                    contents.put(dir.relativize(file).toString(), "-> " + Files.readSymbolicLink(file));
+                } else if (Files.isRegularFile(file)) {
+                    // Some fixtures have images, ISO-8859-1 keeps every byte as is
+                    contents.put(dir.relativize(file).toString(),
+                            new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1));
+                }
+            }
+        }
+        return contents;
+    }
+
+    private static class Result {
+        private final List<String> issues = new ArrayList<>();
+        private String failure;
+        private Map<String, String> files;
+    }
+}
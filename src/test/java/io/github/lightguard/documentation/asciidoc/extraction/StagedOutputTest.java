@@ -0,0 +1,72 @@
+package io.github.lightguard.documentation.asciidoc.extraction;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import io.github.lightguard.documentation.asciidoc.extraction.model.OutputTree;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StagedOutputTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void stagingLinksTheFilesOfTheOutput() throws Exception {
+        var target = output();
+
+        var staged = StagedOutput.stage(target);
+        try {
+            var unchanged = staged.getDirectory().resolve("images/logo.png");
+            assertThat(Files.isSameFile(unchanged, target.resolve("images/logo.png"))).isTrue();
+
+            OutputTree.fileSystem().write(staged.getDirectory().resolve("master.adoc"), "New text");
+            assertThat(Files.readString(target.resolve("master.adoc"))).isEqualTo("Text");
+        } finally {
+            staged.discard();
+        }
+        assertThat(Files.readString(target.resolve("master.adoc"))).isEqualTo("Text");
+    }
+
+    @Test
+    void committedOutputReplacesThePreviousOne() throws Exception {
+        var target = output();
+
+        var staged = StagedOutput.stage(target);
+        OutputTree.fileSystem().write(staged.getDirectory().resolve("master.adoc"), "New text");
+        staged.commit();
+
+        assertThat(Files.readString(target.resolve("master.adoc"))).isEqualTo("New text");
+        assertThat(Files.readString(target.resolve("images/logo.png"))).isEqualTo("Image");
+        try (var siblings = Files.list(this.directory)) {
+            assertThat(siblings).containsExactly(target);
+        }
+    }
+
+    @Test
+    void outputIsStagedByOneSplitAtATime() throws Exception {
+        var target = output();
+
+        var staged = StagedOutput.stage(target);
+        try {
+            assertThatThrownBy(() -> StagedOutput.stage(target)).isInstanceOf(IOException.class)
+                    .hasMessageStartingWith("Another split is writing to ");
+        } finally {
+            staged.discard();
+        }
+
+        StagedOutput.stage(target).discard();
+    }
+
+    private Path output() throws IOException {
+        var target = this.directory.resolve("output");
+        Files.createDirectories(target.resolve("images"));
+        Files.writeString(target.resolve("master.adoc"), "Text");
+        Files.writeString(target.resolve("images/logo.png"), "Image");
+        return target;
+    }
+}
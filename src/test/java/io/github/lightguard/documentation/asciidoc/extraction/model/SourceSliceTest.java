@@ -0,0 +1,41 @@
+package io.github.lightguard.documentation.asciidoc.extraction.model;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SourceSliceTest {
+    private static final List<String> LINES = List.of("= Title", "", "== Section", "Some text", "", "=== Nested");
+
+    @Test
+    public void writesTheRewrittenLines() throws Exception {
+        var slice = new SourceSlice(LINES, 2, 6, line -> line.startsWith("==") ? line.substring(1) : line);
+
+        var out = new StringWriter();
+        slice.writeTo(out);
+
+        assertThat(out.toString()).isEqualTo("= Section\nSome text\n\n== Nested\n");
+        assertThat(slice.render()).isEqualTo(out.toString());
+        assertThat(slice.getLineCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void equalsAndHashesLikeTheRenderedString() {
+        var slice = new SourceSlice(LINES, 3, 5, String::toUpperCase);
+        var sameText = new SourceSlice(List.of("SOME TEXT", ""), 0, 2, line -> line);
+
+        assertThat(slice.hashCode()).isEqualTo("SOME TEXT\n\n".hashCode());
+        assertThat(slice).isEqualTo(sameText);
+        assertThat(slice).isNotEqualTo(new SourceSlice(LINES, 3, 4, String::toUpperCase));
+    }
+
+    @Test
+    public void emptyRanges() {
+        assertThat(new SourceSlice(LINES, 6, 6, line -> line).render()).isEmpty();
+        assertThat(new SourceSlice(LINES, 7, 3, line -> line).render()).isEmpty();
+        assertThat(new SourceSlice(LINES, 7, 3, line -> line).hashCode()).isZero();
+    }
+}